@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.ml4j.nn.supervised.SupervisedFeedForwardNeuralNetwork;
+
+/**
+ * A YOLOv2NetworkPool lending out a fixed set of networks from a blocking queue.
+ * 
+ * @author Michael Lavelle
+ */
+final class BlockingQueueYOLOv2NetworkPool implements YOLOv2NetworkPool {
+
+	private YOLOv2Config config;
+	private BlockingQueue<SupervisedFeedForwardNeuralNetwork> availableNetworks;
+	private Set<SupervisedFeedForwardNeuralNetwork> borrowedNetworks;
+	private Set<SupervisedFeedForwardNeuralNetwork> networks;
+
+	/**
+	 * @param config The configuration of the networks.
+	 * @param networks The networks of the pool.
+	 */
+	BlockingQueueYOLOv2NetworkPool(YOLOv2Config config, List<SupervisedFeedForwardNeuralNetwork> networks) {
+		if (networks.isEmpty()) {
+			throw new IllegalArgumentException("At least one network is required");
+		}
+		this.config = config;
+		this.availableNetworks = new ArrayBlockingQueue<>(networks.size(), false, networks);
+		this.borrowedNetworks = Collections.newSetFromMap(new IdentityHashMap<>());
+		this.networks = Collections.newSetFromMap(new IdentityHashMap<>());
+		this.networks.addAll(networks);
+	}
+
+	@Override
+	public SupervisedFeedForwardNeuralNetwork borrow() throws InterruptedException {
+		return borrowed(availableNetworks.take());
+	}
+
+	@Override
+	public SupervisedFeedForwardNeuralNetwork borrow(long timeout, TimeUnit unit) throws InterruptedException {
+		SupervisedFeedForwardNeuralNetwork network = availableNetworks.poll(timeout, unit);
+		return network == null ? null : borrowed(network);
+	}
+
+	private SupervisedFeedForwardNeuralNetwork borrowed(SupervisedFeedForwardNeuralNetwork network) {
+		synchronized (borrowedNetworks) {
+			borrowedNetworks.add(network);
+		}
+		return network;
+	}
+
+	@Override
+	public void release(SupervisedFeedForwardNeuralNetwork network) {
+		if (!networks.contains(network)) {
+			throw new IllegalArgumentException("Network does not belong to this pool");
+		}
+		synchronized (borrowedNetworks) {
+			if (!borrowedNetworks.remove(network)) {
+				throw new IllegalStateException("Network has already been released");
+			}
+		}
+		availableNetworks.add(network);
+	}
+
+	@Override
+	public int getSize() {
+		return networks.size();
+	}
+
+	@Override
+	public int getAvailableCount() {
+		return availableNetworks.size();
+	}
+
+	@Override
+	public YOLOv2Config getConfig() {
+		return config;
+	}
+}
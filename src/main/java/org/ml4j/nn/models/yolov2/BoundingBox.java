@@ -40,8 +40,22 @@ public interface BoundingBox {
 	float[] getScaledCorners(int width, int height);
 	
 	/**
-	 * @return min y, min x, max y, max x,  as pixel coordinates of a 608 * 608 image
+	 * @return min y, min x, max y, max x,  as pixel coordinates of the network input image - a 608 * 608 image 
+	 * for the default configuration
 	 */
 	float[] getScaledCorners();
+	
+	/**
+	 * Copies min y, min x, max y, max x, as pixel coordinates of a width * height image, into corners - 
+	 * implementations should override this to avoid the array allocated by getScaledCorners(width, height).
+	 * 
+	 * @param width The image width.
+	 * @param height The image height.
+	 * @param corners The array into which the corners are copied.
+	 * @param offset The offset within corners of min y.
+	 */
+	default void getScaledCorners(int width, int height, float[] corners, int offset) {
+		System.arraycopy(getScaledCorners(width, height), 0, corners, offset, 4);
+	}
 
 }
@@ -15,10 +15,17 @@
  */
 package org.ml4j.nn.models.yolov2;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.ml4j.Matrix;
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.neurons.NeuronsActivation;
+import org.ml4j.nn.neurons.format.NeuronsActivationFormat;
+
 /**
  * Responsible for obtaining a list of BoundingBoxes from the float[] output of a YOLO network for a single image example, 
+ * or a list of BoundingBoxes per image example from the output of a YOLO network for a batch of examples,
  * given a BoundingBox score threshold and an iouThreshold for non max suppression.
  * 
  * @author Michael Lavelle
@@ -35,4 +42,104 @@ public interface BoundingBoxExtractor {
 	 */
 	List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, YOLOv2Labels yoloV2ClassificationNames, 
 			float scoreThreshold, float iouThreshold);
+
+	/**
+	 * The default implementation truncates the full result of non max suppression, so returns the first 
+	 * maxDetections BoundingBoxes of getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[], ...).
+	 * 
+	 * Implementations may instead bound the candidates considered by non max suppression - for example 
+	 * DefaultYOLOv2BoundingBoxExtractor retains only the highest scoring maxDetections * candidatesPerDetection 
+	 * candidates. As non max suppression only ever suppresses a box in favour of a higher scoring one, the result 
+	 * is then a prefix of the truncated full result, but may hold fewer BoundingBoxes when most of the retained 
+	 * candidates are suppressed.
+	 * 
+	 * @param data The output for a single image example from the YOLO network - a tensor of shape 425 * 19 * 19.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxDetections The maximum number of BoundingBox instances to return.
+	 * @return A list of at most maxDetections score-filtered BoundingBox instances, with non max suppression applied, 
+	 * in descending score order.
+	 */
+	default List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, 
+			YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold, int maxDetections) {
+		if (maxDetections < 1) {
+			throw new IllegalArgumentException("Max detections must be at least 1 but was:" + maxDetections);
+		}
+		List<BoundingBox> boundingBoxes = getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, 
+				yoloV2ClassificationNames, scoreThreshold, iouThreshold);
+		return boundingBoxes.size() <= maxDetections ? boundingBoxes 
+				: new ArrayList<>(boundingBoxes.subList(0, maxDetections));
+	}
+
+	/**
+	 * The default implementation wraps the BoundingBoxes of non max suppression.
+	 * 
+	 * @param data The output for a single image example from the YOLO network - a tensor of shape 425 * 19 * 19.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param iouThreshold The iou threshold.
+	 * @return The score-filtered detections, with non max suppression applied, in descending score order.
+	 */
+	default Detections getScoreFilteredDetectionsWithNonMaxSuppression(float[] data, 
+			YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+		return Detections.of(getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, yoloV2ClassificationNames, 
+				scoreThreshold, iouThreshold));
+	}
+
+	/**
+	 * The default implementation copies out the values of each image example in turn, and extracts its 
+	 * BoundingBoxes with the single image method.
+	 * 
+	 * @param data The output for a batch of image examples from the YOLO network - the row-by-row array of the 
+	 * (425 * 19 * 19) * batchSize activations, so that the value of feature f for example e is at index f * batchSize + e.
+	 * @param batchSize The number of image examples in the batch.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param iouThreshold The iou threshold.
+	 * @return A list of score-filtered BoundingBox instances for each image example, with non max suppression applied.
+	 */
+	default List<List<BoundingBox>> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, int batchSize, 
+			YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+		if (batchSize < 1 || data.length % batchSize != 0) {
+			throw new IllegalArgumentException("Expected a multiple of " + batchSize + " values for a batch of " 
+					+ batchSize + " examples but was:" + data.length);
+		}
+		float[] exampleData = new float[data.length / batchSize];
+		List<List<BoundingBox>> results = new ArrayList<>(batchSize);
+		for (int e = 0; e < batchSize; e++) {
+			for (int f = 0; f < exampleData.length; f++) {
+				exampleData[f] = data[f * batchSize + e];
+			}
+			results.add(getScoreFilteredBoundingBoxesWithNonMaxSuppression(exampleData, yoloV2ClassificationNames, 
+					scoreThreshold, iouThreshold));
+		}
+		return results;
+	}
+	
+	/**
+	 * The default implementation reads the activations matrix in the orientation declared by the format of the 
+	 * activations, and extracts the BoundingBoxes of each image example with 
+	 * getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[], int, ...).
+	 * 
+	 * @param activations The output activations for a batch of image examples from the YOLO network.
+	 * @param matrixFactory The matrix factory with which to read the activations.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param iouThreshold The iou threshold.
+	 * @return A list of score-filtered BoundingBox instances for each image example, with non max suppression applied.
+	 */
+	default List<List<BoundingBox>> getScoreFilteredBoundingBoxesWithNonMaxSuppression(NeuronsActivation activations, 
+			MatrixFactory matrixFactory, YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, 
+			float iouThreshold) {
+		Matrix activationsMatrix = activations.getActivations(matrixFactory);
+		if (activations.getFormat().getFeatureOrientation() 
+				!= NeuronsActivationFormat.ROWS_SPAN_FEATURE_SET.getFeatureOrientation()) {
+			// Columns span the feature set - transpose so that the value of feature f for example e is at 
+			// index f * batchSize + e.
+			activationsMatrix = activationsMatrix.transpose();
+		}
+		return getScoreFilteredBoundingBoxesWithNonMaxSuppression(activationsMatrix.getRowByRowArray(), 
+				activationsMatrix.getColumns(), yoloV2ClassificationNames, scoreThreshold, iouThreshold);
+	}
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Detections backed by a list of BoundingBoxes, for BoundingBoxExtractors which do not hold their detections as 
+ * primitive arrays.
+ * 
+ * @author Michael Lavelle
+ */
+final class BoundingBoxListDetections implements Detections {
+
+	private final List<BoundingBox> boundingBoxes;
+
+	BoundingBoxListDetections(List<? extends BoundingBox> boundingBoxes) {
+		this.boundingBoxes = Collections.unmodifiableList(new ArrayList<>(boundingBoxes));
+	}
+
+	@Override
+	public int size() {
+		return boundingBoxes.size();
+	}
+
+	@Override
+	public int getPredictedClassIndex(int detection) {
+		return boundingBoxes.get(detection).getPredictedClassIndex();
+	}
+
+	@Override
+	public float getPredictedClassScore(int detection) {
+		return boundingBoxes.get(detection).getPredictedClassScore();
+	}
+
+	@Override
+	public boolean hasClassProbabilities() {
+		return false;
+	}
+
+	@Override
+	public void getClassProbabilities(int detection, float[] classProbabilities) {
+		throw new IllegalStateException("Class probabilities have not been retained");
+	}
+
+	@Override
+	public void getScaledCorners(int width, int height, float[] corners) {
+		for (int i = 0; i < boundingBoxes.size(); i++) {
+			boundingBoxes.get(i).getScaledCorners(width, height, corners, i * 4);
+		}
+	}
+
+	@Override
+	public void getScaledCorners(float[] corners) {
+		for (int i = 0; i < boundingBoxes.size(); i++) {
+			System.arraycopy(boundingBoxes.get(i).getScaledCorners(), 0, corners, i * 4, 4);
+		}
+	}
+
+	@Override
+	public BoundingBox get(int detection) {
+		return boundingBoxes.get(detection);
+	}
+
+	@Override
+	public List<BoundingBox> asBoundingBoxes() {
+		return boundingBoxes;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+import java.util.List;
+
+/**
+ * The detections for a single image example, held as primitive arrays with one entry per detection - 
+ * corners, predicted class index, predicted class score and optionally the full row of class probabilities.
+ * 
+ * All values are computed once when the detections are decoded, and BoundingBox instances obtained 
+ * from Detections are views over these arrays.
+ * 
+ * @author Michael Lavelle
+ */
+public interface Detections {
+
+	/**
+	 * @return The number of detections.
+	 */
+	int size();
+	
+	/**
+	 * @param detection The index of the detection.
+	 * @return The index of the predicted class for the detection.
+	 */
+	int getPredictedClassIndex(int detection);
+	
+	/**
+	 * @param detection The index of the detection.
+	 * @return The score of the predicted class for the detection.
+	 */
+	float getPredictedClassScore(int detection);
+	
+	/**
+	 * @return Whether the full row of class probabilities has been retained for each detection.
+	 */
+	boolean hasClassProbabilities();
+	
+	/**
+	 * @param detection The index of the detection.
+	 * @param classProbabilities The array into which the class probabilities of the detection are to be copied.
+	 * @throws IllegalStateException If class probabilities have not been retained.
+	 */
+	void getClassProbabilities(int detection, float[] classProbabilities);
+	
+	/**
+	 * Fills corners with min y, min x, max y, max x for every detection, 4 consecutive values per detection, 
+	 * as pixel coordinates of a width * height image.
+	 * 
+	 * @param width The image width.
+	 * @param height The image height.
+	 * @param corners An array of at least 4 * size() values.
+	 */
+	void getScaledCorners(int width, int height, float[] corners);
+	
+	/**
+	 * Fills corners with min y, min x, max y, max x for every detection, 4 consecutive values per detection,
+	 * as pixel coordinates of the network input image.
+	 * 
+	 * @param corners An array of at least 4 * size() values.
+	 */
+	void getScaledCorners(float[] corners);
+	
+	/**
+	 * @param detection The index of the detection.
+	 * @return A BoundingBox view of the detection.
+	 */
+	BoundingBox get(int detection);
+	
+	/**
+	 * @return BoundingBox views of all the detections, in detection order.
+	 */
+	List<BoundingBox> asBoundingBoxes();
+	
+	/**
+	 * @param boundingBoxes The bounding boxes.
+	 * @return Detections backed by the bounding boxes, in list order, without class probabilities.
+	 */
+	static Detections of(List<? extends BoundingBox> boundingBoxes) {
+		return new BoundingBoxListDetections(boundingBoxes);
+	}
+}
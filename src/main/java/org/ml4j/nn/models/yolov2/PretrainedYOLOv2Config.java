@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+/**
+ * The configuration of the default pretrained YOLO v2 network - a 608 * 608 input, a 19 * 19 grid, the COCO 
+ * anchors and 80 classes.
+ * 
+ * @author Michael Lavelle
+ */
+final class PretrainedYOLOv2Config implements YOLOv2Config {
+
+	static final PretrainedYOLOv2Config INSTANCE = new PretrainedYOLOv2Config();
+
+	private static final int INPUT_SIZE = 608;
+	
+	private static final int GRID_SIZE = 19;
+	
+	private static final int CLASS_COUNT = 80;
+
+	private PretrainedYOLOv2Config() {
+	}
+
+	@Override
+	public int getInputWidth() {
+		return INPUT_SIZE;
+	}
+
+	@Override
+	public int getInputHeight() {
+		return INPUT_SIZE;
+	}
+
+	@Override
+	public int getGridWidth() {
+		return GRID_SIZE;
+	}
+
+	@Override
+	public int getGridHeight() {
+		return GRID_SIZE;
+	}
+
+	@Override
+	public float[][] getAnchors() {
+		return new float[][] {
+			{ 0.57273f, 0.677385f },
+			{ 1.87446f, 2.06253f },
+			{ 3.33843f, 5.47434f },
+			{ 7.88282f, 3.52778f },
+			{ 9.77052f, 9.16828f }
+		};
+	}
+
+	@Override
+	public int getClassCount() {
+		return CLASS_COUNT;
+	}
+
+	@Override
+	public String toString() {
+		return "PretrainedYOLOv2Config [input=" + INPUT_SIZE + "*" + INPUT_SIZE + ", grid=" + GRID_SIZE + "*" 
+				+ GRID_SIZE + ", anchors=5, classCount=" + CLASS_COUNT + "]";
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+/**
+ * Interface for the configuration of a YOLO v2 Network - its input resolution, output grid size, 
+ * anchor boxes and class count.
+ * 
+ * @author Michael Lavelle
+ */
+public interface YOLOv2Config {
+
+	/**
+	 * @return The width in pixels of the network input image.
+	 */
+	int getInputWidth();
+	
+	/**
+	 * @return The height in pixels of the network input image.
+	 */
+	int getInputHeight();
+	
+	/**
+	 * @return The number of columns of the output grid.
+	 */
+	int getGridWidth();
+	
+	/**
+	 * @return The number of rows of the output grid.
+	 */
+	int getGridHeight();
+	
+	/**
+	 * @return The width and height of each anchor box, in grid cells - one float[2] per anchor.
+	 */
+	float[][] getAnchors();
+	
+	/**
+	 * @return The number of classes.
+	 */
+	int getClassCount();
+	
+	/**
+	 * @return The configuration of the default pretrained YOLO v2 network - a 608 * 608 input, the COCO anchors and 
+	 * 80 classes.
+	 */
+	static YOLOv2Config pretrained() {
+		return PretrainedYOLOv2Config.INSTANCE;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A streaming Yolo V2 detection pipeline - frames are submitted in, and their detections taken out in the same 
+ * order, while the stages of detection for successive frames run concurrently.
+ * 
+ * @author Michael Lavelle
+ *
+ * @param <F> The type of frame.
+ */
+public interface YOLOv2DetectionPipeline<F> extends AutoCloseable {
+
+	/**
+	 * The policy applied when a frame is submitted while the pipeline is full.
+	 */
+	enum OverloadPolicy {
+
+		/**
+		 * Block the submitting thread until there is space in the pipeline.
+		 */
+		BLOCK,
+
+		/**
+		 * Drop the oldest frame waiting to enter the pipeline, so that the newest frames are always processed.
+		 */
+		DROP_OLDEST
+	}
+
+	/**
+	 * Submits a frame for detection, applying the overload policy when the pipeline is full.
+	 * 
+	 * @param frame The frame.
+	 * @return The sequence number of the frame.
+	 * @throws InterruptedException If interrupted while waiting for space in the pipeline.
+	 * @throws IllegalStateException If the pipeline has been closed.
+	 */
+	long submit(F frame) throws InterruptedException;
+
+	/**
+	 * Takes the detections of the next frame, in order of submission, waiting until they are available.
+	 * 
+	 * @return The detections of the next frame, or null if the pipeline has been closed and all frames taken.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	YOLOv2FrameDetections<F> take() throws InterruptedException;
+
+	/**
+	 * Takes the detections of the next frame, in order of submission, waiting up to the specified timeout.
+	 * 
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return The detections of the next frame, or null if none became available within the timeout or the 
+	 * pipeline has been closed and all frames taken.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	YOLOv2FrameDetections<F> poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * @return The number of frames dropped under the DROP_OLDEST overload policy.
+	 */
+	long getDroppedFrameCount();
+
+	/**
+	 * Stops accepting frames, waiting a bounded time for the frames already submitted to pass through the pipeline. 
+	 * Those frames can still be taken, unless the pipeline had to be interrupted to shut it down.
+	 */
+	@Override
+	void close();
+}
@@ -16,6 +16,9 @@
 package org.ml4j.nn.models.yolov2;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.ml4j.nn.FeedForwardNeuralNetworkContext;
 import org.ml4j.nn.supervised.SupervisedFeedForwardNeuralNetwork;
@@ -39,6 +42,65 @@ public interface YOLOv2Factory {
 	 */
 	SupervisedFeedForwardNeuralNetwork createYoloV2(FeedForwardNeuralNetworkContext context) throws IOException;
 
+	/**
+	 * Create a new Yolo V2 Network with an alternative configuration, such as a lower input resolution.
+	 * 
+	 * The default implementation only supports the configuration of this factory, for which it delegates to 
+	 * createYoloV2(context).
+	 * 
+	 * @param context The training or prediction context with which to construct
+	 *                this network. This method may perform additional
+	 *                configurations of this config during execution.
+	 * @param config The configuration of the network.
+	 * @return A Yolo V2 Network
+	 * @throws IOException In the event that the network cannot be loaded
+	 * @throws UnsupportedOperationException If the factory does not support the configuration.
+	 */
+	default SupervisedFeedForwardNeuralNetwork createYoloV2(FeedForwardNeuralNetworkContext context, 
+			YOLOv2Config config) throws IOException {
+		YOLOv2Config factoryConfig = getConfig();
+		if (config == factoryConfig || (config.getInputWidth() == factoryConfig.getInputWidth() 
+				&& config.getInputHeight() == factoryConfig.getInputHeight() 
+				&& config.getClassCount() == factoryConfig.getClassCount()
+				&& Arrays.deepEquals(config.getAnchors(), factoryConfig.getAnchors()))) {
+			return createYoloV2(context);
+		}
+		throw new UnsupportedOperationException(getClass().getName() + " does not support config:" + config);
+	}
+	
+	/**
+	 * Create a pool of Yolo V2 Networks which share a single, immutable, copy of the weights, for use by concurrent
+	 * worker threads. The weights are loaded once per factory, however many pools are created.
+	 * 
+	 * The default implementation creates each network of the pool with createYoloV2(context, config), so the 
+	 * networks only share weights if the factory shares them between the networks it creates.
+	 * 
+	 * @param context The prediction context with which to construct the networks.
+	 * @param config The configuration of the networks.
+	 * @param size The number of networks in the pool.
+	 * @return A pool of Yolo V2 Networks
+	 * @throws IOException In the event that the networks cannot be loaded
+	 */
+	default YOLOv2NetworkPool createYoloV2Pool(FeedForwardNeuralNetworkContext context, YOLOv2Config config, 
+			int size) throws IOException {
+		if (size < 1) {
+			throw new IllegalArgumentException("Pool size must be at least 1");
+		}
+		List<SupervisedFeedForwardNeuralNetwork> networks = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			networks.add(createYoloV2(context, config));
+		}
+		return YOLOv2NetworkPool.of(config, networks);
+	}
+
+	/**
+	 * @return The configuration of the Yolo V2 instances generated by this factory by default - 
+	 * YOLOv2Config.pretrained() unless overridden.
+	 */
+	default YOLOv2Config getConfig() {
+		return YOLOv2Config.pretrained();
+	}
+
 	/**
 	 * @return The labels for the Yolo V2 instances generated by this factory.
 	 * @throws IOException In the event that the labels cannot be loaded
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+import org.ml4j.nn.neurons.NeuronsActivation;
+
+/**
+ * Runs the forward pass of a Yolo V2 Network, from the preprocessed input image activations to the network output.
+ * 
+ * @author Michael Lavelle
+ */
+public interface YOLOv2ForwardPass {
+
+	/**
+	 * @param input The input image activations.
+	 * @return The output activations of the network.
+	 */
+	NeuronsActivation forwardPropagate(NeuronsActivation input);
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+/**
+ * The detections for a single frame of a YOLOv2DetectionPipeline.
+ * 
+ * @author Michael Lavelle
+ *
+ * @param <F> The type of frame.
+ */
+public interface YOLOv2FrameDetections<F> {
+
+	/**
+	 * @return The frame.
+	 */
+	F getFrame();
+
+	/**
+	 * @return The sequence number of the frame, in order of submission, starting at 0.
+	 */
+	long getSequenceNumber();
+
+	/**
+	 * @return Whether detection failed for this frame.
+	 */
+	boolean isFailed();
+
+	/**
+	 * @return The failure of detection for this frame, or null if detection succeeded.
+	 */
+	Throwable getFailure();
+
+	/**
+	 * @return The detections for the frame.
+	 * @throws IllegalStateException If detection failed for this frame.
+	 */
+	Detections getDetections();
+}
@@ -24,4 +24,29 @@ package org.ml4j.nn.models.yolov2;
 public interface YOLOv2Labels {
 
 	String getLabel(int labelIndex);
+
+	/**
+	 * The default implementation searches the labels in index order, from 0 until getLabel returns null or 
+	 * throws for an index out of range - implementations holding a reverse mapping should override it.
+	 * 
+	 * @param label The label.
+	 * @return The index of the label.
+	 * @throws IllegalArgumentException If there is no such label.
+	 */
+	default int getLabelIndex(String label) {
+		for (int labelIndex = 0;; labelIndex++) {
+			String candidate;
+			try {
+				candidate = getLabel(labelIndex);
+			} catch (RuntimeException e) {
+				break;
+			}
+			if (candidate == null) {
+				break;
+			} else if (candidate.equals(label)) {
+				return labelIndex;
+			}
+		}
+		throw new IllegalArgumentException("Label of:" + label + " is not known");
+	}
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+/**
+ * Sink for the runtime metrics of Yolo V2 detection - the latency of each stage, and the number of cells and boxes 
+ * handled while extracting the bounding boxes of each image.
+ * 
+ * Metrics are recorded on the threads performing detection, possibly concurrently, so implementations must be 
+ * thread-safe and should be cheap.
+ * 
+ * @author Michael Lavelle
+ */
+public interface YOLOv2MetricsSink {
+
+	/**
+	 * The stages of detection.
+	 */
+	enum Stage {
+
+		/**
+		 * Resizing and normalising an image into the network input.
+		 */
+		PREPROCESS,
+
+		/**
+		 * Forward propagating a batch of images through the network.
+		 */
+		FORWARD_PASS,
+
+		/**
+		 * Decoding the network output of an image into candidate boxes, including score filtering.
+		 */
+		DECODE,
+
+		/**
+		 * Non max suppression of the candidate boxes of an image.
+		 */
+		NON_MAX_SUPPRESSION
+	}
+
+	/**
+	 * @param stage The stage.
+	 * @param nanos The time taken by the stage.
+	 * @param exampleCount The number of images handled by the stage.
+	 */
+	default void recordLatency(Stage stage, long nanos, int exampleCount) {
+	}
+
+	/**
+	 * @param cellCount The number of anchor cells of the image.
+	 * @param prunedCellCount The number of anchor cells rejected on objectness alone.
+	 * @param candidateCount The number of candidate boxes with a score above the threshold.
+	 * @param detectionCount The number of boxes remaining after non max suppression.
+	 */
+	default void recordCounts(int cellCount, int prunedCellCount, int candidateCount, int detectionCount) {
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Schedules single-image detection requests onto batched forward passes of a Yolo V2 Network - concurrent requests 
+ * are collected until either the maximum batch size or the maximum wait time is reached, and are then detected 
+ * together.
+ * 
+ * @author Michael Lavelle
+ */
+public interface YOLOv2MicroBatchScheduler extends AutoCloseable {
+
+	/**
+	 * Submits a single image for detection.
+	 * 
+	 * @param input The input values of the image, in the input layout of the network - for example from 
+	 * YOLOv2ImagePreprocessor. The values must not be modified until the returned future completes.
+	 * @return A future completed with the bounding boxes detected in the image, or completed exceptionally if 
+	 * detection failed or the request was rejected.
+	 * @throws IllegalStateException If the scheduler has been closed.
+	 */
+	CompletableFuture<List<BoundingBox>> submit(float[] input);
+
+	/**
+	 * @return The number of requests waiting to be batched.
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return The number of requests completed, successfully or not.
+	 */
+	long getRequestCount();
+
+	/**
+	 * @return The number of batches run.
+	 */
+	long getBatchCount();
+
+	/**
+	 * @return The average number of requests per batch.
+	 */
+	double getAverageBatchSize();
+
+	/**
+	 * @return The number of batches run of each size, indexed by batch size.
+	 */
+	long[] getBatchSizeCounts();
+
+	/**
+	 * Stops accepting requests. Requests already submitted are still detected.
+	 */
+	@Override
+	void close();
+}
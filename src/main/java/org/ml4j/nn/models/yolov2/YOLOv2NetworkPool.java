@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.ml4j.nn.supervised.SupervisedFeedForwardNeuralNetwork;
+
+/**
+ * A pool of Yolo V2 Networks sharing the same weights, lent out to worker threads.
+ * 
+ * A borrowed network is used by a single thread at a time, and must be released back to the pool once the thread
+ * has finished with it.
+ * 
+ * @author Michael Lavelle
+ */
+public interface YOLOv2NetworkPool {
+
+	/**
+	 * Borrows a network, waiting until one is available.
+	 * 
+	 * @return The borrowed network.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	SupervisedFeedForwardNeuralNetwork borrow() throws InterruptedException;
+
+	/**
+	 * Borrows a network, waiting up to the specified timeout for one to become available.
+	 * 
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return The borrowed network, or null if none became available within the timeout.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	SupervisedFeedForwardNeuralNetwork borrow(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Returns a borrowed network to the pool.
+	 * 
+	 * @param network The network borrowed from this pool.
+	 */
+	void release(SupervisedFeedForwardNeuralNetwork network);
+
+	/**
+	 * @return The number of networks in the pool.
+	 */
+	int getSize();
+
+	/**
+	 * @return The number of networks currently available to borrow.
+	 */
+	int getAvailableCount();
+
+	/**
+	 * @return The configuration of the networks in the pool.
+	 */
+	YOLOv2Config getConfig();
+	
+	/**
+	 * @param config The configuration of the networks.
+	 * @param networks The networks of the pool, at least one.
+	 * @return A pool lending out the networks, each to one thread at a time.
+	 */
+	static YOLOv2NetworkPool of(YOLOv2Config config, List<SupervisedFeedForwardNeuralNetwork> networks) {
+		return new BlockingQueueYOLOv2NetworkPool(config, networks);
+	}
+}
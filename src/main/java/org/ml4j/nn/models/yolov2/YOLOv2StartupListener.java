@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+/**
+ * Listener for the startup of a Yolo V2 Network - the loading of each weights tensor and the building of the 
+ * network graph. Register with the weights loader for tensor events and with the factory for build events.
+ * 
+ * Listeners may be notified concurrently from several threads, for example while weights are prefetched.
+ * 
+ * @author Michael Lavelle
+ */
+public interface YOLOv2StartupListener {
+
+	/**
+	 * @param event The loading of a weights tensor.
+	 */
+	default void onTensorLoaded(YOLOv2TensorLoadEvent event) {
+	}
+
+	/**
+	 * @param config The configuration of the network being built.
+	 */
+	default void onNetworkBuildStarted(YOLOv2Config config) {
+	}
+
+	/**
+	 * @param config The configuration of the network built.
+	 * @param buildNanos The time taken to build the network, including loading its weights.
+	 */
+	default void onNetworkBuilt(YOLOv2Config config, long buildNanos) {
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2;
+
+/**
+ * Reports the loading of a single weights tensor of a Yolo V2 Network.
+ * 
+ * Timings are in nanoseconds. A phase which does not apply to the source of the tensor - for example opening a 
+ * resource when the weights are memory-mapped - is reported as 0.
+ * 
+ * @author Michael Lavelle
+ */
+public interface YOLOv2TensorLoadEvent {
+
+	/**
+	 * @return The name of the tensor.
+	 */
+	String getTensorName();
+
+	/**
+	 * @return The kind of the tensor, such as CONVOLUTIONAL_WEIGHTS or BATCH_NORM_GAMMA.
+	 */
+	String getTensorKind();
+
+	/**
+	 * @return The shape of the tensor.
+	 */
+	int[] getShape();
+
+	/**
+	 * @return A description of the source of the weights, such as resource, cache or mapped.
+	 */
+	String getSource();
+
+	/**
+	 * @return The time taken to open the resource containing the tensor.
+	 */
+	long getResourceOpenNanos();
+
+	/**
+	 * @return The time taken to read and deserialize the raw values of the tensor.
+	 */
+	long getDeserializeNanos();
+
+	/**
+	 * @return The time taken to create the weights matrix or vector from the values.
+	 */
+	long getMatrixCreationNanos();
+
+	/**
+	 * @return The total time taken to load the tensor, including any time spent waiting for it.
+	 */
+	long getTotalNanos();
+
+	/**
+	 * @return The number of bytes read from the source.
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return The heap size of the resulting values.
+	 */
+	long getHeapBytes();
+}
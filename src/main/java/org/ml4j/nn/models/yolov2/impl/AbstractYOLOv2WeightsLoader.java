@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2WeightsLoader;
+import org.ml4j.nn.axons.BiasFormatImpl;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.BiasVectorImpl;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.FeaturesVectorFormatImpl;
+import org.ml4j.nn.axons.FeaturesVectorImpl;
+import org.ml4j.nn.axons.FeaturesVectorOrientation;
+import org.ml4j.nn.axons.WeightsFormatImpl;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.axons.WeightsMatrixImpl;
+import org.ml4j.nn.axons.WeightsMatrixOrientation;
+import org.ml4j.nn.axons.WeightsVector;
+import org.ml4j.nn.axons.WeightsVectorImpl;
+import org.ml4j.nn.models.yolov2.YOLOv2StartupListener;
+import org.ml4j.nn.neurons.format.features.Dimension;
+import org.ml4j.nn.neurons.format.features.DimensionScope;
+
+/**
+ * Base class for a YOLOv2WeightsLoader which obtains the raw float[] of each tensor from some source, 
+ * and creates the weights matrices and vectors required by the network from them.
+ * 
+ * Convolutional layer weights are expected in the layout outputDepth * inputDepth * height * width, which
+ * is the ml4j layout of the weights matrix - no reordering is required.
+ * 
+ * Each tensor load is timed, and reported to any registered YOLOv2StartupListeners.
+ * 
+ * @author Michael Lavelle
+ */
+public abstract class AbstractYOLOv2WeightsLoader implements YOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	protected MatrixFactory matrixFactory;
+
+	private transient List<YOLOv2StartupListener> listeners;
+
+	protected AbstractYOLOv2WeightsLoader(MatrixFactory matrixFactory) {
+		this.matrixFactory = matrixFactory;
+	}
+
+	/**
+	 * @param tensor The tensor to load.
+	 * @param event The event to populate with the source, the timings of each phase and the bytes read.
+	 * @return The raw float[] of the tensor, of tensor.getElementCount() values.
+	 */
+	protected abstract float[] loadWeights(YOLOv2WeightsTensor tensor, DefaultYOLOv2TensorLoadEvent event);
+
+	/**
+	 * @param listener A listener to notify as each tensor is loaded.
+	 */
+	public synchronized void addListener(YOLOv2StartupListener listener) {
+		if (listeners == null) {
+			listeners = new CopyOnWriteArrayList<>();
+		}
+		listeners.add(listener);
+	}
+
+	public synchronized void removeListener(YOLOv2StartupListener listener) {
+		if (listeners != null) {
+			listeners.remove(listener);
+		}
+	}
+
+	private <W> W load(YOLOv2WeightsTensor tensor, Function<float[], W> weightsFactory) {
+		DefaultYOLOv2TensorLoadEvent event = new DefaultYOLOv2TensorLoadEvent(tensor);
+		long start = System.nanoTime();
+		float[] weights = loadWeights(tensor, event);
+		long matrixCreationStart = System.nanoTime();
+		W result = weightsFactory.apply(weights);
+		long end = System.nanoTime();
+		List<YOLOv2StartupListener> listeners = this.listeners;
+		if (listeners != null && !listeners.isEmpty()) {
+			event.setMatrixCreationNanos(end - matrixCreationStart);
+			event.setTotalNanos(end - start);
+			event.setHeapBytes(4L * weights.length);
+			for (YOLOv2StartupListener listener : listeners) {
+				listener.onTensorLoaded(event);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth, int outputDepth) {
+		return load(YOLOv2WeightsTensor.convolutionalWeights(name, width, height, inputDepth, outputDepth), 
+				weights -> createConvolutionalLayerWeights(matrixFactory, weights, width, height, inputDepth, 
+						outputDepth));
+	}
+
+	@Override
+	public WeightsVector getBatchNormLayerGamma(String name, int outputDepth) {
+		return load(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_GAMMA, name, outputDepth), 
+				weights -> new WeightsVectorImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
+				new FeaturesVectorFormatImpl(Arrays.asList(Dimension.OUTPUT_DEPTH), FeaturesVectorOrientation.COLUMN_VECTOR,
+						DimensionScope.OUTPUT)));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingVariance(String name, int outputDepth) {
+		return load(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_VARIANCE, name, 
+				outputDepth), 
+				weights -> new FeaturesVectorImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
+				new FeaturesVectorFormatImpl(Arrays.asList(Dimension.OUTPUT_DEPTH), FeaturesVectorOrientation.COLUMN_VECTOR,
+						DimensionScope.OUTPUT)));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingMean(String name, int outputDepth) {
+		return load(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_MEAN, name, outputDepth), 
+				weights -> new FeaturesVectorImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
+				new FeaturesVectorFormatImpl(Arrays.asList(Dimension.OUTPUT_DEPTH), FeaturesVectorOrientation.COLUMN_VECTOR,
+						DimensionScope.OUTPUT)));
+	}
+
+	@Override
+	public BiasVector getBatchNormLayerBeta(String name, int outputDepth) {
+		return load(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_BETA, name, outputDepth), 
+				weights -> new BiasVectorImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
+				new BiasFormatImpl(Dimension.OUTPUT_DEPTH, FeaturesVectorOrientation.COLUMN_VECTOR)));
+	}
+
+	@Override
+	public BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
+		return load(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_BIASES, name, outputDepth), 
+				weights -> new BiasVectorImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
+				new BiasFormatImpl(Dimension.OUTPUT_DEPTH, FeaturesVectorOrientation.COLUMN_VECTOR)));
+	}
+
+	/**
+	 * Creates the ml4j weights matrix of a convolutional layer from raw weights in the layout 
+	 * outputDepth * inputDepth * height * width.
+	 */
+	static WeightsMatrix createConvolutionalLayerWeights(MatrixFactory matrixFactory, float[] weights, int width, 
+			int height, int inputDepth, int outputDepth) {
+		boolean oneByOneConvolution = width == 1 && height == 1;
+		if (oneByOneConvolution) {
+			return new WeightsMatrixImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 
+					width * height * inputDepth, weights),
+					new WeightsFormatImpl(Arrays.asList(Dimension.INPUT_DEPTH), 
+							Arrays.asList(Dimension.OUTPUT_DEPTH), WeightsMatrixOrientation.ROWS_SPAN_OUTPUT_DIMENSIONS));
+		} else {
+			return new WeightsMatrixImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 
+					width * height * inputDepth, weights),
+					new WeightsFormatImpl(Arrays.asList(Dimension.INPUT_DEPTH, Dimension.FILTER_HEIGHT, Dimension.FILTER_WIDTH), 
+							Arrays.asList(Dimension.OUTPUT_DEPTH), WeightsMatrixOrientation.ROWS_SPAN_OUTPUT_DIMENSIONS));
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ml4j.MatrixFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A YOLOv2WeightsLoader which reads an original Darknet .weights file, such as yolov2.weights, directly - without 
+ * conversion to yolov2javaweights resources or a packed weights archive.
+ * 
+ * The file is memory-mapped once, and split into the tensors of each convolutional layer by walking its layout on 
+ * construction : a header of major, minor and revision int32 values and a count of images seen - int64 from 
+ * version 0.2 - followed by the parameters of each convolutional layer in turn. A layer with batch norm holds its 
+ * beta, gamma, moving mean and moving variance, and a layer without holds its biases, each followed by the 
+ * convolutional weights in the layout outputDepth * inputDepth * height * width - the ml4j layout, so no 
+ * reordering is required.
+ * 
+ * The file holds no names or shapes, so the tensors of the network are supplied in graph order - as recorded by 
+ * RecordingYOLOv2WeightsLoader, listed by MappedYOLOv2WeightsLoader or read from a YOLOv2WeightsManifest - each 
+ * layer's batch norm or bias tensors following its convolutional weights, and the layers in the order of the 
+ * Darknet configuration. The total size of the tensors must match the size of the file.
+ * 
+ * By default the tensors are read from the yolov2_weights_manifest.txt resource, which lists the 23 convolutional 
+ * layers of the COCO yolov2.cfg in order - the first 22 with batch norm, and the final 1 * 1 convolution to 425 
+ * outputs with biases.
+ * 
+ * @author Michael Lavelle
+ */
+public class DarknetYOLOv2WeightsLoader extends AbstractYOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DarknetYOLOv2WeightsLoader.class);
+
+	private static final YOLOv2WeightsTensor.Kind[] BATCH_NORM_LAYOUT = {
+			YOLOv2WeightsTensor.Kind.BATCH_NORM_BETA,
+			YOLOv2WeightsTensor.Kind.BATCH_NORM_GAMMA,
+			YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_MEAN,
+			YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_VARIANCE };
+
+	/**
+	 * The resource of the YOLOv2WeightsManifest of the default pretrained YOLO v2 network, in yolov2.cfg order.
+	 */
+	public static final String DEFAULT_MANIFEST_RESOURCE = "yolov2_weights_manifest.txt";
+
+	private String path;
+	private List<YOLOv2WeightsTensor> tensors;
+
+	private transient ByteBuffer mappedBuffer;
+	private transient Map<YOLOv2WeightsTensor, Integer> offsets;
+	private transient int majorVersion;
+	private transient int minorVersion;
+	private transient int revision;
+	private transient long seen;
+
+	/**
+	 * Maps a Darknet .weights file of the default pretrained YOLO v2 network, such as yolov2.weights.
+	 * 
+	 * @param path The path of the Darknet .weights file.
+	 * @param matrixFactory The matrix factory.
+	 * @throws IOException If the file cannot be mapped, or does not match the tensors of the default manifest.
+	 */
+	public DarknetYOLOv2WeightsLoader(Path path, MatrixFactory matrixFactory) throws IOException {
+		this(path, getDefaultTensors(), matrixFactory);
+	}
+
+	/**
+	 * @param path The path of the Darknet .weights file.
+	 * @param tensors The tensors of the network in graph order.
+	 * @param matrixFactory The matrix factory.
+	 * @throws IOException If the file cannot be mapped, or does not match the tensors.
+	 */
+	public DarknetYOLOv2WeightsLoader(Path path, List<YOLOv2WeightsTensor> tensors, MatrixFactory matrixFactory) 
+			throws IOException {
+		super(matrixFactory);
+		this.path = path.toString();
+		this.tensors = new ArrayList<>(tensors);
+		map();
+	}
+
+	/**
+	 * @return The tensors of the default pretrained YOLO v2 network, in yolov2.cfg order.
+	 * @throws IOException If the manifest resource cannot be read.
+	 */
+	public static List<YOLOv2WeightsTensor> getDefaultTensors() throws IOException {
+		try (InputStream is = DarknetYOLOv2WeightsLoader.class.getClassLoader()
+				.getResourceAsStream(DEFAULT_MANIFEST_RESOURCE)) {
+			if (is == null) {
+				throw new IOException("No manifest resource:" + DEFAULT_MANIFEST_RESOURCE);
+			}
+			return YOLOv2WeightsManifest.read(is);
+		}
+	}
+
+	private void map() throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Darknet weights file is too large to map:" + path);
+			}
+			// The mapping remains valid after the channel is closed
+			mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		ByteBuffer header = mappedBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if (header.remaining() < 16) {
+			throw new IOException("Darknet weights file is truncated:" + path);
+		}
+		majorVersion = header.getInt();
+		minorVersion = header.getInt();
+		revision = header.getInt();
+		if (majorVersion * 10 + minorVersion >= 2 && majorVersion < 1000 && minorVersion < 1000) {
+			seen = header.getLong();
+		} else {
+			seen = header.getInt() & 0xFFFFFFFFL;
+		}
+		offsets = getOffsets(tensors, header.position());
+		LOGGER.debug("Mapped " + offsets.size() + " tensors from Darknet weights file:" + path + " of version " 
+				+ majorVersion + "." + minorVersion + "." + revision + " having seen " + seen + " images");
+	}
+
+	private Map<YOLOv2WeightsTensor, Integer> getOffsets(List<YOLOv2WeightsTensor> tensors, int headerLength) 
+			throws IOException {
+		Map<YOLOv2WeightsTensor, Integer> offsets = new HashMap<>();
+		long offset = headerLength;
+		int index = 0;
+		while (index < tensors.size()) {
+			YOLOv2WeightsTensor weights = tensors.get(index++);
+			if (weights.getKind() != YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_WEIGHTS) {
+				throw new IOException("Expected convolutional weights but found:" + weights);
+			}
+			Map<YOLOv2WeightsTensor.Kind, YOLOv2WeightsTensor> layer = new EnumMap<>(YOLOv2WeightsTensor.Kind.class);
+			while (index < tensors.size() 
+					&& tensors.get(index).getKind() != YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_WEIGHTS) {
+				YOLOv2WeightsTensor tensor = tensors.get(index++);
+				if (tensor.getOutputDepth() != weights.getOutputDepth() || layer.put(tensor.getKind(), tensor) != null) {
+					throw new IOException("Unexpected tensor:" + tensor + " for convolutional weights:" + weights);
+				}
+			}
+			if (layer.containsKey(YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_BIASES)) {
+				if (layer.size() != 1) {
+					throw new IOException("Convolutional weights:" + weights + " have both biases and batch norm");
+				}
+				offset = put(offsets, layer.get(YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_BIASES), offset);
+			} else {
+				for (YOLOv2WeightsTensor.Kind kind : BATCH_NORM_LAYOUT) {
+					if (!layer.containsKey(kind)) {
+						throw new IOException("Convolutional weights:" + weights + " have no biases or " + kind);
+					}
+					offset = put(offsets, layer.get(kind), offset);
+				}
+			}
+			offset = put(offsets, weights, offset);
+		}
+		if (offset != mappedBuffer.capacity()) {
+			throw new IOException("Expected " + offset + " bytes for " + tensors.size() 
+					+ " tensors but Darknet weights file:" + path + " has " + mappedBuffer.capacity());
+		}
+		return offsets;
+	}
+
+	private static long put(Map<YOLOv2WeightsTensor, Integer> offsets, YOLOv2WeightsTensor tensor, long offset) {
+		offsets.put(tensor, (int) offset);
+		return offset + 4L * tensor.getElementCount();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		map();
+	}
+
+	/**
+	 * @return The tensors of the file, in graph order.
+	 */
+	public List<YOLOv2WeightsTensor> getTensors() {
+		return new ArrayList<>(tensors);
+	}
+
+	public int getMajorVersion() {
+		return majorVersion;
+	}
+
+	public int getMinorVersion() {
+		return minorVersion;
+	}
+
+	public int getRevision() {
+		return revision;
+	}
+
+	/**
+	 * @return The number of images seen in training.
+	 */
+	public long getSeen() {
+		return seen;
+	}
+
+	@Override
+	protected float[] loadWeights(YOLOv2WeightsTensor tensor, DefaultYOLOv2TensorLoadEvent event) {
+		Integer offset = offsets.get(tensor);
+		if (offset == null) {
+			throw new IllegalArgumentException("No tensor:" + tensor + " in Darknet weights file:" + path);
+		}
+		// Each caller has its own view, so concurrent reads do not share a position
+		long start = System.nanoTime();
+		float[] weights = new float[tensor.getElementCount()];
+		ByteBuffer view = mappedBuffer.duplicate();
+		view.position(offset);
+		view.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(weights);
+		event.setSource("darknet");
+		event.addDeserializeNanos(System.nanoTime() - start);
+		event.addBytesRead(4L * weights.length);
+		return weights;
+	}
+}
@@ -22,38 +22,78 @@ import org.ml4j.nn.models.yolov2.BoundingBox;
  * Details for a YOLOv2 bounding box, with defined corners, 
  * a predicted class index and a predicted class score.
  * 
- * Instantiated with Matrices from the DefaultYOLOv2BoundingBoxExtractor since ported from python code 
- * - TODO refactor.
+ * The box centre and dimensions are held as fractions of the image, and the predicted class index and
+ * score are computed once at construction.
  * 
  * @author Michael Lavelle
  */
 public class DefaultBoundingBox implements BoundingBox {
 	
-	private Matrix boxXY;
-	private Matrix boxWH;
-	private Matrix boxClassProbs;
-	private float confidence;
+	private float x;
+	private float y;
+	private float width;
+	private float height;
+	private int predictedClassIndex;
+	private float predictedClassScore;
+	private int inputWidth;
+	private int inputHeight;
+	
+	/**
+	 * @param x The x coordinate of the box centre, as a fraction of the image width.
+	 * @param y The y coordinate of the box centre, as a fraction of the image height.
+	 * @param width The width of the box, as a fraction of the image width.
+	 * @param height The height of the box, as a fraction of the image height.
+	 * @param predictedClassIndex The index of the predicted class.
+	 * @param predictedClassScore The score of the predicted class.
+	 */
+	public DefaultBoundingBox(float x, float y, float width, float height, int predictedClassIndex, 
+			float predictedClassScore) {
+		this(x, y, width, height, predictedClassIndex, predictedClassScore, DefaultYOLOv2Config.DEFAULT_INPUT_SIZE,
+				DefaultYOLOv2Config.DEFAULT_INPUT_SIZE);
+	}
+	
+	/**
+	 * @param x The x coordinate of the box centre, as a fraction of the image width.
+	 * @param y The y coordinate of the box centre, as a fraction of the image height.
+	 * @param width The width of the box, as a fraction of the image width.
+	 * @param height The height of the box, as a fraction of the image height.
+	 * @param predictedClassIndex The index of the predicted class.
+	 * @param predictedClassScore The score of the predicted class.
+	 * @param inputWidth The width of the network input image.
+	 * @param inputHeight The height of the network input image.
+	 */
+	public DefaultBoundingBox(float x, float y, float width, float height, int predictedClassIndex, 
+			float predictedClassScore, int inputWidth, int inputHeight) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.predictedClassIndex = predictedClassIndex;
+		this.predictedClassScore = predictedClassScore;
+		this.inputWidth = inputWidth;
+		this.inputHeight = inputHeight;
+	}
 	
 	public DefaultBoundingBox(Matrix boxXY, Matrix boxWH, Matrix boxClassProbs, float confidence) {
-		super();
-		this.boxXY = boxXY;
-		this.boxWH = boxWH;
-		this.boxClassProbs = boxClassProbs;
-		this.confidence = confidence;
+		Matrix scores = boxClassProbs.mul(confidence);
+		this.x = boxXY.get(0);
+		this.y = boxXY.get(1);
+		this.width = boxWH.get(0);
+		this.height = boxWH.get(1);
+		this.predictedClassIndex = scores.argmax();
+		this.predictedClassScore = scores.get(predictedClassIndex);
+		this.inputWidth = DefaultYOLOv2Config.DEFAULT_INPUT_SIZE;
+		this.inputHeight = DefaultYOLOv2Config.DEFAULT_INPUT_SIZE;
 	}
 	
 	@Override
 	public int getPredictedClassIndex() {
-		return getScores().argmax();
+		return predictedClassIndex;
 	}
 	
 	@Override
 	public float getPredictedClassScore() {
-		return getScores().get(getPredictedClassIndex());
-	}
-	
-	private Matrix getScores() {
-		return boxClassProbs.mul(confidence);
+		return predictedClassScore;
 	}
 	
 	/**
@@ -62,35 +102,31 @@ public class DefaultBoundingBox implements BoundingBox {
 	@Override
 	public float[] getScaledCorners(int originalWidth, int originalHeight) {
 		float[] corners = getScaledCorners();
-		corners[0] = corners[0] * originalHeight / 608;
-		corners[1] = corners[1] * originalWidth / 608;
-		corners[2] = corners[2] * originalHeight / 608;
-		corners[3] = corners[3] * originalWidth / 608;
+		corners[0] = corners[0] * originalHeight / inputHeight;
+		corners[1] = corners[1] * originalWidth / inputWidth;
+		corners[2] = corners[2] * originalHeight / inputHeight;
+		corners[3] = corners[3] * originalWidth / inputWidth;
 		return corners;
 	}
 	
-	/**
-	 * @return min y, min x, max y, max x, as pixel coordinates of a 608 * 608 image; 
-	 */
 	@Override
-	public float[] getScaledCorners() {
-		float[] result = new float[4];
-		int ind = 0;
-		for (float f : getCorners()) {
-			f = f * 608;
-			result[ind] = f;
-			ind++;
-		}
-		return result;
+	public void getScaledCorners(int originalWidth, int originalHeight, float[] corners, int offset) {
+		float halfWidth = width / 2;
+		float halfHeight = height / 2;
+		corners[offset] = (y - halfHeight) * originalHeight;
+		corners[offset + 1] = (x - halfWidth) * originalWidth;
+		corners[offset + 2] = (y + halfHeight) * originalHeight;
+		corners[offset + 3] = (x + halfWidth) * originalWidth;
 	}
 	
 	/**
-	 * @return min y, min x, max y, max x ( percentages)
+	 * @return min y, min x, max y, max x, as pixel coordinates of the network input image - 608 * 608 by default; 
 	 */
-	private float[] getCorners() {
-		
-		Matrix boxMins = boxXY.sub(boxWH.div(2));
-		Matrix boxMaxs = boxXY.add(boxWH.div(2));
-		return new float[] {boxMins.get(1), boxMins.get(0), boxMaxs.get(1), boxMaxs.get(0)};
+	@Override
+	public float[] getScaledCorners() {
+		float halfWidth = width / 2;
+		float halfHeight = height / 2;
+		return new float[] {(y - halfHeight) * inputHeight, (x - halfWidth) * inputWidth, (y + halfHeight) * inputHeight, 
+				(x + halfWidth) * inputWidth};
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.Detections;
+
+/**
+ * Default implementation of Detections, backed by growable primitive arrays.
+ *
+ * Corners are held as fractions of the network input image, 4 consecutive values per detection.
+ *
+ * @author Michael Lavelle
+ */
+public class DefaultDetections implements Detections {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int inputWidth;
+	private int inputHeight;
+	private int classCount;
+	private float[] corners;
+	private int[] classIndexes;
+	private float[] scores;
+	private float[] classProbabilities;
+	private int size;
+
+	/**
+	 * @param inputWidth The width of the network input image.
+	 * @param inputHeight The height of the network input image.
+	 * @param classCount The number of classes, if the class probabilities are to be retained, or 0 otherwise.
+	 */
+	public DefaultDetections(int inputWidth, int inputHeight, int classCount) {
+		this(inputWidth, inputHeight, classCount, INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param inputWidth The width of the network input image.
+	 * @param inputHeight The height of the network input image.
+	 * @param classCount The number of classes, if the class probabilities are to be retained, or 0 otherwise.
+	 * @param capacity The initial capacity.
+	 */
+	public DefaultDetections(int inputWidth, int inputHeight, int classCount, int capacity) {
+		this.inputWidth = inputWidth;
+		this.inputHeight = inputHeight;
+		this.classCount = classCount;
+		this.corners = new float[capacity * 4];
+		this.classIndexes = new int[capacity];
+		this.scores = new float[capacity];
+		this.classProbabilities = classCount == 0 ? null : new float[capacity * classCount];
+	}
+
+	/**
+	 * Adds a detection.
+	 *
+	 * @param x The x coordinate of the box centre, as a fraction of the image width.
+	 * @param y The y coordinate of the box centre, as a fraction of the image height.
+	 * @param width The width of the box, as a fraction of the image width.
+	 * @param height The height of the box, as a fraction of the image height.
+	 * @param predictedClassIndex The index of the predicted class.
+	 * @param predictedClassScore The score of the predicted class.
+	 * @return The index of the added detection.
+	 */
+	public int add(float x, float y, float width, float height, int predictedClassIndex, float predictedClassScore) {
+		float halfWidth = width / 2;
+		float halfHeight = height / 2;
+		return addCorners(y - halfHeight, x - halfWidth, y + halfHeight, x + halfWidth, predictedClassIndex,
+				predictedClassScore);
+	}
+
+	/**
+	 * Adds a detection.
+	 *
+	 * @param minY The min y, as a fraction of the image height.
+	 * @param minX The min x, as a fraction of the image width.
+	 * @param maxY The max y, as a fraction of the image height.
+	 * @param maxX The max x, as a fraction of the image width.
+	 * @param predictedClassIndex The index of the predicted class.
+	 * @param predictedClassScore The score of the predicted class.
+	 * @return The index of the added detection.
+	 */
+	public int addCorners(float minY, float minX, float maxY, float maxX, int predictedClassIndex,
+			float predictedClassScore) {
+		ensureCapacity(size + 1);
+		int offset = size * 4;
+		corners[offset] = minY;
+		corners[offset + 1] = minX;
+		corners[offset + 2] = maxY;
+		corners[offset + 3] = maxX;
+		classIndexes[size] = predictedClassIndex;
+		scores[size] = predictedClassScore;
+		return size++;
+	}
+
+	/**
+	 * @param detection The index of the detection.
+	 * @param classProbabilities The class probabilities of the detection, of which the first classCount are copied.
+	 */
+	public void setClassProbabilities(int detection, float[] classProbabilities) {
+		checkClassProbabilities();
+		System.arraycopy(classProbabilities, 0, this.classProbabilities, detection * classCount, classCount);
+	}
+
+	/**
+	 * @param detections The indexes of the detections to select.
+	 * @return New Detections containing copies of the selected detections, in the order of the indexes.
+	 */
+	public DefaultDetections select(int[] detections) {
+		DefaultDetections selected = new DefaultDetections(inputWidth, inputHeight, classCount,
+				Math.max(detections.length, 1));
+		for (int detection : detections) {
+			int offset = detection * 4;
+			int index = selected.addCorners(corners[offset], corners[offset + 1], corners[offset + 2],
+					corners[offset + 3], classIndexes[detection], scores[detection]);
+			if (classProbabilities != null) {
+				System.arraycopy(classProbabilities, detection * classCount, selected.classProbabilities,
+						index * classCount, classCount);
+			}
+		}
+		return selected;
+	}
+
+	public int getInputWidth() {
+		return inputWidth;
+	}
+
+	public int getInputHeight() {
+		return inputHeight;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getPredictedClassIndex(int detection) {
+		return classIndexes[checkIndex(detection)];
+	}
+
+	@Override
+	public float getPredictedClassScore(int detection) {
+		return scores[checkIndex(detection)];
+	}
+
+	@Override
+	public boolean hasClassProbabilities() {
+		return classProbabilities != null;
+	}
+
+	@Override
+	public void getClassProbabilities(int detection, float[] classProbabilities) {
+		checkClassProbabilities();
+		System.arraycopy(this.classProbabilities, checkIndex(detection) * classCount, classProbabilities, 0,
+				classCount);
+	}
+
+	@Override
+	public void getScaledCorners(float[] corners) {
+		for (int offset = 0; offset < size * 4; offset += 4) {
+			corners[offset] = this.corners[offset] * inputHeight;
+			corners[offset + 1] = this.corners[offset + 1] * inputWidth;
+			corners[offset + 2] = this.corners[offset + 2] * inputHeight;
+			corners[offset + 3] = this.corners[offset + 3] * inputWidth;
+		}
+	}
+
+	@Override
+	public void getScaledCorners(int width, int height, float[] corners) {
+		getScaledCorners(corners);
+		for (int offset = 0; offset < size * 4; offset += 4) {
+			corners[offset] = corners[offset] * height / inputHeight;
+			corners[offset + 1] = corners[offset + 1] * width / inputWidth;
+			corners[offset + 2] = corners[offset + 2] * height / inputHeight;
+			corners[offset + 3] = corners[offset + 3] * width / inputWidth;
+		}
+	}
+
+	@Override
+	public BoundingBox get(int detection) {
+		return new DetectionBoundingBox(checkIndex(detection));
+	}
+
+	@Override
+	public List<BoundingBox> asBoundingBoxes() {
+		return new AbstractList<BoundingBox>() {
+
+			@Override
+			public BoundingBox get(int index) {
+				return DefaultDetections.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private int checkIndex(int detection) {
+		if (detection < 0 || detection >= size) {
+			throw new IndexOutOfBoundsException("Index of:" + detection + " is out of range");
+		}
+		return detection;
+	}
+
+	private void checkClassProbabilities() {
+		if (classProbabilities == null) {
+			throw new IllegalStateException("Class probabilities have not been retained");
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > scores.length) {
+			int newCapacity = Math.max(capacity, scores.length * 2);
+			corners = Arrays.copyOf(corners, newCapacity * 4);
+			classIndexes = Arrays.copyOf(classIndexes, newCapacity);
+			scores = Arrays.copyOf(scores, newCapacity);
+			if (classProbabilities != null) {
+				classProbabilities = Arrays.copyOf(classProbabilities, newCapacity * classCount);
+			}
+		}
+	}
+
+	/**
+	 * A BoundingBox view over a single detection.
+	 */
+	private class DetectionBoundingBox implements BoundingBox {
+
+		private final int detection;
+
+		DetectionBoundingBox(int detection) {
+			this.detection = detection;
+		}
+
+		@Override
+		public int getPredictedClassIndex() {
+			return classIndexes[detection];
+		}
+
+		@Override
+		public float getPredictedClassScore() {
+			return scores[detection];
+		}
+
+		@Override
+		public float[] getScaledCorners(int width, int height) {
+			float[] result = getScaledCorners();
+			result[0] = result[0] * height / inputHeight;
+			result[1] = result[1] * width / inputWidth;
+			result[2] = result[2] * height / inputHeight;
+			result[3] = result[3] * width / inputWidth;
+			return result;
+		}
+
+		@Override
+		public void getScaledCorners(int width, int height, float[] result, int offset) {
+			int detectionOffset = detection * 4;
+			result[offset] = corners[detectionOffset] * height;
+			result[offset + 1] = corners[detectionOffset + 1] * width;
+			result[offset + 2] = corners[detectionOffset + 2] * height;
+			result[offset + 3] = corners[detectionOffset + 3] * width;
+		}
+
+		@Override
+		public float[] getScaledCorners() {
+			int offset = detection * 4;
+			return new float[] { corners[offset] * inputHeight, corners[offset + 1] * inputWidth,
+					corners[offset + 2] * inputHeight, corners[offset + 3] * inputWidth };
+		}
+	}
+}
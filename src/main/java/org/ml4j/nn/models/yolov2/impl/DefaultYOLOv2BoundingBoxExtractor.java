@@ -17,173 +17,431 @@ package org.ml4j.nn.models.yolov2.impl;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
 
 import org.ml4j.Matrix;
 import org.ml4j.MatrixFactory;
 import org.ml4j.nn.activationfunctions.DifferentiableActivationFunction;
-import org.ml4j.nn.activationfunctions.DifferentiableActivationFunctionActivation;
 import org.ml4j.nn.models.yolov2.BoundingBox;
 import org.ml4j.nn.models.yolov2.BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.Detections;
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
 import org.ml4j.nn.models.yolov2.YOLOv2Labels;
-import org.ml4j.nn.neurons.Neurons;
-import org.ml4j.nn.neurons.NeuronsActivationContext;
-import org.ml4j.nn.neurons.NeuronsActivationContextImpl;
-import org.ml4j.nn.neurons.NeuronsActivationImpl;
+import org.ml4j.nn.models.yolov2.YOLOv2MetricsSink;
+import org.ml4j.nn.neurons.NeuronsActivation;
 import org.ml4j.nn.neurons.format.NeuronsActivationFormat;
 
 /**
  * Default implementation of BoundingBoxExtractor, responsible for obtaining a list of BoundingBoxes from the float[] output of a YOLO network for a single image example, 
  * given a BoundingBox score threshold and an iouThreshold for non max suppression.
  * 
+ * Batches of image examples are decoded in place within the batched output, and may optionally be distributed across
+ * a ForkJoinPool, one task per image example.
+ * 
+ * Non max suppression is class-agnostic by default - with class-aware non max suppression enabled, boxes are only
+ * suppressed by boxes of the same predicted class, and the classes are processed independently on the ForkJoinPool
+ * if one is configured.
+ * 
+ * When a maximum number of detections is requested, at most maxDetections * candidatesPerDetection of the highest 
+ * scoring candidates are retained during decode, and non max suppression stops once maxDetections boxes are selected.
+ * 
+ * With a YOLOv2ClassSubset configured only the classes of the subset are detected, each against its own score 
+ * threshold - classes of the subset added without a threshold use the score threshold of the extraction.
+ * 
+ * With a YOLOv2RegionOfInterest configured only boxes whose centre is within the region are detected, and the grid 
+ * cells which cannot produce such boxes are skipped during decode.
+ * 
+ * With a YOLOv2MetricsSink configured, the latency of the decode and of non max suppression, and the counts of 
+ * cells and boxes, are recorded for each image example.
+ * 
  * @author Michael Lavelle
  *
  */
 public class DefaultYOLOv2BoundingBoxExtractor implements BoundingBoxExtractor {
 
-	private DifferentiableActivationFunction softmaxActivationFunction;
-	private MatrixFactory matrixFactory;
-	private float[][] anchors;
+	/**
+	 * The default number of candidates retained before non max suppression for each requested detection.
+	 */
+	public static final int DEFAULT_CANDIDATES_PER_DETECTION = 10;
+
+	private YOLOv2Config config;
+	private YOLOv2OutputDecoder decoder;
+	private NonMaxSuppression nonMaxSuppression;
+	private ForkJoinPool forkJoinPool;
+	private boolean classAwareNonMaxSuppression;
+	private int candidatesPerDetection = DEFAULT_CANDIDATES_PER_DETECTION;
+	private YOLOv2ClassSubset classSubset;
+	private YOLOv2RegionOfInterest regionOfInterest;
+	private YOLOv2MetricsSink metricsSink;
 
+	/**
+	 * @param matrixFactory The matrix factory.
+	 * @param softmaxActivationFunction No longer used - the softmax of the class probabilities is computed
+	 * by the primitive YOLOv2OutputDecoder. Retained for compatibility.
+	 */
 	public DefaultYOLOv2BoundingBoxExtractor(MatrixFactory matrixFactory,
 			DifferentiableActivationFunction softmaxActivationFunction) {
-		this.matrixFactory = matrixFactory;
-		this.softmaxActivationFunction = softmaxActivationFunction;
-		this.anchors = new float[5][2];
-		anchors[0] = new float[] { 0.57273f, 0.677385f };
-		anchors[1] = new float[] { 1.87446f, 2.06253f };
-		anchors[2] = new float[] { 3.33843f, 5.47434f };
-		anchors[3] = new float[] { 7.88282f, 3.52778f };
-		anchors[4] = new float[] { 9.77052f, 9.16828f };
+		this(matrixFactory);
+	}
+	
+	public DefaultYOLOv2BoundingBoxExtractor(MatrixFactory matrixFactory) {
+		this(matrixFactory, new DefaultYOLOv2Config());
+	}
+	
+	/**
+	 * @param matrixFactory No longer used - activations are read with the MatrixFactory supplied on extraction. 
+	 * Retained for compatibility.
+	 * @param config The configuration of the YOLO network whose output is to be decoded.
+	 */
+	public DefaultYOLOv2BoundingBoxExtractor(MatrixFactory matrixFactory, YOLOv2Config config) {
+		this.config = config;
+		this.decoder = new YOLOv2OutputDecoder(config, false);
+		this.nonMaxSuppression = new NonMaxSuppression();
+	}
+	
+	/**
+	 * @param forkJoinPool The pool across which the image examples of a batch are to be distributed, or null
+	 * if batches are to be extracted on the calling thread.
+	 * @return This extractor.
+	 */
+	public DefaultYOLOv2BoundingBoxExtractor withForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+		return this;
+	}
+	
+	/**
+	 * @param classAwareNonMaxSuppression Whether non max suppression is to be applied independently to the boxes 
+	 * of each predicted class.
+	 * @return This extractor.
+	 */
+	public DefaultYOLOv2BoundingBoxExtractor withClassAwareNonMaxSuppression(boolean classAwareNonMaxSuppression) {
+		this.classAwareNonMaxSuppression = classAwareNonMaxSuppression;
+		return this;
+	}
+	
+	/**
+	 * @param candidatesPerDetection The number of candidates retained before non max suppression for each
+	 * requested detection, when a maximum number of detections is requested.
+	 * @return This extractor.
+	 */
+	public DefaultYOLOv2BoundingBoxExtractor withCandidatesPerDetection(int candidatesPerDetection) {
+		if (candidatesPerDetection < 1) {
+			throw new IllegalArgumentException("Candidates per detection must be at least 1");
+		}
+		this.candidatesPerDetection = candidatesPerDetection;
+		return this;
+	}
+	
+	/**
+	 * @param retainClassProbabilities Whether the full row of class probabilities is to be retained for each 
+	 * detection.
+	 * @return This extractor.
+	 */
+	public DefaultYOLOv2BoundingBoxExtractor withClassProbabilities(boolean retainClassProbabilities) {
+		this.decoder = new YOLOv2OutputDecoder(config, retainClassProbabilities);
+		return this;
 	}
 	
+	/**
+	 * @param classSubset The classes to detect, or null to detect all classes.
+	 * @return This extractor.
+	 */
+	public DefaultYOLOv2BoundingBoxExtractor withClassSubset(YOLOv2ClassSubset classSubset) {
+		this.classSubset = classSubset;
+		return this;
+	}
+	
+	/**
+	 * @param regionOfInterest The region of interest of the images, or null to detect boxes anywhere in the images.
+	 * @return This extractor.
+	 */
+	public DefaultYOLOv2BoundingBoxExtractor withRegionOfInterest(YOLOv2RegionOfInterest regionOfInterest) {
+		this.regionOfInterest = regionOfInterest;
+		return this;
+	}
+	
+	/**
+	 * @param metricsSink The sink of the metrics of each extraction, or null for no metrics.
+	 * @return This extractor.
+	 */
+	public DefaultYOLOv2BoundingBoxExtractor withMetricsSink(YOLOv2MetricsSink metricsSink) {
+		this.metricsSink = metricsSink;
+		return this;
+	}
+	
+	/**
+	 * @param data The output for a single image example from the YOLO network.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @return A list of score-filtered DefaultBoundingBox instances.
+	 * @deprecated Use getScoreFilteredDetections, which does not create a DefaultBoundingBox for each detection.
+	 */
+	@Deprecated
 	public List<DefaultBoundingBox> getScoreFilteredBoundingBoxes(float[] data, YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold) {
-		return getAllBoundingBoxes(data, yoloV2ClassificationNames).stream().filter(b -> b.getPredictedClassScore() > scoreThreshold).collect(Collectors.toList());
+		DefaultDetections detections = getScoreFilteredDetections(data, yoloV2ClassificationNames, scoreThreshold, null);
+		float[] corners = new float[detections.size() * 4];
+		detections.getScaledCorners(corners);
+		int inputWidth = detections.getInputWidth();
+		int inputHeight = detections.getInputHeight();
+		List<DefaultBoundingBox> boundingBoxes = new ArrayList<>(detections.size());
+		for (int i = 0; i < detections.size(); i++) {
+			int offset = i * 4;
+			boundingBoxes.add(new DefaultBoundingBox((corners[offset + 1] + corners[offset + 3]) / 2 / inputWidth, 
+					(corners[offset] + corners[offset + 2]) / 2 / inputHeight, 
+					(corners[offset + 3] - corners[offset + 1]) / inputWidth, 
+					(corners[offset + 2] - corners[offset]) / inputHeight, detections.getPredictedClassIndex(i), 
+					detections.getPredictedClassScore(i), inputWidth, inputHeight));
+		}
+		return boundingBoxes;
+	}
+	
+	/**
+	 * @param data The output for a single image example from the YOLO network.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @return The score-filtered detections, in cell order.
+	 */
+	public Detections getScoreFilteredDetections(float[] data, YOLOv2Labels yoloV2ClassificationNames, 
+			float scoreThreshold) {
+		return getScoreFilteredDetections(data, yoloV2ClassificationNames, scoreThreshold, null);
+	}
+	
+	/**
+	 * Decodes and score-filters in a single pass, rejecting cells on objectness before computing their class 
+	 * probabilities or box geometry.
+	 * 
+	 * @param data The output for a single image example from the YOLO network.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param statistics Statistics to be updated with the number of cells decoded and pruned, or null.
+	 * @return The score-filtered detections, in cell order.
+	 */
+	public DefaultDetections getScoreFilteredDetections(float[] data, YOLOv2Labels yoloV2ClassificationNames, 
+			float scoreThreshold, YOLOv2DecodeStatistics statistics) {
+		if (metricsSink == null) {
+			return decode(data, 0, 1, scoreThreshold, Integer.MAX_VALUE, statistics);
+		}
+		YOLOv2DecodeStatistics exampleStatistics = new YOLOv2DecodeStatistics();
+		long start = System.nanoTime();
+		DefaultDetections detections = decode(data, 0, 1, scoreThreshold, Integer.MAX_VALUE, exampleStatistics);
+		metricsSink.recordLatency(YOLOv2MetricsSink.Stage.DECODE, System.nanoTime() - start, 1);
+		recordCounts(exampleStatistics, detections.size(), statistics);
+		return detections;
 	}
 	
 	public List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, YOLOv2Labels yoloV2ClassificationNames, 
 			float scoreThreshold, float iouThreshold) {
-		return applyNonMaxSuppression(getAllBoundingBoxes(data, yoloV2ClassificationNames).stream().filter(
-				b -> b.getPredictedClassScore() > scoreThreshold).collect(Collectors.toList()),iouThreshold);
+		return getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, yoloV2ClassificationNames, scoreThreshold, 
+				iouThreshold, null);
 	}
-
+	
 	/**
-	 * Obtains the bounding boxes given the raw YOLO output data ( float[] of 425 * 19 * 19) for a single image).
-	 * 
-	 * TODO - tidy up and vectorise this method to operate on the data for multiple images at once
-	 * @param data
-	 * @param yoloV2ClassificationNames
-	 * @return A list of bounding boxes
+	 * @param data The output for a single image example from the YOLO network.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param iouThreshold The iou threshold.
+	 * @param statistics Statistics to be updated with the number of cells decoded and pruned, or null.
+	 * @return A list of score-filtered BoundingBox instances, with non max suppression applied.
 	 */
-	private List<DefaultBoundingBox> getAllBoundingBoxes(float[] data, YOLOv2Labels yoloV2ClassificationNames) {
-
-		List<DefaultBoundingBox> results = new ArrayList<>();
-
-		int index = 0;
-		// TODO -externalise these anchor definitions.
-		float[][] anchors = new float[5][2];
-		anchors[0] = new float[] { 0.57273f, 0.677385f };
-		anchors[1] = new float[] { 1.87446f, 2.06253f };
-		anchors[2] = new float[] { 3.33843f, 5.47434f };
-		anchors[3] = new float[] { 7.88282f, 3.52778f };
-		anchors[4] = new float[] { 9.77052f, 9.16828f };
-
-		for (int r = 0; r < 19; r++) {
-			for (int c = 0; c < 19; c++) {
-				for (int b = 0; b < 5; b++) {
-					float[] bData = new float[5];
-					float[] cData = new float[80];
-					System.arraycopy(data, index, bData, 0, 5);
-					System.arraycopy(data, index + 5, cData, 0, 80);
-
-					Matrix classProbs = matrixFactory.createMatrixFromRowsByRowsArray(80, 1, cData);
-					Matrix boxConfidence = matrixFactory.createMatrixFromRowsByRowsArray(1, 1, new float[] { bData[4] })
-							.sigmoid();
-
-					Matrix boxXY = matrixFactory
-							.createMatrixFromRowsByRowsArray(2, 1, new float[] { bData[0], bData[1] }).sigmoid();
-					Matrix anchorsMatrix = matrixFactory.createMatrixFromRowsByRowsArray(2, 1, anchors[b]);
-					Matrix boxWH = matrixFactory
-							.createMatrixFromRowsByRowsArray(2, 1, new float[] { bData[2], bData[3] })
-							.asEditableMatrix().expi();
-
-					Matrix convDims = matrixFactory.createMatrixFromRowsByRowsArray(2, 1, new float[] { 19, 19 });
-
-					Matrix convIndex = matrixFactory.createMatrixFromRowsByRowsArray(2, 1, new float[] { c, r });
-
-					boxXY = boxXY.add(convIndex).div(convDims);
-					boxWH = boxWH.mul(anchorsMatrix).div(convDims);
-
-					float confidence = boxConfidence.getRowByRowArray()[0];
-
-					NeuronsActivationContext context = new NeuronsActivationContextImpl(matrixFactory, false);
-					DifferentiableActivationFunctionActivation act = softmaxActivationFunction
-							.activate(new NeuronsActivationImpl(new Neurons(80, false), classProbs,
-									NeuronsActivationFormat.ROWS_SPAN_FEATURE_SET), context);
-
-					Matrix box_class_probs = act.getOutput().getActivations(matrixFactory);
-					DefaultBoundingBox result = new DefaultBoundingBox(boxXY, boxWH, box_class_probs, confidence);
-					results.add(result);
-					index = index + 85;
-				}
-
-			}
+	public List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, YOLOv2Labels yoloV2ClassificationNames, 
+			float scoreThreshold, float iouThreshold, YOLOv2DecodeStatistics statistics) {
+		return getScoreFilteredDetectionsWithNonMaxSuppression(data, 0, 1, yoloV2ClassificationNames, scoreThreshold, 
+				iouThreshold, Integer.MAX_VALUE, statistics).asBoundingBoxes();
+	}
+	
+	@Override
+	public List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, YOLOv2Labels yoloV2ClassificationNames, 
+			float scoreThreshold, float iouThreshold, int maxDetections) {
+		return getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, yoloV2ClassificationNames, scoreThreshold, 
+				iouThreshold, maxDetections, null);
+	}
+	
+	/**
+	 * @param data The output for a single image example from the YOLO network.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxDetections The maximum number of BoundingBox instances to return.
+	 * @param statistics Statistics to be updated with the number of cells decoded and pruned, or null.
+	 * @return A list of at most maxDetections score-filtered BoundingBox instances, with non max suppression applied.
+	 */
+	public List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, YOLOv2Labels yoloV2ClassificationNames, 
+			float scoreThreshold, float iouThreshold, int maxDetections, YOLOv2DecodeStatistics statistics) {
+		return getScoreFilteredDetectionsWithNonMaxSuppression(data, yoloV2ClassificationNames, scoreThreshold, 
+				iouThreshold, maxDetections, statistics).asBoundingBoxes();
+	}
+	
+	@Override
+	public Detections getScoreFilteredDetectionsWithNonMaxSuppression(float[] data, YOLOv2Labels yoloV2ClassificationNames, 
+			float scoreThreshold, float iouThreshold) {
+		return getScoreFilteredDetectionsWithNonMaxSuppression(data, 0, 1, yoloV2ClassificationNames, scoreThreshold, 
+				iouThreshold, Integer.MAX_VALUE, null);
+	}
+	
+	/**
+	 * @param data The output for a single image example from the YOLO network.
+	 * @param yoloV2ClassificationNames The classification names of the YOLO network.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxDetections The maximum number of detections to return.
+	 * @param statistics Statistics to be updated with the number of cells decoded and pruned, or null.
+	 * @return At most maxDetections score-filtered detections, with non max suppression applied, in descending 
+	 * score order.
+	 */
+	public Detections getScoreFilteredDetectionsWithNonMaxSuppression(float[] data, YOLOv2Labels yoloV2ClassificationNames, 
+			float scoreThreshold, float iouThreshold, int maxDetections, YOLOv2DecodeStatistics statistics) {
+		if (maxDetections < 1) {
+			throw new IllegalArgumentException("Max detections must be at least 1 but was:" + maxDetections);
 		}
-		return results;
+		return getScoreFilteredDetectionsWithNonMaxSuppression(data, 0, 1, yoloV2ClassificationNames, scoreThreshold, 
+				iouThreshold, maxDetections, statistics);
 	}
-
-	private float getIOU(BoundingBox first, BoundingBox second) {
-
-		float xi1 = (float) Math.max(first.getScaledCorners()[0], second.getScaledCorners()[0]);
-		float yi1 = (float) Math.max(first.getScaledCorners()[1], second.getScaledCorners()[1]);
-		float xi2 = (float) Math.min(first.getScaledCorners()[2], second.getScaledCorners()[2]);
-		float yi2 = (float) Math.min(first.getScaledCorners()[3], second.getScaledCorners()[3]);
-
-		float inter_area = (yi2 - yi1) * (xi2 - xi1);
-
-		float box1_area = ((first.getScaledCorners()[3] - first.getScaledCorners()[1])
-				* (first.getScaledCorners()[2] - first.getScaledCorners()[0]));
-		float box2_area = ((second.getScaledCorners()[3] - second.getScaledCorners()[1])
-				* (second.getScaledCorners()[2] - second.getScaledCorners()[0]));
-
-		float union_area = box1_area + box2_area - inter_area;
-
-		float iou = inter_area / union_area;
-
-		return iou;
-
+	
+	/**
+	 * @return The configuration of the YOLO network whose output is decoded by this extractor.
+	 */
+	public YOLOv2Config getConfig() {
+		return config;
+	}
+	
+	@Override
+	public List<List<BoundingBox>> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, int batchSize,
+			YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+		if (data.length != batchSize * decoder.getValueCountPerExample()) {
+			throw new IllegalArgumentException("Expected " + batchSize * decoder.getValueCountPerExample() 
+				+ " values for a batch of " + batchSize + " examples but was:" + data.length);
+		}
+		// Feature-major - example e starts at index e, with consecutive values batchSize apart.
+		return extractForEachExample(batchSize, e -> getScoreFilteredDetectionsWithNonMaxSuppression(data, e, batchSize, 
+				yoloV2ClassificationNames, scoreThreshold, iouThreshold, Integer.MAX_VALUE, null).asBoundingBoxes());
 	}
 
-	public List<BoundingBox> applyNonMaxSuppression(List<BoundingBox> b, float iouThreshold) {
-
-		List<BoundingBox> d = new ArrayList<>();
-		while (!b.isEmpty()) {
-			BoundingBox max = getMax(b);
-			d.add(max);
-			b.remove(max);
-			List<BoundingBox> toRemove = new ArrayList<>();
-			for (BoundingBox r : b) {
-				float iou = getIOU(r, max);
-				if (iou > iouThreshold) {
-					toRemove.add(r);
-				}
+	@Override
+	public List<List<BoundingBox>> getScoreFilteredBoundingBoxesWithNonMaxSuppression(NeuronsActivation activations,
+			MatrixFactory matrixFactory, YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, 
+			float iouThreshold) {
+		if (activations.getFormat().getFeatureOrientation() 
+				== NeuronsActivationFormat.ROWS_SPAN_FEATURE_SET.getFeatureOrientation()) {
+			return BoundingBoxExtractor.super.getScoreFilteredBoundingBoxesWithNonMaxSuppression(activations, 
+					matrixFactory, yoloV2ClassificationNames, scoreThreshold, iouThreshold);
+		}
+		// Columns span the feature set - example e starts at index e * valueCount, with consecutive values adjacent, 
+		// so each example is decoded in place rather than transposing the activations.
+		Matrix activationsMatrix = activations.getActivations(matrixFactory);
+		int valueCount = decoder.getValueCountPerExample();
+		if (activationsMatrix.getColumns() != valueCount) {
+			throw new IllegalArgumentException("Expected activations spanning " + valueCount 
+					+ " features but was:" + activationsMatrix.getColumns());
+		}
+		float[] data = activationsMatrix.getRowByRowArray();
+		return extractForEachExample(activationsMatrix.getRows(), e -> getScoreFilteredDetectionsWithNonMaxSuppression(
+				data, e * valueCount, 1, yoloV2ClassificationNames, scoreThreshold, iouThreshold, 
+				Integer.MAX_VALUE, null).asBoundingBoxes());
+	}
+	
+	private DefaultDetections getScoreFilteredDetectionsWithNonMaxSuppression(float[] data, int offset, int stride, 
+			YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold, int maxDetections,
+			YOLOv2DecodeStatistics statistics) {
+		int maxCandidates = maxDetections == Integer.MAX_VALUE ? Integer.MAX_VALUE 
+				: (int) Math.min(Integer.MAX_VALUE, (long) maxDetections * candidatesPerDetection);
+		if (metricsSink == null) {
+			return applyNonMaxSuppression(decode(data, offset, stride, scoreThreshold, maxCandidates, statistics), 
+					iouThreshold, maxDetections);
+		}
+		YOLOv2DecodeStatistics exampleStatistics = new YOLOv2DecodeStatistics();
+		long start = System.nanoTime();
+		DefaultDetections candidates = decode(data, offset, stride, scoreThreshold, maxCandidates, exampleStatistics);
+		long decoded = System.nanoTime();
+		DefaultDetections detections = applyNonMaxSuppression(candidates, iouThreshold, maxDetections);
+		metricsSink.recordLatency(YOLOv2MetricsSink.Stage.DECODE, decoded - start, 1);
+		metricsSink.recordLatency(YOLOv2MetricsSink.Stage.NON_MAX_SUPPRESSION, System.nanoTime() - decoded, 1);
+		recordCounts(exampleStatistics, detections.size(), statistics);
+		return detections;
+	}
+	
+	private DefaultDetections applyNonMaxSuppression(DefaultDetections candidates, float iouThreshold, 
+			int maxDetections) {
+		if (classAwareNonMaxSuppression) {
+			return nonMaxSuppression.applyPerClass(candidates, iouThreshold, maxDetections, forkJoinPool);
+		} else {
+			return nonMaxSuppression.apply(candidates, iouThreshold, maxDetections);
+		}
+	}
+	
+	private void recordCounts(YOLOv2DecodeStatistics exampleStatistics, int detectionCount, 
+			YOLOv2DecodeStatistics statistics) {
+		int cellCount = (int) exampleStatistics.getCellCount();
+		int prunedCellCount = (int) exampleStatistics.getPrunedCellCount();
+		int candidateCount = (int) exampleStatistics.getCandidateCount();
+		metricsSink.recordCounts(cellCount, prunedCellCount, candidateCount, detectionCount);
+		if (statistics != null) {
+			statistics.record(cellCount, prunedCellCount, candidateCount);
+		}
+	}
+	
+	private DefaultDetections decode(float[] data, int offset, int stride, float scoreThreshold, int maxCandidates,
+			YOLOv2DecodeStatistics statistics) {
+		if (regionOfInterest != null) {
+			return decoder.decode(data, offset, stride, classSubset, regionOfInterest, scoreThreshold, maxCandidates, 
+					statistics);
+		} else if (classSubset != null) {
+			return decoder.decode(data, offset, stride, classSubset, scoreThreshold, maxCandidates, statistics);
+		} else if (maxCandidates == Integer.MAX_VALUE) {
+			return decoder.decode(data, offset, stride, scoreThreshold, statistics);
+		} else {
+			return decoder.decode(data, offset, stride, scoreThreshold, maxCandidates, statistics);
+		}
+	}
+	
+	private <T> List<T> extractForEachExample(int batchSize, IntFunction<T> extraction) {
+		List<T> results = new ArrayList<>(batchSize);
+		if (forkJoinPool == null || batchSize == 1) {
+			for (int e = 0; e < batchSize; e++) {
+				results.add(extraction.apply(e));
+			}
+		} else {
+			List<ForkJoinTask<T>> tasks = new ArrayList<>(batchSize);
+			for (int e = 0; e < batchSize; e++) {
+				int example = e;
+				tasks.add(forkJoinPool.submit(() -> extraction.apply(example)));
 			}
-			for (BoundingBox remove : toRemove) {
-				b.remove(remove);
+			for (ForkJoinTask<T> task : tasks) {
+				results.add(task.join());
 			}
 		}
-		return d;
+		return results;
 	}
 
-	private BoundingBox getMax(List<BoundingBox> results) {
-		BoundingBox max = null;
-		Float maxScore = null;
-		for (BoundingBox r : results) {
-			if (maxScore == null || r.getPredictedClassScore() > maxScore.floatValue()) {
-				maxScore = r.getPredictedClassScore();
-				max = r;
-			}
+	/**
+	 * Selects the same bounding boxes as the original quadratic greedy algorithm, with one change in behaviour - 
+	 * the intersection of boxes which do not overlap is now zero. Previously boxes disjoint on both axes had a 
+	 * positive intersection, the product of two negative extents, and could suppress each other.
+	 * 
+	 * @param b The candidate bounding boxes.
+	 * @param iouThreshold The iou threshold.
+	 * @return The bounding boxes selected by greedy non max suppression, class-aware if configured, in descending 
+	 * score order.
+	 */
+	public List<BoundingBox> applyNonMaxSuppression(List<? extends BoundingBox> b, float iouThreshold) {
+		return applyNonMaxSuppression(b, iouThreshold, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * As for applyNonMaxSuppression(b, iouThreshold), including the zero intersection of boxes which do not overlap.
+	 * 
+	 * @param b The candidate bounding boxes.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxDetections The maximum number of bounding boxes to select.
+	 * @return At most maxDetections bounding boxes selected by greedy non max suppression, class-aware if configured, 
+	 * in descending score order.
+	 */
+	public List<BoundingBox> applyNonMaxSuppression(List<? extends BoundingBox> b, float iouThreshold, int maxDetections) {
+		if (classAwareNonMaxSuppression) {
+			return nonMaxSuppression.applyPerClass(b, iouThreshold, maxDetections, forkJoinPool);
+		} else {
+			return nonMaxSuppression.apply(b, iouThreshold, maxDetections);
 		}
-		return max;
 	}
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.Serializable;
+
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+
+/**
+ * Default YOLOv2Config, with the COCO anchors and 80 classes of the default pretrained YOLO v2 network.
+ * 
+ * As the YOLO v2 network downsamples its input by a factor of 32, the grid size for an input of n * n pixels 
+ * is n/32 * n/32 - 19 * 19 for the default 608 * 608 input, 13 * 13 for 416 * 416 and 10 * 10 for 320 * 320.
+ * 
+ * @author Michael Lavelle
+ */
+public class DefaultYOLOv2Config implements YOLOv2Config, Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The factor by which the YOLO v2 network downsamples its input.
+	 */
+	public static final int DOWNSAMPLING_FACTOR = 32;
+
+	public static final int DEFAULT_INPUT_SIZE = 608;
+
+	public static final int COCO_CLASS_COUNT = 80;
+
+	private static final float[][] COCO_ANCHORS = YOLOv2Config.pretrained().getAnchors();
+
+	private int inputWidth;
+	private int inputHeight;
+	private int gridWidth;
+	private int gridHeight;
+	private float[][] anchors;
+	private int classCount;
+
+	/**
+	 * Creates the configuration of the default pretrained YOLO v2 network - a 608 * 608 input.
+	 */
+	public DefaultYOLOv2Config() {
+		this(DEFAULT_INPUT_SIZE);
+	}
+
+	/**
+	 * Creates the configuration of the default pretrained YOLO v2 network at an alternative input resolution.
+	 * 
+	 * @param inputSize The width and height of the network input image - a multiple of 32.
+	 */
+	public DefaultYOLOv2Config(int inputSize) {
+		this(inputSize, inputSize, COCO_ANCHORS, COCO_CLASS_COUNT);
+	}
+
+	/**
+	 * @param inputWidth The width of the network input image - a multiple of 32.
+	 * @param inputHeight The height of the network input image - a multiple of 32.
+	 * @param anchors The width and height of each anchor box, in grid cells.
+	 * @param classCount The number of classes.
+	 */
+	public DefaultYOLOv2Config(int inputWidth, int inputHeight, float[][] anchors, int classCount) {
+		if (inputWidth <= 0 || inputHeight <= 0 || inputWidth % DOWNSAMPLING_FACTOR != 0 
+				|| inputHeight % DOWNSAMPLING_FACTOR != 0) {
+			throw new IllegalArgumentException("Input dimensions must be positive multiples of " + DOWNSAMPLING_FACTOR 
+					+ " but were:" + inputWidth + " * " + inputHeight);
+		}
+		this.inputWidth = inputWidth;
+		this.inputHeight = inputHeight;
+		this.gridWidth = inputWidth / DOWNSAMPLING_FACTOR;
+		this.gridHeight = inputHeight / DOWNSAMPLING_FACTOR;
+		this.anchors = copy(anchors);
+		this.classCount = classCount;
+	}
+
+	@Override
+	public int getInputWidth() {
+		return inputWidth;
+	}
+
+	@Override
+	public int getInputHeight() {
+		return inputHeight;
+	}
+
+	@Override
+	public int getGridWidth() {
+		return gridWidth;
+	}
+
+	@Override
+	public int getGridHeight() {
+		return gridHeight;
+	}
+
+	@Override
+	public float[][] getAnchors() {
+		return copy(anchors);
+	}
+
+	@Override
+	public int getClassCount() {
+		return classCount;
+	}
+
+	private static float[][] copy(float[][] anchors) {
+		float[][] copy = new float[anchors.length][];
+		for (int i = 0; i < anchors.length; i++) {
+			if (anchors[i].length != 2) {
+				throw new IllegalArgumentException("Anchors must each have a width and a height");
+			}
+			copy[i] = anchors[i].clone();
+		}
+		return copy;
+	}
+
+	@Override
+	public String toString() {
+		return "DefaultYOLOv2Config [input=" + inputWidth + "*" + inputHeight + ", grid=" + gridWidth + "*" + gridHeight
+				+ ", anchors=" + anchors.length + ", classCount=" + classCount + "]";
+	}
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.models.yolov2.BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.Detections;
+import org.ml4j.nn.models.yolov2.YOLOv2DetectionPipeline;
+import org.ml4j.nn.models.yolov2.YOLOv2ForwardPass;
+import org.ml4j.nn.models.yolov2.YOLOv2FrameDetections;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.neurons.NeuronsActivation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Default implementation of YOLOv2DetectionPipeline.
+ * 
+ * Detection is split into three stages - preprocess, forward and extraction of the detections by the 
+ * BoundingBoxExtractor - each run by its own worker thread and connected to the next by a bounded queue. As each stage processes frames one at a time in the 
+ * order it receives them, frames leave the pipeline in the order they were submitted. A full queue blocks the 
+ * stage feeding it, so a slow consumer or stage applies backpressure all the way back to submit, where the 
+ * overload policy either blocks the caller or drops the oldest frame not yet preprocessed.
+ * 
+ * A failure in any stage is recorded against its frame, which then passes through the remaining stages untouched.
+ * 
+ * Closing the pipeline never discards a frame it has accepted unless the close timeout expires, and never blocks 
+ * indefinitely - a blocked submit observes the close within a short polling interval, and when the frames already 
+ * accepted have not passed through within the close timeout, for example because they are never taken, the stages 
+ * are interrupted. Each interrupted stage discards the frames it holds, but still passes the end of the stream on to 
+ * take and poll, and exits once any frame it is processing completes.
+ * 
+ * @author Michael Lavelle
+ *
+ * @param <F> The type of frame.
+ */
+public class DefaultYOLOv2DetectionPipeline<F> implements YOLOv2DetectionPipeline<F> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DefaultYOLOv2DetectionPipeline.class);
+
+	private static final int DEFAULT_QUEUE_CAPACITY = 2;
+
+	private static final long SUBMIT_POLL_MILLIS = 10;
+
+	private static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * Marks the end of the stream of frames through each queue.
+	 */
+	private static final Object END = new Object();
+
+	private Function<F, NeuronsActivation> preprocessor;
+	private YOLOv2ForwardPass forwardPass;
+	private BoundingBoxExtractor boundingBoxExtractor;
+	private YOLOv2Labels labels;
+	private MatrixFactory matrixFactory;
+	private float scoreThreshold;
+	private float iouThreshold;
+	private OverloadPolicy overloadPolicy;
+	private long closeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CLOSE_TIMEOUT_MILLIS);
+
+	private BlockingQueue<Object> inputQueue;
+	private BlockingQueue<Object> outputQueue;
+
+	private AtomicLong sequenceNumber;
+	private AtomicLong droppedFrameCount;
+	private AtomicBoolean closed;
+	private List<Thread> stageThreads;
+
+	/**
+	 * Creates a pipeline with queues of capacity 2 and the BLOCK overload policy.
+	 * 
+	 * @param preprocessor Converts each frame into the input activations of the network.
+	 * @param forwardPass The forward pass of the network.
+	 * @param boundingBoxExtractor The extractor of the detections from the output of the network.
+	 * @param labels The labels.
+	 * @param matrixFactory The matrix factory with which to read the output activations.
+	 * @param scoreThreshold The score threshold.
+	 * @param iouThreshold The IOU threshold for non-max suppression.
+	 */
+	public DefaultYOLOv2DetectionPipeline(Function<F, NeuronsActivation> preprocessor, YOLOv2ForwardPass forwardPass,
+			BoundingBoxExtractor boundingBoxExtractor, YOLOv2Labels labels, MatrixFactory matrixFactory, 
+			float scoreThreshold, float iouThreshold) {
+		this(preprocessor, forwardPass, boundingBoxExtractor, labels, matrixFactory, scoreThreshold, iouThreshold,
+				DEFAULT_QUEUE_CAPACITY, OverloadPolicy.BLOCK);
+	}
+
+	/**
+	 * @param preprocessor Converts each frame into the input activations of the network.
+	 * @param forwardPass The forward pass of the network.
+	 * @param boundingBoxExtractor The extractor of the detections from the output of the network.
+	 * @param labels The labels.
+	 * @param matrixFactory The matrix factory with which to read the output activations.
+	 * @param scoreThreshold The score threshold.
+	 * @param iouThreshold The IOU threshold for non-max suppression.
+	 * @param queueCapacity The capacity of the queue in front of each stage, and of the output queue.
+	 * @param overloadPolicy The policy applied when a frame is submitted while the pipeline is full.
+	 */
+	public DefaultYOLOv2DetectionPipeline(Function<F, NeuronsActivation> preprocessor, YOLOv2ForwardPass forwardPass,
+			BoundingBoxExtractor boundingBoxExtractor, YOLOv2Labels labels, MatrixFactory matrixFactory, 
+			float scoreThreshold, float iouThreshold, int queueCapacity, OverloadPolicy overloadPolicy) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be at least 1");
+		}
+		this.preprocessor = preprocessor;
+		this.forwardPass = forwardPass;
+		this.boundingBoxExtractor = boundingBoxExtractor;
+		this.labels = labels;
+		this.matrixFactory = matrixFactory;
+		this.scoreThreshold = scoreThreshold;
+		this.iouThreshold = iouThreshold;
+		this.overloadPolicy = overloadPolicy;
+		this.sequenceNumber = new AtomicLong();
+		this.droppedFrameCount = new AtomicLong();
+		this.closed = new AtomicBoolean();
+		this.stageThreads = new ArrayList<>();
+
+		this.inputQueue = new ArrayBlockingQueue<>(queueCapacity);
+		BlockingQueue<Object> forwardQueue = new ArrayBlockingQueue<>(queueCapacity);
+		BlockingQueue<Object> extractQueue = new ArrayBlockingQueue<>(queueCapacity);
+		this.outputQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+		startStage("preprocess", inputQueue, forwardQueue, this::preprocess);
+		startStage("forward", forwardQueue, extractQueue, this::forward);
+		startStage("extract", extractQueue, outputQueue, this::extract);
+	}
+
+	/**
+	 * @param closeTimeout The maximum time close waits for the frames already accepted to pass through the 
+	 * pipeline before interrupting its stages - 5 seconds by default.
+	 * @param unit The unit of the close timeout.
+	 * @return This pipeline.
+	 */
+	public DefaultYOLOv2DetectionPipeline<F> withCloseTimeout(long closeTimeout, TimeUnit unit) {
+		this.closeTimeoutNanos = unit.toNanos(closeTimeout);
+		return this;
+	}
+
+	private void preprocess(FrameTask<F> task) {
+		task.input = preprocessor.apply(task.frame);
+	}
+
+	private void forward(FrameTask<F> task) {
+		task.output = forwardPass.forwardPropagate(task.input);
+		task.input = null;
+	}
+
+	private void extract(FrameTask<F> task) {
+		NeuronsActivation output = task.output;
+		task.output = null;
+		if (output.getExampleCount() != 1) {
+			throw new IllegalStateException("Expected network output for a single frame but found " 
+					+ output.getExampleCount() + " examples");
+		}
+		task.detections = boundingBoxExtractor.getScoreFilteredDetectionsWithNonMaxSuppression(
+				output.getActivations(matrixFactory).getRowByRowArray(), labels, scoreThreshold, iouThreshold);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void startStage(String name, BlockingQueue<Object> in, BlockingQueue<Object> out, 
+			Consumer<FrameTask<F>> stage) {
+		Thread thread = new Thread(() -> {
+			try {
+				while (true) {
+					Object item = in.take();
+					if (item == END) {
+						out.put(END);
+						return;
+					}
+					FrameTask<F> task = (FrameTask<F>) item;
+					if (task.failure == null) {
+						try {
+							stage.accept(task);
+						} catch (Throwable e) {
+							LOGGER.warn("Yolo V2 pipeline stage:" + name + " failed for frame:" + task.sequenceNumber 
+									+ " " + e.getMessage());
+							task.failure = e;
+						}
+					}
+					out.put(task);
+				}
+			} catch (InterruptedException e) {
+				// Interrupted by close - discard frames as necessary so the end of the stream still reaches out
+				LOGGER.warn("Yolo V2 pipeline stage:" + name + " interrupted - discarding its frames");
+				while (!out.offer(END)) {
+					out.poll();
+				}
+				Thread.currentThread().interrupt();
+			}
+		}, "yolov2-pipeline-" + name);
+		thread.setDaemon(true);
+		stageThreads.add(thread);
+		thread.start();
+	}
+
+	@Override
+	public long submit(F frame) throws InterruptedException {
+		// Submission is serialised so that no frame can be queued behind the end marker
+		synchronized (inputQueue) {
+			checkNotClosed();
+			FrameTask<F> task = new FrameTask<>(sequenceNumber.getAndIncrement(), frame);
+			if (overloadPolicy == OverloadPolicy.BLOCK) {
+				// Poll rather than block, so that a close while the pipeline is full is observed
+				while (!inputQueue.offer(task, SUBMIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+					checkNotClosed();
+				}
+			} else {
+				while (!inputQueue.offer(task)) {
+					if (inputQueue.poll() != null) {
+						droppedFrameCount.incrementAndGet();
+					}
+				}
+			}
+			return task.sequenceNumber;
+		}
+	}
+
+	private void checkNotClosed() {
+		if (closed.get()) {
+			throw new IllegalStateException("Pipeline has been closed");
+		}
+	}
+
+	@Override
+	public YOLOv2FrameDetections<F> take() throws InterruptedException {
+		return taken(outputQueue.take());
+	}
+
+	@Override
+	public YOLOv2FrameDetections<F> poll(long timeout, TimeUnit unit) throws InterruptedException {
+		Object item = outputQueue.poll(timeout, unit);
+		return item == null ? null : taken(item);
+	}
+
+	@SuppressWarnings("unchecked")
+	private YOLOv2FrameDetections<F> taken(Object item) throws InterruptedException {
+		if (item == END) {
+			// Leave the end marker in place for any other consumers
+			outputQueue.put(END);
+			return null;
+		}
+		return (FrameTask<F>) item;
+	}
+
+	@Override
+	public long getDroppedFrameCount() {
+		return droppedFrameCount.get();
+	}
+
+	@Override
+	public void close() {
+		if (!closed.compareAndSet(false, true)) {
+			return;
+		}
+		long deadline = System.nanoTime() + closeTimeoutNanos;
+		synchronized (inputQueue) {
+			// Any submit in progress has now observed the close, so no frame can be queued behind the end marker
+		}
+		try {
+			// The end of the stream waits for space under either overload policy, so no accepted frame is dropped
+			if (!inputQueue.offer(END, remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+				LOGGER.warn("Yolo V2 pipeline could not accept the end of the stream within:" 
+						+ TimeUnit.NANOSECONDS.toMillis(closeTimeoutNanos) + "ms - interrupting stages");
+				stageThreads.forEach(Thread::interrupt);
+			}
+			joinStages(deadline);
+			if (stageThreads.stream().anyMatch(Thread::isAlive)) {
+				LOGGER.warn("Yolo V2 pipeline frames did not pass through within:" 
+						+ TimeUnit.NANOSECONDS.toMillis(closeTimeoutNanos) + "ms - interrupting stages");
+				stageThreads.forEach(Thread::interrupt);
+				joinStages(System.nanoTime() + closeTimeoutNanos);
+			}
+		} catch (InterruptedException e) {
+			stageThreads.forEach(Thread::interrupt);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void joinStages(long deadline) throws InterruptedException {
+		for (Thread thread : stageThreads) {
+			long remainingMillis = TimeUnit.NANOSECONDS.toMillis(remainingNanos(deadline));
+			if (remainingMillis > 0) {
+				thread.join(remainingMillis);
+			}
+		}
+	}
+
+	private long remainingNanos(long deadline) {
+		return Math.max(0, deadline - System.nanoTime());
+	}
+
+	/**
+	 * A frame passing through the pipeline, holding the result of each stage until the next has consumed it.
+	 */
+	private static class FrameTask<F> implements YOLOv2FrameDetections<F> {
+
+		private final long sequenceNumber;
+		private final F frame;
+		private NeuronsActivation input;
+		private NeuronsActivation output;
+		private Detections detections;
+		private Throwable failure;
+
+		FrameTask(long sequenceNumber, F frame) {
+			this.sequenceNumber = sequenceNumber;
+			this.frame = frame;
+		}
+
+		@Override
+		public F getFrame() {
+			return frame;
+		}
+
+		@Override
+		public long getSequenceNumber() {
+			return sequenceNumber;
+		}
+
+		@Override
+		public boolean isFailed() {
+			return failure != null;
+		}
+
+		@Override
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		@Override
+		public Detections getDetections() {
+			if (failure != null) {
+				throw new IllegalStateException("Detection failed for frame:" + sequenceNumber, failure);
+			}
+			return detections;
+		}
+	}
+}
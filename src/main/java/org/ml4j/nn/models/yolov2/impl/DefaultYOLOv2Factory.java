@@ -16,13 +16,20 @@
 package org.ml4j.nn.models.yolov2.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.ml4j.MatrixFactory;
 import org.ml4j.nn.FeedForwardNeuralNetworkContext;
 import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2Definition;
 import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2WeightsLoader;
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
 import org.ml4j.nn.models.yolov2.YOLOv2Factory;
 import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.models.yolov2.YOLOv2NetworkPool;
+import org.ml4j.nn.models.yolov2.YOLOv2StartupListener;
 import org.ml4j.nn.sessions.factories.DefaultSessionFactory;
 import org.ml4j.nn.supervised.SupervisedFeedForwardNeuralNetwork;
 import org.slf4j.Logger;
@@ -41,6 +48,12 @@ public class DefaultYOLOv2Factory implements YOLOv2Factory {
 	private YOLOv2WeightsLoader weightsLoader;
 
 	private YOLOv2Labels labels;
+	
+	private YOLOv2Config config;
+	
+	private SharedYOLOv2WeightsLoader sharedWeightsLoader;
+	
+	private List<YOLOv2StartupListener> listeners = new CopyOnWriteArrayList<>();
 
 	/**
 	 * Creates the default pre-trained YOLO v2 Networks
@@ -71,25 +84,136 @@ public class DefaultYOLOv2Factory implements YOLOv2Factory {
 	 */
 	public DefaultYOLOv2Factory(DefaultSessionFactory sessionFactory,
 			YOLOv2WeightsLoader weightsLoader, YOLOv2Labels labels) {
+		this(sessionFactory, weightsLoader, labels, new DefaultYOLOv2Config());
+	}
+	
+	/**
+	 * Creates YOLO v2 Network with custom weights, labels and configuration
+	 * 
+	 * @param sessionFactory
+	 * @param weightsLoader
+	 * @param labels
+	 * @param config
+	 */
+	public DefaultYOLOv2Factory(DefaultSessionFactory sessionFactory,
+			YOLOv2WeightsLoader weightsLoader, YOLOv2Labels labels, YOLOv2Config config) {
 		this.sessionFactory = sessionFactory;
 		this.weightsLoader = weightsLoader;
 		this.labels = labels;
+		this.config = config;
+	}
+
+	/**
+	 * Registers a listener for the building of each network. When the weights loader is an 
+	 * AbstractYOLOv2WeightsLoader the listener is also registered with the loader, for the loading of each tensor.
+	 * 
+	 * @param listener The listener to register.
+	 */
+	public void addListener(YOLOv2StartupListener listener) {
+		listeners.add(listener);
+		if (weightsLoader instanceof AbstractYOLOv2WeightsLoader) {
+			((AbstractYOLOv2WeightsLoader) weightsLoader).addListener(listener);
+		}
 	}
 
 	@Override
 	public SupervisedFeedForwardNeuralNetwork createYoloV2(FeedForwardNeuralNetworkContext trainingContext)
 			throws IOException {
+		return createYoloV2(trainingContext, config);
+	}
 
-		LOGGER.info("Creating Yolo V2 Network...");
+	/**
+	 * Create a new Yolo V2 Network with the specified configuration, which must be that of the pretrained 
+	 * YOLOv2Definition - a 608 * 608 input, the COCO anchors and 80 classes.
+	 * 
+	 * @param trainingContext The training or prediction context with which to construct this network.
+	 * @param config The configuration of the network.
+	 * @return A Yolo V2 Network
+	 * @throws IOException In the event that the network cannot be loaded
+	 * @throws IllegalArgumentException If the configuration is not that of the pretrained YOLOv2Definition.
+	 */
+	@Override
+	public SupervisedFeedForwardNeuralNetwork createYoloV2(FeedForwardNeuralNetworkContext trainingContext, 
+			YOLOv2Config config) throws IOException {
+		return createYoloV2(trainingContext, config, weightsLoader);
+	}
+
+	@Override
+	public YOLOv2NetworkPool createYoloV2Pool(FeedForwardNeuralNetworkContext context, YOLOv2Config config, 
+			int size) throws IOException {
+		if (size < 1) {
+			throw new IllegalArgumentException("Pool size must be at least 1");
+		}
+		
+		LOGGER.info("Creating pool of " + size + " Yolo V2 Networks with shared weights");
+		
+		// The first network loads the weights - the remaining networks are built around the same instances
+		List<SupervisedFeedForwardNeuralNetwork> networks = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			networks.add(createYoloV2(context, config, getSharedWeightsLoader()));
+		}
+		return YOLOv2NetworkPool.of(config, networks);
+	}
+	
+	private synchronized SharedYOLOv2WeightsLoader getSharedWeightsLoader() {
+		if (sharedWeightsLoader == null) {
+			sharedWeightsLoader = new SharedYOLOv2WeightsLoader(weightsLoader);
+		}
+		return sharedWeightsLoader;
+	}
+
+	private SupervisedFeedForwardNeuralNetwork createYoloV2(FeedForwardNeuralNetworkContext trainingContext, 
+			YOLOv2Config config, YOLOv2WeightsLoader weightsLoader) throws IOException {
+
+		validate(config);
+		
+		LOGGER.info("Creating Yolo V2 Network with config:" + config);
+		
+		long start = System.nanoTime();
+		for (YOLOv2StartupListener listener : listeners) {
+			listener.onNetworkBuildStarted(config);
+		}
 
 		// Create a YOLOv2Definition from neural-network-architectures, initialising with the weights loader.
 		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(weightsLoader);
 		
-		return sessionFactory
+		SupervisedFeedForwardNeuralNetwork network = sessionFactory
 			.createSession(trainingContext.getDirectedComponentsContext())
 			.buildSupervised3DNeuralNetwork("yoloV2", yoloV2Definition.getInputNeurons())
 			.withComponentGraphDefinition(yoloV2Definition)
 			.build();
+		
+		long buildNanos = System.nanoTime() - start;
+		for (YOLOv2StartupListener listener : listeners) {
+			listener.onNetworkBuilt(config, buildNanos);
+		}
+		return network;
+	}
+	
+	/**
+	 * The YOLOv2Definition has a fixed input and output shape, so only its own configuration is supported.
+	 */
+	private static void validate(YOLOv2Config config) {
+		YOLOv2Config definitionConfig = YOLOv2Config.pretrained();
+		if (config.getInputWidth() != definitionConfig.getInputWidth() 
+				|| config.getInputHeight() != definitionConfig.getInputHeight()) {
+			throw new IllegalArgumentException("Only an input of " + definitionConfig.getInputWidth() + " * " 
+					+ definitionConfig.getInputHeight() + " is supported but was:" + config.getInputWidth() + " * " 
+					+ config.getInputHeight());
+		}
+		if (config.getClassCount() != definitionConfig.getClassCount()) {
+			throw new IllegalArgumentException("Only " + definitionConfig.getClassCount() 
+					+ " classes are supported but was:" + config.getClassCount());
+		}
+		if (!Arrays.deepEquals(config.getAnchors(), definitionConfig.getAnchors())) {
+			throw new IllegalArgumentException("Only the COCO anchors are supported but was:" 
+					+ Arrays.deepToString(config.getAnchors()));
+		}
+	}
+	
+	@Override
+	public YOLOv2Config getConfig() {
+		return config;
 	}
 
 	@Override
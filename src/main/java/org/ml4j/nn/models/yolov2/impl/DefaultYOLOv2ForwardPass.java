@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import org.ml4j.nn.FeedForwardNeuralNetworkContext;
+import org.ml4j.nn.models.yolov2.YOLOv2ForwardPass;
+import org.ml4j.nn.models.yolov2.YOLOv2MetricsSink;
+import org.ml4j.nn.neurons.NeuronsActivation;
+import org.ml4j.nn.supervised.SupervisedFeedForwardNeuralNetwork;
+
+/**
+ * Default implementation of YOLOv2ForwardPass, forward propagating through a single Yolo V2 Network.
+ * 
+ * @author Michael Lavelle
+ */
+public class DefaultYOLOv2ForwardPass implements YOLOv2ForwardPass {
+
+	private SupervisedFeedForwardNeuralNetwork network;
+	private FeedForwardNeuralNetworkContext context;
+	private YOLOv2MetricsSink metricsSink;
+
+	/**
+	 * @param network The Yolo V2 Network.
+	 * @param context The prediction context.
+	 */
+	public DefaultYOLOv2ForwardPass(SupervisedFeedForwardNeuralNetwork network, FeedForwardNeuralNetworkContext context) {
+		this.network = network;
+		this.context = context;
+	}
+
+	/**
+	 * @param metricsSink The sink of the latency of each forward pass, or null for no metrics.
+	 * @return This forward pass.
+	 */
+	public DefaultYOLOv2ForwardPass withMetricsSink(YOLOv2MetricsSink metricsSink) {
+		this.metricsSink = metricsSink;
+		return this;
+	}
+
+	@Override
+	public NeuronsActivation forwardPropagate(NeuronsActivation input) {
+		if (metricsSink == null) {
+			return network.forwardPropagate(input, context).getOutput();
+		}
+		long start = System.nanoTime();
+		NeuronsActivation output = network.forwardPropagate(input, context).getOutput();
+		metricsSink.recordLatency(YOLOv2MetricsSink.Stage.FORWARD_PASS, System.nanoTime() - start, 
+				input.getExampleCount());
+		return output;
+	}
+}
@@ -34,14 +34,18 @@ import org.ml4j.nn.models.yolov2.YOLOv2Labels;
 public class DefaultYOLOv2Labels implements YOLOv2Labels {
 
 	private Map<Integer, String> classificationNamesByIndex;
+	private Map<String, Integer> indexesByClassificationName;
 
 	public DefaultYOLOv2Labels(ClassLoader classLoader) throws IOException {
 		classificationNamesByIndex = new HashMap<>();
+		indexesByClassificationName = new HashMap<>();
 		try (InputStream is = classLoader.getResourceAsStream("coco_classes.txt")) {
 			int index = 0;
 			try (Scanner scanner = new Scanner(is, StandardCharsets.UTF_8.name())) {
 				while (scanner.useDelimiter("\n").hasNext()) {
-					classificationNamesByIndex.put(index, scanner.useDelimiter("\n").next());
+					String classificationName = scanner.useDelimiter("\n").next();
+					classificationNamesByIndex.put(index, classificationName);
+					indexesByClassificationName.put(classificationName, index);
 					index++;
 				}
 			}
@@ -58,4 +62,13 @@ public class DefaultYOLOv2Labels implements YOLOv2Labels {
 		}
 		return classificationName;
 	}
+
+	@Override
+	public int getLabelIndex(String label) {
+		Integer index = indexesByClassificationName.get(label);
+		if (index == null) {
+			throw new IllegalArgumentException("Label of:" + label + " is not known");
+		}
+		return index;
+	}
 }
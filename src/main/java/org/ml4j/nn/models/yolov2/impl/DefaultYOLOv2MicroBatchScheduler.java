@@ -0,0 +1,307 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+import org.ml4j.nn.models.yolov2.YOLOv2ForwardPass;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.models.yolov2.YOLOv2MicroBatchScheduler;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.ml4j.nn.neurons.NeuronsActivation;
+import org.ml4j.nn.neurons.NeuronsActivationImpl;
+import org.ml4j.nn.neurons.format.NeuronsActivationFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Default implementation of YOLOv2MicroBatchScheduler.
+ * 
+ * A single dispatcher thread waits for a request, then keeps collecting requests until the batch is full or the 
+ * maximum wait since the first request has elapsed. The batch is assembled into one activation of the network 
+ * input - one column per image - and detected with a single forward pass and a single batched call to the 
+ * BoundingBoxExtractor, whose results complete the future of each request.
+ * 
+ * The queue of requests waiting to be batched is bounded - a request submitted while the queue is full is 
+ * rejected with a future completed exceptionally with a RejectedExecutionException. Any failure of a batch, 
+ * including an Error, completes the future of every request in the batch exceptionally.
+ * 
+ * @author Michael Lavelle
+ */
+public class DefaultYOLOv2MicroBatchScheduler implements YOLOv2MicroBatchScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DefaultYOLOv2MicroBatchScheduler.class);
+
+	private static final int DEFAULT_MAX_QUEUE_SIZE = 256;
+
+	/**
+	 * Marks the end of the stream of requests.
+	 */
+	private static final Request END = new Request(null);
+
+	private YOLOv2ForwardPass forwardPass;
+	private BoundingBoxExtractor boundingBoxExtractor;
+	private YOLOv2Labels labels;
+	private MatrixFactory matrixFactory;
+	private Neurons3D inputNeurons;
+	private float scoreThreshold;
+	private float iouThreshold;
+	private int maxBatchSize;
+	private long maxWaitNanos;
+	private int maxQueueSize;
+
+	private LinkedBlockingQueue<Request> requests;
+	private AtomicLongArray batchSizeCounts;
+	private volatile boolean closed;
+
+	/**
+	 * @param forwardPass The forward pass of the network, which must accept batches of up to maxBatchSize images.
+	 * @param boundingBoxExtractor The extractor of the bounding boxes of each image.
+	 * @param labels The labels.
+	 * @param matrixFactory The matrix factory.
+	 * @param config The configuration of the network.
+	 * @param scoreThreshold The score threshold.
+	 * @param iouThreshold The IOU threshold for non-max suppression.
+	 * @param maxBatchSize The maximum number of images per batch.
+	 * @param maxWait The maximum time to wait, from the first request of a batch, for the batch to fill.
+	 * @param unit The unit of the maximum wait.
+	 */
+	public DefaultYOLOv2MicroBatchScheduler(YOLOv2ForwardPass forwardPass, BoundingBoxExtractor boundingBoxExtractor,
+			YOLOv2Labels labels, MatrixFactory matrixFactory, YOLOv2Config config, float scoreThreshold, 
+			float iouThreshold, int maxBatchSize, long maxWait, TimeUnit unit) {
+		this(forwardPass, boundingBoxExtractor, labels, matrixFactory, config, scoreThreshold, iouThreshold, 
+				maxBatchSize, maxWait, unit, DEFAULT_MAX_QUEUE_SIZE);
+	}
+
+	/**
+	 * @param forwardPass The forward pass of the network, which must accept batches of up to maxBatchSize images.
+	 * @param boundingBoxExtractor The extractor of the bounding boxes of each image.
+	 * @param labels The labels.
+	 * @param matrixFactory The matrix factory.
+	 * @param config The configuration of the network.
+	 * @param scoreThreshold The score threshold.
+	 * @param iouThreshold The IOU threshold for non-max suppression.
+	 * @param maxBatchSize The maximum number of images per batch.
+	 * @param maxWait The maximum time to wait, from the first request of a batch, for the batch to fill.
+	 * @param unit The unit of the maximum wait.
+	 * @param maxQueueSize The maximum number of requests waiting to be batched, beyond which requests are rejected.
+	 */
+	public DefaultYOLOv2MicroBatchScheduler(YOLOv2ForwardPass forwardPass, BoundingBoxExtractor boundingBoxExtractor,
+			YOLOv2Labels labels, MatrixFactory matrixFactory, YOLOv2Config config, float scoreThreshold, 
+			float iouThreshold, int maxBatchSize, long maxWait, TimeUnit unit, int maxQueueSize) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("Max batch size must be at least 1");
+		}
+		if (maxQueueSize < 1) {
+			throw new IllegalArgumentException("Max queue size must be at least 1");
+		}
+		this.forwardPass = forwardPass;
+		this.boundingBoxExtractor = boundingBoxExtractor;
+		this.labels = labels;
+		this.matrixFactory = matrixFactory;
+		this.inputNeurons = new Neurons3D(config.getInputWidth(), config.getInputHeight(), 3, false);
+		this.scoreThreshold = scoreThreshold;
+		this.iouThreshold = iouThreshold;
+		this.maxBatchSize = maxBatchSize;
+		this.maxWaitNanos = unit.toNanos(maxWait);
+		this.maxQueueSize = maxQueueSize;
+		// One more than the maximum queue size, so that there is always room for the end marker
+		this.requests = new LinkedBlockingQueue<>(maxQueueSize + 1);
+		this.batchSizeCounts = new AtomicLongArray(maxBatchSize + 1);
+
+		Thread dispatcher = new Thread(this::dispatch, "yolov2-micro-batch-dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	@Override
+	public CompletableFuture<List<BoundingBox>> submit(float[] input) {
+		int featureCount = inputNeurons.getNeuronCountExcludingBias();
+		Request request = new Request(input);
+		if (input.length != featureCount) {
+			request.future.completeExceptionally(new IllegalArgumentException("Expected " + featureCount 
+					+ " input values but found " + input.length));
+			return request.future;
+		}
+		// Submission is serialised with close, so that no request can be queued behind the end marker
+		synchronized (requests) {
+			if (closed) {
+				throw new IllegalStateException("Scheduler has been closed");
+			}
+			if (requests.size() >= maxQueueSize) {
+				request.future.completeExceptionally(new RejectedExecutionException("Request queue is full:" 
+						+ maxQueueSize));
+				return request.future;
+			}
+			requests.add(request);
+		}
+		return request.future;
+	}
+
+	private void dispatch() {
+		List<Request> batch = new ArrayList<>(maxBatchSize);
+		boolean ended = false;
+		try {
+			while (!ended) {
+				Request first = requests.take();
+				if (first == END) {
+					return;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while (batch.size() < maxBatchSize) {
+					long remaining = deadline - System.nanoTime();
+					Request next = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : requests.poll();
+					if (next == null) {
+						break;
+					} else if (next == END) {
+						ended = true;
+						break;
+					}
+					batch.add(next);
+				}
+				detect(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			requests.drainTo(batch);
+			batch.remove(END);
+			for (Request request : batch) {
+				request.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void detect(List<Request> batch) {
+		int batchSize = batch.size();
+		batchSizeCounts.incrementAndGet(batchSize);
+		try {
+			List<float[]> inputs = new ArrayList<>(batchSize);
+			for (Request request : batch) {
+				inputs.add(request.input);
+			}
+			NeuronsActivation inputActivation = createBatchActivation(inputNeurons, inputs, matrixFactory);
+			NeuronsActivation output = forwardPass.forwardPropagate(inputActivation);
+			List<List<BoundingBox>> boundingBoxes = boundingBoxExtractor
+					.getScoreFilteredBoundingBoxesWithNonMaxSuppression(output, matrixFactory, labels, scoreThreshold, 
+							iouThreshold);
+			for (int example = 0; example < batchSize; example++) {
+				batch.get(example).future.complete(boundingBoxes.get(example));
+			}
+		} catch (Throwable e) {
+			LOGGER.warn("Yolo V2 batch of " + batchSize + " requests failed " + e.getMessage());
+			for (Request request : batch) {
+				request.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * @param inputNeurons The input neurons of the network.
+	 * @param inputs The input values of each image.
+	 * @param matrixFactory The matrix factory.
+	 * @return The input activations of the network for the batch of images - one column per image.
+	 */
+	static NeuronsActivation createBatchActivation(Neurons3D inputNeurons, List<float[]> inputs, 
+			MatrixFactory matrixFactory) {
+		// The input activations span the features in rows, with one column per image
+		int batchSize = inputs.size();
+		int featureCount = inputNeurons.getNeuronCountExcludingBias();
+		float[] values = new float[featureCount * batchSize];
+		for (int example = 0; example < batchSize; example++) {
+			float[] input = inputs.get(example);
+			for (int feature = 0; feature < featureCount; feature++) {
+				values[feature * batchSize + example] = input[feature];
+			}
+		}
+		return new NeuronsActivationImpl(inputNeurons, 
+				matrixFactory.createMatrixFromRowsByRowsArray(featureCount, batchSize, values), 
+				NeuronsActivationFormat.ROWS_SPAN_FEATURE_SET);
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return requests.size();
+	}
+
+	@Override
+	public long getRequestCount() {
+		long requestCount = 0;
+		for (int batchSize = 1; batchSize < batchSizeCounts.length(); batchSize++) {
+			requestCount += batchSize * batchSizeCounts.get(batchSize);
+		}
+		return requestCount;
+	}
+
+	@Override
+	public long getBatchCount() {
+		long batchCount = 0;
+		for (int batchSize = 1; batchSize < batchSizeCounts.length(); batchSize++) {
+			batchCount += batchSizeCounts.get(batchSize);
+		}
+		return batchCount;
+	}
+
+	@Override
+	public double getAverageBatchSize() {
+		long batchCount = getBatchCount();
+		return batchCount == 0 ? 0 : (double) getRequestCount() / batchCount;
+	}
+
+	@Override
+	public long[] getBatchSizeCounts() {
+		long[] counts = new long[batchSizeCounts.length()];
+		for (int batchSize = 0; batchSize < counts.length; batchSize++) {
+			counts[batchSize] = batchSizeCounts.get(batchSize);
+		}
+		return counts;
+	}
+
+	@Override
+	public void close() {
+		synchronized (requests) {
+			if (!closed) {
+				closed = true;
+				requests.add(END);
+			}
+		}
+	}
+
+	/**
+	 * A single-image request.
+	 */
+	private static class Request {
+
+		private final float[] input;
+		private final CompletableFuture<List<BoundingBox>> future;
+
+		Request(float[] input) {
+			this.input = input;
+			this.future = new CompletableFuture<>();
+		}
+	}
+}
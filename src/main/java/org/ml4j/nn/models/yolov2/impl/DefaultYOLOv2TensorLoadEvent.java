@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import org.ml4j.nn.models.yolov2.YOLOv2TensorLoadEvent;
+
+/**
+ * Default implementation of YOLOv2TensorLoadEvent, populated by the weights loader as each phase completes.
+ * 
+ * @author Michael Lavelle
+ */
+public class DefaultYOLOv2TensorLoadEvent implements YOLOv2TensorLoadEvent {
+
+	private YOLOv2WeightsTensor tensor;
+	private String source;
+	private long resourceOpenNanos;
+	private long deserializeNanos;
+	private long matrixCreationNanos;
+	private long totalNanos;
+	private long bytesRead;
+	private long heapBytes;
+
+	public DefaultYOLOv2TensorLoadEvent(YOLOv2WeightsTensor tensor) {
+		this.tensor = tensor;
+	}
+
+	/**
+	 * Copies the source and reading details of another event for the same tensor - for example one 
+	 * recorded while the tensor was loaded on another thread.
+	 */
+	void copyLoadDetails(DefaultYOLOv2TensorLoadEvent other) {
+		this.source = other.source;
+		this.resourceOpenNanos = other.resourceOpenNanos;
+		this.deserializeNanos = other.deserializeNanos;
+		this.bytesRead = other.bytesRead;
+	}
+
+	void setSource(String source) {
+		this.source = source;
+	}
+
+	void addResourceOpenNanos(long nanos) {
+		this.resourceOpenNanos += nanos;
+	}
+
+	void addDeserializeNanos(long nanos) {
+		this.deserializeNanos += nanos;
+	}
+
+	void addBytesRead(long bytes) {
+		this.bytesRead += bytes;
+	}
+
+	void setMatrixCreationNanos(long nanos) {
+		this.matrixCreationNanos = nanos;
+	}
+
+	void setTotalNanos(long nanos) {
+		this.totalNanos = nanos;
+	}
+
+	void setHeapBytes(long heapBytes) {
+		this.heapBytes = heapBytes;
+	}
+
+	public YOLOv2WeightsTensor getTensor() {
+		return tensor;
+	}
+
+	@Override
+	public String getTensorName() {
+		return tensor.getName();
+	}
+
+	@Override
+	public String getTensorKind() {
+		return tensor.getKind().name();
+	}
+
+	@Override
+	public int[] getShape() {
+		return tensor.getShape();
+	}
+
+	@Override
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public long getResourceOpenNanos() {
+		return resourceOpenNanos;
+	}
+
+	@Override
+	public long getDeserializeNanos() {
+		return deserializeNanos;
+	}
+
+	@Override
+	public long getMatrixCreationNanos() {
+		return matrixCreationNanos;
+	}
+
+	@Override
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	@Override
+	public long getHeapBytes() {
+		return heapBytes;
+	}
+
+	@Override
+	public String toString() {
+		return tensor + " from " + source + " in " + totalNanos / 1000 + "us [open=" + resourceOpenNanos / 1000 
+				+ "us, deserialize=" + deserializeNanos / 1000 + "us, matrix=" + matrixCreationNanos / 1000 
+				+ "us, bytesRead=" + bytesRead + ", heapBytes=" + heapBytes + "]";
+	}
+}
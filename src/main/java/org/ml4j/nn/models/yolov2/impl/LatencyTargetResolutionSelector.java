@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects the input resolution at which to run YOLO v2 so as to meet a latency target.
+ *
+ * Callers record the measured latency of each detection, and the selector maintains an exponentially weighted
+ * moving average of it. When the average exceeds the target the selector switches to the next lower resolution,
+ * and when the average - scaled by the ratio of pixel counts - predicts that the next higher resolution would
+ * run comfortably within the target it switches back up. A minimum number of samples is recorded between switches.
+ *
+ * Callers create a network and BoundingBoxExtractor for each configuration, with a YOLOv2Factory whose 
+ * createYoloV2(context, config) supports each configuration, and use those of the current configuration. 
+ * DefaultYOLOv2Factory only supports the 608 * 608 input of the pretrained YOLOv2Definition.
+ *
+ * @author Michael Lavelle
+ */
+public class LatencyTargetResolutionSelector {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LatencyTargetResolutionSelector.class);
+
+	private static final double DEFAULT_SMOOTHING = 0.2;
+	private static final double DEFAULT_UPSCALE_HEADROOM = 0.8;
+	private static final int DEFAULT_MINIMUM_SAMPLES_BETWEEN_SWITCHES = 10;
+
+	private final List<YOLOv2Config> configs;
+	private final long targetLatencyNanos;
+	private final double smoothing;
+	private final double upscaleHeadroom;
+	private final int minimumSamplesBetweenSwitches;
+
+	private volatile int currentIndex;
+	private double averageLatencyNanos;
+	private int samplesSinceSwitch;
+
+	/**
+	 * @param configs The configurations in descending order of input resolution - the first is used initially.
+	 * @param targetLatency The latency target.
+	 * @param unit The unit of the latency target.
+	 */
+	public LatencyTargetResolutionSelector(List<YOLOv2Config> configs, long targetLatency, TimeUnit unit) {
+		this(configs, targetLatency, unit, DEFAULT_SMOOTHING, DEFAULT_UPSCALE_HEADROOM,
+				DEFAULT_MINIMUM_SAMPLES_BETWEEN_SWITCHES);
+	}
+
+	/**
+	 * @param configs The configurations in descending order of input resolution - the first is used initially.
+	 * @param targetLatency The latency target.
+	 * @param unit The unit of the latency target.
+	 * @param smoothing The weight of each new sample in the moving average, between 0 and 1.
+	 * @param upscaleHeadroom The fraction of the target within which the predicted latency at the next higher
+	 * resolution must fall before switching up.
+	 * @param minimumSamplesBetweenSwitches The minimum number of samples recorded at a resolution before switching.
+	 */
+	public LatencyTargetResolutionSelector(List<YOLOv2Config> configs, long targetLatency, TimeUnit unit,
+			double smoothing, double upscaleHeadroom, int minimumSamplesBetweenSwitches) {
+		if (configs.isEmpty()) {
+			throw new IllegalArgumentException("At least one configuration is required");
+		}
+		for (int i = 1; i < configs.size(); i++) {
+			if (getPixelCount(configs.get(i)) >= getPixelCount(configs.get(i - 1))) {
+				throw new IllegalArgumentException("Configurations must be in descending order of input resolution");
+			}
+		}
+		this.configs = new ArrayList<>(configs);
+		this.targetLatencyNanos = unit.toNanos(targetLatency);
+		this.smoothing = smoothing;
+		this.upscaleHeadroom = upscaleHeadroom;
+		this.minimumSamplesBetweenSwitches = minimumSamplesBetweenSwitches;
+	}
+
+	/**
+	 * @return The configuration to use for the next detection.
+	 */
+	public YOLOv2Config getCurrentConfig() {
+		return configs.get(currentIndex);
+	}
+
+	/**
+	 * Records the latency of a detection run at the current configuration.
+	 *
+	 * @param latency The measured latency.
+	 * @param unit The unit of the measured latency.
+	 * @return The configuration to use for the next detection.
+	 */
+	public synchronized YOLOv2Config recordLatency(long latency, TimeUnit unit) {
+		long latencyNanos = unit.toNanos(latency);
+		averageLatencyNanos = samplesSinceSwitch == 0 ? latencyNanos
+				: smoothing * latencyNanos + (1 - smoothing) * averageLatencyNanos;
+		samplesSinceSwitch++;
+		if (samplesSinceSwitch >= minimumSamplesBetweenSwitches) {
+			if (averageLatencyNanos > targetLatencyNanos && currentIndex < configs.size() - 1) {
+				switchTo(currentIndex + 1);
+			} else if (currentIndex > 0) {
+				double predictedLatencyNanos = averageLatencyNanos * getPixelCount(configs.get(currentIndex - 1))
+						/ getPixelCount(configs.get(currentIndex));
+				if (predictedLatencyNanos < targetLatencyNanos * upscaleHeadroom) {
+					switchTo(currentIndex - 1);
+				}
+			}
+		}
+		return getCurrentConfig();
+	}
+
+	private void switchTo(int index) {
+		LOGGER.info("Switching Yolo V2 resolution from " + configs.get(currentIndex) + " to " + configs.get(index)
+				+ " with average latency of " + TimeUnit.NANOSECONDS.toMillis((long) averageLatencyNanos) + "ms");
+		currentIndex = index;
+		samplesSinceSwitch = 0;
+	}
+
+	private static long getPixelCount(YOLOv2Config config) {
+		return (long) config.getInputWidth() * config.getInputHeight();
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ml4j.MatrixFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A YOLOv2WeightsLoader which memory-maps a packed YOLO v2 weights archive, as written by 
+ * PackedYOLOv2WeightsWriter, and reads each tensor through a FloatBuffer view over the mapping.
+ * 
+ * Unlike PretrainedYOLOv2WeightsLoaderImpl, no per-tensor resource lookup or Java deserialization takes place - 
+ * the index is read once on construction, and the weights are paged in by the operating system as they are read.
+ * 
+ * Weights stored at a reduced YOLOv2WeightsPrecision are dequantized into float32 as they are loaded.
+ * 
+ * @author Michael Lavelle
+ */
+public class MappedYOLOv2WeightsLoader extends AbstractYOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedYOLOv2WeightsLoader.class);
+
+	private String path;
+
+	private transient ByteBuffer mappedBuffer;
+	private transient Map<String, PackedYOLOv2WeightsFormat.Entry> entries;
+
+	/**
+	 * @param path The path of the packed weights archive.
+	 * @param matrixFactory The matrix factory.
+	 * @throws IOException If the archive cannot be mapped or is not a packed YOLO v2 weights archive.
+	 */
+	public MappedYOLOv2WeightsLoader(Path path, MatrixFactory matrixFactory) throws IOException {
+		super(matrixFactory);
+		this.path = path.toString();
+		map();
+	}
+
+	private void map() throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Packed weights archive is too large to map:" + path);
+			}
+			// The mapping remains valid after the channel is closed
+			mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		List<PackedYOLOv2WeightsFormat.Entry> index = PackedYOLOv2WeightsFormat.readIndex(
+				mappedBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+		entries = new LinkedHashMap<>();
+		for (PackedYOLOv2WeightsFormat.Entry entry : index) {
+			if (entry.getOffset() + entry.getLength() > mappedBuffer.capacity()) {
+				throw new IOException("Packed weights archive is truncated at tensor:" + entry.getTensor());
+			}
+			entries.put(entry.getTensor().getName(), entry);
+		}
+		LOGGER.debug("Mapped " + entries.size() + " tensors from packed weights archive:" + path);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		map();
+	}
+
+	/**
+	 * @return The tensors of the archive, in the order in which they are laid out.
+	 */
+	public List<YOLOv2WeightsTensor> getTensors() {
+		List<YOLOv2WeightsTensor> tensors = new ArrayList<>(entries.size());
+		for (PackedYOLOv2WeightsFormat.Entry entry : entries.values()) {
+			tensors.add(entry.getTensor());
+		}
+		return tensors;
+	}
+
+	/**
+	 * @param name The name of the tensor.
+	 * @return A read-only FloatBuffer view over the mapped values of the tensor.
+	 */
+	public FloatBuffer getFloatBuffer(String name) {
+		return getFloatBuffer(getEntry(name));
+	}
+
+	private FloatBuffer getFloatBuffer(PackedYOLOv2WeightsFormat.Entry entry) {
+		if (entry.getDataType() != PackedYOLOv2WeightsFormat.DATA_TYPE_FLOAT32) {
+			throw new IllegalStateException("Tensor:" + entry.getTensor() + " is not held as float32");
+		}
+		return getByteBuffer(entry).asFloatBuffer().asReadOnlyBuffer();
+	}
+
+	private ByteBuffer getByteBuffer(PackedYOLOv2WeightsFormat.Entry entry) {
+		// Each caller has its own view, so concurrent reads do not share a position
+		ByteBuffer view = mappedBuffer.duplicate();
+		view.position((int) entry.getOffset());
+		view.limit((int) (entry.getOffset() + entry.getLength()));
+		return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private PackedYOLOv2WeightsFormat.Entry getEntry(String name) {
+		PackedYOLOv2WeightsFormat.Entry entry = entries.get(name);
+		if (entry == null) {
+			throw new IllegalArgumentException("No tensor named:" + name + " in packed weights archive:" + path);
+		}
+		return entry;
+	}
+
+	@Override
+	protected float[] loadWeights(YOLOv2WeightsTensor tensor, DefaultYOLOv2TensorLoadEvent event) {
+		PackedYOLOv2WeightsFormat.Entry entry = getEntry(tensor.getName());
+		if (!entry.getTensor().equals(tensor)) {
+			throw new IllegalStateException("Requested tensor:" + tensor + " does not match archived tensor:" 
+					+ entry.getTensor());
+		}
+		// The MatrixFactory creates matrices from float[], so the view is copied once into a new array
+		long start = System.nanoTime();
+		float[] weights = new float[tensor.getElementCount()];
+		PackedYOLOv2WeightsFormat.readValues(entry.getDataType(), tensor, getByteBuffer(entry), weights);
+		event.setSource("mapped");
+		event.addDeserializeNanos(System.nanoTime() - start);
+		event.addBytesRead(entry.getLength());
+		return weights;
+	}
+}
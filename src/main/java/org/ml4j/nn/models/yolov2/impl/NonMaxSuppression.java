@@ -0,0 +1,415 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.ml4j.nn.models.yolov2.BoundingBox;
+
+/**
+ * Greedy non max suppression over candidate bounding boxes.
+ *
+ * Repeatedly selects the highest scoring remaining candidate ( the earliest in the candidate order in the event
+ * of a tie) and suppresses every remaining candidate whose iou with it exceeds the threshold.
+ *
+ * The candidates are sorted once by score, their corners and areas are held in primitive arrays, and each candidate is
+ * registered in the cells of a coarse grid which its corners span, so that a selected candidate is only compared with
+ * candidates sharing at least one grid cell - candidates in disjoint cells do not overlap and so have an iou of zero.
+ *
+ * Suppression may also be class-aware, where candidates are only suppressed by selected boxes of the same predicted
+ * class - each class is then processed independently, optionally in parallel on a ForkJoinPool.
+ *
+ * @author Michael Lavelle
+ */
+public class NonMaxSuppression {
+
+	private static final int GRID_SIZE = 16;
+
+	/**
+	 * @param candidates The candidate bounding boxes.
+	 * @param iouThreshold The iou threshold.
+	 * @return The selected bounding boxes, in descending score order.
+	 */
+	public List<BoundingBox> apply(List<? extends BoundingBox> candidates, float iouThreshold) {
+		return apply(candidates, iouThreshold, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param candidates The candidate bounding boxes.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxSelections The maximum number of bounding boxes to select - selection stops once this many
+	 * have been selected.
+	 * @return The selected bounding boxes, in descending score order.
+	 */
+	public List<BoundingBox> apply(List<? extends BoundingBox> candidates, float iouThreshold, int maxSelections) {
+		int count = candidates.size();
+		float[] corners = new float[count * 4];
+		float[] scores = new float[count];
+		for (int i = 0; i < count; i++) {
+			BoundingBox candidate = candidates.get(i);
+			System.arraycopy(candidate.getScaledCorners(), 0, corners, i * 4, 4);
+			scores[i] = candidate.getPredictedClassScore();
+		}
+		int[] selected = select(corners, scores, count, iouThreshold, maxSelections);
+		List<BoundingBox> results = new ArrayList<>(selected.length);
+		for (int index : selected) {
+			results.add(candidates.get(index));
+		}
+		return results;
+	}
+
+	/**
+	 * @param candidates The candidate detections.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxSelections The maximum number of detections to select.
+	 * @return The selected detections, in descending score order.
+	 */
+	public DefaultDetections apply(DefaultDetections candidates, float iouThreshold, int maxSelections) {
+		int count = candidates.size();
+		float[] corners = new float[count * 4];
+		candidates.getScaledCorners(corners);
+		return candidates.select(select(corners, getScores(candidates), count, iouThreshold, maxSelections));
+	}
+
+	/**
+	 * Applies non max suppression independently to the detections of each predicted class.
+	 *
+	 * @param candidates The candidate detections.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxSelections The maximum number of detections to select across all classes.
+	 * @param forkJoinPool The pool on which to process the classes in parallel, or null to process them on the
+	 * calling thread.
+	 * @return The selected detections of all classes, merged in descending score order.
+	 */
+	public DefaultDetections applyPerClass(DefaultDetections candidates, float iouThreshold, int maxSelections,
+			ForkJoinPool forkJoinPool) {
+		int count = candidates.size();
+		float[] corners = new float[count * 4];
+		candidates.getScaledCorners(corners);
+		int[] classIndexes = new int[count];
+		for (int i = 0; i < count; i++) {
+			classIndexes[i] = candidates.getPredictedClassIndex(i);
+		}
+		return candidates.select(selectPerClass(corners, getScores(candidates), classIndexes, count, iouThreshold,
+				maxSelections, forkJoinPool));
+	}
+
+	private static float[] getScores(DefaultDetections candidates) {
+		float[] scores = new float[candidates.size()];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = candidates.getPredictedClassScore(i);
+		}
+		return scores;
+	}
+
+	/**
+	 * Applies non max suppression independently to the candidates of each predicted class, so that a box
+	 * can only be suppressed by a selected box of the same class.
+	 *
+	 * @param candidates The candidate bounding boxes.
+	 * @param iouThreshold The iou threshold.
+	 * @param forkJoinPool The pool on which to process the classes in parallel, or null to process them on the
+	 * calling thread.
+	 * @return The selected bounding boxes of all classes, merged in descending score order.
+	 */
+	public List<BoundingBox> applyPerClass(List<? extends BoundingBox> candidates, float iouThreshold,
+			ForkJoinPool forkJoinPool) {
+		return applyPerClass(candidates, iouThreshold, Integer.MAX_VALUE, forkJoinPool);
+	}
+
+	/**
+	 * @param candidates The candidate bounding boxes.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxSelections The maximum number of bounding boxes to select across all classes.
+	 * @param forkJoinPool The pool on which to process the classes in parallel, or null to process them on the
+	 * calling thread.
+	 * @return The selected bounding boxes of all classes, merged in descending score order.
+	 */
+	public List<BoundingBox> applyPerClass(List<? extends BoundingBox> candidates, float iouThreshold,
+			int maxSelections, ForkJoinPool forkJoinPool) {
+		int count = candidates.size();
+		float[] corners = new float[count * 4];
+		float[] scores = new float[count];
+		int[] classIndexes = new int[count];
+		for (int i = 0; i < count; i++) {
+			BoundingBox candidate = candidates.get(i);
+			System.arraycopy(candidate.getScaledCorners(), 0, corners, i * 4, 4);
+			scores[i] = candidate.getPredictedClassScore();
+			classIndexes[i] = candidate.getPredictedClassIndex();
+		}
+		int[] selected = selectPerClass(corners, scores, classIndexes, count, iouThreshold, maxSelections, 
+				forkJoinPool);
+		List<BoundingBox> results = new ArrayList<>(selected.length);
+		for (int index : selected) {
+			results.add(candidates.get(index));
+		}
+		return results;
+	}
+
+	/**
+	 * @param corners The min y, min x, max y, max x corners of each candidate, 4 consecutive values per candidate.
+	 * @param scores The score of each candidate.
+	 * @param classIndexes The predicted class index of each candidate.
+	 * @param count The number of candidates.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxSelections The maximum number of candidates to select across all classes - as classes are
+	 * independent, at most this many are selected from each class before merging.
+	 * @param forkJoinPool The pool on which to process the classes in parallel, or null to process them on the
+	 * calling thread.
+	 * @return The indexes of the selected candidates of all classes, in descending score order.
+	 */
+	public int[] selectPerClass(float[] corners, float[] scores, int[] classIndexes, int count, float iouThreshold,
+			int maxSelections, ForkJoinPool forkJoinPool) {
+
+		Map<Integer, int[]> candidatesByClass = groupByClass(classIndexes, count);
+		if (candidatesByClass.size() <= 1) {
+			return select(corners, scores, count, iouThreshold, maxSelections);
+		}
+
+		List<int[]> selectedByClass = new ArrayList<>(candidatesByClass.size());
+		if (forkJoinPool == null) {
+			for (int[] classCandidates : candidatesByClass.values()) {
+				selectedByClass.add(selectSubset(corners, scores, classCandidates, iouThreshold, maxSelections));
+			}
+		} else {
+			List<ForkJoinTask<int[]>> tasks = new ArrayList<>(candidatesByClass.size());
+			for (int[] classCandidates : candidatesByClass.values()) {
+				tasks.add(forkJoinPool.submit(() -> selectSubset(corners, scores, classCandidates, iouThreshold, 
+						maxSelections)));
+			}
+			for (ForkJoinTask<int[]> task : tasks) {
+				selectedByClass.add(task.join());
+			}
+		}
+
+		// Merge in descending score order, breaking ties by candidate index.
+		int selectedCount = 0;
+		for (int[] classSelected : selectedByClass) {
+			selectedCount += classSelected.length;
+		}
+		int[] merged = new int[selectedCount];
+		int position = 0;
+		for (int[] classSelected : selectedByClass) {
+			System.arraycopy(classSelected, 0, merged, position, classSelected.length);
+			position += classSelected.length;
+		}
+		Arrays.sort(merged);
+		float[] mergedScores = new float[selectedCount];
+		for (int i = 0; i < selectedCount; i++) {
+			mergedScores[i] = scores[merged[i]];
+		}
+		int[] mergedOrder = sortByDescendingScore(mergedScores, selectedCount);
+		int[] results = new int[Math.min(selectedCount, maxSelections)];
+		for (int i = 0; i < results.length; i++) {
+			results[i] = merged[mergedOrder[i]];
+		}
+		return results;
+	}
+
+	private static Map<Integer, int[]> groupByClass(int[] classIndexes, int count) {
+		Map<Integer, Integer> classCounts = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++) {
+			classCounts.merge(classIndexes[i], 1, Integer::sum);
+		}
+		Map<Integer, int[]> candidatesByClass = new LinkedHashMap<>();
+		for (Map.Entry<Integer, Integer> classCount : classCounts.entrySet()) {
+			candidatesByClass.put(classCount.getKey(), new int[classCount.getValue()]);
+		}
+		Map<Integer, Integer> classFill = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++) {
+			int position = classFill.merge(classIndexes[i], 1, Integer::sum) - 1;
+			candidatesByClass.get(classIndexes[i])[position] = i;
+		}
+		return candidatesByClass;
+	}
+
+	/**
+	 * Selects from the subset of candidates with the specified indexes, returning the indexes of the selected candidates.
+	 */
+	private int[] selectSubset(float[] corners, float[] scores, int[] subset, float iouThreshold, int maxSelections) {
+		float[] subsetCorners = new float[subset.length * 4];
+		float[] subsetScores = new float[subset.length];
+		for (int i = 0; i < subset.length; i++) {
+			System.arraycopy(corners, subset[i] * 4, subsetCorners, i * 4, 4);
+			subsetScores[i] = scores[subset[i]];
+		}
+		int[] selected = select(subsetCorners, subsetScores, subset.length, iouThreshold, maxSelections);
+		for (int i = 0; i < selected.length; i++) {
+			selected[i] = subset[selected[i]];
+		}
+		return selected;
+	}
+
+	/**
+	 * @param corners The min y, min x, max y, max x corners of each candidate, 4 consecutive values per candidate.
+	 * @param scores The score of each candidate.
+	 * @param count The number of candidates.
+	 * @param iouThreshold The iou threshold.
+	 * @param maxSelections The maximum number of candidates to select - selection stops once this many
+	 * have been selected.
+	 * @return The indexes of the selected candidates, in descending score order.
+	 */
+	public int[] select(float[] corners, float[] scores, int count, float iouThreshold, int maxSelections) {
+
+		if (maxSelections <= 0) {
+			return new int[0];
+		}
+
+		// Sort once, by descending score and then ascending candidate index.
+		int[] order = sortByDescendingScore(scores, count);
+
+		float[] minY = new float[count];
+		float[] minX = new float[count];
+		float[] maxY = new float[count];
+		float[] maxX = new float[count];
+		float[] areas = new float[count];
+		float gridMinY = Float.POSITIVE_INFINITY;
+		float gridMinX = Float.POSITIVE_INFINITY;
+		float gridMaxY = Float.NEGATIVE_INFINITY;
+		float gridMaxX = Float.NEGATIVE_INFINITY;
+		for (int rank = 0; rank < count; rank++) {
+			int offset = order[rank] * 4;
+			minY[rank] = corners[offset];
+			minX[rank] = corners[offset + 1];
+			maxY[rank] = corners[offset + 2];
+			maxX[rank] = corners[offset + 3];
+			areas[rank] = (maxX[rank] - minX[rank]) * (maxY[rank] - minY[rank]);
+			gridMinY = Math.min(gridMinY, minY[rank]);
+			gridMinX = Math.min(gridMinX, minX[rank]);
+			gridMaxY = Math.max(gridMaxY, maxY[rank]);
+			gridMaxX = Math.max(gridMaxX, maxX[rank]);
+		}
+
+		// Only non-overlapping candidates may be skipped, and those only have an iou of zero, so a negative
+		// threshold requires every pair to be compared.
+		int gridSize = iouThreshold < 0 || count < GRID_SIZE ? 1 : GRID_SIZE;
+		float cellHeight = (gridMaxY - gridMinY) / gridSize;
+		float cellWidth = (gridMaxX - gridMinX) / gridSize;
+
+		int[] firstRows = new int[count];
+		int[] lastRows = new int[count];
+		int[] firstColumns = new int[count];
+		int[] lastColumns = new int[count];
+		int[] cellStarts = new int[gridSize * gridSize + 1];
+		for (int rank = 0; rank < count; rank++) {
+			firstRows[rank] = getCell(minY[rank], gridMinY, cellHeight, gridSize);
+			lastRows[rank] = getCell(maxY[rank], gridMinY, cellHeight, gridSize);
+			firstColumns[rank] = getCell(minX[rank], gridMinX, cellWidth, gridSize);
+			lastColumns[rank] = getCell(maxX[rank], gridMinX, cellWidth, gridSize);
+			for (int r = firstRows[rank]; r <= lastRows[rank]; r++) {
+				for (int c = firstColumns[rank]; c <= lastColumns[rank]; c++) {
+					cellStarts[r * gridSize + c + 1]++;
+				}
+			}
+		}
+		for (int cell = 0; cell < gridSize * gridSize; cell++) {
+			cellStarts[cell + 1] += cellStarts[cell];
+		}
+		int[] cellEntries = new int[cellStarts[gridSize * gridSize]];
+		int[] cellFill = Arrays.copyOf(cellStarts, gridSize * gridSize);
+		for (int rank = 0; rank < count; rank++) {
+			for (int r = firstRows[rank]; r <= lastRows[rank]; r++) {
+				for (int c = firstColumns[rank]; c <= lastColumns[rank]; c++) {
+					cellEntries[cellFill[r * gridSize + c]++] = rank;
+				}
+			}
+		}
+
+		boolean[] suppressed = new boolean[count];
+		int[] lastComparedWith = new int[count];
+		Arrays.fill(lastComparedWith, -1);
+		int[] selected = new int[count];
+		int selectedCount = 0;
+		for (int rank = 0; rank < count; rank++) {
+			if (suppressed[rank]) {
+				continue;
+			}
+			selected[selectedCount++] = order[rank];
+			if (selectedCount >= maxSelections) {
+				break;
+			}
+			for (int r = firstRows[rank]; r <= lastRows[rank]; r++) {
+				for (int c = firstColumns[rank]; c <= lastColumns[rank]; c++) {
+					int cell = r * gridSize + c;
+					for (int entry = cellStarts[cell]; entry < cellStarts[cell + 1]; entry++) {
+						int other = cellEntries[entry];
+						if (other > rank && !suppressed[other] && lastComparedWith[other] != rank) {
+							lastComparedWith[other] = rank;
+							if (getIOU(other, rank, minY, minX, maxY, maxX, areas) > iouThreshold) {
+								suppressed[other] = true;
+							}
+						}
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(selected, selectedCount);
+	}
+
+	/**
+	 * The iou of a candidate with a selected box - boxes which do not overlap have an intersection of zero.
+	 */
+	private float getIOU(int candidate, int selected, float[] minY, float[] minX, float[] maxY, float[] maxX,
+			float[] areas) {
+
+		float yi1 = Math.max(minY[candidate], minY[selected]);
+		float xi1 = Math.max(minX[candidate], minX[selected]);
+		float yi2 = Math.min(maxY[candidate], maxY[selected]);
+		float xi2 = Math.min(maxX[candidate], maxX[selected]);
+
+		float interHeight = yi2 - yi1;
+		float interWidth = xi2 - xi1;
+		float interArea = interHeight > 0 && interWidth > 0 ? interWidth * interHeight : 0;
+
+		float unionArea = areas[candidate] + areas[selected] - interArea;
+
+		return interArea / unionArea;
+	}
+
+	private static int getCell(float value, float gridMin, float cellSize, int gridSize) {
+		if (gridSize == 1 || !(cellSize > 0)) {
+			return 0;
+		}
+		int cell = (int) ((value - gridMin) / cellSize);
+		return cell < 0 ? 0 : cell >= gridSize ? gridSize - 1 : cell;
+	}
+
+	/**
+	 * Sorts candidate indexes by descending score, and then by ascending index, by packing an order-preserving
+	 * integer encoding of each score together with the candidate index into a single long key.
+	 */
+	private static int[] sortByDescendingScore(float[] scores, int count) {
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			// Adding 0 normalises -0 to 0, so that the two sort as equal.
+			int bits = Float.floatToIntBits(scores[i] + 0f);
+			int ascendingKey = bits ^ ((bits >> 31) & 0x7fffffff);
+			keys[i] = ((long) ~ascendingKey << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.ml4j.nn.FeedForwardNeuralNetworkContext;
+import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2Definition;
+import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2WeightsLoader;
+import org.ml4j.nn.sessions.factories.DefaultSessionFactory;
+
+/**
+ * Converts the pretrained yolov2javaweights resources read by PretrainedYOLOv2WeightsLoaderImpl into a single 
+ * packed YOLO v2 weights archive, to be read by MappedYOLOv2WeightsLoader.
+ * 
+ * @author Michael Lavelle
+ */
+public class PackedYOLOv2WeightsConverter {
+
+	private DefaultSessionFactory sessionFactory;
+
+	public PackedYOLOv2WeightsConverter(DefaultSessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	/**
+	 * Records the tensors required by the YOLO v2 network, in graph order, by building a network with the 
+	 * specified loader.
+	 * 
+	 * @param context The context with which to build the network.
+	 * @param weightsLoader The loader with which to build the network - DefaultUntrainedYOLOv2WeightsLoader avoids
+	 * loading any weights.
+	 * @return The tensors required by the network.
+	 */
+	public List<YOLOv2WeightsTensor> recordTensors(FeedForwardNeuralNetworkContext context, 
+			YOLOv2WeightsLoader weightsLoader) {
+		RecordingYOLOv2WeightsLoader recordingLoader = new RecordingYOLOv2WeightsLoader(weightsLoader);
+		YOLOv2Definition yoloV2Definition = new YOLOv2Definition(recordingLoader);
+		sessionFactory
+			.createSession(context.getDirectedComponentsContext())
+			.buildSupervised3DNeuralNetwork("yoloV2", yoloV2Definition.getInputNeurons())
+			.withComponentGraphDefinition(yoloV2Definition)
+			.build();
+		return recordingLoader.getTensors();
+	}
+
+	/**
+	 * Converts the pretrained weights of the YOLO v2 network into a packed weights archive.
+	 * 
+	 * @param context The context with which to build the network while recording its tensors.
+	 * @param source The loader of the pretrained weights.
+	 * @param target The path of the archive to write.
+	 * @throws IOException If the archive cannot be written.
+	 */
+	public void convert(FeedForwardNeuralNetworkContext context, PretrainedYOLOv2WeightsLoaderImpl source, 
+			Path target) throws IOException {
+		convert(context, source, target, YOLOv2WeightsPrecision.FLOAT32);
+	}
+
+	/**
+	 * Converts the pretrained weights of the YOLO v2 network into a packed weights archive.
+	 * 
+	 * @param context The context with which to build the network while recording its tensors.
+	 * @param source The loader of the pretrained weights.
+	 * @param target The path of the archive to write.
+	 * @param precision The precision in which to store the weights.
+	 * @throws IOException If the archive cannot be written.
+	 */
+	public void convert(FeedForwardNeuralNetworkContext context, PretrainedYOLOv2WeightsLoaderImpl source, 
+			Path target, YOLOv2WeightsPrecision precision) throws IOException {
+		convert(recordTensors(context, new DefaultUntrainedYOLOv2WeightsLoader()), source, target, precision);
+	}
+
+	/**
+	 * Converts the specified pretrained tensors into a packed weights archive.
+	 * 
+	 * @param tensors The tensors to convert, in the order in which they will be laid out.
+	 * @param source The loader of the pretrained weights.
+	 * @param target The path of the archive to write.
+	 * @throws IOException If the archive cannot be written.
+	 */
+	public void convert(List<YOLOv2WeightsTensor> tensors, PretrainedYOLOv2WeightsLoaderImpl source, 
+			Path target) throws IOException {
+		convert(tensors, source, target, YOLOv2WeightsPrecision.FLOAT32);
+	}
+
+	/**
+	 * Converts the specified pretrained tensors into a packed weights archive.
+	 * 
+	 * @param tensors The tensors to convert, in the order in which they will be laid out.
+	 * @param source The loader of the pretrained weights.
+	 * @param target The path of the archive to write.
+	 * @param precision The precision in which to store the weights.
+	 * @throws IOException If the archive cannot be written.
+	 */
+	public void convert(List<YOLOv2WeightsTensor> tensors, PretrainedYOLOv2WeightsLoaderImpl source, 
+			Path target, YOLOv2WeightsPrecision precision) throws IOException {
+		new PackedYOLOv2WeightsWriter().write(target, tensors, tensor -> source.deserializeWeights(tensor.getName()), 
+				precision);
+	}
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The layout of a packed YOLO v2 weights archive - a single file containing every weights tensor of the network.
+ * 
+ * The archive starts with a header index, followed by the data of each tensor aligned to 64 bytes. All values 
+ * are little-endian.
+ * 
+ * Header : magic (int), version (int), data offset (int), tensor count (int)
+ * 
+ * Index entry, per tensor : name length (short), name (UTF-8 bytes), kind (byte), data type (byte), rank (byte), 
+ * shape (int * rank), offset (long), length in bytes (long)
+ * 
+ * Convolutional layer weights are held in the layout outputDepth * inputDepth * height * width.
+ * 
+ * The data of each tensor is held as one of the following data types :
+ * 
+ * float32 : 4 bytes per value
+ * 
+ * float16 : 2 bytes per value, IEEE 754 half precision
+ * 
+ * int8 : a float32 scale per output channel, followed by 1 byte per value - each value is its signed byte 
+ * multiplied by the scale of its channel, symmetric about zero
+ * 
+ * @author Michael Lavelle
+ */
+final class PackedYOLOv2WeightsFormat {
+
+	static final int MAGIC = 0x50325759;
+	static final int VERSION = 1;
+	static final int ALIGNMENT = 64;
+	static final int HEADER_LENGTH = 16;
+
+	static final byte DATA_TYPE_FLOAT32 = 0;
+	static final byte DATA_TYPE_FLOAT16 = 1;
+	static final byte DATA_TYPE_INT8 = 2;
+
+	private static final int INT8_MAX = 127;
+
+	private PackedYOLOv2WeightsFormat() {
+	}
+
+	/**
+	 * An entry of the header index.
+	 */
+	static class Entry {
+
+		private YOLOv2WeightsTensor tensor;
+		private byte dataType;
+		private long offset;
+		private long length;
+
+		Entry(YOLOv2WeightsTensor tensor, byte dataType, long offset, long length) {
+			this.tensor = tensor;
+			this.dataType = dataType;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		YOLOv2WeightsTensor getTensor() {
+			return tensor;
+		}
+
+		byte getDataType() {
+			return dataType;
+		}
+
+		long getOffset() {
+			return offset;
+		}
+
+		long getLength() {
+			return length;
+		}
+	}
+
+	/**
+	 * @return The length in bytes of the data of the tensor when held as the data type.
+	 */
+	static long getDataLength(byte dataType, YOLOv2WeightsTensor tensor) {
+		long count = tensor.getElementCount();
+		switch (dataType) {
+		case DATA_TYPE_FLOAT32:
+			return 4 * count;
+		case DATA_TYPE_FLOAT16:
+			return 2 * count;
+		case DATA_TYPE_INT8:
+			return 4L * getChannelCount(tensor) + count;
+		default:
+			throw new IllegalArgumentException("Unsupported data type:" + dataType);
+		}
+	}
+
+	private static int getChannelCount(YOLOv2WeightsTensor tensor) {
+		return tensor.getKind() == YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_WEIGHTS ? tensor.getOutputDepth() : 1;
+	}
+
+	/**
+	 * Writes the values of the tensor as the data type, advancing the position of the buffer.
+	 */
+	static void writeValues(byte dataType, YOLOv2WeightsTensor tensor, float[] values, ByteBuffer buffer) {
+		switch (dataType) {
+		case DATA_TYPE_FLOAT32:
+			buffer.asFloatBuffer().put(values);
+			buffer.position(buffer.position() + 4 * values.length);
+			break;
+		case DATA_TYPE_FLOAT16:
+			for (float value : values) {
+				buffer.putShort(toFloat16(value));
+			}
+			break;
+		case DATA_TYPE_INT8:
+			int channelCount = getChannelCount(tensor);
+			int channelLength = values.length / channelCount;
+			float[] scales = new float[channelCount];
+			for (int channel = 0; channel < channelCount; channel++) {
+				float max = 0;
+				for (int i = channel * channelLength; i < (channel + 1) * channelLength; i++) {
+					max = Math.max(max, Math.abs(values[i]));
+				}
+				scales[channel] = max / INT8_MAX;
+				buffer.putFloat(scales[channel]);
+			}
+			for (int channel = 0; channel < channelCount; channel++) {
+				float inverseScale = scales[channel] == 0 ? 0 : 1 / scales[channel];
+				for (int i = channel * channelLength; i < (channel + 1) * channelLength; i++) {
+					int quantized = Math.round(values[i] * inverseScale);
+					buffer.put((byte) Math.max(-INT8_MAX, Math.min(INT8_MAX, quantized)));
+				}
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported data type:" + dataType);
+		}
+	}
+
+	/**
+	 * Reads the values of the tensor held as the data type, from the position of the buffer.
+	 */
+	static void readValues(byte dataType, YOLOv2WeightsTensor tensor, ByteBuffer buffer, float[] values) {
+		switch (dataType) {
+		case DATA_TYPE_FLOAT32:
+			buffer.asFloatBuffer().get(values);
+			break;
+		case DATA_TYPE_FLOAT16:
+			for (int i = 0; i < values.length; i++) {
+				values[i] = fromFloat16(buffer.getShort());
+			}
+			break;
+		case DATA_TYPE_INT8:
+			int channelCount = getChannelCount(tensor);
+			int channelLength = values.length / channelCount;
+			float[] scales = new float[channelCount];
+			for (int channel = 0; channel < channelCount; channel++) {
+				scales[channel] = buffer.getFloat();
+			}
+			for (int channel = 0; channel < channelCount; channel++) {
+				float scale = scales[channel];
+				for (int i = channel * channelLength; i < (channel + 1) * channelLength; i++) {
+					values[i] = buffer.get() * scale;
+				}
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported data type:" + dataType);
+		}
+	}
+
+	/**
+	 * @return The half precision bits of the value, rounded to the nearest representable value, ties to even.
+	 */
+	static short toFloat16(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		int exponent = (bits >>> 23) & 0xff;
+		int mantissa = bits & 0x7fffff;
+		if (exponent == 0xff) {
+			// Infinity, or NaN with a quiet bit set so that it remains NaN
+			return (short) (sign | 0x7c00 | (mantissa == 0 ? 0 : 0x200));
+		}
+		int halfExponent = exponent - 127 + 15;
+		if (halfExponent >= 0x1f) {
+			return (short) (sign | 0x7c00);
+		}
+		int shift;
+		int half;
+		if (halfExponent <= 0) {
+			// Subnormal, or too small to be represented
+			if (halfExponent < -10) {
+				return (short) sign;
+			}
+			mantissa |= 0x800000;
+			shift = 14 - halfExponent;
+			half = sign | (mantissa >> shift);
+		} else {
+			shift = 13;
+			half = sign | (halfExponent << 10) | (mantissa >> shift);
+		}
+		int remainder = mantissa & ((1 << shift) - 1);
+		int halfway = 1 << (shift - 1);
+		// A carry out of the mantissa increments the exponent, rounding up to infinity if need be
+		if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+			half++;
+		}
+		return (short) half;
+	}
+
+	/**
+	 * @return The value of the half precision bits.
+	 */
+	static float fromFloat16(short value) {
+		int half = value & 0xffff;
+		int sign = (half & 0x8000) << 16;
+		int exponent = (half >>> 10) & 0x1f;
+		int mantissa = half & 0x3ff;
+		if (exponent == 0x1f) {
+			return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+		} else if (exponent == 0) {
+			float subnormal = mantissa * 0x1p-24f;
+			return sign == 0 ? subnormal : -subnormal;
+		} else {
+			return Float.intBitsToFloat(sign | ((exponent + 127 - 15) << 23) | (mantissa << 13));
+		}
+	}
+
+	static long align(long offset) {
+		return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	/**
+	 * @return The length in bytes of the header and index for the tensors.
+	 */
+	static int getIndexLength(List<YOLOv2WeightsTensor> tensors) {
+		int length = HEADER_LENGTH;
+		for (YOLOv2WeightsTensor tensor : tensors) {
+			length += 2 + tensor.getName().getBytes(StandardCharsets.UTF_8).length + 3 + 4 * tensor.getShape().length 
+					+ 16;
+		}
+		return length;
+	}
+
+	static void writeIndex(ByteBuffer buffer, List<Entry> entries, int dataOffset) {
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(dataOffset);
+		buffer.putInt(entries.size());
+		for (Entry entry : entries) {
+			byte[] name = entry.getTensor().getName().getBytes(StandardCharsets.UTF_8);
+			int[] shape = entry.getTensor().getShape();
+			buffer.putShort((short) name.length);
+			buffer.put(name);
+			buffer.put((byte) entry.getTensor().getKind().ordinal());
+			buffer.put(entry.getDataType());
+			buffer.put((byte) shape.length);
+			for (int dimension : shape) {
+				buffer.putInt(dimension);
+			}
+			buffer.putLong(entry.getOffset());
+			buffer.putLong(entry.getLength());
+		}
+	}
+
+	static List<Entry> readIndex(ByteBuffer buffer) throws IOException {
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("Not a packed YOLO v2 weights archive");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported packed YOLO v2 weights archive version:" + version);
+		}
+		buffer.getInt();
+		int tensorCount = buffer.getInt();
+		List<Entry> entries = new ArrayList<>(tensorCount);
+		YOLOv2WeightsTensor.Kind[] kinds = YOLOv2WeightsTensor.Kind.values();
+		for (int i = 0; i < tensorCount; i++) {
+			byte[] name = new byte[buffer.getShort()];
+			buffer.get(name);
+			YOLOv2WeightsTensor.Kind kind = kinds[buffer.get()];
+			byte dataType = buffer.get();
+			int[] shape = new int[buffer.get()];
+			for (int d = 0; d < shape.length; d++) {
+				shape[d] = buffer.getInt();
+			}
+			YOLOv2WeightsTensor tensor = new YOLOv2WeightsTensor(kind, new String(name, StandardCharsets.UTF_8), shape);
+			entries.add(new Entry(tensor, dataType, buffer.getLong(), buffer.getLong()));
+		}
+		return entries;
+	}
+}
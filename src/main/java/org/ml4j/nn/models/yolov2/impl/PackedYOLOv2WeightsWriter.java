@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a packed YOLO v2 weights archive, as described by PackedYOLOv2WeightsFormat.
+ * 
+ * The index is computed up front from the tensor shapes, so the weights of each tensor are obtained and written 
+ * one at a time rather than all being held in memory.
+ * 
+ * @author Michael Lavelle
+ */
+public class PackedYOLOv2WeightsWriter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PackedYOLOv2WeightsWriter.class);
+
+	/**
+	 * @param target The path of the archive to write.
+	 * @param tensors The tensors to write, in the order in which they will be laid out.
+	 * @param weights Provides the raw float[] of each tensor.
+	 * @throws IOException If the archive cannot be written.
+	 */
+	public void write(Path target, List<YOLOv2WeightsTensor> tensors, 
+			Function<YOLOv2WeightsTensor, float[]> weights) throws IOException {
+		write(target, tensors, weights, YOLOv2WeightsPrecision.FLOAT32);
+	}
+
+	/**
+	 * @param target The path of the archive to write.
+	 * @param tensors The tensors to write, in the order in which they will be laid out.
+	 * @param weights Provides the raw float[] of each tensor.
+	 * @param precision The precision in which to store the weights.
+	 * @throws IOException If the archive cannot be written.
+	 */
+	public void write(Path target, List<YOLOv2WeightsTensor> tensors, 
+			Function<YOLOv2WeightsTensor, float[]> weights, YOLOv2WeightsPrecision precision) throws IOException {
+		int indexLength = PackedYOLOv2WeightsFormat.getIndexLength(tensors);
+		long offset = PackedYOLOv2WeightsFormat.align(indexLength);
+		int dataOffset = (int) offset;
+		List<PackedYOLOv2WeightsFormat.Entry> entries = new ArrayList<>(tensors.size());
+		for (YOLOv2WeightsTensor tensor : tensors) {
+			byte dataType = precision.getDataType(tensor);
+			long length = PackedYOLOv2WeightsFormat.getDataLength(dataType, tensor);
+			entries.add(new PackedYOLOv2WeightsFormat.Entry(tensor, dataType, offset, length));
+			offset = PackedYOLOv2WeightsFormat.align(offset + length);
+		}
+
+		LOGGER.info("Writing " + tensors.size() + " tensors as " + precision + " to packed weights archive:" + target);
+
+		try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer index = ByteBuffer.allocate(indexLength).order(ByteOrder.LITTLE_ENDIAN);
+			PackedYOLOv2WeightsFormat.writeIndex(index, entries, dataOffset);
+			index.flip();
+			writeFully(channel, index, 0);
+			for (PackedYOLOv2WeightsFormat.Entry entry : entries) {
+				float[] values = weights.apply(entry.getTensor());
+				if (values.length != entry.getTensor().getElementCount()) {
+					throw new IllegalArgumentException("Expected " + entry.getTensor().getElementCount() 
+							+ " values for " + entry.getTensor() + " but found " + values.length);
+				}
+				ByteBuffer data = ByteBuffer.allocate((int) entry.getLength()).order(ByteOrder.LITTLE_ENDIAN);
+				PackedYOLOv2WeightsFormat.writeValues(entry.getDataType(), entry.getTensor(), values, data);
+				data.flip();
+				writeFully(channel, data, entry.getOffset());
+			}
+			// Pad the final tensor so that the archive length is aligned
+			if (channel.size() < offset) {
+				writeFully(channel, ByteBuffer.allocate((int) (offset - channel.size())), channel.size());
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+}
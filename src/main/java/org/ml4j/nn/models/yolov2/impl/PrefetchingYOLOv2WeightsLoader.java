@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A YOLOv2WeightsLoader decorator which, given the full list of tensors up front, loads them all in parallel on 
+ * a bounded executor as soon as it is created, and hands each tensor to the network as soon as it is ready.
+ * 
+ * Tensors are submitted in list order - graph order for a manifest recorded by RecordingYOLOv2WeightsLoader - so 
+ * the tensors of the earliest layers are ready first. A tensor which is not in the list, or which is requested 
+ * with a different shape, is loaded on the requesting thread.
+ * 
+ * Pass an instance to the DefaultYOLOv2Factory constructor, in place of the loader it decorates, so that 
+ * createYoloV2 builds the network while the remaining tensors are still loading.
+ * 
+ * @author Michael Lavelle
+ */
+public class PrefetchingYOLOv2WeightsLoader extends AbstractYOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingYOLOv2WeightsLoader.class);
+
+	private AbstractYOLOv2WeightsLoader delegate;
+
+	private transient Map<String, CompletableFuture<PrefetchedTensor>> prefetchedWeights;
+	private transient Map<String, YOLOv2WeightsTensor> prefetchedTensors;
+
+	/**
+	 * Prefetches on a pool of daemon threads, one per available processor, which is shut down once all tensors 
+	 * have been submitted.
+	 * 
+	 * @param delegate The loader of the raw weights.
+	 * @param tensors The tensors to prefetch.
+	 */
+	public PrefetchingYOLOv2WeightsLoader(AbstractYOLOv2WeightsLoader delegate, List<YOLOv2WeightsTensor> tensors) {
+		this(delegate, tensors, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Prefetches on a pool of daemon threads which is shut down once all tensors have been submitted.
+	 * 
+	 * @param delegate The loader of the raw weights.
+	 * @param tensors The tensors to prefetch.
+	 * @param parallelism The number of threads on which to prefetch.
+	 */
+	public PrefetchingYOLOv2WeightsLoader(AbstractYOLOv2WeightsLoader delegate, List<YOLOv2WeightsTensor> tensors,
+			int parallelism) {
+		super(delegate.matrixFactory);
+		this.delegate = delegate;
+		ExecutorService executorService = Executors.newFixedThreadPool(parallelism, createThreadFactory());
+		try {
+			prefetch(tensors, executorService);
+		} finally {
+			// Submitted tensors continue to load - no further tasks are accepted
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * @param delegate The loader of the raw weights.
+	 * @param tensors The tensors to prefetch.
+	 * @param executor The executor on which to prefetch - its bound limits the number of concurrent loads.
+	 */
+	public PrefetchingYOLOv2WeightsLoader(AbstractYOLOv2WeightsLoader delegate, List<YOLOv2WeightsTensor> tensors,
+			Executor executor) {
+		super(delegate.matrixFactory);
+		this.delegate = delegate;
+		prefetch(tensors, executor);
+	}
+
+	private void prefetch(List<YOLOv2WeightsTensor> tensors, Executor executor) {
+		LOGGER.debug("Prefetching " + tensors.size() + " weights tensors");
+		prefetchedWeights = new ConcurrentHashMap<>();
+		prefetchedTensors = new ConcurrentHashMap<>();
+		for (YOLOv2WeightsTensor tensor : tensors) {
+			prefetchedTensors.put(tensor.getName(), tensor);
+			prefetchedWeights.put(tensor.getName(), CompletableFuture.supplyAsync(() -> {
+				DefaultYOLOv2TensorLoadEvent event = new DefaultYOLOv2TensorLoadEvent(tensor);
+				return new PrefetchedTensor(delegate.loadWeights(tensor, event), event);
+			}, executor));
+		}
+	}
+
+	private static ThreadFactory createThreadFactory() {
+		AtomicInteger threadCount = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, "yolov2-weights-prefetch-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	@Override
+	protected float[] loadWeights(YOLOv2WeightsTensor tensor, DefaultYOLOv2TensorLoadEvent event) {
+		// Each prefetched tensor is handed out once, so its weights are not retained by this loader
+		CompletableFuture<PrefetchedTensor> weights = prefetchedWeights == null ? null 
+				: prefetchedWeights.remove(tensor.getName());
+		if (weights == null) {
+			return delegate.loadWeights(tensor, event);
+		}
+		if (!tensor.equals(prefetchedTensors.get(tensor.getName()))) {
+			LOGGER.warn("Requested tensor:" + tensor + " does not match prefetched tensor:" 
+					+ prefetchedTensors.get(tensor.getName()));
+			weights.cancel(false);
+			return delegate.loadWeights(tensor, event);
+		}
+		try {
+			PrefetchedTensor prefetchedTensor = weights.join();
+			// The phases were timed on the prefetching thread - the total includes any time spent waiting
+			event.copyLoadDetails(prefetchedTensor.event);
+			return prefetchedTensor.weights;
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * The weights of a prefetched tensor, with the event recording how they were loaded.
+	 */
+	private static class PrefetchedTensor {
+
+		private final float[] weights;
+		private final DefaultYOLOv2TensorLoadEvent event;
+
+		PrefetchedTensor(float[] weights, DefaultYOLOv2TensorLoadEvent event) {
+			this.weights = weights;
+			this.event = event;
+		}
+	}
+}
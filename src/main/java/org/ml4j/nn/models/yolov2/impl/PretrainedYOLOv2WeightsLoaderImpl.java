@@ -17,38 +17,22 @@
 package org.ml4j.nn.models.yolov2.impl;
 
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
-import java.util.Arrays;
 
-import org.ml4j.Matrix;
 import org.ml4j.MatrixFactory;
-import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2WeightsLoader;
-import org.ml4j.nn.axons.BiasFormatImpl;
-import org.ml4j.nn.axons.BiasVector;
-import org.ml4j.nn.axons.BiasVectorImpl;
-import org.ml4j.nn.axons.FeaturesVector;
-import org.ml4j.nn.axons.FeaturesVectorFormatImpl;
-import org.ml4j.nn.axons.FeaturesVectorImpl;
-import org.ml4j.nn.axons.FeaturesVectorOrientation;
-import org.ml4j.nn.axons.WeightsFormatImpl;
-import org.ml4j.nn.axons.WeightsMatrix;
-import org.ml4j.nn.axons.WeightsMatrixImpl;
-import org.ml4j.nn.axons.WeightsMatrixOrientation;
-import org.ml4j.nn.axons.WeightsVector;
-import org.ml4j.nn.axons.WeightsVectorImpl;
-import org.ml4j.nn.neurons.format.features.Dimension;
-import org.ml4j.nn.neurons.format.features.DimensionScope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * @author Michael Lavelle
  */
-public class PretrainedYOLOv2WeightsLoaderImpl implements YOLOv2WeightsLoader {
+public class PretrainedYOLOv2WeightsLoaderImpl extends AbstractYOLOv2WeightsLoader {
 
 	/**
 	 * Default serialization id.
@@ -57,14 +41,31 @@ public class PretrainedYOLOv2WeightsLoaderImpl implements YOLOv2WeightsLoader {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DefaultYOLOv2Factory.class);
 
-	private MatrixFactory matrixFactory;
+	/**
+	 * The version of the yolov2javaweights resources, by which cached weights are keyed.
+	 */
+	public static final String WEIGHTS_VERSION = "yolov2javaweights-1.0.0";
+
 	private ClassLoader classLoader;
 	private long uid;
+	private YOLOv2WeightsCache cache;
 
 	public PretrainedYOLOv2WeightsLoaderImpl(ClassLoader classLoader, MatrixFactory matrixFactory) {
+		this(classLoader, matrixFactory, null);
+	}
+
+	/**
+	 * @param classLoader The class loader of the yolov2javaweights resources, or null to read them from the file system.
+	 * @param matrixFactory The matrix factory.
+	 * @param cache The cache of weights in their final layout, populated on first load and read on later loads, 
+	 * or null for no cache.
+	 */
+	public PretrainedYOLOv2WeightsLoaderImpl(ClassLoader classLoader, MatrixFactory matrixFactory, 
+			YOLOv2WeightsCache cache) {
+		super(matrixFactory);
 		this.uid = ObjectStreamClass.lookup(float[].class).getSerialVersionUID();
 		this.classLoader = classLoader;
-		this.matrixFactory = matrixFactory;
+		this.cache = cache;
 	}
 
 	public static PretrainedYOLOv2WeightsLoaderImpl getLoader(MatrixFactory matrixFactory,
@@ -72,10 +73,26 @@ public class PretrainedYOLOv2WeightsLoaderImpl implements YOLOv2WeightsLoader {
 		return new PretrainedYOLOv2WeightsLoaderImpl(classLoader, matrixFactory);
 	}
 
-	private float[] deserializeWeights(String name) {
+	float[] deserializeWeights(String name) {
+		return deserializeWeights(name, new DefaultYOLOv2TensorLoadEvent(null));
+	}
+
+	private float[] deserializeWeights(String name, DefaultYOLOv2TensorLoadEvent event) {
 		LOGGER.debug("Derializing weights:" + name);
 		try {
-			return deserialize(float[].class, "yolov2javaweights", uid, name);
+			long start = System.nanoTime();
+			try (CountingInputStream is = new CountingInputStream(openResource(float[].class, "yolov2javaweights", 
+					uid, name))) {
+				long deserializeStart = System.nanoTime();
+				try (ObjectInputStream ois = new ObjectInputStream(is)) {
+					float[] weights = (float[]) ois.readObject();
+					event.setSource("resource");
+					event.addResourceOpenNanos(deserializeStart - start);
+					event.addDeserializeNanos(System.nanoTime() - deserializeStart);
+					event.addBytesRead(is.getCount());
+					return weights;
+				}
+			}
 		} catch (ClassNotFoundException e) {
 			throw new RuntimeException(e);
 		} catch (IOException e) {
@@ -83,100 +100,91 @@ public class PretrainedYOLOv2WeightsLoaderImpl implements YOLOv2WeightsLoader {
 		}
 	}
 
-	public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth, int outputDepth) {
-		float[] weights = deserializeWeights(name);
-		// is height, width, inputDepth * outputDepth
-		// want outputDepth * inputDepth, height, width.
-		Matrix weightsMatrix1 =  matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, width * height * inputDepth, weights);
-
-		
-		// This is outputDepth * height, width, inputDepth
-		Matrix weightsMatrix =  matrixFactory.createMatrixFromRowsByRowsArray(width * height * inputDepth, outputDepth, weights).transpose();
-		Matrix outputWeights = matrixFactory.createMatrix(weightsMatrix.getRows(), weightsMatrix.getColumns());
-		for (int r = 0; r < weightsMatrix.getRows(); r++) {
-			
-			// height, width, inputdepth
-			Matrix rowData = weightsMatrix.getRow(r);
-			rowData.asEditableMatrix().reshape(inputDepth, height * width);
-			Matrix rowData2 = matrixFactory.createMatrix(rowData.getRows(), rowData.getColumns());
-			for (int i = 0; i < rowData.getRows(); i++) {
-				Matrix d = rowData.getRow(i);
-				d.asEditableMatrix().reshape(height, width);
-				d = d.transpose();
-				rowData2.asEditableMatrix().putRow(i, d);
+	@Override
+	protected float[] loadWeights(YOLOv2WeightsTensor tensor, DefaultYOLOv2TensorLoadEvent event) {
+		long start = System.nanoTime();
+		float[] weights = cache == null ? null : cache.get(tensor);
+		if (weights == null) {
+			// The serialized weights are already in the ml4j layout - for convolutional layers 
+			// outputDepth * inputDepth * height * width - so are used as they are.
+			weights = deserializeWeights(tensor.getName(), event);
+			if (weights.length != tensor.getElementCount()) {
+				throw new IllegalStateException("Expected " + tensor.getElementCount() + " values for " + tensor 
+						+ " but found " + weights.length);
+			}
+			if (cache != null) {
+				cache.put(tensor, weights);
 			}
-
-
-			outputWeights.asEditableMatrix().putRow(r, rowData2);
-			
-		}
-		boolean oneByOneConvolution = width == 1 && height == 1;
-		if (oneByOneConvolution) {
-			return new WeightsMatrixImpl(weightsMatrix1,
-					new WeightsFormatImpl(Arrays.asList(Dimension.INPUT_DEPTH), 
-							Arrays.asList(Dimension.OUTPUT_DEPTH), WeightsMatrixOrientation.ROWS_SPAN_OUTPUT_DIMENSIONS));
 		} else {
-			return new WeightsMatrixImpl(weightsMatrix1,
-					new WeightsFormatImpl(Arrays.asList(Dimension.INPUT_DEPTH, Dimension.FILTER_HEIGHT, Dimension.FILTER_WIDTH), 
-							Arrays.asList(Dimension.OUTPUT_DEPTH), WeightsMatrixOrientation.ROWS_SPAN_OUTPUT_DIMENSIONS));
+			LOGGER.debug("Loaded cached weights:" + tensor.getName());
+			event.setSource("cache");
+			event.addDeserializeNanos(System.nanoTime() - start);
+			event.addBytesRead(4L * weights.length);
 		}
-	}
-
-	public WeightsVector getBatchNormLayerGamma(String name, int outputDepth) {
-		float[] weights = deserializeWeights(name);
-		return new WeightsVectorImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
-				new FeaturesVectorFormatImpl(Arrays.asList(Dimension.OUTPUT_DEPTH), FeaturesVectorOrientation.COLUMN_VECTOR,
-						DimensionScope.OUTPUT));
+		return weights;
 	}
 
 	@SuppressWarnings("unchecked")
 	public <S extends Serializable> S deserialize(Class<S> clazz, String path, long uid, String id)
 			throws IOException, ClassNotFoundException {
+		try (InputStream is = openResource(clazz, path, uid, id)) {
+			try (ObjectInputStream ois = new ObjectInputStream(is)) {
+				return (S) ois.readObject();
+			}
+		}
+	}
 
+	private InputStream openResource(Class<?> clazz, String path, long uid, String id) throws IOException {
+		String resourcePath = path + "/" + clazz.getName() + "/" + uid + "/" + id + ".ser";
 		if (classLoader == null) {
-			try (InputStream is = new FileInputStream(path + "/" + clazz.getName() + "/" + uid + "/" + id + ".ser")) {
-				try (ObjectInputStream ois = new ObjectInputStream(is)) {
-					return (S) ois.readObject();
-				}
-			}
+			return new FileInputStream(resourcePath);
 		} else {
-			try (InputStream is = classLoader
-					.getResourceAsStream(path + "/" + clazz.getName() + "/" + uid + "/" + id + ".ser")) {
-				try (ObjectInputStream ois = new ObjectInputStream(is)) {
-					return (S) ois.readObject();
-				}
+			InputStream is = classLoader.getResourceAsStream(resourcePath);
+			if (is == null) {
+				throw new FileNotFoundException("Weights resource not found:" + resourcePath);
 			}
-
+			return is;
 		}
 	}
 
-	@Override
-	public FeaturesVector getBatchNormLayerMovingVariance(String name, int outputDepth) {
-		float[] weights = deserializeWeights(name);
-		return new FeaturesVectorImpl( matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
-				new FeaturesVectorFormatImpl(Arrays.asList(Dimension.OUTPUT_DEPTH), FeaturesVectorOrientation.COLUMN_VECTOR,
-						DimensionScope.OUTPUT));
-	}
+	/**
+	 * Counts the bytes read from a resource.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
 
-	@Override
-	public FeaturesVector getBatchNormLayerMovingMean(String name, int outputDepth) {
-		float[] weights = deserializeWeights(name);
-		return new FeaturesVectorImpl( matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
-				new FeaturesVectorFormatImpl(Arrays.asList(Dimension.OUTPUT_DEPTH), FeaturesVectorOrientation.COLUMN_VECTOR,
-						DimensionScope.OUTPUT));
-	}
+		private long count;
 
-	@Override
-	public BiasVector getBatchNormLayerBeta(String name, int outputDepth) {
-		float[] weights = deserializeWeights(name);
-		return new BiasVectorImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
-				new BiasFormatImpl(Dimension.OUTPUT_DEPTH, FeaturesVectorOrientation.COLUMN_VECTOR));
-	}
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
 
-	@Override
-	public BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
-		float[] weights = deserializeWeights(name);
-		return new BiasVectorImpl(matrixFactory.createMatrixFromRowsByRowsArray(outputDepth, 1, weights),
-				new BiasFormatImpl(Dimension.OUTPUT_DEPTH, FeaturesVectorOrientation.COLUMN_VECTOR));
+		@Override
+		public int read() throws IOException {
+			int value = super.read();
+			if (value >= 0) {
+				count++;
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		long getCount() {
+			return count;
+		}
 	}
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2WeightsLoader;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.axons.WeightsVector;
+
+/**
+ * A YOLOv2WeightsLoader decorator which records the tensors requested of it, in request order, before delegating.
+ * 
+ * Building a network with this loader captures the manifest of tensors required by the network - their names, 
+ * kinds and shapes - in graph order.
+ * 
+ * @author Michael Lavelle
+ */
+public class RecordingYOLOv2WeightsLoader implements YOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private YOLOv2WeightsLoader delegate;
+	private List<YOLOv2WeightsTensor> tensors;
+
+	public RecordingYOLOv2WeightsLoader(YOLOv2WeightsLoader delegate) {
+		this.delegate = delegate;
+		this.tensors = new ArrayList<>();
+	}
+
+	/**
+	 * @return The tensors requested so far, in request order.
+	 */
+	public synchronized List<YOLOv2WeightsTensor> getTensors() {
+		return Collections.unmodifiableList(new ArrayList<>(tensors));
+	}
+
+	private synchronized void record(YOLOv2WeightsTensor tensor) {
+		tensors.add(tensor);
+	}
+
+	@Override
+	public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth, int outputDepth) {
+		record(YOLOv2WeightsTensor.convolutionalWeights(name, width, height, inputDepth, outputDepth));
+		return delegate.getConvolutionalLayerWeights(name, width, height, inputDepth, outputDepth);
+	}
+
+	@Override
+	public WeightsVector getBatchNormLayerGamma(String name, int outputDepth) {
+		record(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_GAMMA, name, outputDepth));
+		return delegate.getBatchNormLayerGamma(name, outputDepth);
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingVariance(String name, int outputDepth) {
+		record(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_VARIANCE, name, outputDepth));
+		return delegate.getBatchNormLayerMovingVariance(name, outputDepth);
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingMean(String name, int outputDepth) {
+		record(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_MEAN, name, outputDepth));
+		return delegate.getBatchNormLayerMovingMean(name, outputDepth);
+	}
+
+	@Override
+	public BiasVector getBatchNormLayerBeta(String name, int outputDepth) {
+		record(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_BETA, name, outputDepth));
+		return delegate.getBatchNormLayerBeta(name, outputDepth);
+	}
+
+	@Override
+	public BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
+		record(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_BIASES, name, outputDepth));
+		return delegate.getConvolutionalLayerBiases(name, outputDepth);
+	}
+}
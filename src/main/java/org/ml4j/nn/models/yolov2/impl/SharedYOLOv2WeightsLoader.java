@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2WeightsLoader;
+import org.ml4j.nn.axons.BiasVector;
+import org.ml4j.nn.axons.FeaturesVector;
+import org.ml4j.nn.axons.WeightsMatrix;
+import org.ml4j.nn.axons.WeightsVector;
+
+/**
+ * A YOLOv2WeightsLoader decorator which loads each tensor once, and returns the same weights instance to every 
+ * network built with it - so that any number of networks share a single copy of the weights.
+ * 
+ * The shared weights must not be modified, so networks built with this loader are for prediction only.
+ * 
+ * @author Michael Lavelle
+ */
+public class SharedYOLOv2WeightsLoader implements YOLOv2WeightsLoader {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private YOLOv2WeightsLoader delegate;
+	private Map<YOLOv2WeightsTensor, Object> weights;
+
+	public SharedYOLOv2WeightsLoader(YOLOv2WeightsLoader delegate) {
+		this.delegate = delegate;
+		this.weights = new ConcurrentHashMap<>();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <W> W getWeights(YOLOv2WeightsTensor tensor, Supplier<W> loader) {
+		return (W) weights.computeIfAbsent(tensor, t -> loader.get());
+	}
+
+	@Override
+	public WeightsMatrix getConvolutionalLayerWeights(String name, int width, int height, int inputDepth, int outputDepth) {
+		return getWeights(YOLOv2WeightsTensor.convolutionalWeights(name, width, height, inputDepth, outputDepth),
+				() -> delegate.getConvolutionalLayerWeights(name, width, height, inputDepth, outputDepth));
+	}
+
+	@Override
+	public WeightsVector getBatchNormLayerGamma(String name, int outputDepth) {
+		return getWeights(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_GAMMA, name, outputDepth),
+				() -> delegate.getBatchNormLayerGamma(name, outputDepth));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingVariance(String name, int outputDepth) {
+		return getWeights(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_VARIANCE, name, 
+				outputDepth), () -> delegate.getBatchNormLayerMovingVariance(name, outputDepth));
+	}
+
+	@Override
+	public FeaturesVector getBatchNormLayerMovingMean(String name, int outputDepth) {
+		return getWeights(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_MEAN, name, 
+				outputDepth), () -> delegate.getBatchNormLayerMovingMean(name, outputDepth));
+	}
+
+	@Override
+	public BiasVector getBatchNormLayerBeta(String name, int outputDepth) {
+		return getWeights(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_BETA, name, outputDepth),
+				() -> delegate.getBatchNormLayerBeta(name, outputDepth));
+	}
+
+	@Override
+	public BiasVector getConvolutionalLayerBiases(String name, int outputDepth) {
+		return getWeights(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_BIASES, name, outputDepth),
+				() -> delegate.getConvolutionalLayerBiases(name, outputDepth));
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.Arrays;
+
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+
+/**
+ * A subset of the classes of a YOLO v2 network to be detected, each with its own score threshold.
+ * 
+ * When decoding with a class subset the predicted class of a box is the highest scoring class of the subset whose 
+ * score exceeds its threshold - the scores of other classes are not computed, and cells with no such class are 
+ * rejected before any box is created. A class added without a threshold uses the score threshold of the decode.
+ * 
+ * A subset must not be modified once it is in use by a decoder.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2ClassSubset {
+
+	private int[] classIndexes;
+	private float[] scoreThresholds;
+
+	public YOLOv2ClassSubset() {
+		this.classIndexes = new int[0];
+		this.scoreThresholds = new float[0];
+	}
+
+	/**
+	 * @param classIndex The index of the class.
+	 * @return This subset.
+	 */
+	public YOLOv2ClassSubset withClass(int classIndex) {
+		return withClass(classIndex, Float.NaN);
+	}
+
+	/**
+	 * @param classIndex The index of the class.
+	 * @param scoreThreshold The score threshold of the class.
+	 * @return This subset.
+	 */
+	public YOLOv2ClassSubset withClass(int classIndex, float scoreThreshold) {
+		if (classIndex < 0) {
+			throw new IllegalArgumentException("Index of:" + classIndex + " is out of range");
+		}
+		for (int i = 0; i < classIndexes.length; i++) {
+			if (classIndexes[i] == classIndex) {
+				scoreThresholds[i] = scoreThreshold;
+				return this;
+			}
+		}
+		classIndexes = Arrays.copyOf(classIndexes, classIndexes.length + 1);
+		scoreThresholds = Arrays.copyOf(scoreThresholds, scoreThresholds.length + 1);
+		classIndexes[classIndexes.length - 1] = classIndex;
+		scoreThresholds[scoreThresholds.length - 1] = scoreThreshold;
+		return this;
+	}
+
+	/**
+	 * @param labels The labels of the network.
+	 * @param label The label of the class.
+	 * @return This subset.
+	 * @throws IllegalArgumentException If there is no such label.
+	 */
+	public YOLOv2ClassSubset withClass(YOLOv2Labels labels, String label) {
+		return withClass(getLabelIndex(labels, label));
+	}
+
+	/**
+	 * @param labels The labels of the network.
+	 * @param label The label of the class.
+	 * @param scoreThreshold The score threshold of the class.
+	 * @return This subset.
+	 * @throws IllegalArgumentException If there is no such label.
+	 */
+	public YOLOv2ClassSubset withClass(YOLOv2Labels labels, String label, float scoreThreshold) {
+		return withClass(getLabelIndex(labels, label), scoreThreshold);
+	}
+
+	private static int getLabelIndex(YOLOv2Labels labels, String label) {
+		int classIndex = labels.getLabelIndex(label);
+		if (classIndex < 0) {
+			throw new IllegalArgumentException("Label of:" + label + " is not known");
+		}
+		return classIndex;
+	}
+
+	/**
+	 * @return The indexes of the classes of this subset.
+	 */
+	public int[] getClassIndexes() {
+		return classIndexes.clone();
+	}
+
+	/**
+	 * @param classIndex The index of a class of this subset.
+	 * @param defaultScoreThreshold The score threshold of classes added without a threshold.
+	 * @return The score threshold of the class.
+	 */
+	public float getScoreThreshold(int classIndex, float defaultScoreThreshold) {
+		for (int i = 0; i < classIndexes.length; i++) {
+			if (classIndexes[i] == classIndex) {
+				return Float.isNaN(scoreThresholds[i]) ? defaultScoreThreshold : scoreThresholds[i];
+			}
+		}
+		throw new IllegalArgumentException("Class of index:" + classIndex + " is not in the subset");
+	}
+
+	public int size() {
+		return classIndexes.length;
+	}
+
+	int getClassIndex(int position) {
+		return classIndexes[position];
+	}
+
+	float getScoreThresholdAt(int position, float defaultScoreThreshold) {
+		float scoreThreshold = scoreThresholds[position];
+		return scoreThreshold != scoreThreshold ? defaultScoreThreshold : scoreThreshold;
+	}
+
+	/**
+	 * @return The lowest score threshold of the classes of this subset.
+	 */
+	float getMinimumScoreThreshold(float defaultScoreThreshold) {
+		float minimum = Float.POSITIVE_INFINITY;
+		for (int i = 0; i < classIndexes.length; i++) {
+			minimum = Math.min(minimum, getScoreThresholdAt(i, defaultScoreThreshold));
+		}
+		return minimum;
+	}
+
+	@Override
+	public String toString() {
+		return "YOLOv2ClassSubset [classIndexes=" + Arrays.toString(classIndexes) + ", scoreThresholds=" 
+				+ Arrays.toString(scoreThresholds) + "]";
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+/**
+ * Cell counts accumulated over one or more fused decode and score filter operations of a YOLOv2OutputDecoder.
+ * 
+ * Not thread-safe - each thread should record into its own instance.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2DecodeStatistics {
+
+	private long cellCount;
+	private long prunedCellCount;
+	private long candidateCount;
+
+	void record(int cellCount, int prunedCellCount, int candidateCount) {
+		this.cellCount += cellCount;
+		this.prunedCellCount += prunedCellCount;
+		this.candidateCount += candidateCount;
+	}
+
+	/**
+	 * @return The number of anchor cells considered.
+	 */
+	public long getCellCount() {
+		return cellCount;
+	}
+
+	/**
+	 * @return The number of anchor cells rejected on objectness alone, before any softmax was computed.
+	 */
+	public long getPrunedCellCount() {
+		return prunedCellCount;
+	}
+
+	/**
+	 * @return The number of candidate bounding boxes with a score above the threshold.
+	 */
+	public long getCandidateCount() {
+		return candidateCount;
+	}
+
+	public void reset() {
+		cellCount = 0;
+		prunedCellCount = 0;
+		candidateCount = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "YOLOv2DecodeStatistics [cellCount=" + cellCount + ", prunedCellCount=" + prunedCellCount
+				+ ", candidateCount=" + candidateCount + "]";
+	}
+}
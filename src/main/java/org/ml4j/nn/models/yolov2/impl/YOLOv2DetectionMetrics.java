@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ml4j.nn.models.yolov2.YOLOv2MetricsSink;
+
+/**
+ * A YOLOv2MetricsSink holding a latency histogram and an image count for each stage, and totals of the cells and 
+ * boxes handled, from which latency percentiles and throughput are reported.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2DetectionMetrics implements YOLOv2MetricsSink {
+
+	private Map<Stage, YOLOv2LatencyHistogram> histograms;
+	private Map<Stage, LongAdder> exampleCounts;
+	private LongAdder countedExampleCount;
+	private LongAdder cellCount;
+	private LongAdder prunedCellCount;
+	private LongAdder candidateCount;
+	private LongAdder detectionCount;
+	private volatile long startNanos;
+
+	public YOLOv2DetectionMetrics() {
+		this.histograms = new EnumMap<>(Stage.class);
+		this.exampleCounts = new EnumMap<>(Stage.class);
+		for (Stage stage : Stage.values()) {
+			histograms.put(stage, new YOLOv2LatencyHistogram());
+			exampleCounts.put(stage, new LongAdder());
+		}
+		this.countedExampleCount = new LongAdder();
+		this.cellCount = new LongAdder();
+		this.prunedCellCount = new LongAdder();
+		this.candidateCount = new LongAdder();
+		this.detectionCount = new LongAdder();
+		this.startNanos = System.nanoTime();
+	}
+
+	@Override
+	public void recordLatency(Stage stage, long nanos, int exampleCount) {
+		histograms.get(stage).record(nanos);
+		exampleCounts.get(stage).add(exampleCount);
+	}
+
+	@Override
+	public void recordCounts(int cellCount, int prunedCellCount, int candidateCount, int detectionCount) {
+		this.countedExampleCount.increment();
+		this.cellCount.add(cellCount);
+		this.prunedCellCount.add(prunedCellCount);
+		this.candidateCount.add(candidateCount);
+		this.detectionCount.add(detectionCount);
+	}
+
+	/**
+	 * @param stage The stage.
+	 * @return The histogram of the latencies of the stage.
+	 */
+	public YOLOv2LatencyHistogram getHistogram(Stage stage) {
+		return histograms.get(stage);
+	}
+
+	/**
+	 * @param stage The stage.
+	 * @return The number of images handled by the stage.
+	 */
+	public long getExampleCount(Stage stage) {
+		return exampleCounts.get(stage).sum();
+	}
+
+	/**
+	 * @param stage The stage.
+	 * @return The number of images handled by the stage per second since creation or the last reset.
+	 */
+	public double getThroughput(Stage stage) {
+		long elapsedNanos = System.nanoTime() - startNanos;
+		return elapsedNanos <= 0 ? 0 : getExampleCount(stage) * 1e9 / elapsedNanos;
+	}
+
+	public long getCellCount() {
+		return cellCount.sum();
+	}
+
+	public long getPrunedCellCount() {
+		return prunedCellCount.sum();
+	}
+
+	public long getCandidateCount() {
+		return candidateCount.sum();
+	}
+
+	public long getDetectionCount() {
+		return detectionCount.sum();
+	}
+
+	/**
+	 * Clears all metrics, and restarts the measurement of throughput.
+	 */
+	public void reset() {
+		for (Stage stage : Stage.values()) {
+			histograms.get(stage).reset();
+			exampleCounts.get(stage).reset();
+		}
+		countedExampleCount.reset();
+		cellCount.reset();
+		prunedCellCount.reset();
+		candidateCount.reset();
+		detectionCount.reset();
+		startNanos = System.nanoTime();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder summary = new StringBuilder("Yolo V2 detection metrics:");
+		for (Stage stage : Stage.values()) {
+			YOLOv2LatencyHistogram histogram = histograms.get(stage);
+			if (histogram.getCount() > 0) {
+				summary.append(String.format("%n  %s: %d calls, %d images, %.1f images/s, mean %dus, p50 %dus, "
+						+ "p99 %dus, p99.9 %dus, max %dus", stage, histogram.getCount(), getExampleCount(stage), 
+						getThroughput(stage), TimeUnit.NANOSECONDS.toMicros((long) histogram.getMean()), 
+						TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(50)), 
+						TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(99)), 
+						TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(99.9)), 
+						TimeUnit.NANOSECONDS.toMicros(histogram.getMax())));
+			}
+		}
+		long examples = countedExampleCount.sum();
+		if (examples > 0) {
+			summary.append(String.format("%n  per image: %.1f cells, %.1f pruned on objectness, %.1f candidates, "
+					+ "%.1f detections", (double) getCellCount() / examples, (double) getPrunedCellCount() / examples, 
+					(double) getCandidateCount() / examples, (double) getDetectionCount() / examples));
+		}
+		return summary.toString();
+	}
+}
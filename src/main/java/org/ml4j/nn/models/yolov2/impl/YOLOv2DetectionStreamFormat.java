@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+/**
+ * The layout of a binary YOLO v2 detection stream - a header followed by one record per frame. All values are 
+ * little-endian.
+ * 
+ * Header : magic (int), version (int), width (int), height (int), input width (int), input height (int) - the 
+ * dimensions of the image in whose pixel coordinates the corners are held, then those of the network input image
+ * 
+ * Record, per frame : frame id (long), timestamp (long), detection count (int), then per detection : predicted 
+ * class index (short), predicted class score (float), min y, min x, max y, max x (float * 4)
+ * 
+ * @author Michael Lavelle
+ */
+final class YOLOv2DetectionStreamFormat {
+
+	static final int MAGIC = 0x44325759;
+	static final int VERSION = 1;
+	static final int HEADER_LENGTH = 24;
+	static final int RECORD_HEADER_LENGTH = 20;
+	static final int DETECTION_LENGTH = 22;
+
+	private YOLOv2DetectionStreamFormat() {
+	}
+
+	/**
+	 * @return The length in bytes of a record of the number of detections.
+	 */
+	static int getRecordLength(int detectionCount) {
+		return RECORD_HEADER_LENGTH + DETECTION_LENGTH * detectionCount;
+	}
+}
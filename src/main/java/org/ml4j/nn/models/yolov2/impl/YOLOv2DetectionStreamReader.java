@@ -0,0 +1,306 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.Detections;
+
+/**
+ * Reads a binary YOLO v2 detection stream, as written by YOLOv2DetectionStreamWriter, directly from a ByteBuffer - 
+ * for example a memory-mapped log of detections - without copying.
+ * 
+ * The reader steps through the records of the stream with next(), and is itself the Detections of the current 
+ * record, read on demand from the buffer. BoundingBox views obtained from the reader remain views of their own 
+ * record after the reader moves on. A trailing record which is incomplete, as when reading a log which is still 
+ * being written, is not read.
+ * 
+ * Corners are held in the stream as pixel coordinates of a getWidth() * getHeight() image, as returned by getCorner, 
+ * and are converted to pixel coordinates of the network input image by the getScaledCorners methods without 
+ * dimensions, as for any other Detections.
+ * 
+ * A reader is not thread-safe.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2DetectionStreamReader implements Detections {
+
+	private ByteBuffer buffer;
+	private int width;
+	private int height;
+	private int inputWidth;
+	private int inputHeight;
+	private int recordPosition;
+	private int nextRecordPosition;
+	private long frameId;
+	private long timestamp;
+	private int size;
+
+	/**
+	 * @param buffer The buffer, from its position, which is not modified.
+	 * @throws IOException If the buffer does not start with the header of a detection stream.
+	 */
+	public YOLOv2DetectionStreamReader(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (this.buffer.remaining() < YOLOv2DetectionStreamFormat.HEADER_LENGTH 
+				|| this.buffer.getInt(0) != YOLOv2DetectionStreamFormat.MAGIC) {
+			throw new IOException("Not a YOLO v2 detection stream");
+		}
+		int version = this.buffer.getInt(4);
+		if (version != YOLOv2DetectionStreamFormat.VERSION) {
+			throw new IOException("Unsupported YOLO v2 detection stream version:" + version);
+		}
+		this.width = this.buffer.getInt(8);
+		this.height = this.buffer.getInt(12);
+		this.inputWidth = this.buffer.getInt(16);
+		this.inputHeight = this.buffer.getInt(20);
+		this.recordPosition = -1;
+		this.nextRecordPosition = YOLOv2DetectionStreamFormat.HEADER_LENGTH;
+	}
+
+	/**
+	 * @param path The path of a detection stream file.
+	 * @return A reader over the memory-mapped file.
+	 * @throws IOException If the file cannot be mapped or is not a detection stream.
+	 */
+	public static YOLOv2DetectionStreamReader open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Detection stream is too large to map:" + path);
+			}
+			// The mapping remains valid after the channel is closed
+			return new YOLOv2DetectionStreamReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * @return The width of the image in whose pixel coordinates the corners are held.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of the image in whose pixel coordinates the corners are held.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return The width of the network input image.
+	 */
+	public int getInputWidth() {
+		return inputWidth;
+	}
+
+	/**
+	 * @return The height of the network input image.
+	 */
+	public int getInputHeight() {
+		return inputHeight;
+	}
+
+	/**
+	 * Moves to the next record.
+	 * 
+	 * @return Whether there is a next record - if not, the reader remains on the current record.
+	 */
+	public boolean next() {
+		int limit = buffer.limit();
+		if (limit - nextRecordPosition < YOLOv2DetectionStreamFormat.RECORD_HEADER_LENGTH) {
+			return false;
+		}
+		int count = buffer.getInt(nextRecordPosition + 16);
+		if (count < 0 || limit - nextRecordPosition < YOLOv2DetectionStreamFormat.getRecordLength(count)) {
+			return false;
+		}
+		recordPosition = nextRecordPosition;
+		frameId = buffer.getLong(recordPosition);
+		timestamp = buffer.getLong(recordPosition + 8);
+		size = count;
+		nextRecordPosition = recordPosition + YOLOv2DetectionStreamFormat.getRecordLength(count);
+		return true;
+	}
+
+	/**
+	 * @return The id of the frame of the current record.
+	 */
+	public long getFrameId() {
+		checkRecord();
+		return frameId;
+	}
+
+	/**
+	 * @return The timestamp of the frame of the current record.
+	 */
+	public long getTimestamp() {
+		checkRecord();
+		return timestamp;
+	}
+
+	@Override
+	public int size() {
+		checkRecord();
+		return size;
+	}
+
+	@Override
+	public int getPredictedClassIndex(int detection) {
+		return buffer.getShort(getDetectionPosition(detection));
+	}
+
+	@Override
+	public float getPredictedClassScore(int detection) {
+		return buffer.getFloat(getDetectionPosition(detection) + 2);
+	}
+
+	/**
+	 * @param detection The index of the detection.
+	 * @param corner The index of the corner value - 0 for min y, 1 for min x, 2 for max y and 3 for max x.
+	 * @return The corner value, as a pixel coordinate of a getWidth() * getHeight() image.
+	 */
+	public float getCorner(int detection, int corner) {
+		if (corner < 0 || corner > 3) {
+			throw new IndexOutOfBoundsException("Corner of:" + corner + " is out of range");
+		}
+		return buffer.getFloat(getDetectionPosition(detection) + 6 + 4 * corner);
+	}
+
+	@Override
+	public boolean hasClassProbabilities() {
+		return false;
+	}
+
+	@Override
+	public void getClassProbabilities(int detection, float[] classProbabilities) {
+		throw new IllegalStateException("Class probabilities are not held by a detection stream");
+	}
+
+	@Override
+	public void getScaledCorners(float[] corners) {
+		getScaledCorners(inputWidth, inputHeight, corners);
+	}
+
+	@Override
+	public void getScaledCorners(int width, int height, float[] corners) {
+		checkRecord();
+		for (int detection = 0; detection < size; detection++) {
+			readScaledCorners(getDetectionPosition(detection), width, height, corners, detection * 4);
+		}
+	}
+
+	/**
+	 * Reads the corners of the detection at the position, converting them from pixel coordinates of the stream 
+	 * image to pixel coordinates of a width * height image.
+	 */
+	private void readScaledCorners(int position, int width, int height, float[] corners, int offset) {
+		corners[offset] = buffer.getFloat(position + 6) * height / this.height;
+		corners[offset + 1] = buffer.getFloat(position + 10) * width / this.width;
+		corners[offset + 2] = buffer.getFloat(position + 14) * height / this.height;
+		corners[offset + 3] = buffer.getFloat(position + 18) * width / this.width;
+	}
+
+	@Override
+	public BoundingBox get(int detection) {
+		return new RecordBoundingBox(getDetectionPosition(detection));
+	}
+
+	@Override
+	public List<BoundingBox> asBoundingBoxes() {
+		checkRecord();
+		int firstDetectionPosition = recordPosition + YOLOv2DetectionStreamFormat.RECORD_HEADER_LENGTH;
+		int recordSize = size;
+		return new AbstractList<BoundingBox>() {
+
+			@Override
+			public BoundingBox get(int index) {
+				if (index < 0 || index >= recordSize) {
+					throw new IndexOutOfBoundsException("Index of:" + index + " is out of range");
+				}
+				return new RecordBoundingBox(firstDetectionPosition 
+						+ index * YOLOv2DetectionStreamFormat.DETECTION_LENGTH);
+			}
+
+			@Override
+			public int size() {
+				return recordSize;
+			}
+		};
+	}
+
+	private void checkRecord() {
+		if (recordPosition < 0) {
+			throw new IllegalStateException("No current record - next() has not returned true");
+		}
+	}
+
+	private int getDetectionPosition(int detection) {
+		checkRecord();
+		if (detection < 0 || detection >= size) {
+			throw new IndexOutOfBoundsException("Index of:" + detection + " is out of range");
+		}
+		return recordPosition + YOLOv2DetectionStreamFormat.RECORD_HEADER_LENGTH 
+				+ detection * YOLOv2DetectionStreamFormat.DETECTION_LENGTH;
+	}
+
+	/**
+	 * A BoundingBox view over a single detection of the stream.
+	 */
+	private class RecordBoundingBox implements BoundingBox {
+
+		private final int position;
+
+		RecordBoundingBox(int position) {
+			this.position = position;
+		}
+
+		@Override
+		public int getPredictedClassIndex() {
+			return buffer.getShort(position);
+		}
+
+		@Override
+		public float getPredictedClassScore() {
+			return buffer.getFloat(position + 2);
+		}
+
+		@Override
+		public float[] getScaledCorners(int width, int height) {
+			float[] corners = new float[4];
+			readScaledCorners(position, width, height, corners, 0);
+			return corners;
+		}
+
+		@Override
+		public float[] getScaledCorners() {
+			return getScaledCorners(inputWidth, inputHeight);
+		}
+
+		@Override
+		public void getScaledCorners(int width, int height, float[] corners, int offset) {
+			readScaledCorners(position, width, height, corners, offset);
+		}
+	}
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.Detections;
+
+/**
+ * Writes detections as a binary YOLO v2 detection stream, as described by YOLOv2DetectionStreamFormat, either into 
+ * caller-supplied ByteBuffers or to a channel such as a FileChannel, for example as a log of detections.
+ * 
+ * Detections are encoded directly from their primitive arrays through a scratch buffer of corners which is reused 
+ * across frames, so no objects are allocated per detection. Corners are written as pixel coordinates of a 
+ * width * height image, and the dimensions of the network input image are recorded in the header so that readers 
+ * can present the corners in either coordinate space.
+ * 
+ * A writer is not thread-safe.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2DetectionStreamWriter implements Closeable {
+
+	private static final int DEFAULT_CHANNEL_BUFFER_LENGTH = 1 << 16;
+
+	private int width;
+	private int height;
+	private int inputWidth;
+	private int inputHeight;
+	private float[] corners;
+	private WritableByteChannel channel;
+	private ByteBuffer channelBuffer;
+
+	/**
+	 * Creates a writer into caller-supplied ByteBuffers, of detections of a network with the default 608 * 608 
+	 * input image.
+	 * 
+	 * @param width The width of the image in whose pixel coordinates the corners are written.
+	 * @param height The height of the image in whose pixel coordinates the corners are written.
+	 */
+	public YOLOv2DetectionStreamWriter(int width, int height) {
+		this(width, height, DefaultYOLOv2Config.DEFAULT_INPUT_SIZE, DefaultYOLOv2Config.DEFAULT_INPUT_SIZE);
+	}
+
+	/**
+	 * Creates a writer into caller-supplied ByteBuffers.
+	 * 
+	 * @param width The width of the image in whose pixel coordinates the corners are written.
+	 * @param height The height of the image in whose pixel coordinates the corners are written.
+	 * @param inputWidth The width of the network input image.
+	 * @param inputHeight The height of the network input image.
+	 */
+	public YOLOv2DetectionStreamWriter(int width, int height, int inputWidth, int inputHeight) {
+		this.width = width;
+		this.height = height;
+		this.inputWidth = inputWidth;
+		this.inputHeight = inputHeight;
+		this.corners = new float[64];
+	}
+
+	/**
+	 * Creates a writer to a channel, of detections of a network with the default 608 * 608 input image, writing 
+	 * the header of the stream. Records are buffered, and written to the channel when the buffer is full, on flush 
+	 * and on close.
+	 * 
+	 * @param channel The channel.
+	 * @param width The width of the image in whose pixel coordinates the corners are written.
+	 * @param height The height of the image in whose pixel coordinates the corners are written.
+	 * @throws IOException If the header cannot be written.
+	 */
+	public YOLOv2DetectionStreamWriter(WritableByteChannel channel, int width, int height) throws IOException {
+		this(channel, width, height, DefaultYOLOv2Config.DEFAULT_INPUT_SIZE, DefaultYOLOv2Config.DEFAULT_INPUT_SIZE);
+	}
+
+	/**
+	 * Creates a writer to a channel, writing the header of the stream. Records are buffered, and written to the 
+	 * channel when the buffer is full, on flush and on close.
+	 * 
+	 * @param channel The channel.
+	 * @param width The width of the image in whose pixel coordinates the corners are written.
+	 * @param height The height of the image in whose pixel coordinates the corners are written.
+	 * @param inputWidth The width of the network input image.
+	 * @param inputHeight The height of the network input image.
+	 * @throws IOException If the header cannot be written.
+	 */
+	public YOLOv2DetectionStreamWriter(WritableByteChannel channel, int width, int height, int inputWidth, 
+			int inputHeight) throws IOException {
+		this(width, height, inputWidth, inputHeight);
+		this.channel = channel;
+		this.channelBuffer = ByteBuffer.allocateDirect(DEFAULT_CHANNEL_BUFFER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		writeHeader(channelBuffer);
+	}
+
+	/**
+	 * @return The length in bytes of the header of a stream.
+	 */
+	public static int getHeaderLength() {
+		return YOLOv2DetectionStreamFormat.HEADER_LENGTH;
+	}
+
+	/**
+	 * @param detectionCount The number of detections of a frame.
+	 * @return The length in bytes of the record of the frame.
+	 */
+	public static int getRecordLength(int detectionCount) {
+		return YOLOv2DetectionStreamFormat.getRecordLength(detectionCount);
+	}
+
+	/**
+	 * Writes the header of the stream at the position of the target, advancing its position.
+	 * 
+	 * @param target The target buffer.
+	 * @throws BufferOverflowException If the header does not fit within the remaining bytes of the target.
+	 */
+	public void writeHeader(ByteBuffer target) {
+		checkRemaining(target, YOLOv2DetectionStreamFormat.HEADER_LENGTH);
+		ByteBuffer buffer = target.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(YOLOv2DetectionStreamFormat.MAGIC);
+		buffer.putInt(YOLOv2DetectionStreamFormat.VERSION);
+		buffer.putInt(width);
+		buffer.putInt(height);
+		buffer.putInt(inputWidth);
+		buffer.putInt(inputHeight);
+		target.position(buffer.position());
+	}
+
+	/**
+	 * Writes the record of a frame at the position of the target, advancing its position.
+	 * 
+	 * @param target The target buffer.
+	 * @param frameId The id of the frame.
+	 * @param timestamp The timestamp of the frame.
+	 * @param detections The detections of the frame.
+	 * @throws BufferOverflowException If the record does not fit within the remaining bytes of the target, in 
+	 * which case nothing is written.
+	 */
+	public void write(ByteBuffer target, long frameId, long timestamp, Detections detections) {
+		int count = detections.size();
+		checkRemaining(target, YOLOv2DetectionStreamFormat.getRecordLength(count));
+		ensureCorners(count);
+		detections.getScaledCorners(width, height, corners);
+		ByteBuffer buffer = writeRecordHeader(target, frameId, timestamp, count);
+		for (int detection = 0; detection < count; detection++) {
+			writeDetection(buffer, detections.getPredictedClassIndex(detection), 
+					detections.getPredictedClassScore(detection), corners, detection * 4);
+		}
+		target.position(buffer.position());
+	}
+
+	/**
+	 * Writes the record of a frame at the position of the target, advancing its position.
+	 * 
+	 * @param target The target buffer.
+	 * @param frameId The id of the frame.
+	 * @param timestamp The timestamp of the frame.
+	 * @param boundingBoxes The bounding boxes of the frame.
+	 * @throws BufferOverflowException If the record does not fit within the remaining bytes of the target, in 
+	 * which case nothing is written.
+	 */
+	public void write(ByteBuffer target, long frameId, long timestamp, List<? extends BoundingBox> boundingBoxes) {
+		int count = boundingBoxes.size();
+		checkRemaining(target, YOLOv2DetectionStreamFormat.getRecordLength(count));
+		ByteBuffer buffer = writeRecordHeader(target, frameId, timestamp, count);
+		for (BoundingBox boundingBox : boundingBoxes) {
+			boundingBox.getScaledCorners(width, height, corners, 0);
+			writeDetection(buffer, boundingBox.getPredictedClassIndex(), boundingBox.getPredictedClassScore(), 
+					corners, 0);
+		}
+		target.position(buffer.position());
+	}
+
+	private void ensureCorners(int count) {
+		if (corners.length < count * 4) {
+			corners = new float[Math.max(count * 4, corners.length * 2)];
+		}
+	}
+
+	/**
+	 * Writes the record of a frame to the channel of this writer.
+	 * 
+	 * @param frameId The id of the frame.
+	 * @param timestamp The timestamp of the frame.
+	 * @param detections The detections of the frame.
+	 * @throws IOException If the record cannot be written.
+	 */
+	public void write(long frameId, long timestamp, Detections detections) throws IOException {
+		ensureChannelBuffer(YOLOv2DetectionStreamFormat.getRecordLength(detections.size()));
+		write(channelBuffer, frameId, timestamp, detections);
+	}
+
+	/**
+	 * Writes the record of a frame to the channel of this writer.
+	 * 
+	 * @param frameId The id of the frame.
+	 * @param timestamp The timestamp of the frame.
+	 * @param boundingBoxes The bounding boxes of the frame.
+	 * @throws IOException If the record cannot be written.
+	 */
+	public void write(long frameId, long timestamp, List<? extends BoundingBox> boundingBoxes) throws IOException {
+		ensureChannelBuffer(YOLOv2DetectionStreamFormat.getRecordLength(boundingBoxes.size()));
+		write(channelBuffer, frameId, timestamp, boundingBoxes);
+	}
+
+	private ByteBuffer writeRecordHeader(ByteBuffer target, long frameId, long timestamp, int count) {
+		ByteBuffer buffer = target.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putLong(frameId);
+		buffer.putLong(timestamp);
+		buffer.putInt(count);
+		return buffer;
+	}
+
+	private static void writeDetection(ByteBuffer buffer, int predictedClassIndex, float predictedClassScore, 
+			float[] corners, int offset) {
+		buffer.putShort((short) predictedClassIndex);
+		buffer.putFloat(predictedClassScore);
+		buffer.putFloat(corners[offset]);
+		buffer.putFloat(corners[offset + 1]);
+		buffer.putFloat(corners[offset + 2]);
+		buffer.putFloat(corners[offset + 3]);
+	}
+
+	private static void checkRemaining(ByteBuffer target, int length) {
+		if (target.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+	}
+
+	private void ensureChannelBuffer(int length) throws IOException {
+		if (channel == null) {
+			throw new IllegalStateException("Writer has no channel");
+		}
+		if (channelBuffer.remaining() < length) {
+			flush();
+			if (channelBuffer.capacity() < length) {
+				channelBuffer = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+	}
+
+	/**
+	 * Writes any buffered records to the channel of this writer.
+	 * 
+	 * @throws IOException If the records cannot be written.
+	 */
+	public void flush() throws IOException {
+		if (channel != null) {
+			channelBuffer.flip();
+			while (channelBuffer.hasRemaining()) {
+				channel.write(channelBuffer);
+			}
+			channelBuffer.clear();
+		}
+	}
+
+	/**
+	 * Flushes any buffered records and closes the channel of this writer.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+import org.ml4j.nn.models.yolov2.YOLOv2MetricsSink;
+
+/**
+ * Preprocesses images into the input layout of the Yolo V2 Network - the red, green and blue channels one after 
+ * another, each row by row at the network input resolution, with values scaled to between 0 and 1.
+ * 
+ * Images are resized with bilinear interpolation, using per-column lookup tables computed once per image. With
+ * letterboxing the aspect ratio is preserved and the image is centred on a grey (0.5) background, otherwise the 
+ * image is stretched to the input resolution. Input values are written into pooled buffers which are reused once
+ * each YOLOv2PreprocessedImage is closed. When a ForkJoinPool is configured, large images are resized in parallel 
+ * bands of rows.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2ImagePreprocessor {
+
+	/**
+	 * The order of the channels of interleaved 8 bit pixels.
+	 */
+	public enum PixelFormat {
+		RGB(0, 1, 2), BGR(2, 1, 0);
+
+		private final int redOffset;
+		private final int greenOffset;
+		private final int blueOffset;
+
+		PixelFormat(int redOffset, int greenOffset, int blueOffset) {
+			this.redOffset = redOffset;
+			this.greenOffset = greenOffset;
+			this.blueOffset = blueOffset;
+		}
+	}
+
+	private static final float PAD_VALUE = 0.5f;
+	private static final float SCALE = 1f / 255f;
+	private static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 20;
+	private static final int ROWS_PER_TASK = 32;
+
+	private int inputWidth;
+	private int inputHeight;
+	private boolean letterbox;
+	private ForkJoinPool forkJoinPool;
+	private int parallelThreshold;
+	private ConcurrentLinkedQueue<float[]> buffers;
+	private YOLOv2MetricsSink metricsSink;
+
+	/**
+	 * Creates a letterboxing preprocessor for the default configuration.
+	 */
+	public YOLOv2ImagePreprocessor() {
+		this(new DefaultYOLOv2Config(), true);
+	}
+
+	/**
+	 * @param config The configuration of the network.
+	 * @param letterbox Whether to preserve the aspect ratio of images by letterboxing, rather than stretching.
+	 */
+	public YOLOv2ImagePreprocessor(YOLOv2Config config, boolean letterbox) {
+		this.inputWidth = config.getInputWidth();
+		this.inputHeight = config.getInputHeight();
+		this.letterbox = letterbox;
+		this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+		this.buffers = new ConcurrentLinkedQueue<>();
+	}
+
+	/**
+	 * @param forkJoinPool The pool on which to resize images with at least parallelThreshold source pixels, in 
+	 * bands of rows.
+	 * @return This preprocessor.
+	 */
+	public YOLOv2ImagePreprocessor withForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+		return this;
+	}
+
+	/**
+	 * @param parallelThreshold The minimum number of source pixels of an image resized in parallel.
+	 * @return This preprocessor.
+	 */
+	public YOLOv2ImagePreprocessor withParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+		return this;
+	}
+
+	/**
+	 * @param metricsSink The sink of the latency of preprocessing each image, or null for no metrics.
+	 * @return This preprocessor.
+	 */
+	public YOLOv2ImagePreprocessor withMetricsSink(YOLOv2MetricsSink metricsSink) {
+		this.metricsSink = metricsSink;
+		return this;
+	}
+
+	float[] acquireBuffer() {
+		float[] buffer = buffers.poll();
+		return buffer == null ? new float[inputWidth * inputHeight * 3] : buffer;
+	}
+
+	void releaseBuffer(float[] buffer) {
+		buffers.offer(buffer);
+	}
+
+	/**
+	 * Preprocesses interleaved 8 bit pixels, 3 bytes per pixel.
+	 * 
+	 * @param pixels The pixels, row by row with no padding between rows.
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @param pixelFormat The order of the channels of each pixel.
+	 * @return The preprocessed image, which must be closed once its input values are no longer required.
+	 */
+	public YOLOv2PreprocessedImage preprocess(byte[] pixels, int width, int height, PixelFormat pixelFormat) {
+		return preprocess(pixels, 0, width * 3, width, height, pixelFormat);
+	}
+
+	/**
+	 * Preprocesses interleaved 8 bit pixels, 3 bytes per pixel.
+	 * 
+	 * @param pixels The pixels, row by row.
+	 * @param offset The offset of the first pixel.
+	 * @param rowStride The number of bytes from the start of one row to the start of the next.
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @param pixelFormat The order of the channels of each pixel.
+	 * @return The preprocessed image, which must be closed once its input values are no longer required.
+	 */
+	public YOLOv2PreprocessedImage preprocess(byte[] pixels, int offset, int rowStride, int width, int height, 
+			PixelFormat pixelFormat) {
+		if (offset + (long) (height - 1) * rowStride + width * 3L > pixels.length) {
+			throw new IllegalArgumentException("Pixel array is too small for a " + width + "x" + height + " image");
+		}
+		return resize(width, height, new BytePixelSource(pixels, offset, rowStride, pixelFormat));
+	}
+
+	/**
+	 * Preprocesses a BufferedImage. Images of TYPE_3BYTE_BGR, TYPE_INT_RGB and TYPE_INT_ARGB are read directly from 
+	 * their data buffers - other types are first converted to TYPE_3BYTE_BGR.
+	 * 
+	 * @param image The image.
+	 * @return The preprocessed image, which must be closed once its input values are no longer required.
+	 */
+	public YOLOv2PreprocessedImage preprocess(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		// The data buffers of a sub-image are shared with its parent, so are only read directly for whole images
+		boolean wholeImage = image.getRaster().getParent() == null && image.getRaster().getSampleModelTranslateX() == 0
+				&& image.getRaster().getSampleModelTranslateY() == 0;
+		if (wholeImage && image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+			byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+			return preprocess(pixels, 0, width * 3, width, height, PixelFormat.BGR);
+		} else if (wholeImage && (image.getType() == BufferedImage.TYPE_INT_RGB 
+				|| image.getType() == BufferedImage.TYPE_INT_ARGB)) {
+			int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			return resize(width, height, new IntPixelSource(pixels, width));
+		} else {
+			BufferedImage converted = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+			Graphics2D graphics = converted.createGraphics();
+			try {
+				graphics.drawImage(image, 0, 0, null);
+			} finally {
+				graphics.dispose();
+			}
+			return preprocess(converted);
+		}
+	}
+
+	private YOLOv2PreprocessedImage resize(int width, int height, PixelSource source) {
+		long start = metricsSink == null ? 0 : System.nanoTime();
+		float scaleX = (float) inputWidth / width;
+		float scaleY = (float) inputHeight / height;
+		if (letterbox) {
+			scaleX = Math.min(scaleX, scaleY);
+			scaleY = scaleX;
+		}
+		int contentWidth = Math.min(inputWidth, Math.round(width * scaleX));
+		int contentHeight = Math.min(inputHeight, Math.round(height * scaleY));
+		int padX = (inputWidth - contentWidth) / 2;
+		int padY = (inputHeight - contentHeight) / 2;
+
+		// Bilinear lookup tables for each output column of the content
+		int[] x0 = new int[contentWidth];
+		int[] x1 = new int[contentWidth];
+		float[] xWeights = new float[contentWidth];
+		for (int x = 0; x < contentWidth; x++) {
+			float sourceX = Math.max(0, (x + 0.5f) / scaleX - 0.5f);
+			x0[x] = Math.min(width - 1, (int) sourceX);
+			x1[x] = Math.min(width - 1, x0[x] + 1);
+			xWeights[x] = sourceX - (int) sourceX;
+		}
+
+		float[] buffer = acquireBuffer();
+		ResizeTask task = new ResizeTask(source, buffer, height, scaleY, contentWidth, padX, padY, x0, x1, 
+				xWeights);
+		if (forkJoinPool != null && (long) width * height >= parallelThreshold) {
+			List<ForkJoinTask<?>> tasks = new ArrayList<>();
+			for (int row = 0; row < inputHeight; row += ROWS_PER_TASK) {
+				int fromRow = row;
+				int toRow = Math.min(inputHeight, row + ROWS_PER_TASK);
+				tasks.add(forkJoinPool.submit(() -> task.resizeRows(fromRow, toRow, contentHeight)));
+			}
+			for (ForkJoinTask<?> forkJoinTask : tasks) {
+				forkJoinTask.join();
+			}
+		} else {
+			task.resizeRows(0, inputHeight, contentHeight);
+		}
+		if (metricsSink != null) {
+			metricsSink.recordLatency(YOLOv2MetricsSink.Stage.PREPROCESS, System.nanoTime() - start, 1);
+		}
+		return new YOLOv2PreprocessedImage(this, buffer, inputWidth, inputHeight, width, height, scaleX, scaleY, 
+				padX, padY);
+	}
+
+	/**
+	 * Reads the red, green and blue values of a source pixel.
+	 */
+	private interface PixelSource {
+
+		int getRed(int x, int y);
+
+		int getGreen(int x, int y);
+
+		int getBlue(int x, int y);
+	}
+
+	private static class BytePixelSource implements PixelSource {
+
+		private final byte[] pixels;
+		private final int offset;
+		private final int rowStride;
+		private final PixelFormat pixelFormat;
+
+		BytePixelSource(byte[] pixels, int offset, int rowStride, PixelFormat pixelFormat) {
+			this.pixels = pixels;
+			this.offset = offset;
+			this.rowStride = rowStride;
+			this.pixelFormat = pixelFormat;
+		}
+
+		@Override
+		public int getRed(int x, int y) {
+			return pixels[offset + y * rowStride + x * 3 + pixelFormat.redOffset] & 0xff;
+		}
+
+		@Override
+		public int getGreen(int x, int y) {
+			return pixels[offset + y * rowStride + x * 3 + pixelFormat.greenOffset] & 0xff;
+		}
+
+		@Override
+		public int getBlue(int x, int y) {
+			return pixels[offset + y * rowStride + x * 3 + pixelFormat.blueOffset] & 0xff;
+		}
+	}
+
+	private static class IntPixelSource implements PixelSource {
+
+		private final int[] pixels;
+		private final int width;
+
+		IntPixelSource(int[] pixels, int width) {
+			this.pixels = pixels;
+			this.width = width;
+		}
+
+		@Override
+		public int getRed(int x, int y) {
+			return (pixels[y * width + x] >> 16) & 0xff;
+		}
+
+		@Override
+		public int getGreen(int x, int y) {
+			return (pixels[y * width + x] >> 8) & 0xff;
+		}
+
+		@Override
+		public int getBlue(int x, int y) {
+			return pixels[y * width + x] & 0xff;
+		}
+	}
+
+	/**
+	 * Resizes bands of output rows, sharing the column lookup tables.
+	 */
+	private class ResizeTask {
+
+		private final PixelSource source;
+		private final float[] buffer;
+		private final int height;
+		private final float scaleY;
+		private final int contentWidth;
+		private final int padX;
+		private final int padY;
+		private final int[] x0;
+		private final int[] x1;
+		private final float[] xWeights;
+
+		ResizeTask(PixelSource source, float[] buffer, int height, float scaleY, int contentWidth, 
+				int padX, int padY, int[] x0, int[] x1, float[] xWeights) {
+			this.source = source;
+			this.buffer = buffer;
+			this.height = height;
+			this.scaleY = scaleY;
+			this.contentWidth = contentWidth;
+			this.padX = padX;
+			this.padY = padY;
+			this.x0 = x0;
+			this.x1 = x1;
+			this.xWeights = xWeights;
+		}
+
+		void resizeRows(int fromRow, int toRow, int contentHeight) {
+			int planeSize = inputWidth * inputHeight;
+			for (int row = fromRow; row < toRow; row++) {
+				int rowOffset = row * inputWidth;
+				int y = row - padY;
+				if (y < 0 || y >= contentHeight) {
+					fill(rowOffset, rowOffset + inputWidth, planeSize);
+					continue;
+				}
+				fill(rowOffset, rowOffset + padX, planeSize);
+				fill(rowOffset + padX + contentWidth, rowOffset + inputWidth, planeSize);
+
+				float sourceY = Math.max(0, (y + 0.5f) / scaleY - 0.5f);
+				int y0 = Math.min(height - 1, (int) sourceY);
+				int y1 = Math.min(height - 1, y0 + 1);
+				float yWeight = sourceY - (int) sourceY;
+				for (int x = 0; x < contentWidth; x++) {
+					int index = rowOffset + padX + x;
+					int left = x0[x];
+					int right = x1[x];
+					float xWeight = xWeights[x];
+					buffer[index] = interpolate(source.getRed(left, y0), source.getRed(right, y0), 
+							source.getRed(left, y1), source.getRed(right, y1), xWeight, yWeight);
+					buffer[planeSize + index] = interpolate(source.getGreen(left, y0), source.getGreen(right, y0), 
+							source.getGreen(left, y1), source.getGreen(right, y1), xWeight, yWeight);
+					buffer[2 * planeSize + index] = interpolate(source.getBlue(left, y0), source.getBlue(right, y0), 
+							source.getBlue(left, y1), source.getBlue(right, y1), xWeight, yWeight);
+				}
+			}
+		}
+
+		private void fill(int from, int to, int planeSize) {
+			for (int channel = 0; channel < 3; channel++) {
+				Arrays.fill(buffer, channel * planeSize + from, channel * planeSize + to, PAD_VALUE);
+			}
+		}
+
+		private float interpolate(int topLeft, int topRight, int bottomLeft, int bottomRight, float xWeight, 
+				float yWeight) {
+			float top = topLeft + (topRight - topLeft) * xWeight;
+			float bottom = bottomLeft + (bottomRight - bottomLeft) * xWeight;
+			return (top + (bottom - top) * yWeight) * SCALE;
+		}
+	}
+}
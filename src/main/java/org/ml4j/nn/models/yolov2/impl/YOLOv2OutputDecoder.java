@@ -0,0 +1,485 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.Arrays;
+
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+
+/**
+ * Decodes the raw float[] output of a YOLO network into bounding boxes, operating directly
+ * on the primitive output data.
+ *
+ * Sigmoid, exp and softmax are computed with primitive arithmetic, and the class probabilities
+ * of each cell are written into a per-thread scratch buffer which is reused across calls, so that
+ * the only allocations made while decoding are the primitive arrays of the resulting Detections.
+ *
+ * @author Michael Lavelle
+ */
+public class YOLOv2OutputDecoder {
+
+	private static final int BOX_VALUE_COUNT = 5;
+
+	private final int inputWidth;
+	private final int inputHeight;
+	private final int gridWidth;
+	private final int gridHeight;
+	private final float[][] anchors;
+	private final int classCount;
+	private final int valuesPerAnchor;
+	private final int valuesPerExample;
+
+	private final ThreadLocal<float[]> classProbabilitiesScratch;
+
+	private boolean retainClassProbabilities;
+
+	public YOLOv2OutputDecoder() {
+		this(false);
+	}
+
+	/**
+	 * @param retainClassProbabilities Whether the full row of class probabilities is to be retained for each 
+	 * decoded detection.
+	 */
+	public YOLOv2OutputDecoder(boolean retainClassProbabilities) {
+		this(new DefaultYOLOv2Config(), retainClassProbabilities);
+	}
+
+	/**
+	 * @param config The configuration of the YOLO network whose output is to be decoded.
+	 * @param retainClassProbabilities Whether the full row of class probabilities is to be retained for each 
+	 * decoded detection.
+	 */
+	public YOLOv2OutputDecoder(YOLOv2Config config, boolean retainClassProbabilities) {
+		this.inputWidth = config.getInputWidth();
+		this.inputHeight = config.getInputHeight();
+		this.gridWidth = config.getGridWidth();
+		this.gridHeight = config.getGridHeight();
+		this.anchors = config.getAnchors();
+		this.classCount = config.getClassCount();
+		this.valuesPerAnchor = BOX_VALUE_COUNT + classCount;
+		this.valuesPerExample = gridWidth * gridHeight * anchors.length * valuesPerAnchor;
+		this.classProbabilitiesScratch = ThreadLocal.withInitial(() -> new float[classCount]);
+		this.retainClassProbabilities = retainClassProbabilities;
+	}
+
+	/**
+	 * @return The number of output values for a single image example - 425 * 19 * 19 for the default
+	 * configuration.
+	 */
+	public int getValueCountPerExample() {
+		return valuesPerExample;
+	}
+
+	/**
+	 * Obtains the bounding boxes given the raw YOLO output data ( float[] of 425 * 19 * 19) for a single image.
+	 *
+	 * @param data The output for a single image example from the YOLO network.
+	 * @return The detections, one for each anchor of each grid cell.
+	 */
+	public DefaultDetections decode(float[] data) {
+		return decode(data, 0, 1);
+	}
+
+	/**
+	 * Obtains the bounding boxes for a single image example whose output values are held within a larger
+	 * array, without copying them.
+	 *
+	 * The value at position p of the example's output is read from data[offset + p * stride], so for a feature-major
+	 * batch of n examples the output of example e is decoded with an offset of e and a stride of n, and for an
+	 * example-major batch with an offset of e * 425 * 19 * 19 and a stride of 1.
+	 *
+	 * @param data The output from the YOLO network.
+	 * @param offset The index of the first output value of the example.
+	 * @param stride The distance between consecutive output values of the example.
+	 * @return The detections, one for each anchor of each grid cell.
+	 */
+	public DefaultDetections decode(float[] data, int offset, int stride) {
+		return decode(data, offset, stride, false, 0, Integer.MAX_VALUE, null, null, null);
+	}
+
+	/**
+	 * Obtains the bounding boxes with a predicted class score above scoreThreshold for a single image example, fusing
+	 * the score filtering into the decode.
+	 *
+	 * As the score of a box is its objectness multiplied by its maximum class probability it can never exceed
+	 * its objectness, so cells whose objectness does not exceed the threshold are rejected after a single sigmoid -
+	 * the softmax and box geometry are only computed for cells which survive.
+	 *
+	 * @param data The output from the YOLO network.
+	 * @param offset The index of the first output value of the example.
+	 * @param stride The distance between consecutive output values of the example.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param statistics Statistics to be updated with the cell counts of this decode, or null.
+	 * @return The detections with a predicted class score greater than scoreThreshold.
+	 */
+	public DefaultDetections decode(float[] data, int offset, int stride, float scoreThreshold,
+			YOLOv2DecodeStatistics statistics) {
+		return decode(data, offset, stride, true, scoreThreshold, Integer.MAX_VALUE, null, null, statistics);
+	}
+
+	/**
+	 * As for decode(data, offset, stride, scoreThreshold, statistics), but retaining at most maxCandidates bounding
+	 * boxes - those with the highest scores, the earliest cells being retained in the event of a tie.
+	 *
+	 * The candidates are held in a bounded min-heap during decode, and once the heap is full its minimum score
+	 * is also applied as an objectness threshold, so that the softmax is skipped for cells which could not displace
+	 * an existing candidate.
+	 *
+	 * @param data The output from the YOLO network.
+	 * @param offset The index of the first output value of the example.
+	 * @param stride The distance between consecutive output values of the example.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param maxCandidates The maximum number of bounding boxes to retain.
+	 * @param statistics Statistics to be updated with the cell counts of this decode, or null.
+	 * @return At most maxCandidates detections with a predicted class score greater than scoreThreshold,
+	 * in cell order.
+	 */
+	public DefaultDetections decode(float[] data, int offset, int stride, float scoreThreshold, int maxCandidates,
+			YOLOv2DecodeStatistics statistics) {
+		return decode(data, offset, stride, true, scoreThreshold, maxCandidates, null, null, statistics);
+	}
+
+	/**
+	 * As for decode(data, offset, stride, scoreThreshold, maxCandidates, statistics), but detecting only the classes 
+	 * of the subset, each with its own score threshold.
+	 *
+	 * The softmax normaliser of each cell - the maximum and the sum of exponentials of its class logits - is computed 
+	 * once, and the probabilities are only evaluated for the classes of the subset. As a probability cannot exceed 
+	 * the exponential of its logit less the maximum logit, cells whose objectness multiplied by this bound for the 
+	 * best logit of the subset does not exceed the lowest threshold of the subset are rejected before the 
+	 * normaliser is computed.
+	 *
+	 * @param data The output from the YOLO network.
+	 * @param offset The index of the first output value of the example.
+	 * @param stride The distance between consecutive output values of the example.
+	 * @param classSubset The classes to detect.
+	 * @param scoreThreshold The score threshold of the classes of the subset added without a threshold.
+	 * @param maxCandidates The maximum number of bounding boxes to retain, or Integer.MAX_VALUE for no maximum.
+	 * @param statistics Statistics to be updated with the cell counts of this decode, or null.
+	 * @return At most maxCandidates detections of the classes of the subset with a score greater than the 
+	 * threshold of their class, in cell order.
+	 */
+	public DefaultDetections decode(float[] data, int offset, int stride, YOLOv2ClassSubset classSubset,
+			float scoreThreshold, int maxCandidates, YOLOv2DecodeStatistics statistics) {
+		validate(classSubset);
+		return decode(data, offset, stride, true, scoreThreshold, maxCandidates, classSubset, null, statistics);
+	}
+
+	/**
+	 * As for decode(data, offset, stride, classSubset, scoreThreshold, maxCandidates, statistics), but detecting only 
+	 * boxes whose centre is within the region of interest - clipped to the region if it is clipping.
+	 *
+	 * As the centre of a box always lies within the grid cell which predicts it, the cells which cannot produce a box 
+	 * within the region are precomputed and skipped without reading their output, and boxes whose centre is outside 
+	 * the region are rejected before the softmax of their cell is computed.
+	 *
+	 * @param data The output from the YOLO network.
+	 * @param offset The index of the first output value of the example.
+	 * @param stride The distance between consecutive output values of the example.
+	 * @param classSubset The classes to detect, or null to detect all classes.
+	 * @param regionOfInterest The region of interest.
+	 * @param scoreThreshold The BoundingBox score threshold.
+	 * @param maxCandidates The maximum number of bounding boxes to retain, or Integer.MAX_VALUE for no maximum.
+	 * @param statistics Statistics to be updated with the cell counts of this decode, or null.
+	 * @return At most maxCandidates detections within the region of interest with a score greater than the 
+	 * threshold, in cell order.
+	 */
+	public DefaultDetections decode(float[] data, int offset, int stride, YOLOv2ClassSubset classSubset, 
+			YOLOv2RegionOfInterest regionOfInterest, float scoreThreshold, int maxCandidates, 
+			YOLOv2DecodeStatistics statistics) {
+		if (classSubset != null) {
+			validate(classSubset);
+		}
+		return decode(data, offset, stride, true, scoreThreshold, maxCandidates, classSubset, 
+				regionOfInterest.getProjection(inputWidth, inputHeight, gridWidth, gridHeight), statistics);
+	}
+
+	private void validate(YOLOv2ClassSubset classSubset) {
+		for (int i = 0; i < classSubset.size(); i++) {
+			if (classSubset.getClassIndex(i) >= classCount) {
+				throw new IllegalArgumentException("Index of:" + classSubset.getClassIndex(i) + " is out of range");
+			}
+		}
+	}
+
+	private DefaultDetections decode(float[] data, int offset, int stride, boolean filter, float scoreThreshold,
+			int maxCandidates, YOLOv2ClassSubset classSubset, YOLOv2RegionOfInterest.Projection regionOfInterest, 
+			YOLOv2DecodeStatistics statistics) {
+
+		int cellCount = gridWidth * gridHeight * anchors.length;
+		DefaultDetections results = new DefaultDetections(inputWidth, inputHeight,
+				retainClassProbabilities ? classCount : 0, filter ? 16 : cellCount);
+		CandidateHeap heap = maxCandidates < cellCount ? new CandidateHeap(maxCandidates) : null;
+		float[] classProbabilities = classProbabilitiesScratch.get();
+
+		int prunedCellCount = 0;
+		int anchorStride = valuesPerAnchor * stride;
+		float minimumScoreThreshold = classSubset == null ? scoreThreshold 
+				: classSubset.getMinimumScoreThreshold(scoreThreshold);
+		for (int cell = 0; cell < cellCount; cell++) {
+			if (regionOfInterest != null && !regionOfInterest.isCellIncluded(cell / anchors.length)) {
+				prunedCellCount++;
+				continue;
+			}
+			int index = offset + cell * anchorStride;
+			float confidence = sigmoid(data[index + 4 * stride]);
+			float minimumScore = heap == null ? Float.NEGATIVE_INFINITY : heap.getMinimumScore();
+			float threshold = Math.max(minimumScoreThreshold, minimumScore);
+			if (filter && !(confidence > threshold)) {
+				prunedCellCount++;
+				continue;
+			}
+			if (regionOfInterest != null && regionOfInterest.getContainingArea(getCentreX(data, index, cell), 
+					getCentreY(data, index, stride, cell)) < 0) {
+				prunedCellCount++;
+				continue;
+			}
+			int classIndex = index + BOX_VALUE_COUNT * stride;
+			int predictedClassIndex;
+			float predictedClassScore;
+			if (classSubset == null) {
+				softmax(data, classIndex, stride, classCount, classProbabilities);
+				predictedClassIndex = 0;
+				predictedClassScore = classProbabilities[0] * confidence;
+				for (int i = 1; i < classCount; i++) {
+					float score = classProbabilities[i] * confidence;
+					if (score > predictedClassScore) {
+						predictedClassScore = score;
+						predictedClassIndex = i;
+					}
+				}
+				if (filter && !(predictedClassScore > threshold)) {
+					continue;
+				}
+			} else {
+				float max = data[classIndex];
+				for (int i = 1; i < classCount; i++) {
+					max = Math.max(max, data[classIndex + i * stride]);
+				}
+				float subsetMax = Float.NEGATIVE_INFINITY;
+				for (int i = 0; i < classSubset.size(); i++) {
+					subsetMax = Math.max(subsetMax, data[classIndex + classSubset.getClassIndex(i) * stride]);
+				}
+				if (!(confidence * exp(subsetMax - max) > threshold)) {
+					prunedCellCount++;
+					continue;
+				}
+				float sum = 0;
+				for (int i = 0; i < classCount; i++) {
+					sum += exp(data[classIndex + i * stride] - max);
+				}
+				predictedClassIndex = -1;
+				predictedClassScore = 0;
+				for (int i = 0; i < classSubset.size(); i++) {
+					int subsetClassIndex = classSubset.getClassIndex(i);
+					float score = confidence * exp(data[classIndex + subsetClassIndex * stride] - max) / sum;
+					if (score > classSubset.getScoreThresholdAt(i, scoreThreshold) && score > minimumScore 
+							&& score > predictedClassScore) {
+						predictedClassScore = score;
+						predictedClassIndex = subsetClassIndex;
+					}
+				}
+				if (predictedClassIndex < 0) {
+					continue;
+				}
+				if (retainClassProbabilities && heap == null) {
+					softmax(data, classIndex, stride, classCount, classProbabilities);
+				}
+			}
+			if (heap == null) {
+				int detection = addDetection(results, data, offset, stride, cell, predictedClassIndex, 
+						predictedClassScore, regionOfInterest);
+				if (retainClassProbabilities) {
+					results.setClassProbabilities(detection, classProbabilities);
+				}
+			} else {
+				heap.offer(predictedClassScore, cell, predictedClassIndex);
+			}
+		}
+		if (heap != null) {
+			for (int position : heap.getPositionsInCellOrder()) {
+				int cell = heap.cells[position];
+				int detection = addDetection(results, data, offset, stride, cell, heap.classIndexes[position],
+						heap.scores[position], regionOfInterest);
+				if (retainClassProbabilities) {
+					softmax(data, offset + cell * anchorStride + BOX_VALUE_COUNT * stride, stride, classCount, 
+							classProbabilities);
+					results.setClassProbabilities(detection, classProbabilities);
+				}
+			}
+		}
+		if (statistics != null) {
+			statistics.record(cellCount, prunedCellCount, results.size());
+		}
+		return results;
+	}
+
+	private int addDetection(DefaultDetections results, float[] data, int offset, int stride, int cell,
+			int predictedClassIndex, float predictedClassScore, YOLOv2RegionOfInterest.Projection regionOfInterest) {
+		int index = offset + cell * valuesPerAnchor * stride;
+		int b = cell % anchors.length;
+		float x = getCentreX(data, index, cell);
+		float y = getCentreY(data, index, stride, cell);
+		float width = exp(data[index + 2 * stride]) * anchors[b][0] / gridWidth;
+		float height = exp(data[index + 3 * stride]) * anchors[b][1] / gridHeight;
+		if (regionOfInterest == null || !regionOfInterest.isClipping()) {
+			return results.add(x, y, width, height, predictedClassIndex, predictedClassScore);
+		}
+		// Clip to the bounds of the polygon or mask containing the centre - minX, minY, maxX, maxY
+		float[] bounds = regionOfInterest.getBounds(regionOfInterest.getContainingArea(x, y));
+		return results.addCorners(Math.max(bounds[1], y - height / 2), Math.max(bounds[0], x - width / 2), 
+				Math.min(bounds[3], y + height / 2), Math.min(bounds[2], x + width / 2), predictedClassIndex, 
+				predictedClassScore);
+	}
+
+	private float getCentreX(float[] data, int index, int cell) {
+		int c = (cell / anchors.length) % gridWidth;
+		return (sigmoid(data[index]) + c) / gridWidth;
+	}
+
+	private float getCentreY(float[] data, int index, int stride, int cell) {
+		int r = cell / (anchors.length * gridWidth);
+		return (sigmoid(data[index + stride]) + r) / gridHeight;
+	}
+
+	static float sigmoid(float value) {
+		return (float) (1d / (1d + Math.exp(-value)));
+	}
+
+	static float exp(float value) {
+		return (float) Math.exp(value);
+	}
+
+	/**
+	 * Numerically stable softmax of count values of data starting at offset and separated by stride, 
+	 * written into output.
+	 */
+	static void softmax(float[] data, int offset, int stride, int count, float[] output) {
+		float max = data[offset];
+		for (int i = 1; i < count; i++) {
+			max = Math.max(max, data[offset + i * stride]);
+		}
+		float sum = 0;
+		for (int i = 0; i < count; i++) {
+			float value = exp(data[offset + i * stride] - max);
+			output[i] = value;
+			sum += value;
+		}
+		for (int i = 0; i < count; i++) {
+			output[i] = output[i] / sum;
+		}
+	}
+
+	/**
+	 * Bounded min-heap of candidate cells, ordered by score and then by descending cell so that the root
+	 * is the candidate to be displaced first.
+	 */
+	private static class CandidateHeap {
+
+		private final float[] scores;
+		private final int[] cells;
+		private final int[] classIndexes;
+		private int size;
+
+		CandidateHeap(int capacity) {
+			this.scores = new float[capacity];
+			this.cells = new int[capacity];
+			this.classIndexes = new int[capacity];
+		}
+
+		float getMinimumScore() {
+			if (size < scores.length) {
+				return Float.NEGATIVE_INFINITY;
+			}
+			return size == 0 ? Float.POSITIVE_INFINITY : scores[0];
+		}
+
+		/**
+		 * Cells are offered in ascending order, so a candidate only displaces the root with a strictly greater score.
+		 */
+		void offer(float score, int cell, int classIndex) {
+			if (size < scores.length) {
+				set(size, score, cell, classIndex);
+				siftUp(size++);
+			} else if (scores.length > 0 && score > scores[0]) {
+				set(0, score, cell, classIndex);
+				siftDown(0);
+			}
+		}
+
+		int[] getPositionsInCellOrder() {
+			long[] keys = new long[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = ((long) cells[i] << 32) | i;
+			}
+			Arrays.sort(keys);
+			int[] positions = new int[size];
+			for (int i = 0; i < size; i++) {
+				positions[i] = (int) keys[i];
+			}
+			return positions;
+		}
+
+		private boolean isWorse(int first, int second) {
+			return scores[first] < scores[second] || (scores[first] == scores[second] && cells[first] > cells[second]);
+		}
+
+		private void siftUp(int position) {
+			while (position > 0) {
+				int parent = (position - 1) / 2;
+				if (!isWorse(position, parent)) {
+					return;
+				}
+				swap(position, parent);
+				position = parent;
+			}
+		}
+
+		private void siftDown(int position) {
+			while (true) {
+				int worst = position;
+				int left = 2 * position + 1;
+				int right = left + 1;
+				if (left < size && isWorse(left, worst)) {
+					worst = left;
+				}
+				if (right < size && isWorse(right, worst)) {
+					worst = right;
+				}
+				if (worst == position) {
+					return;
+				}
+				swap(position, worst);
+				position = worst;
+			}
+		}
+
+		private void set(int position, float score, int cell, int classIndex) {
+			scores[position] = score;
+			cells[position] = cell;
+			classIndexes[position] = classIndex;
+		}
+
+		private void swap(int first, int second) {
+			float score = scores[first];
+			int cell = cells[first];
+			int classIndex = classIndexes[first];
+			set(first, scores[second], cells[second], classIndexes[second]);
+			set(second, score, cell, classIndex);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.Detections;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.ml4j.nn.neurons.NeuronsActivation;
+import org.ml4j.nn.neurons.NeuronsActivationImpl;
+import org.ml4j.nn.neurons.format.NeuronsActivationFormat;
+
+/**
+ * An image preprocessed by YOLOv2ImagePreprocessor into the input layout of the network, together with the 
+ * transform from the original image, so that box corners can be mapped back to original image coordinates.
+ * 
+ * The input values are held in a pooled buffer, which is returned to the preprocessor on close.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2PreprocessedImage implements AutoCloseable {
+
+	private YOLOv2ImagePreprocessor preprocessor;
+	private float[] buffer;
+	private int inputWidth;
+	private int inputHeight;
+	private int originalWidth;
+	private int originalHeight;
+	private float scaleX;
+	private float scaleY;
+	private float padX;
+	private float padY;
+
+	YOLOv2PreprocessedImage(YOLOv2ImagePreprocessor preprocessor, float[] buffer, int inputWidth, int inputHeight, 
+			int originalWidth, int originalHeight, float scaleX, float scaleY, float padX, float padY) {
+		this.preprocessor = preprocessor;
+		this.buffer = buffer;
+		this.inputWidth = inputWidth;
+		this.inputHeight = inputHeight;
+		this.originalWidth = originalWidth;
+		this.originalHeight = originalHeight;
+		this.scaleX = scaleX;
+		this.scaleY = scaleY;
+		this.padX = padX;
+		this.padY = padY;
+	}
+
+	/**
+	 * @return The input values, channel by channel - red, green then blue - each channel row by row, scaled to 
+	 * between 0 and 1.
+	 */
+	public float[] getBuffer() {
+		if (buffer == null) {
+			throw new IllegalStateException("Preprocessed image has been closed");
+		}
+		return buffer;
+	}
+
+	/**
+	 * @param matrixFactory The matrix factory.
+	 * @return The input activations of the network for this image.
+	 */
+	public NeuronsActivation toNeuronsActivation(MatrixFactory matrixFactory) {
+		float[] values = getBuffer();
+		return new NeuronsActivationImpl(new Neurons3D(inputWidth, inputHeight, 3, false),
+				matrixFactory.createMatrixFromRowsByRowsArray(values.length, 1, values), 
+				NeuronsActivationFormat.ROWS_SPAN_FEATURE_SET);
+	}
+
+	public int getOriginalWidth() {
+		return originalWidth;
+	}
+
+	public int getOriginalHeight() {
+		return originalHeight;
+	}
+
+	/**
+	 * Maps box corners from network input image coordinates back to original image coordinates, removing any
+	 * letterbox padding and clamping to the original image.
+	 * 
+	 * @param corners The corners, 4 consecutive values per box as returned by BoundingBox.getScaledCorners() - 
+	 * minY, minX, maxY, maxX - mapped in place.
+	 * @param boxCount The number of boxes.
+	 */
+	public void mapToOriginal(float[] corners, int boxCount) {
+		for (int offset = 0; offset < boxCount * 4; offset += 4) {
+			corners[offset] = clamp((corners[offset] - padY) / scaleY, originalHeight);
+			corners[offset + 1] = clamp((corners[offset + 1] - padX) / scaleX, originalWidth);
+			corners[offset + 2] = clamp((corners[offset + 2] - padY) / scaleY, originalHeight);
+			corners[offset + 3] = clamp((corners[offset + 3] - padX) / scaleX, originalWidth);
+		}
+	}
+
+	/**
+	 * @param box A box detected in this image.
+	 * @return The corners of the box in original image coordinates - minY, minX, maxY, maxX.
+	 */
+	public float[] getOriginalCorners(BoundingBox box) {
+		float[] corners = box.getScaledCorners();
+		mapToOriginal(corners, 1);
+		return corners;
+	}
+
+	/**
+	 * @param detections The detections in this image.
+	 * @param corners The array into which to write the corners of each detection in original image coordinates, 
+	 * 4 consecutive values per detection - minY, minX, maxY, maxX.
+	 */
+	public void getOriginalCorners(Detections detections, float[] corners) {
+		detections.getScaledCorners(corners);
+		mapToOriginal(corners, detections.size());
+	}
+
+	private static float clamp(float value, int max) {
+		return Math.max(0, Math.min(max, value));
+	}
+
+	/**
+	 * Returns the buffer to the pool of the preprocessor - the buffer, and any activations created from it, must 
+	 * not be used after closing.
+	 */
+	@Override
+	public void close() {
+		if (buffer != null) {
+			preprocessor.releaseBuffer(buffer);
+			buffer = null;
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.YOLOv2ForwardPass;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.neurons.NeuronsActivation;
+
+/**
+ * Reports the accuracy of quantized weights against the float32 baseline, both as the error of the dequantized 
+ * weights and as the agreement of the detections of networks built from each.
+ * 
+ * A quantized detection matches a baseline detection of the same predicted class when their IOU is at least the 
+ * match threshold - baseline detections are matched greedily in descending score order.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2QuantizationAccuracyReport {
+
+	public static final float DEFAULT_MATCH_IOU_THRESHOLD = 0.5f;
+
+	private float matchIouThreshold;
+
+	private int tensorCount;
+	private long valueCount;
+	private double sumSquaredWeightError;
+	private float maxWeightError;
+	private YOLOv2WeightsTensor maxWeightErrorTensor;
+
+	private int imageCount;
+	private int baselineDetectionCount;
+	private int quantizedDetectionCount;
+	private int matchedDetectionCount;
+	private double sumMatchedIou;
+	private double sumScoreDifference;
+	private float maxScoreDifference;
+
+	public YOLOv2QuantizationAccuracyReport() {
+		this(DEFAULT_MATCH_IOU_THRESHOLD);
+	}
+
+	/**
+	 * @param matchIouThreshold The minimum IOU of a quantized detection with a baseline detection for them to match.
+	 */
+	public YOLOv2QuantizationAccuracyReport(float matchIouThreshold) {
+		this.matchIouThreshold = matchIouThreshold;
+	}
+
+	/**
+	 * Adds the error of each tensor, as loaded by each loader.
+	 * 
+	 * @param baseline The loader of the float32 weights.
+	 * @param quantized The loader of the quantized weights.
+	 * @param tensors The tensors to compare.
+	 */
+	public void addWeights(AbstractYOLOv2WeightsLoader baseline, AbstractYOLOv2WeightsLoader quantized, 
+			List<YOLOv2WeightsTensor> tensors) {
+		for (YOLOv2WeightsTensor tensor : tensors) {
+			addWeights(tensor, baseline.loadWeights(tensor, new DefaultYOLOv2TensorLoadEvent(tensor)), 
+					quantized.loadWeights(tensor, new DefaultYOLOv2TensorLoadEvent(tensor)));
+		}
+	}
+
+	/**
+	 * @param tensor The tensor.
+	 * @param baseline The float32 weights of the tensor.
+	 * @param quantized The dequantized weights of the tensor.
+	 */
+	public void addWeights(YOLOv2WeightsTensor tensor, float[] baseline, float[] quantized) {
+		if (baseline.length != quantized.length) {
+			throw new IllegalArgumentException("Expected " + baseline.length + " quantized values for " + tensor 
+					+ " but found " + quantized.length);
+		}
+		for (int i = 0; i < baseline.length; i++) {
+			float error = Math.abs(baseline[i] - quantized[i]);
+			sumSquaredWeightError += (double) error * error;
+			if (error > maxWeightError) {
+				maxWeightError = error;
+				maxWeightErrorTensor = tensor;
+			}
+		}
+		valueCount += baseline.length;
+		tensorCount++;
+	}
+
+	/**
+	 * Detects a batch of images with each network, adding the agreement of the detections of each image.
+	 * 
+	 * @param baseline The forward pass of the network built from the float32 weights.
+	 * @param quantized The forward pass of the network built from the quantized weights.
+	 * @param boundingBoxExtractor The extractor of the bounding boxes.
+	 * @param labels The labels.
+	 * @param input The input activations of the batch of images.
+	 * @param matrixFactory The matrix factory with which to read the output activations.
+	 * @param scoreThreshold The score threshold.
+	 * @param iouThreshold The IOU threshold for non max suppression.
+	 */
+	public void addDetections(YOLOv2ForwardPass baseline, YOLOv2ForwardPass quantized, 
+			BoundingBoxExtractor boundingBoxExtractor, YOLOv2Labels labels, NeuronsActivation input, 
+			MatrixFactory matrixFactory, float scoreThreshold, float iouThreshold) {
+		List<List<BoundingBox>> baselineBoundingBoxes = boundingBoxExtractor
+				.getScoreFilteredBoundingBoxesWithNonMaxSuppression(baseline.forwardPropagate(input), matrixFactory, 
+						labels, scoreThreshold, iouThreshold);
+		List<List<BoundingBox>> quantizedBoundingBoxes = boundingBoxExtractor
+				.getScoreFilteredBoundingBoxesWithNonMaxSuppression(quantized.forwardPropagate(input), matrixFactory, 
+						labels, scoreThreshold, iouThreshold);
+		for (int example = 0; example < baselineBoundingBoxes.size(); example++) {
+			addDetections(baselineBoundingBoxes.get(example), quantizedBoundingBoxes.get(example));
+		}
+	}
+
+	/**
+	 * @param baseline The bounding boxes detected in an image by the network built from the float32 weights.
+	 * @param quantized The bounding boxes detected in the image by the network built from the quantized weights.
+	 */
+	public void addDetections(List<? extends BoundingBox> baseline, List<? extends BoundingBox> quantized) {
+		List<BoundingBox> sortedBaseline = new ArrayList<>(baseline);
+		sortedBaseline.sort(Comparator.comparing(BoundingBox::getPredictedClassScore).reversed());
+		boolean[] matched = new boolean[quantized.size()];
+		for (BoundingBox baselineBox : sortedBaseline) {
+			float[] baselineCorners = baselineBox.getScaledCorners();
+			int bestMatch = -1;
+			float bestIou = matchIouThreshold;
+			for (int i = 0; i < quantized.size(); i++) {
+				BoundingBox quantizedBox = quantized.get(i);
+				if (!matched[i] && quantizedBox.getPredictedClassIndex() == baselineBox.getPredictedClassIndex()) {
+					float iou = getIou(baselineCorners, quantizedBox.getScaledCorners());
+					if (iou >= bestIou) {
+						bestIou = iou;
+						bestMatch = i;
+					}
+				}
+			}
+			if (bestMatch >= 0) {
+				matched[bestMatch] = true;
+				matchedDetectionCount++;
+				sumMatchedIou += bestIou;
+				float scoreDifference = Math.abs(baselineBox.getPredictedClassScore() 
+						- quantized.get(bestMatch).getPredictedClassScore());
+				sumScoreDifference += scoreDifference;
+				maxScoreDifference = Math.max(maxScoreDifference, scoreDifference);
+			}
+		}
+		baselineDetectionCount += baseline.size();
+		quantizedDetectionCount += quantized.size();
+		imageCount++;
+	}
+
+	private static float getIou(float[] a, float[] b) {
+		float intersectionHeight = Math.max(0, Math.min(a[2], b[2]) - Math.max(a[0], b[0]));
+		float intersectionWidth = Math.max(0, Math.min(a[3], b[3]) - Math.max(a[1], b[1]));
+		float intersection = intersectionHeight * intersectionWidth;
+		float union = (a[2] - a[0]) * (a[3] - a[1]) + (b[2] - b[0]) * (b[3] - b[1]) - intersection;
+		return union <= 0 ? 0 : intersection / union;
+	}
+
+	public int getTensorCount() {
+		return tensorCount;
+	}
+
+	/**
+	 * @return The largest absolute error of a dequantized weight.
+	 */
+	public float getMaxWeightError() {
+		return maxWeightError;
+	}
+
+	/**
+	 * @return The tensor of the largest absolute error of a dequantized weight, or null if no weights were added.
+	 */
+	public YOLOv2WeightsTensor getMaxWeightErrorTensor() {
+		return maxWeightErrorTensor;
+	}
+
+	/**
+	 * @return The root mean squared error of the dequantized weights.
+	 */
+	public double getRootMeanSquaredWeightError() {
+		return valueCount == 0 ? 0 : Math.sqrt(sumSquaredWeightError / valueCount);
+	}
+
+	public int getImageCount() {
+		return imageCount;
+	}
+
+	public int getBaselineDetectionCount() {
+		return baselineDetectionCount;
+	}
+
+	public int getQuantizedDetectionCount() {
+		return quantizedDetectionCount;
+	}
+
+	public int getMatchedDetectionCount() {
+		return matchedDetectionCount;
+	}
+
+	/**
+	 * @return The fraction of baseline detections matched by a quantized detection.
+	 */
+	public double getRecall() {
+		return baselineDetectionCount == 0 ? 1 : (double) matchedDetectionCount / baselineDetectionCount;
+	}
+
+	/**
+	 * @return The fraction of quantized detections matching a baseline detection.
+	 */
+	public double getPrecision() {
+		return quantizedDetectionCount == 0 ? 1 : (double) matchedDetectionCount / quantizedDetectionCount;
+	}
+
+	/**
+	 * @return The mean IOU of the matched detections.
+	 */
+	public double getMeanMatchedIou() {
+		return matchedDetectionCount == 0 ? 0 : sumMatchedIou / matchedDetectionCount;
+	}
+
+	/**
+	 * @return The mean absolute difference of the scores of the matched detections.
+	 */
+	public double getMeanScoreDifference() {
+		return matchedDetectionCount == 0 ? 0 : sumScoreDifference / matchedDetectionCount;
+	}
+
+	/**
+	 * @return The largest absolute difference of the scores of the matched detections.
+	 */
+	public float getMaxScoreDifference() {
+		return maxScoreDifference;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Quantization accuracy - weights: %d tensors, rms error %.6f, max error %.6f (%s)"
+				+ " - detections: %d images, %d baseline, %d quantized, %d matched, recall %.4f, precision %.4f,"
+				+ " mean iou %.4f, mean score difference %.4f, max score difference %.4f", 
+				tensorCount, getRootMeanSquaredWeightError(), maxWeightError, maxWeightErrorTensor, imageCount, 
+				baselineDetectionCount, quantizedDetectionCount, matchedDetectionCount, getRecall(), getPrecision(), 
+				getMeanMatchedIou(), getMeanScoreDifference(), maxScoreDifference);
+	}
+}
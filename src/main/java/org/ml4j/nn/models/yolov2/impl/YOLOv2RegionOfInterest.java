@@ -0,0 +1,434 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A region of interest of the images of a fixed camera, the union of any number of polygons and masks in original 
+ * image coordinates, outside of which no boxes are to be detected.
+ * 
+ * When decoding with a region of interest the grid cells which cannot produce a box whose centre falls within the 
+ * region - a box centre always lies within the cell which predicts it - are skipped before their objectness is 
+ * computed, and boxes whose centre falls outside the region are rejected before their class probabilities are 
+ * computed. With clipping enabled the remaining boxes are clipped to the bounds of the polygon or mask containing 
+ * their centre, before non max suppression.
+ * 
+ * The cells of the region are precomputed once for each network configuration. The images are assumed to be 
+ * preprocessed as by a YOLOv2ImagePreprocessor with the same letterbox setting, and a region must not be modified 
+ * once it is in use by a decoder.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2RegionOfInterest {
+
+	private int imageWidth;
+	private int imageHeight;
+	private boolean letterbox;
+	private boolean clipping;
+	private List<float[]> polygons;
+	private List<Mask> masks;
+
+	private volatile Projection projection;
+
+	/**
+	 * @param imageWidth The width of the original images.
+	 * @param imageHeight The height of the original images.
+	 */
+	public YOLOv2RegionOfInterest(int imageWidth, int imageHeight) {
+		if (imageWidth < 1 || imageHeight < 1) {
+			throw new IllegalArgumentException("Image dimensions must be at least 1 but were:" + imageWidth + " * " 
+					+ imageHeight);
+		}
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+		this.polygons = new ArrayList<>();
+		this.masks = new ArrayList<>();
+	}
+
+	/**
+	 * @param letterbox Whether the images are letterboxed into the network input, rather than stretched.
+	 * @return This region.
+	 */
+	public YOLOv2RegionOfInterest withLetterbox(boolean letterbox) {
+		this.letterbox = letterbox;
+		this.projection = null;
+		return this;
+	}
+
+	/**
+	 * @param clipping Whether boxes are to be clipped to the bounds of the polygon or mask containing their centre.
+	 * @return This region.
+	 */
+	public YOLOv2RegionOfInterest withClipping(boolean clipping) {
+		this.clipping = clipping;
+		return this;
+	}
+
+	/**
+	 * @param coordinates The vertices of the polygon in original image coordinates, as consecutive x, y pairs.
+	 * @return This region.
+	 */
+	public YOLOv2RegionOfInterest withPolygon(float... coordinates) {
+		if (coordinates.length < 6 || coordinates.length % 2 != 0) {
+			throw new IllegalArgumentException("A polygon requires at least 3 x, y pairs but was:" 
+					+ coordinates.length + " coordinates");
+		}
+		polygons.add(coordinates.clone());
+		this.projection = null;
+		return this;
+	}
+
+	/**
+	 * @param x The min x of the rectangle in original image coordinates.
+	 * @param y The min y of the rectangle in original image coordinates.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 * @return This region.
+	 */
+	public YOLOv2RegionOfInterest withRectangle(float x, float y, float width, float height) {
+		return withPolygon(x, y, x + width, y, x + width, y + height, x, y + height);
+	}
+
+	/**
+	 * @param mask The pixels of the mask row by row, true for pixels within the region - stretched over the 
+	 * original image.
+	 * @param maskWidth The width of the mask.
+	 * @param maskHeight The height of the mask.
+	 * @return This region.
+	 */
+	public YOLOv2RegionOfInterest withMask(boolean[] mask, int maskWidth, int maskHeight) {
+		if (maskWidth < 1 || maskHeight < 1 || mask.length != maskWidth * maskHeight) {
+			throw new IllegalArgumentException("Expected a mask of " + maskWidth + " * " + maskHeight 
+					+ " pixels but was:" + mask.length);
+		}
+		masks.add(new Mask(mask.clone(), maskWidth, maskHeight));
+		this.projection = null;
+		return this;
+	}
+
+	public boolean isClipping() {
+		return clipping;
+	}
+
+	/**
+	 * @param inputWidth The width of the network input.
+	 * @param inputHeight The height of the network input.
+	 * @param gridWidth The width of the output grid.
+	 * @param gridHeight The height of the output grid.
+	 * @return The projection of this region onto the network input and output grid.
+	 */
+	Projection getProjection(int inputWidth, int inputHeight, int gridWidth, int gridHeight) {
+		Projection current = projection;
+		if (current == null || !current.matches(inputWidth, inputHeight, gridWidth, gridHeight)) {
+			current = new Projection(inputWidth, inputHeight, gridWidth, gridHeight);
+			projection = current;
+		}
+		return current;
+	}
+
+	/**
+	 * A mask of pixels, with the bounds of the pixels within the region.
+	 */
+	private static class Mask {
+
+		private final boolean[] pixels;
+		private final int width;
+		private final int height;
+		private int minX = Integer.MAX_VALUE;
+		private int minY = Integer.MAX_VALUE;
+		private int maxX = -1;
+		private int maxY = -1;
+
+		Mask(boolean[] pixels, int width, int height) {
+			this.pixels = pixels;
+			this.width = width;
+			this.height = height;
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					if (pixels[y * width + x]) {
+						minX = Math.min(minX, x);
+						minY = Math.min(minY, y);
+						maxX = Math.max(maxX, x);
+						maxY = Math.max(maxY, y);
+					}
+				}
+			}
+		}
+
+		boolean isEmpty() {
+			return maxX < 0;
+		}
+
+		/**
+		 * @return Whether any pixel within the image coordinate rectangle is within the region.
+		 */
+		boolean intersects(float imageMinX, float imageMinY, float imageMaxX, float imageMaxY, int imageWidth,
+				int imageHeight) {
+			int fromX = Math.max(minX, (int) Math.floor(imageMinX * width / imageWidth));
+			int toX = Math.min(maxX, (int) Math.ceil(imageMaxX * width / imageWidth) - 1);
+			int fromY = Math.max(minY, (int) Math.floor(imageMinY * height / imageHeight));
+			int toY = Math.min(maxY, (int) Math.ceil(imageMaxY * height / imageHeight) - 1);
+			for (int y = fromY; y <= toY; y++) {
+				for (int x = fromX; x <= toX; x++) {
+					if (pixels[y * width + x]) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		boolean contains(float imageX, float imageY, int imageWidth, int imageHeight) {
+			int x = (int) Math.floor(imageX * width / imageWidth);
+			int y = (int) Math.floor(imageY * height / imageHeight);
+			return x >= 0 && y >= 0 && x < width && y < height && pixels[y * width + x];
+		}
+	}
+
+	/**
+	 * The projection of the region onto the network input and output grid of a configuration - the cells which can 
+	 * produce a box within the region, and the polygons and mask bounds as fractions of the network input.
+	 */
+	final class Projection {
+
+		private final int inputWidth;
+		private final int inputHeight;
+		private final int gridWidth;
+		private final int gridHeight;
+		private final float scaleX;
+		private final float scaleY;
+		private final float padX;
+		private final float padY;
+		private final boolean[] cells;
+		private final float[][] polygons;
+		private final float[][] bounds;
+		private final Mask[] masks;
+
+		private Projection(int inputWidth, int inputHeight, int gridWidth, int gridHeight) {
+			this.inputWidth = inputWidth;
+			this.inputHeight = inputHeight;
+			this.gridWidth = gridWidth;
+			this.gridHeight = gridHeight;
+
+			// As for the resize of YOLOv2ImagePreprocessor
+			float scaleX = (float) inputWidth / imageWidth;
+			float scaleY = (float) inputHeight / imageHeight;
+			if (letterbox) {
+				scaleX = Math.min(scaleX, scaleY);
+				scaleY = scaleX;
+			}
+			this.scaleX = scaleX;
+			this.scaleY = scaleY;
+			this.padX = (inputWidth - Math.min(inputWidth, Math.round(imageWidth * scaleX))) / 2;
+			this.padY = (inputHeight - Math.min(inputHeight, Math.round(imageHeight * scaleY))) / 2;
+
+			List<Mask> nonEmptyMasks = new ArrayList<>();
+			for (Mask mask : YOLOv2RegionOfInterest.this.masks) {
+				if (!mask.isEmpty()) {
+					nonEmptyMasks.add(mask);
+				}
+			}
+			this.masks = nonEmptyMasks.toArray(new Mask[0]);
+			this.polygons = new float[YOLOv2RegionOfInterest.this.polygons.size()][];
+			this.bounds = new float[polygons.length + masks.length][];
+			for (int p = 0; p < polygons.length; p++) {
+				float[] coordinates = YOLOv2RegionOfInterest.this.polygons.get(p);
+				float[] projected = new float[coordinates.length];
+				for (int i = 0; i < coordinates.length; i += 2) {
+					projected[i] = toFractionX(coordinates[i]);
+					projected[i + 1] = toFractionY(coordinates[i + 1]);
+				}
+				polygons[p] = projected;
+				bounds[p] = YOLOv2RegionOfInterest.getBounds(projected);
+			}
+			for (int m = 0; m < masks.length; m++) {
+				Mask mask = masks[m];
+				bounds[polygons.length + m] = new float[] {
+						toFractionX((float) mask.minX * imageWidth / mask.width), 
+						toFractionY((float) mask.minY * imageHeight / mask.height),
+						toFractionX((float) (mask.maxX + 1) * imageWidth / mask.width), 
+						toFractionY((float) (mask.maxY + 1) * imageHeight / mask.height)};
+			}
+
+			this.cells = new boolean[gridWidth * gridHeight];
+			for (int r = 0; r < gridHeight; r++) {
+				for (int c = 0; c < gridWidth; c++) {
+					cells[r * gridWidth + c] = intersects((float) c / gridWidth, (float) r / gridHeight, 
+							(float) (c + 1) / gridWidth, (float) (r + 1) / gridHeight);
+				}
+			}
+		}
+
+		boolean matches(int inputWidth, int inputHeight, int gridWidth, int gridHeight) {
+			return this.inputWidth == inputWidth && this.inputHeight == inputHeight && this.gridWidth == gridWidth 
+					&& this.gridHeight == gridHeight;
+		}
+
+		/**
+		 * @param gridCell The index of the grid cell, row by row.
+		 * @return Whether the grid cell can produce a box whose centre is within the region.
+		 */
+		boolean isCellIncluded(int gridCell) {
+			return cells[gridCell];
+		}
+
+		boolean isClipping() {
+			return clipping;
+		}
+
+		/**
+		 * @param x The x coordinate, as a fraction of the network input width.
+		 * @param y The y coordinate, as a fraction of the network input height.
+		 * @return The index of the first polygon or mask containing the point, or -1 if the point is outside the 
+		 * region.
+		 */
+		int getContainingArea(float x, float y) {
+			for (int p = 0; p < polygons.length; p++) {
+				if (contains(polygons[p], x, y)) {
+					return p;
+				}
+			}
+			if (masks.length > 0) {
+				float imageX = toImageX(x);
+				float imageY = toImageY(y);
+				for (int m = 0; m < masks.length; m++) {
+					if (masks[m].contains(imageX, imageY, imageWidth, imageHeight)) {
+						return polygons.length + m;
+					}
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * @param area The index of a polygon or mask.
+		 * @return The bounds of the polygon or mask as fractions of the network input - minX, minY, maxX, maxY.
+		 */
+		float[] getBounds(int area) {
+			return bounds[area];
+		}
+
+		private boolean intersects(float minX, float minY, float maxX, float maxY) {
+			for (float[] polygon : polygons) {
+				if (YOLOv2RegionOfInterest.intersects(polygon, minX, minY, maxX, maxY)) {
+					return true;
+				}
+			}
+			if (masks.length > 0) {
+				float imageMinX = Math.max(0, toImageX(minX));
+				float imageMinY = Math.max(0, toImageY(minY));
+				float imageMaxX = Math.min(imageWidth, toImageX(maxX));
+				float imageMaxY = Math.min(imageHeight, toImageY(maxY));
+				if (imageMinX < imageMaxX && imageMinY < imageMaxY) {
+					for (Mask mask : masks) {
+						if (mask.intersects(imageMinX, imageMinY, imageMaxX, imageMaxY, imageWidth, imageHeight)) {
+							return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		private float toFractionX(float imageX) {
+			return (imageX * scaleX + padX) / inputWidth;
+		}
+
+		private float toFractionY(float imageY) {
+			return (imageY * scaleY + padY) / inputHeight;
+		}
+
+		private float toImageX(float x) {
+			return (x * inputWidth - padX) / scaleX;
+		}
+
+		private float toImageY(float y) {
+			return (y * inputHeight - padY) / scaleY;
+		}
+	}
+
+	private static float[] getBounds(float[] polygon) {
+		float[] bounds = new float[] {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+				Float.NEGATIVE_INFINITY};
+		for (int i = 0; i < polygon.length; i += 2) {
+			bounds[0] = Math.min(bounds[0], polygon[i]);
+			bounds[1] = Math.min(bounds[1], polygon[i + 1]);
+			bounds[2] = Math.max(bounds[2], polygon[i]);
+			bounds[3] = Math.max(bounds[3], polygon[i + 1]);
+		}
+		return bounds;
+	}
+
+	/**
+	 * Even-odd point in polygon test.
+	 */
+	static boolean contains(float[] polygon, float x, float y) {
+		boolean inside = false;
+		for (int i = 0, j = polygon.length - 2; i < polygon.length; j = i, i += 2) {
+			float xi = polygon[i];
+			float yi = polygon[i + 1];
+			float xj = polygon[j];
+			float yj = polygon[j + 1];
+			if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+				inside = !inside;
+			}
+		}
+		return inside;
+	}
+
+	/**
+	 * A polygon intersects a rectangle if any of its edges intersects the rectangle, or if the rectangle lies 
+	 * entirely within it - in which case the centre of the rectangle is within the polygon.
+	 */
+	static boolean intersects(float[] polygon, float minX, float minY, float maxX, float maxY) {
+		for (int i = 0, j = polygon.length - 2; i < polygon.length; j = i, i += 2) {
+			if (intersects(polygon[j], polygon[j + 1], polygon[i], polygon[i + 1], minX, minY, maxX, maxY)) {
+				return true;
+			}
+		}
+		return contains(polygon, (minX + maxX) / 2, (minY + maxY) / 2);
+	}
+
+	/**
+	 * Liang-Barsky clipping of the segment from (x0, y0) to (x1, y1) against the rectangle.
+	 */
+	private static boolean intersects(float x0, float y0, float x1, float y1, float minX, float minY, float maxX,
+			float maxY) {
+		float dx = x1 - x0;
+		float dy = y1 - y0;
+		float[] p = {-dx, dx, -dy, dy};
+		float[] q = {x0 - minX, maxX - x0, y0 - minY, maxY - y0};
+		float from = 0;
+		float to = 1;
+		for (int i = 0; i < 4; i++) {
+			if (p[i] == 0) {
+				if (q[i] < 0) {
+					return false;
+				}
+			} else {
+				float t = q[i] / p[i];
+				if (p[i] < 0) {
+					from = Math.max(from, t);
+				} else {
+					to = Math.min(to, t);
+				}
+			}
+		}
+		return from <= to;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+import org.ml4j.nn.models.yolov2.YOLOv2StartupListener;
+import org.ml4j.nn.models.yolov2.YOLOv2TensorLoadEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A YOLOv2StartupListener which aggregates the tensor loads of each network build, and logs a summary once the 
+ * network is built - the total time in each phase, the bytes read, the heap size of the weights and the slowest 
+ * tensors.
+ * 
+ * Register with DefaultYOLOv2Factory.addListener to receive both tensor and build events.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2StartupSummaryReporter implements YOLOv2StartupListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(YOLOv2StartupSummaryReporter.class);
+
+	private static final int DEFAULT_SLOWEST_TENSOR_COUNT = 5;
+
+	private int slowestTensorCount;
+
+	private int tensorCount;
+	private long resourceOpenNanos;
+	private long deserializeNanos;
+	private long matrixCreationNanos;
+	private long tensorNanos;
+	private long bytesRead;
+	private long heapBytes;
+	private Map<String, Integer> tensorCountsBySource;
+	private List<YOLOv2TensorLoadEvent> slowestTensors;
+	private long lastBuildNanos;
+	private String lastSummary;
+
+	public YOLOv2StartupSummaryReporter() {
+		this(DEFAULT_SLOWEST_TENSOR_COUNT);
+	}
+
+	/**
+	 * @param slowestTensorCount The number of slowest tensors to include in the summary.
+	 */
+	public YOLOv2StartupSummaryReporter(int slowestTensorCount) {
+		this.slowestTensorCount = slowestTensorCount;
+		reset();
+	}
+
+	@Override
+	public synchronized void onTensorLoaded(YOLOv2TensorLoadEvent event) {
+		tensorCount++;
+		resourceOpenNanos += event.getResourceOpenNanos();
+		deserializeNanos += event.getDeserializeNanos();
+		matrixCreationNanos += event.getMatrixCreationNanos();
+		tensorNanos += event.getTotalNanos();
+		bytesRead += event.getBytesRead();
+		heapBytes += event.getHeapBytes();
+		tensorCountsBySource.merge(String.valueOf(event.getSource()), 1, Integer::sum);
+		slowestTensors.add(event);
+		slowestTensors.sort(Comparator.comparingLong(YOLOv2TensorLoadEvent::getTotalNanos).reversed());
+		if (slowestTensors.size() > slowestTensorCount) {
+			slowestTensors.remove(slowestTensors.size() - 1);
+		}
+	}
+
+	@Override
+	public synchronized void onNetworkBuildStarted(YOLOv2Config config) {
+		reset();
+	}
+
+	@Override
+	public synchronized void onNetworkBuilt(YOLOv2Config config, long buildNanos) {
+		lastBuildNanos = buildNanos;
+		lastSummary = "Built Yolo V2 Network with config:" + config + " in " + toMillis(buildNanos) + "ms - " 
+				+ getTensorSummary();
+		LOGGER.info(lastSummary);
+	}
+
+	/**
+	 * @return The time taken to build the last network, in nanoseconds.
+	 */
+	public synchronized long getLastBuildNanos() {
+		return lastBuildNanos;
+	}
+
+	/**
+	 * @return The summary of the last network build, or null if no network has been built.
+	 */
+	public synchronized String getLastSummary() {
+		return lastSummary;
+	}
+
+	/**
+	 * @return A summary of the tensors loaded since the last build started.
+	 */
+	public synchronized String getTensorSummary() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(tensorCount).append(" tensors ").append(tensorCountsBySource)
+			.append(" in ").append(toMillis(tensorNanos)).append("ms [open=").append(toMillis(resourceOpenNanos))
+			.append("ms, deserialize=").append(toMillis(deserializeNanos))
+			.append("ms, matrix=").append(toMillis(matrixCreationNanos))
+			.append("ms], bytesRead=").append(bytesRead)
+			.append(", heapBytes=").append(heapBytes);
+		if (!slowestTensors.isEmpty()) {
+			summary.append(", slowest=[");
+			for (int i = 0; i < slowestTensors.size(); i++) {
+				YOLOv2TensorLoadEvent event = slowestTensors.get(i);
+				summary.append(i == 0 ? "" : ", ").append(event.getTensorName()).append('=')
+					.append(toMillis(event.getTotalNanos())).append("ms");
+			}
+			summary.append(']');
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * Clears the tensor loads aggregated so far.
+	 */
+	public synchronized void reset() {
+		tensorCount = 0;
+		resourceOpenNanos = 0;
+		deserializeNanos = 0;
+		matrixCreationNanos = 0;
+		tensorNanos = 0;
+		bytesRead = 0;
+		heapBytes = 0;
+		tensorCountsBySource = new TreeMap<>();
+		slowestTensors = new ArrayList<>();
+	}
+
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+import org.ml4j.nn.models.yolov2.YOLOv2ForwardPass;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.models.yolov2.impl.YOLOv2ImagePreprocessor.PixelFormat;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.ml4j.nn.neurons.NeuronsActivation;
+
+/**
+ * Detects objects in images larger than the network input by cutting them into overlapping tiles of the network 
+ * input size, rather than downscaling the whole image, so that small objects remain detectable.
+ * 
+ * The tiles are preprocessed in parallel on a ForkJoinPool and detected as a single batch. The bounding boxes of 
+ * each tile are mapped to the coordinates of the whole image, and a single pass of non max suppression over the 
+ * boxes of all tiles merges the duplicates detected either side of the seams between tiles. Objects no larger than 
+ * the overlap lie wholly within at least one tile.
+ * 
+ * Images no larger than the network input are detected as a single letterboxed tile.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2TiledDetector {
+
+	public static final int DEFAULT_OVERLAP = 64;
+
+	private YOLOv2ForwardPass forwardPass;
+	private BoundingBoxExtractor boundingBoxExtractor;
+	private YOLOv2Labels labels;
+	private MatrixFactory matrixFactory;
+	private Neurons3D inputNeurons;
+	private int tileWidth;
+	private int tileHeight;
+	private YOLOv2ImagePreprocessor preprocessor;
+	private NonMaxSuppression nonMaxSuppression;
+	private int overlap;
+	private int maxTilesPerBatch;
+	private ForkJoinPool forkJoinPool;
+	private boolean classAwareNonMaxSuppression;
+
+	/**
+	 * @param forwardPass The forward pass of the network, which must accept batches of up to maxTilesPerBatch 
+	 * tiles.
+	 * @param boundingBoxExtractor The extractor of the bounding boxes of each tile.
+	 * @param labels The labels.
+	 * @param matrixFactory The matrix factory.
+	 * @param config The configuration of the network, whose input size is the tile size.
+	 */
+	public YOLOv2TiledDetector(YOLOv2ForwardPass forwardPass, BoundingBoxExtractor boundingBoxExtractor, 
+			YOLOv2Labels labels, MatrixFactory matrixFactory, YOLOv2Config config) {
+		this.forwardPass = forwardPass;
+		this.boundingBoxExtractor = boundingBoxExtractor;
+		this.labels = labels;
+		this.matrixFactory = matrixFactory;
+		this.tileWidth = config.getInputWidth();
+		this.tileHeight = config.getInputHeight();
+		this.inputNeurons = new Neurons3D(tileWidth, tileHeight, 3, false);
+		this.preprocessor = new YOLOv2ImagePreprocessor(config, true);
+		this.nonMaxSuppression = new NonMaxSuppression();
+		this.overlap = DEFAULT_OVERLAP;
+		this.maxTilesPerBatch = Integer.MAX_VALUE;
+		this.forkJoinPool = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * @param overlap The number of pixels by which neighbouring tiles overlap.
+	 * @return This detector.
+	 */
+	public YOLOv2TiledDetector withOverlap(int overlap) {
+		if (overlap < 0 || overlap >= Math.min(tileWidth, tileHeight)) {
+			throw new IllegalArgumentException("Overlap must be between 0 and the tile size but was:" + overlap);
+		}
+		this.overlap = overlap;
+		return this;
+	}
+
+	/**
+	 * @param maxTilesPerBatch The maximum number of tiles per forward pass - images with more tiles are detected 
+	 * in several batches, bounding the memory of the input activations.
+	 * @return This detector.
+	 */
+	public YOLOv2TiledDetector withMaxTilesPerBatch(int maxTilesPerBatch) {
+		if (maxTilesPerBatch < 1) {
+			throw new IllegalArgumentException("Max tiles per batch must be at least 1");
+		}
+		this.maxTilesPerBatch = maxTilesPerBatch;
+		return this;
+	}
+
+	/**
+	 * @param forkJoinPool The pool on which to preprocess the tiles in parallel, or null to preprocess them on the 
+	 * calling thread.
+	 * @return This detector.
+	 */
+	public YOLOv2TiledDetector withForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+		return this;
+	}
+
+	/**
+	 * @param classAwareNonMaxSuppression Whether the boxes of the tiles are merged independently for each class.
+	 * @return This detector.
+	 */
+	public YOLOv2TiledDetector withClassAwareNonMaxSuppression(boolean classAwareNonMaxSuppression) {
+		this.classAwareNonMaxSuppression = classAwareNonMaxSuppression;
+		return this;
+	}
+
+	/**
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @return The tiles of the image, 4 consecutive values per tile - x, y, width and height.
+	 */
+	public int[] getTiles(int width, int height) {
+		int[] columns = getTileOrigins(width, tileWidth);
+		int[] rows = getTileOrigins(height, tileHeight);
+		int[] tiles = new int[columns.length * rows.length * 4];
+		int offset = 0;
+		for (int row : rows) {
+			for (int column : columns) {
+				tiles[offset++] = column;
+				tiles[offset++] = row;
+				tiles[offset++] = Math.min(tileWidth, width);
+				tiles[offset++] = Math.min(tileHeight, height);
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * Spreads the tiles evenly over the length of the image, with the first and last aligned to its edges, so that 
+	 * neighbouring tiles overlap by at least the configured overlap.
+	 */
+	private int[] getTileOrigins(int length, int tileLength) {
+		if (length <= tileLength) {
+			return new int[] { 0 };
+		}
+		int stride = tileLength - overlap;
+		int count = (length - tileLength + stride - 1) / stride + 1;
+		int[] origins = new int[count];
+		for (int i = 0; i < count; i++) {
+			origins[i] = (int) ((long) i * (length - tileLength) / (count - 1));
+		}
+		return origins;
+	}
+
+	/**
+	 * @param image The image.
+	 * @param scoreThreshold The score threshold.
+	 * @param iouThreshold The IOU threshold, both within tiles and across the seams between them.
+	 * @return The bounding boxes detected in the image, in the pixel coordinates of the image.
+	 */
+	public List<BoundingBox> detect(BufferedImage image, float scoreThreshold, float iouThreshold) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		boolean wholeImage = image.getRaster().getParent() == null && image.getRaster().getSampleModelTranslateX() == 0
+				&& image.getRaster().getSampleModelTranslateY() == 0;
+		if (!wholeImage || image.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+			// Converted once, rather than for each tile
+			BufferedImage converted = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+			Graphics2D graphics = converted.createGraphics();
+			try {
+				graphics.drawImage(image, 0, 0, null);
+			} finally {
+				graphics.dispose();
+			}
+			image = converted;
+		}
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		return detect(pixels, width, height, PixelFormat.BGR, scoreThreshold, iouThreshold);
+	}
+
+	/**
+	 * @param pixels The pixels of the image, interleaved 8 bit pixels of 3 bytes each, row by row with no padding 
+	 * between rows.
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @param pixelFormat The order of the channels of each pixel.
+	 * @param scoreThreshold The score threshold.
+	 * @param iouThreshold The IOU threshold, both within tiles and across the seams between them.
+	 * @return The bounding boxes detected in the image, in the pixel coordinates of the image.
+	 */
+	public List<BoundingBox> detect(byte[] pixels, int width, int height, PixelFormat pixelFormat, 
+			float scoreThreshold, float iouThreshold) {
+		if ((long) width * height * 3 > pixels.length) {
+			throw new IllegalArgumentException("Pixel array is too small for a " + width + "x" + height + " image");
+		}
+		int[] tiles = getTiles(width, height);
+		int tileCount = tiles.length / 4;
+		List<BoundingBox> boundingBoxes = new ArrayList<>();
+		for (int firstTile = 0; firstTile < tileCount; firstTile += maxTilesPerBatch) {
+			int batchSize = Math.min(maxTilesPerBatch, tileCount - firstTile);
+			YOLOv2PreprocessedImage[] preprocessedTiles = preprocessTiles(pixels, width, tiles, firstTile, batchSize, 
+					pixelFormat);
+			try {
+				List<float[]> inputs = new ArrayList<>(batchSize);
+				for (YOLOv2PreprocessedImage preprocessedTile : preprocessedTiles) {
+					inputs.add(preprocessedTile.getBuffer());
+				}
+				NeuronsActivation output = forwardPass.forwardPropagate(
+						DefaultYOLOv2MicroBatchScheduler.createBatchActivation(inputNeurons, inputs, matrixFactory));
+				List<List<BoundingBox>> tileBoundingBoxes = boundingBoxExtractor
+						.getScoreFilteredBoundingBoxesWithNonMaxSuppression(output, matrixFactory, labels, 
+								scoreThreshold, iouThreshold);
+				for (int i = 0; i < batchSize; i++) {
+					int offset = (firstTile + i) * 4;
+					for (BoundingBox tileBoundingBox : tileBoundingBoxes.get(i)) {
+						boundingBoxes.add(toImageBoundingBox(tileBoundingBox, preprocessedTiles[i], tiles[offset], 
+								tiles[offset + 1], width, height));
+					}
+				}
+			} finally {
+				for (YOLOv2PreprocessedImage preprocessedTile : preprocessedTiles) {
+					if (preprocessedTile != null) {
+						preprocessedTile.close();
+					}
+				}
+			}
+		}
+		if (tileCount == 1) {
+			return boundingBoxes;
+		}
+		return classAwareNonMaxSuppression ? nonMaxSuppression.applyPerClass(boundingBoxes, iouThreshold, null) 
+				: nonMaxSuppression.apply(boundingBoxes, iouThreshold);
+	}
+
+	private YOLOv2PreprocessedImage[] preprocessTiles(byte[] pixels, int width, int[] tiles, int firstTile, 
+			int batchSize, PixelFormat pixelFormat) {
+		YOLOv2PreprocessedImage[] preprocessedTiles = new YOLOv2PreprocessedImage[batchSize];
+		if (forkJoinPool == null || batchSize == 1) {
+			for (int i = 0; i < batchSize; i++) {
+				preprocessedTiles[i] = preprocessTile(pixels, width, tiles, firstTile + i, pixelFormat);
+			}
+		} else {
+			List<ForkJoinTask<YOLOv2PreprocessedImage>> tasks = new ArrayList<>(batchSize);
+			for (int i = 0; i < batchSize; i++) {
+				int tile = firstTile + i;
+				tasks.add(forkJoinPool.submit(() -> preprocessTile(pixels, width, tiles, tile, pixelFormat)));
+			}
+			for (int i = 0; i < batchSize; i++) {
+				preprocessedTiles[i] = tasks.get(i).join();
+			}
+		}
+		return preprocessedTiles;
+	}
+
+	private YOLOv2PreprocessedImage preprocessTile(byte[] pixels, int width, int[] tiles, int tile, 
+			PixelFormat pixelFormat) {
+		int offset = tile * 4;
+		int rowStride = width * 3;
+		return preprocessor.preprocess(pixels, tiles[offset + 1] * rowStride + tiles[offset] * 3, rowStride, 
+				tiles[offset + 2], tiles[offset + 3], pixelFormat);
+	}
+
+	private static BoundingBox toImageBoundingBox(BoundingBox tileBoundingBox, YOLOv2PreprocessedImage tile, 
+			int tileX, int tileY, int width, int height) {
+		float[] corners = tile.getOriginalCorners(tileBoundingBox);
+		float minY = corners[0] + tileY;
+		float minX = corners[1] + tileX;
+		float maxY = corners[2] + tileY;
+		float maxX = corners[3] + tileX;
+		return new DefaultBoundingBox((minX + maxX) / 2 / width, (minY + maxY) / 2 / height, (maxX - minX) / width, 
+				(maxY - minY) / height, tileBoundingBox.getPredictedClassIndex(), 
+				tileBoundingBox.getPredictedClassScore(), width, height);
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An on-disk cache of weights tensors in their final ml4j layout, keyed by tensor name, shape and weights version.
+ * 
+ * Each tensor is held in its own file of little-endian float32 values, within a directory for the weights 
+ * version, so that a change of version never reads stale entries. Entries are written to a temporary file and 
+ * moved into place, so a concurrent or interrupted write is never read as a complete entry.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2WeightsCache implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(YOLOv2WeightsCache.class);
+
+	private static final int MAGIC = 0x43325759;
+	private static final int HEADER_LENGTH = 8;
+
+	private String directory;
+	private String version;
+
+	/**
+	 * @param directory The root directory of the cache.
+	 * @param version The version of the weights - entries are only read for the same version.
+	 */
+	public YOLOv2WeightsCache(Path directory, String version) {
+		this.directory = directory.toString();
+		this.version = version;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param tensor The tensor.
+	 * @return The cached values of the tensor, or null if the tensor is not cached.
+	 */
+	public float[] get(YOLOv2WeightsTensor tensor) {
+		Path path = getPath(tensor);
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long expectedLength = HEADER_LENGTH + 4L * tensor.getElementCount();
+			if (channel.size() != expectedLength) {
+				LOGGER.warn("Ignoring cached weights with unexpected length:" + path);
+				return null;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) expectedLength).order(ByteOrder.LITTLE_ENDIAN);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					return null;
+				}
+			}
+			buffer.flip();
+			if (buffer.getInt() != MAGIC || buffer.getInt() != tensor.getElementCount()) {
+				LOGGER.warn("Ignoring invalid cached weights:" + path);
+				return null;
+			}
+			float[] weights = new float[tensor.getElementCount()];
+			buffer.asFloatBuffer().get(weights);
+			return weights;
+		} catch (IOException e) {
+			LOGGER.warn("Unable to read cached weights:" + path + " " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Caches the values of a tensor. Failure to write is logged rather than thrown, as the cache is an 
+	 * optimisation only.
+	 * 
+	 * @param tensor The tensor.
+	 * @param weights The values of the tensor, in their final layout.
+	 */
+	public void put(YOLOv2WeightsTensor tensor, float[] weights) {
+		if (weights.length != tensor.getElementCount()) {
+			throw new IllegalArgumentException("Expected " + tensor.getElementCount() + " values for " + tensor 
+					+ " but found " + weights.length);
+		}
+		Path path = getPath(tensor);
+		try {
+			Files.createDirectories(path.getParent());
+			Path temporaryPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + 4 * weights.length)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(MAGIC);
+				buffer.putInt(weights.length);
+				buffer.asFloatBuffer().put(weights);
+				buffer.rewind();
+				try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+				}
+				Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temporaryPath);
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to cache weights:" + path + " " + e.getMessage());
+		}
+	}
+
+	private Path getPath(YOLOv2WeightsTensor tensor) {
+		StringBuilder fileName = new StringBuilder(tensor.getName().replaceAll("[^A-Za-z0-9_.-]", "_"));
+		fileName.append('_').append(tensor.getKind().name().toLowerCase());
+		for (int dimension : tensor.getShape()) {
+			fileName.append('_').append(dimension);
+		}
+		fileName.append(".weights");
+		return Paths.get(directory, version.replaceAll("[^A-Za-z0-9_.-]", "_"), fileName.toString());
+	}
+}
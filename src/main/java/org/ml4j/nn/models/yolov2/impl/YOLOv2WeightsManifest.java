@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the manifest of weights tensors required by a YOLO v2 network, in graph order - for example as 
+ * recorded by RecordingYOLOv2WeightsLoader.
+ * 
+ * The manifest is a text file with one tensor per line : kind, name and shape, separated by spaces.
+ * 
+ * @author Michael Lavelle
+ */
+public final class YOLOv2WeightsManifest {
+
+	private YOLOv2WeightsManifest() {
+	}
+
+	public static void write(List<YOLOv2WeightsTensor> tensors, OutputStream outputStream) {
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		for (YOLOv2WeightsTensor tensor : tensors) {
+			writer.print(tensor.getKind().name());
+			writer.print(' ');
+			writer.print(tensor.getName());
+			for (int dimension : tensor.getShape()) {
+				writer.print(' ');
+				writer.print(dimension);
+			}
+			writer.println();
+		}
+		writer.flush();
+	}
+
+	public static List<YOLOv2WeightsTensor> read(InputStream inputStream) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+		List<YOLOv2WeightsTensor> tensors = new ArrayList<>();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] tokens = line.split("\\s+");
+			if (tokens.length < 3) {
+				throw new IOException("Invalid manifest line:" + line);
+			}
+			int[] shape = new int[tokens.length - 2];
+			try {
+				for (int d = 0; d < shape.length; d++) {
+					shape[d] = Integer.parseInt(tokens[d + 2]);
+				}
+				tensors.add(new YOLOv2WeightsTensor(YOLOv2WeightsTensor.Kind.valueOf(tokens[0]), tokens[1], shape));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid manifest line:" + line, e);
+			}
+		}
+		return tensors;
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+/**
+ * The precision in which the weights of a packed YOLO v2 weights archive are stored.
+ * 
+ * Reduced precisions apply to the convolutional layer weights, which make up almost all of the archive - biases 
+ * and batch norm parameters are always stored as float32.
+ * 
+ * @author Michael Lavelle
+ */
+public enum YOLOv2WeightsPrecision {
+
+	/**
+	 * Full single precision.
+	 */
+	FLOAT32(PackedYOLOv2WeightsFormat.DATA_TYPE_FLOAT32),
+
+	/**
+	 * Half precision, halving the size of the convolutional layer weights.
+	 */
+	FLOAT16(PackedYOLOv2WeightsFormat.DATA_TYPE_FLOAT16),
+
+	/**
+	 * Signed bytes with a float32 scale per output channel, quartering the size of the convolutional layer weights.
+	 */
+	INT8(PackedYOLOv2WeightsFormat.DATA_TYPE_INT8);
+
+	private final byte dataType;
+
+	YOLOv2WeightsPrecision(byte dataType) {
+		this.dataType = dataType;
+	}
+
+	/**
+	 * @return The data type in which the tensor is stored at this precision.
+	 */
+	byte getDataType(YOLOv2WeightsTensor tensor) {
+		return tensor.getKind() == YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_WEIGHTS ? dataType 
+				: PackedYOLOv2WeightsFormat.DATA_TYPE_FLOAT32;
+	}
+}
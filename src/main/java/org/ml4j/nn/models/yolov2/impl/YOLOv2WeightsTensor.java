@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Describes a single weights tensor requested of a YOLOv2WeightsLoader - its kind, name and shape.
+ * 
+ * Convolutional layer weights have the shape outputDepth * inputDepth * height * width, matching the layout 
+ * of the raw float[] weights, and all other tensors have the shape depth.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2WeightsTensor implements Serializable {
+
+	/**
+	 * Default serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The kinds of tensor requested of a YOLOv2WeightsLoader, one for each of its methods.
+	 */
+	public enum Kind {
+		CONVOLUTIONAL_WEIGHTS, CONVOLUTIONAL_BIASES, BATCH_NORM_GAMMA, BATCH_NORM_BETA, BATCH_NORM_MOVING_MEAN, 
+		BATCH_NORM_MOVING_VARIANCE
+	}
+
+	private Kind kind;
+	private String name;
+	private int[] shape;
+
+	public YOLOv2WeightsTensor(Kind kind, String name, int[] shape) {
+		if ((kind == Kind.CONVOLUTIONAL_WEIGHTS && shape.length != 4) || (kind != Kind.CONVOLUTIONAL_WEIGHTS 
+				&& shape.length != 1)) {
+			throw new IllegalArgumentException("Invalid shape " + Arrays.toString(shape) + " for " + kind);
+		}
+		this.kind = kind;
+		this.name = name;
+		this.shape = shape.clone();
+	}
+
+	public static YOLOv2WeightsTensor convolutionalWeights(String name, int width, int height, int inputDepth,
+			int outputDepth) {
+		return new YOLOv2WeightsTensor(Kind.CONVOLUTIONAL_WEIGHTS, name, 
+				new int[] { outputDepth, inputDepth, height, width });
+	}
+
+	public static YOLOv2WeightsTensor vector(Kind kind, String name, int depth) {
+		return new YOLOv2WeightsTensor(kind, name, new int[] { depth });
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int[] getShape() {
+		return shape.clone();
+	}
+
+	/**
+	 * @return The output depth - the first dimension of the shape.
+	 */
+	public int getOutputDepth() {
+		return shape[0];
+	}
+
+	/**
+	 * @return The total number of elements of the tensor.
+	 */
+	public int getElementCount() {
+		int count = 1;
+		for (int dimension : shape) {
+			count *= dimension;
+		}
+		return count;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * kind.hashCode() + name.hashCode()) + Arrays.hashCode(shape);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof YOLOv2WeightsTensor)) {
+			return false;
+		}
+		YOLOv2WeightsTensor other = (YOLOv2WeightsTensor) obj;
+		return kind == other.kind && name.equals(other.name) && Arrays.equals(shape, other.shape);
+	}
+
+	@Override
+	public String toString() {
+		return kind + " " + name + " " + Arrays.toString(shape);
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests DarknetYOLOv2WeightsLoader against synthetic .weights files of a batch norm layer followed by a bias layer, 
+ * and the default manifest against the layers of yolov2.cfg.
+ * 
+ * @author Michael Lavelle
+ */
+public class DarknetYOLOv2WeightsLoaderTest {
+
+	private static final YOLOv2WeightsTensor BATCH_NORM_WEIGHTS = 
+			YOLOv2WeightsTensor.convolutionalWeights("conv2d_1", 1, 1, 3, 2);
+	private static final YOLOv2WeightsTensor BETA = 
+			YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_BETA, "batch_normalization_1", 2);
+	private static final YOLOv2WeightsTensor GAMMA = 
+			YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_GAMMA, "batch_normalization_1", 2);
+	private static final YOLOv2WeightsTensor MOVING_MEAN = 
+			YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_MEAN, "batch_normalization_1", 2);
+	private static final YOLOv2WeightsTensor MOVING_VARIANCE = YOLOv2WeightsTensor.vector(
+			YOLOv2WeightsTensor.Kind.BATCH_NORM_MOVING_VARIANCE, "batch_normalization_1", 2);
+	private static final YOLOv2WeightsTensor BIAS_WEIGHTS = 
+			YOLOv2WeightsTensor.convolutionalWeights("conv2d_2", 1, 1, 2, 3);
+	private static final YOLOv2WeightsTensor BIASES = 
+			YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_BIASES, "conv2d_2", 3);
+
+	/**
+	 * The tensors in graph order - the order of the batch norm tensors differs from their order in the file.
+	 */
+	private static final List<YOLOv2WeightsTensor> TENSORS = Arrays.asList(BATCH_NORM_WEIGHTS, GAMMA, BETA, 
+			MOVING_VARIANCE, MOVING_MEAN, BIAS_WEIGHTS, BIASES);
+
+	/**
+	 * The tensors in the order of their values in the file.
+	 */
+	private static final List<YOLOv2WeightsTensor> FILE_LAYOUT = Arrays.asList(BETA, GAMMA, MOVING_MEAN, 
+			MOVING_VARIANCE, BATCH_NORM_WEIGHTS, BIASES, BIAS_WEIGHTS);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testVersion2HeaderHasA64BitSeenCount() throws IOException {
+		DarknetYOLOv2WeightsLoader loader = new DarknetYOLOv2WeightsLoader(
+				writeWeights(0, 2, 8, 5000000000L, 0), TENSORS, null);
+		assertEquals(0, loader.getMajorVersion());
+		assertEquals(2, loader.getMinorVersion());
+		assertEquals(5, loader.getRevision());
+		assertEquals(5000000000L, loader.getSeen());
+		assertTensorsLoaded(loader);
+	}
+
+	@Test
+	public void testVersion1HeaderHasA32BitSeenCount() throws IOException {
+		DarknetYOLOv2WeightsLoader loader = new DarknetYOLOv2WeightsLoader(
+				writeWeights(0, 1, 4, 0xFFFFFFFFL, 0), TENSORS, null);
+		assertEquals(1, loader.getMinorVersion());
+		assertEquals(0xFFFFFFFFL, loader.getSeen());
+		assertTensorsLoaded(loader);
+	}
+
+	@Test
+	public void testLaterMajorVersionHasA64BitSeenCount() throws IOException {
+		DarknetYOLOv2WeightsLoader loader = new DarknetYOLOv2WeightsLoader(
+				writeWeights(1, 0, 8, 7, 0), TENSORS, null);
+		assertEquals(1, loader.getMajorVersion());
+		assertEquals(7, loader.getSeen());
+		assertTensorsLoaded(loader);
+	}
+
+	@Test
+	public void testFileSizeMustMatchTheTensors() throws IOException {
+		assertRejected(writeWeights(0, 2, 8, 0, 1), TENSORS, "Expected 112 bytes");
+		// A version 0.1 header with a 64-bit seen count is read as having a 32-bit count and a trailing value
+		assertRejected(writeWeights(0, 1, 8, 0, 0), TENSORS, "Expected 108 bytes");
+		assertRejected(writeWeights(0, 2, 8, 0, 0), TENSORS.subList(0, 5), "Expected 76 bytes");
+	}
+
+	@Test
+	public void testLayerMustHaveEitherBiasesOrBatchNorm() throws IOException {
+		assertRejected(writeWeights(0, 2, 8, 0, 0), Arrays.asList(BATCH_NORM_WEIGHTS, GAMMA, BETA, MOVING_MEAN, 
+				BIAS_WEIGHTS, BIASES), "have no biases or BATCH_NORM_MOVING_VARIANCE");
+		assertRejected(writeWeights(0, 2, 8, 0, 0), Arrays.asList(BIAS_WEIGHTS, BIASES, 
+				YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_GAMMA, "conv2d_2", 3)), 
+				"have both biases and batch norm");
+	}
+
+	@Test
+	public void testDefaultManifestListsTheLayersOfYolov2Cfg() throws IOException {
+		List<YOLOv2WeightsTensor> tensors = DarknetYOLOv2WeightsLoader.getDefaultTensors();
+		assertEquals(23 + 22 * 4 + 1, tensors.size());
+		assertEquals(YOLOv2WeightsTensor.convolutionalWeights("conv2d_1", 3, 3, 3, 32), tensors.get(0));
+		assertEquals(YOLOv2WeightsTensor.convolutionalWeights("conv2d_22", 3, 3, 1280, 1024), 
+				tensors.get(tensors.size() - 7));
+		assertEquals(YOLOv2WeightsTensor.convolutionalWeights("conv2d_23", 1, 1, 1024, 425), 
+				tensors.get(tensors.size() - 2));
+		assertEquals(YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.CONVOLUTIONAL_BIASES, "conv2d_23", 425), 
+				tensors.get(tensors.size() - 1));
+		long elementCount = 0;
+		for (YOLOv2WeightsTensor tensor : tensors) {
+			elementCount += tensor.getElementCount();
+		}
+		assertEquals(50983561, elementCount);
+	}
+
+	private void assertTensorsLoaded(DarknetYOLOv2WeightsLoader loader) {
+		float value = 0;
+		for (YOLOv2WeightsTensor tensor : FILE_LAYOUT) {
+			float[] expected = new float[tensor.getElementCount()];
+			for (int i = 0; i < expected.length; i++) {
+				expected[i] = value++;
+			}
+			assertArrayEquals(tensor.toString(), expected, 
+					loader.loadWeights(tensor, new DefaultYOLOv2TensorLoadEvent(tensor)), 0f);
+		}
+	}
+
+	private static void assertRejected(Path path, List<YOLOv2WeightsTensor> tensors, String message) {
+		try {
+			new DarknetYOLOv2WeightsLoader(path, tensors, null);
+			fail("Expected weights file to be rejected");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	/**
+	 * Writes a header with a seen count of seenBytes bytes, followed by the values 0, 1, 2... of the tensors in 
+	 * the order of FILE_LAYOUT and extraValueCount further values.
+	 */
+	private Path writeWeights(int majorVersion, int minorVersion, int seenBytes, long seen, int extraValueCount) 
+			throws IOException {
+		int valueCount = extraValueCount;
+		for (YOLOv2WeightsTensor tensor : FILE_LAYOUT) {
+			valueCount += tensor.getElementCount();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(12 + seenBytes + 4 * valueCount).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(majorVersion).putInt(minorVersion).putInt(5);
+		if (seenBytes == 8) {
+			buffer.putLong(seen);
+		} else {
+			buffer.putInt((int) seen);
+		}
+		for (int i = 0; i < valueCount; i++) {
+			buffer.putFloat(i);
+		}
+		Path path = folder.newFile().toPath();
+		Files.write(path, buffer.array());
+		return path;
+	}
+}
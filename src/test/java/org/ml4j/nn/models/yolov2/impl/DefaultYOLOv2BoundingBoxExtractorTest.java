@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ml4j.Matrix;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.Detections;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.neurons.NeuronsActivation;
+import org.ml4j.nn.neurons.format.NeuronsActivationFormat;
+
+/**
+ * Tests DefaultYOLOv2BoundingBoxExtractor, and the default methods of BoundingBoxExtractor.
+ * 
+ * @author Michael Lavelle
+ */
+public class DefaultYOLOv2BoundingBoxExtractorTest {
+
+	private static final float SCORE_THRESHOLD = 0.3f;
+	private static final float IOU_THRESHOLD = 0.5f;
+
+	private float[] data;
+	private DefaultYOLOv2BoundingBoxExtractor extractor;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(5);
+		data = new float[425 * 19 * 19];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (float) random.nextGaussian() * 3;
+		}
+		// The matrix factory is no longer used by the extractor
+		extractor = new DefaultYOLOv2BoundingBoxExtractor(null);
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testDeprecatedScoreFilteredBoundingBoxesMatchDetections() {
+		Detections detections = extractor.getScoreFilteredDetections(data, null, SCORE_THRESHOLD);
+		List<DefaultBoundingBox> boundingBoxes = extractor.getScoreFilteredBoundingBoxes(data, null, SCORE_THRESHOLD);
+		assertEquals(detections.size(), boundingBoxes.size());
+		for (int i = 0; i < boundingBoxes.size(); i++) {
+			assertEquals(detections.getPredictedClassIndex(i), boundingBoxes.get(i).getPredictedClassIndex());
+			assertEquals(detections.getPredictedClassScore(i), boundingBoxes.get(i).getPredictedClassScore(), 0f);
+			assertCornersEqual(detections.get(i).getScaledCorners(), boundingBoxes.get(i).getScaledCorners());
+		}
+	}
+
+	@Test
+	public void testDefaultMethodsDelegateToSingleImageExtraction() {
+		BoundingBoxExtractor singleImageExtractor = new BoundingBoxExtractor() {
+
+			@Override
+			public List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, 
+					YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+				return extractor.getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, yoloV2ClassificationNames, 
+						scoreThreshold, iouThreshold);
+			}
+		};
+		List<BoundingBox> expected = extractor.getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, null, 
+				SCORE_THRESHOLD, IOU_THRESHOLD);
+
+		Detections detections = singleImageExtractor.getScoreFilteredDetectionsWithNonMaxSuppression(data, null, 
+				SCORE_THRESHOLD, IOU_THRESHOLD);
+		assertEquals(expected.size(), detections.size());
+		float[] corners = new float[detections.size() * 4];
+		detections.getScaledCorners(corners);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getPredictedClassScore(), detections.getPredictedClassScore(i), 0f);
+			assertArrayEquals(expected.get(i).getScaledCorners(), 
+					new float[] { corners[i * 4], corners[i * 4 + 1], corners[i * 4 + 2], corners[i * 4 + 3] }, 0f);
+		}
+
+		List<BoundingBox> truncated = singleImageExtractor.getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, 
+				null, SCORE_THRESHOLD, IOU_THRESHOLD, 2);
+		assertEquals(2, truncated.size());
+		for (int i = 0; i < truncated.size(); i++) {
+			assertEquals(expected.get(i).getPredictedClassScore(), truncated.get(i).getPredictedClassScore(), 0f);
+		}
+
+		// A feature-major batch of two examples, the second being the same as the first
+		float[] batch = new float[data.length * 2];
+		for (int f = 0; f < data.length; f++) {
+			batch[f * 2] = -data[f];
+			batch[f * 2 + 1] = data[f];
+		}
+		List<List<BoundingBox>> batchBoundingBoxes = singleImageExtractor
+				.getScoreFilteredBoundingBoxesWithNonMaxSuppression(batch, 2, null, SCORE_THRESHOLD, IOU_THRESHOLD);
+		assertEquals(2, batchBoundingBoxes.size());
+		assertEquals(expected.size(), batchBoundingBoxes.get(1).size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i).getScaledCorners(), batchBoundingBoxes.get(1).get(i).getScaledCorners(), 
+					0f);
+		}
+	}
+
+	@Test
+	public void testActivationsAreReadInTheirDeclaredOrientation() {
+		BoundingBoxExtractor singleImageExtractor = new BoundingBoxExtractor() {
+
+			@Override
+			public List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, 
+					YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+				return extractor.getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, yoloV2ClassificationNames, 
+						scoreThreshold, iouThreshold);
+			}
+		};
+		List<BoundingBox> expected = extractor.getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, null, 
+				SCORE_THRESHOLD, IOU_THRESHOLD);
+
+		// A batch of two examples, the second being the same as the first, with rows spanning the feature set
+		float[] featureMajor = new float[data.length * 2];
+		for (int f = 0; f < data.length; f++) {
+			featureMajor[f * 2] = -data[f];
+			featureMajor[f * 2 + 1] = data[f];
+		}
+		Matrix featureMajorMatrix = createMatrix(data.length, 2, featureMajor);
+		NeuronsActivation rowsSpanFeatureSet = createActivation(featureMajorMatrix, 
+				NeuronsActivationFormat.ROWS_SPAN_FEATURE_SET);
+
+		// The same batch with columns spanning the feature set
+		float[] exampleMajor = new float[data.length * 2];
+		for (int f = 0; f < data.length; f++) {
+			exampleMajor[f] = -data[f];
+			exampleMajor[data.length + f] = data[f];
+		}
+		Matrix exampleMajorMatrix = createMatrix(2, data.length, exampleMajor);
+		when(exampleMajorMatrix.transpose()).thenReturn(featureMajorMatrix);
+		NeuronsActivation columnsSpanFeatureSet = createActivation(exampleMajorMatrix, 
+				mock(NeuronsActivationFormat.class));
+
+		for (BoundingBoxExtractor boundingBoxExtractor : new BoundingBoxExtractor[] { extractor, 
+				singleImageExtractor }) {
+			for (NeuronsActivation activations : new NeuronsActivation[] { rowsSpanFeatureSet, 
+					columnsSpanFeatureSet }) {
+				List<List<BoundingBox>> batchBoundingBoxes = boundingBoxExtractor
+						.getScoreFilteredBoundingBoxesWithNonMaxSuppression(activations, null, null, SCORE_THRESHOLD, 
+								IOU_THRESHOLD);
+				assertEquals(2, batchBoundingBoxes.size());
+				assertEquals(expected.size(), batchBoundingBoxes.get(1).size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertCornersEqual(expected.get(i).getScaledCorners(), 
+							batchBoundingBoxes.get(1).get(i).getScaledCorners());
+				}
+			}
+		}
+	}
+
+	private static Matrix createMatrix(int rows, int columns, float[] rowByRowArray) {
+		Matrix matrix = mock(Matrix.class);
+		when(matrix.getRows()).thenReturn(rows);
+		when(matrix.getColumns()).thenReturn(columns);
+		when(matrix.getRowByRowArray()).thenReturn(rowByRowArray);
+		return matrix;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static NeuronsActivation createActivation(Matrix matrix, NeuronsActivationFormat format) {
+		NeuronsActivation activations = mock(NeuronsActivation.class);
+		when(activations.getActivations(null)).thenReturn(matrix);
+		when(activations.getFormat()).thenReturn(format);
+		return activations;
+	}
+
+	/**
+	 * Corners are compared relative to the extent of the box, as the boxes of random outputs may be very large.
+	 */
+	private static void assertCornersEqual(float[] expected, float[] actual) {
+		float extent = 1;
+		for (float corner : expected) {
+			extent = Math.max(extent, Math.abs(corner));
+		}
+		assertArrayEquals(expected, actual, 1e-5f * extent);
+	}
+}
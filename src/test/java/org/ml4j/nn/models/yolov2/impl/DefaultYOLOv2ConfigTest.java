@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+
+/**
+ * Tests the grid size, anchors and validation of DefaultYOLOv2Config.
+ * 
+ * @author Michael Lavelle
+ */
+public class DefaultYOLOv2ConfigTest {
+
+	@Test
+	public void testDefaultConfigIsThePretrainedCocoConfig() {
+		DefaultYOLOv2Config config = new DefaultYOLOv2Config();
+		assertEquals(608, config.getInputWidth());
+		assertEquals(608, config.getInputHeight());
+		assertEquals(19, config.getGridWidth());
+		assertEquals(19, config.getGridHeight());
+		assertEquals(80, config.getClassCount());
+		assertEquals(5, config.getAnchors().length);
+		
+		YOLOv2Config pretrained = YOLOv2Config.pretrained();
+		assertEquals(pretrained.getInputWidth(), config.getInputWidth());
+		assertEquals(pretrained.getInputHeight(), config.getInputHeight());
+		assertEquals(pretrained.getGridWidth(), config.getGridWidth());
+		assertEquals(pretrained.getGridHeight(), config.getGridHeight());
+		assertEquals(pretrained.getClassCount(), config.getClassCount());
+		assertTrue(Arrays.deepEquals(pretrained.getAnchors(), config.getAnchors()));
+	}
+
+	@Test
+	public void testGridSizeIsTheInputSizeDividedBy32() {
+		DefaultYOLOv2Config config = new DefaultYOLOv2Config(416);
+		assertEquals(13, config.getGridWidth());
+		assertEquals(13, config.getGridHeight());
+
+		config = new DefaultYOLOv2Config(640, 320, new float[][] { { 1, 2 } }, 3);
+		assertEquals(20, config.getGridWidth());
+		assertEquals(10, config.getGridHeight());
+		assertEquals(3, config.getClassCount());
+	}
+
+	@Test
+	public void testAnchorsAreCopied() {
+		float[][] anchors = new float[][] { { 1, 2 }, { 3, 4 } };
+		DefaultYOLOv2Config config = new DefaultYOLOv2Config(608, 608, anchors, 80);
+		anchors[0][0] = 5;
+		config.getAnchors()[1][1] = 6;
+		assertArrayEquals(new float[] { 1, 2 }, config.getAnchors()[0], 0f);
+		assertArrayEquals(new float[] { 3, 4 }, config.getAnchors()[1], 0f);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInputSizeMustBeAMultipleOf32() {
+		new DefaultYOLOv2Config(600);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInputSizeMustBePositive() {
+		new DefaultYOLOv2Config(0, 608, new float[][] { { 1, 2 } }, 80);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAnchorsMustHaveAWidthAndHeight() {
+		new DefaultYOLOv2Config(608, 608, new float[][] { { 1, 2, 3 } }, 80);
+	}
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ml4j.Matrix;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.Detections;
+import org.ml4j.nn.models.yolov2.YOLOv2DetectionPipeline.OverloadPolicy;
+import org.ml4j.nn.models.yolov2.YOLOv2ForwardPass;
+import org.ml4j.nn.models.yolov2.YOLOv2FrameDetections;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.neurons.NeuronsActivation;
+
+/**
+ * Tests the ordering, backpressure and shutdown of DefaultYOLOv2DetectionPipeline.
+ * 
+ * Each frame is an Integer, carried through the stages as the single output value of the network, and extracted as 
+ * a number of detections equal to the frame.
+ * 
+ * @author Michael Lavelle
+ */
+public class DefaultYOLOv2DetectionPipelineTest {
+
+	private static final float SCORE_THRESHOLD = 0.3f;
+	private static final float IOU_THRESHOLD = 0.5f;
+
+	private Function<Integer, NeuronsActivation> preprocessor;
+	private YOLOv2ForwardPass forwardPass;
+	private BoundingBoxExtractor boundingBoxExtractor;
+	private CountDownLatch forwardStarted;
+	private CountDownLatch forwardReleased;
+	private AtomicInteger forwardCount;
+	private DefaultYOLOv2DetectionPipeline<Integer> pipeline;
+
+	@Before
+	public void setUp() {
+		forwardStarted = new CountDownLatch(1);
+		forwardReleased = new CountDownLatch(0);
+		forwardCount = new AtomicInteger();
+		preprocessor = frame -> {
+			if (frame < 0) {
+				throw new IllegalArgumentException("Invalid frame:" + frame);
+			}
+			return createActivation(frame);
+		};
+		forwardPass = input -> {
+			forwardStarted.countDown();
+			try {
+				forwardReleased.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			forwardCount.incrementAndGet();
+			return input;
+		};
+		boundingBoxExtractor = new BoundingBoxExtractor() {
+
+			@Override
+			public List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, 
+					YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+				return Collections.nCopies((int) data[0], mock(BoundingBox.class));
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		forwardReleased.countDown();
+		if (pipeline != null) {
+			pipeline.close();
+		}
+	}
+
+	@Test
+	public void testFramesLeaveInSubmissionOrder() throws InterruptedException {
+		pipeline = createPipeline(1, OverloadPolicy.BLOCK);
+		Thread submitter = new Thread(() -> {
+			try {
+				for (int frame = 0; frame < 20; frame++) {
+					// A negative frame fails preprocessing, but still leaves the pipeline in order
+					assertEquals(frame, pipeline.submit(frame == 7 ? -1 : frame));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		submitter.start();
+		for (int frame = 0; frame < 20; frame++) {
+			YOLOv2FrameDetections<Integer> frameDetections = pipeline.poll(5, TimeUnit.SECONDS);
+			assertNotNull(frameDetections);
+			assertEquals(frame, frameDetections.getSequenceNumber());
+			if (frame == 7) {
+				assertTrue(frameDetections.isFailed());
+				assertTrue(frameDetections.getFailure() instanceof IllegalArgumentException);
+			} else {
+				assertFalse(frameDetections.isFailed());
+				assertEquals(frame, frameDetections.getFrame().intValue());
+				assertEquals(frame, frameDetections.getDetections().size());
+			}
+		}
+		submitter.join(5000);
+		assertEquals(19, forwardCount.get());
+	}
+
+	@Test
+	public void testBlockingSubmitAppliesBackpressure() throws InterruptedException {
+		forwardReleased = new CountDownLatch(1);
+		pipeline = createPipeline(1, OverloadPolicy.BLOCK);
+		AtomicInteger submittedCount = new AtomicInteger();
+		Thread submitter = new Thread(() -> {
+			try {
+				for (int frame = 0; frame < 10; frame++) {
+					pipeline.submit(frame);
+					submittedCount.incrementAndGet();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		submitter.start();
+
+		// With the forward stage blocked, the pipeline holds one frame being forwarded, one in the queue in front 
+		// of the forward stage, one held by the preprocess stage and one in the input queue
+		assertTrue(forwardStarted.await(5, TimeUnit.SECONDS));
+		awaitCount(submittedCount, 4);
+		Thread.sleep(200);
+		assertEquals(4, submittedCount.get());
+		assertTrue(submitter.isAlive());
+
+		forwardReleased.countDown();
+		for (int frame = 0; frame < 10; frame++) {
+			assertEquals(frame, pipeline.poll(5, TimeUnit.SECONDS).getFrame().intValue());
+		}
+		submitter.join(5000);
+		assertEquals(10, submittedCount.get());
+		assertEquals(0, pipeline.getDroppedFrameCount());
+	}
+
+	@Test
+	public void testDropOldestDropsOnlyFramesNotYetPreprocessed() throws InterruptedException {
+		forwardReleased = new CountDownLatch(1);
+		pipeline = createPipeline(1, OverloadPolicy.DROP_OLDEST);
+		for (int frame = 0; frame < 20; frame++) {
+			// Never blocks, however full the pipeline
+			pipeline.submit(frame);
+		}
+		forwardReleased.countDown();
+
+		List<Integer> frames = new ArrayList<>();
+		long taken = 0;
+		while (frames.size() + pipeline.getDroppedFrameCount() < 20) {
+			YOLOv2FrameDetections<Integer> frameDetections = pipeline.poll(5, TimeUnit.SECONDS);
+			assertNotNull(frameDetections);
+			assertTrue(frameDetections.getSequenceNumber() >= taken);
+			taken = frameDetections.getSequenceNumber();
+			frames.add(frameDetections.getFrame());
+		}
+		assertTrue(pipeline.getDroppedFrameCount() > 0);
+		// The newest frame is never dropped
+		assertEquals(19, frames.get(frames.size() - 1).intValue());
+	}
+
+	@Test
+	public void testCloseUnderDropOldestKeepsAcceptedFrames() throws InterruptedException {
+		forwardReleased = new CountDownLatch(1);
+		pipeline = createPipeline(1, OverloadPolicy.DROP_OLDEST);
+		pipeline.submit(0);
+		assertTrue(forwardStarted.await(5, TimeUnit.SECONDS));
+		for (int frame = 1; frame < 4; frame++) {
+			// Time for the preprocess stage to take each frame, leaving the input queue full after the last
+			Thread.sleep(100);
+			pipeline.submit(frame);
+		}
+		Thread.sleep(100);
+		assertEquals(0, pipeline.getDroppedFrameCount());
+
+		Thread closer = new Thread(pipeline::close);
+		closer.start();
+		Thread.sleep(100);
+		// The end of the stream waits for space in the input queue rather than dropping a frame
+		assertTrue(closer.isAlive());
+		assertEquals(0, pipeline.getDroppedFrameCount());
+
+		forwardReleased.countDown();
+		for (int frame = 0; frame < 4; frame++) {
+			assertEquals(frame, pipeline.poll(5, TimeUnit.SECONDS).getFrame().intValue());
+		}
+		assertNull(pipeline.take());
+		// The end of the stream is left in place for later takes
+		assertNull(pipeline.take());
+		closer.join(5000);
+		assertFalse(closer.isAlive());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSubmitAfterCloseFails() throws InterruptedException {
+		pipeline = createPipeline(1, OverloadPolicy.BLOCK);
+		pipeline.close();
+		pipeline.submit(0);
+	}
+
+	@Test
+	public void testCloseInterruptsStagesBlockedOnAConsumerWhichNeverTakes() throws InterruptedException {
+		Set<Thread> existingThreads = new HashSet<>(Thread.getAllStackTraces().keySet());
+		pipeline = createPipeline(1, OverloadPolicy.BLOCK).withCloseTimeout(200, TimeUnit.MILLISECONDS);
+		List<Thread> stageThreads = new ArrayList<>();
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (!existingThreads.contains(thread) && thread.getName().startsWith("yolov2-pipeline-")) {
+				stageThreads.add(thread);
+			}
+		}
+		assertEquals(3, stageThreads.size());
+
+		// The first frame fills the output queue, and the extract stage blocks on the second
+		pipeline.submit(1);
+		pipeline.submit(2);
+		Thread.sleep(100);
+
+		long start = System.nanoTime();
+		pipeline.close();
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+		for (Thread thread : stageThreads) {
+			thread.join(1000);
+			assertFalse(thread.getName(), thread.isAlive());
+		}
+
+		// The end of the stream still reaches the consumer
+		YOLOv2FrameDetections<Integer> frameDetections = pipeline.take();
+		while (frameDetections != null) {
+			frameDetections = pipeline.take();
+		}
+	}
+
+	@Test
+	public void testExtractionIsDelegatedToTheExtractor() throws InterruptedException {
+		Detections detections = Detections.of(Collections.emptyList());
+		boundingBoxExtractor = new BoundingBoxExtractor() {
+
+			@Override
+			public List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, 
+					YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public Detections getScoreFilteredDetectionsWithNonMaxSuppression(float[] data, 
+					YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+				assertEquals(SCORE_THRESHOLD, scoreThreshold, 0f);
+				assertEquals(IOU_THRESHOLD, iouThreshold, 0f);
+				return detections;
+			}
+		};
+		pipeline = createPipeline(1, OverloadPolicy.BLOCK);
+		pipeline.submit(3);
+		assertSame(detections, pipeline.poll(5, TimeUnit.SECONDS).getDetections());
+	}
+
+	private DefaultYOLOv2DetectionPipeline<Integer> createPipeline(int queueCapacity, OverloadPolicy overloadPolicy) {
+		return new DefaultYOLOv2DetectionPipeline<>(preprocessor, forwardPass, boundingBoxExtractor, null, null, 
+				SCORE_THRESHOLD, IOU_THRESHOLD, queueCapacity, overloadPolicy);
+	}
+
+	private static NeuronsActivation createActivation(int frame) {
+		Matrix matrix = mock(Matrix.class);
+		when(matrix.getRowByRowArray()).thenReturn(new float[] { frame });
+		NeuronsActivation activations = mock(NeuronsActivation.class);
+		when(activations.getActivations(null)).thenReturn(matrix);
+		when(activations.getExampleCount()).thenReturn(1);
+		return activations;
+	}
+
+	private static void awaitCount(AtomicInteger count, int expected) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (count.get() < expected && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, count.get());
+	}
+}
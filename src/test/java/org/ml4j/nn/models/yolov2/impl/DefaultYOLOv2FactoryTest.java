@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2WeightsLoader;
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+
+/**
+ * Tests that DefaultYOLOv2Factory rejects configurations other than that of the pretrained YOLOv2Definition, before 
+ * building any network.
+ * 
+ * @author Michael Lavelle
+ */
+public class DefaultYOLOv2FactoryTest {
+
+	private DefaultYOLOv2Factory factory;
+
+	@Before
+	public void setUp() {
+		factory = new DefaultYOLOv2Factory(null, (YOLOv2WeightsLoader) null, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAlternativeInputSizeIsRejected() throws IOException {
+		factory.createYoloV2(null, new DefaultYOLOv2Config(416));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAlternativeClassCountIsRejected() throws IOException {
+		YOLOv2Config config = new DefaultYOLOv2Config();
+		factory.createYoloV2(null, new DefaultYOLOv2Config(608, 608, config.getAnchors(), 20));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAlternativeAnchorsAreRejected() throws IOException {
+		factory.createYoloV2(null, new DefaultYOLOv2Config(608, 608, new float[][] { { 1, 1 } }, 80));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPoolOfAlternativeConfigIsRejected() throws IOException {
+		factory.createYoloV2Pool(null, new DefaultYOLOv2Config(320), 2);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ml4j.Matrix;
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.ml4j.nn.neurons.NeuronsActivation;
+import org.ml4j.nn.neurons.format.NeuronsActivationFormat;
+
+/**
+ * Tests the feature-major assembly of the batch activations of DefaultYOLOv2MicroBatchScheduler, and the 
+ * extraction of the bounding boxes of each request from them.
+ * 
+ * @author Michael Lavelle
+ */
+public class DefaultYOLOv2MicroBatchSchedulerTest {
+
+	private MatrixFactory matrixFactory;
+
+	@Before
+	public void setUp() {
+		// Matrices which hold the row-by-row array they are created from
+		matrixFactory = mock(MatrixFactory.class);
+		when(matrixFactory.createMatrixFromRowsByRowsArray(anyInt(), anyInt(), any(float[].class))).thenAnswer(
+				invocation -> {
+					Object[] arguments = invocation.getArguments();
+					Matrix matrix = mock(Matrix.class);
+					when(matrix.getRows()).thenReturn((Integer) arguments[0]);
+					when(matrix.getColumns()).thenReturn((Integer) arguments[1]);
+					when(matrix.getRowByRowArray()).thenReturn((float[]) arguments[2]);
+					return matrix;
+				});
+	}
+
+	@Test
+	public void testBatchActivationIsFeatureMajor() {
+		// Two 2 * 2 images of 3 channels - 12 features each
+		Neurons3D inputNeurons = new Neurons3D(2, 2, 3, false);
+		float[] first = new float[12];
+		float[] second = new float[12];
+		for (int feature = 0; feature < 12; feature++) {
+			first[feature] = feature;
+			second[feature] = 100 + feature;
+		}
+		NeuronsActivation activation = DefaultYOLOv2MicroBatchScheduler.createBatchActivation(inputNeurons, 
+				Arrays.asList(first, second), matrixFactory);
+
+		assertSame(NeuronsActivationFormat.ROWS_SPAN_FEATURE_SET, activation.getFormat());
+		Matrix matrix = activation.getActivations(matrixFactory);
+		assertEquals(12, matrix.getRows());
+		assertEquals(2, matrix.getColumns());
+		float[] expected = new float[24];
+		for (int feature = 0; feature < 12; feature++) {
+			expected[feature * 2] = feature;
+			expected[feature * 2 + 1] = 100 + feature;
+		}
+		assertArrayEquals(expected, matrix.getRowByRowArray(), 0f);
+	}
+
+	@Test
+	public void testEachRequestReceivesTheBoundingBoxesOfItsOwnImage() throws Exception {
+		// The network passes its input straight through, and each image is extracted as a number of bounding 
+		// boxes equal to its first value
+		List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+		BoundingBoxExtractor boundingBoxExtractor = new BoundingBoxExtractor() {
+
+			@Override
+			public List<BoundingBox> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, 
+					YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+				return Collections.nCopies((int) data[0], mock(BoundingBox.class));
+			}
+
+			@Override
+			public List<List<BoundingBox>> getScoreFilteredBoundingBoxesWithNonMaxSuppression(float[] data, 
+					int batchSize, YOLOv2Labels yoloV2ClassificationNames, float scoreThreshold, float iouThreshold) {
+				batchSizes.add(batchSize);
+				return BoundingBoxExtractor.super.getScoreFilteredBoundingBoxesWithNonMaxSuppression(data, batchSize, 
+						yoloV2ClassificationNames, scoreThreshold, iouThreshold);
+			}
+		};
+		DefaultYOLOv2Config config = new DefaultYOLOv2Config(32);
+		DefaultYOLOv2MicroBatchScheduler scheduler = new DefaultYOLOv2MicroBatchScheduler(input -> input, 
+				boundingBoxExtractor, null, matrixFactory, config, 0.3f, 0.5f, 4, 5, TimeUnit.SECONDS);
+		try {
+			List<CompletableFuture<List<BoundingBox>>> futures = new ArrayList<>();
+			for (int image = 0; image < 4; image++) {
+				float[] input = new float[32 * 32 * 3];
+				Arrays.fill(input, image + 1);
+				futures.add(scheduler.submit(input));
+			}
+			for (int image = 0; image < 4; image++) {
+				assertEquals(image + 1, futures.get(image).get(5, TimeUnit.SECONDS).size());
+			}
+			// The batch filled before the maximum wait
+			assertEquals(Collections.singletonList(4), batchSizes);
+			assertEquals(1, scheduler.getBatchCount());
+		} finally {
+			scheduler.close();
+		}
+	}
+}
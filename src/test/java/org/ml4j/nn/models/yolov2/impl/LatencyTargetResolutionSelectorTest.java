@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ml4j.nn.models.yolov2.YOLOv2Config;
+
+/**
+ * Tests the switching of LatencyTargetResolutionSelector between resolutions.
+ * 
+ * @author Michael Lavelle
+ */
+public class LatencyTargetResolutionSelectorTest {
+
+	private YOLOv2Config high;
+	private YOLOv2Config medium;
+	private YOLOv2Config low;
+	private List<YOLOv2Config> configs;
+
+	@Before
+	public void setUp() {
+		high = new DefaultYOLOv2Config(608);
+		medium = new DefaultYOLOv2Config(416);
+		low = new DefaultYOLOv2Config(320);
+		configs = Arrays.asList(high, medium, low);
+	}
+
+	@Test
+	public void testSwitchesDownOnlyAfterTheMinimumSamples() {
+		// No smoothing, so the average is the latest sample
+		LatencyTargetResolutionSelector selector = new LatencyTargetResolutionSelector(configs, 100, 
+				TimeUnit.MILLISECONDS, 1, 0.8, 3);
+		assertSame(high, selector.getCurrentConfig());
+		assertSame(high, selector.recordLatency(150, TimeUnit.MILLISECONDS));
+		assertSame(high, selector.recordLatency(150, TimeUnit.MILLISECONDS));
+		assertSame(medium, selector.recordLatency(150, TimeUnit.MILLISECONDS));
+		assertSame(medium, selector.getCurrentConfig());
+
+		// The sample count restarts on each switch
+		assertSame(medium, selector.recordLatency(150, TimeUnit.MILLISECONDS));
+		assertSame(medium, selector.recordLatency(150, TimeUnit.MILLISECONDS));
+		assertSame(low, selector.recordLatency(150, TimeUnit.MILLISECONDS));
+
+		// The lowest resolution is kept however slow it is
+		for (int i = 0; i < 5; i++) {
+			assertSame(low, selector.recordLatency(150, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test
+	public void testSwitchesUpWhenThePredictedLatencyIsWithinTheHeadroom() {
+		LatencyTargetResolutionSelector selector = new LatencyTargetResolutionSelector(configs, 100, 
+				TimeUnit.MILLISECONDS, 1, 0.8, 1);
+		assertSame(medium, selector.recordLatency(150, TimeUnit.MILLISECONDS));
+
+		// 416 * 416 to 608 * 608 scales the latency by 2.136 - 40ms predicts 85ms, which is outside the headroom 
+		// of 80ms, whereas 35ms predicts 75ms
+		assertSame(medium, selector.recordLatency(40, TimeUnit.MILLISECONDS));
+		assertSame(high, selector.recordLatency(35, TimeUnit.MILLISECONDS));
+		assertSame(high, selector.recordLatency(1, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testLatencyIsSmoothed() {
+		LatencyTargetResolutionSelector selector = new LatencyTargetResolutionSelector(configs, 100, 
+				TimeUnit.MILLISECONDS, 0.5, 0.8, 1);
+		// The average of 90, then 0.5 * 120 + 0.5 * 90 = 105, which exceeds the target
+		assertSame(high, selector.recordLatency(90, TimeUnit.MILLISECONDS));
+		assertSame(medium, selector.recordLatency(120, TimeUnit.MILLISECONDS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConfigsMustBeInDescendingOrderOfResolution() {
+		new LatencyTargetResolutionSelector(Arrays.asList(medium, high), 100, TimeUnit.MILLISECONDS);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAtLeastOneConfigIsRequired() {
+		new LatencyTargetResolutionSelector(Arrays.asList(), 100, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+
+/**
+ * Tests NonMaxSuppression against a copy of the original quadratic greedy algorithm, with the intersection of 
+ * boxes which do not overlap clamped to zero.
+ * 
+ * @author Michael Lavelle
+ */
+public class NonMaxSuppressionTest {
+
+	private static final float[] IOU_THRESHOLDS = { 0f, 0.3f, 0.5f, 0.7f, 1f };
+
+	@Test
+	public void testSelectionMatchesQuadraticGreedyAlgorithm() {
+		Random random = new Random(7);
+		NonMaxSuppression nonMaxSuppression = new NonMaxSuppression();
+		for (int trial = 0; trial < 500; trial++) {
+			List<BoundingBox> candidates = createCandidates(random, random.nextInt(300));
+			for (float iouThreshold : IOU_THRESHOLDS) {
+				List<BoundingBox> expected = applyQuadraticNonMaxSuppression(new ArrayList<>(candidates), 
+						iouThreshold);
+				assertSelected("Trial:" + trial + " threshold:" + iouThreshold, expected, 
+						nonMaxSuppression.apply(candidates, iouThreshold));
+				int maxSelections = 1 + random.nextInt(10);
+				assertSelected("Trial:" + trial + " threshold:" + iouThreshold + " max:" + maxSelections, 
+						expected.subList(0, Math.min(maxSelections, expected.size())), 
+						nonMaxSuppression.apply(candidates, iouThreshold, maxSelections));
+			}
+		}
+	}
+
+	@Test
+	public void testBoxesDisjointOnBothAxesDoNotSuppressEachOther() {
+		// Without the clamp the negative height and width of the intersection multiply to an iou of 1
+		BoundingBox first = new DefaultBoundingBox(0.1f, 0.1f, 0.1f, 0.1f, 0, 0.9f);
+		BoundingBox second = new DefaultBoundingBox(0.5f, 0.5f, 0.1f, 0.1f, 0, 0.8f);
+		List<BoundingBox> selected = new NonMaxSuppression().apply(Arrays.asList(second, first), 0.5f);
+		assertEquals(2, selected.size());
+		assertSame(first, selected.get(0));
+		assertSame(second, selected.get(1));
+	}
+
+	private static void assertSelected(String message, List<BoundingBox> expected, List<BoundingBox> actual) {
+		assertEquals(message, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertSame(message + " selection:" + i, expected.get(i), actual.get(i));
+		}
+	}
+
+	/**
+	 * Clusters of overlapping boxes, with scores quantised so that ties are frequent.
+	 */
+	private static List<BoundingBox> createCandidates(Random random, int count) {
+		int clusterCount = 1 + random.nextInt(8);
+		float[][] clusters = new float[clusterCount][];
+		for (int i = 0; i < clusterCount; i++) {
+			clusters[i] = new float[] { random.nextFloat(), random.nextFloat(), 0.02f + random.nextFloat() * 0.3f };
+		}
+		List<BoundingBox> candidates = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			float[] cluster = clusters[random.nextInt(clusterCount)];
+			float size = cluster[2];
+			candidates.add(new DefaultBoundingBox(cluster[0] + (random.nextFloat() - 0.5f) * size, 
+					cluster[1] + (random.nextFloat() - 0.5f) * size, size * (0.5f + random.nextFloat()), 
+					size * (0.5f + random.nextFloat()), random.nextInt(4), random.nextInt(20) / 20f));
+		}
+		return candidates;
+	}
+
+	/**
+	 * The original applyNonMaxSuppression - repeatedly selecting the first box of maximum score and removing the 
+	 * remaining boxes whose iou with it exceeds the threshold.
+	 */
+	private static List<BoundingBox> applyQuadraticNonMaxSuppression(List<BoundingBox> b, float iouThreshold) {
+		List<BoundingBox> d = new ArrayList<>();
+		while (!b.isEmpty()) {
+			BoundingBox max = getMax(b);
+			d.add(max);
+			b.remove(max);
+			List<BoundingBox> toRemove = new ArrayList<>();
+			for (BoundingBox r : b) {
+				if (getIOU(r, max) > iouThreshold) {
+					toRemove.add(r);
+				}
+			}
+			b.removeAll(toRemove);
+		}
+		return d;
+	}
+
+	private static BoundingBox getMax(List<BoundingBox> results) {
+		BoundingBox max = null;
+		for (BoundingBox r : results) {
+			if (max == null || r.getPredictedClassScore() > max.getPredictedClassScore()) {
+				max = r;
+			}
+		}
+		return max;
+	}
+
+	private static float getIOU(BoundingBox first, BoundingBox second) {
+		float[] firstCorners = first.getScaledCorners();
+		float[] secondCorners = second.getScaledCorners();
+		float yi1 = Math.max(firstCorners[0], secondCorners[0]);
+		float xi1 = Math.max(firstCorners[1], secondCorners[1]);
+		float yi2 = Math.min(firstCorners[2], secondCorners[2]);
+		float xi2 = Math.min(firstCorners[3], secondCorners[3]);
+		float interArea = yi2 - yi1 > 0 && xi2 - xi1 > 0 ? (yi2 - yi1) * (xi2 - xi1) : 0;
+		float firstArea = (firstCorners[3] - firstCorners[1]) * (firstCorners[2] - firstCorners[0]);
+		float secondArea = (secondCorners[3] - secondCorners[1]) * (secondCorners[2] - secondCorners[0]);
+		return interArea / (firstArea + secondArea - interArea);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the round trip of weights values through each data type of PackedYOLOv2WeightsFormat.
+ * 
+ * @author Michael Lavelle
+ */
+public class PackedYOLOv2WeightsFormatTest {
+
+	@Test
+	public void testFloat16ConversionOfSpecialValues() {
+		assertFloat16RoundTrip(0f, 0f);
+		assertFloat16RoundTrip(-0f, -0f);
+		assertFloat16RoundTrip(1f, 1f);
+		assertFloat16RoundTrip(-2f, -2f);
+		assertFloat16RoundTrip(65504f, 65504f);
+		// The smallest subnormal, and half of it rounded to even
+		assertFloat16RoundTrip(0x1p-24f, 0x1p-24f);
+		assertFloat16RoundTrip(0x1p-25f, 0f);
+		// Ties round to even
+		assertFloat16RoundTrip(1 + 0x1p-11f, 1f);
+		assertFloat16RoundTrip(1 + 3 * 0x1p-11f, 1 + 0x1p-9f);
+		// Halfway between the largest finite value and 65536 rounds up to infinity
+		assertFloat16RoundTrip(65520f, Float.POSITIVE_INFINITY);
+		assertFloat16RoundTrip(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+		assertTrue(Float.isNaN(PackedYOLOv2WeightsFormat.fromFloat16(PackedYOLOv2WeightsFormat.toFloat16(Float.NaN))));
+	}
+
+	@Test
+	public void testFloat32RoundTripIsExact() {
+		YOLOv2WeightsTensor tensor = YOLOv2WeightsTensor.convolutionalWeights("conv2d_1", 3, 3, 3, 4);
+		float[] values = createValues(tensor, new Random(1));
+		assertArrayEquals(values, roundTrip(PackedYOLOv2WeightsFormat.DATA_TYPE_FLOAT32, tensor, values), 0f);
+	}
+
+	@Test
+	public void testFloat16RoundTripIsWithinHalfPrecision() {
+		YOLOv2WeightsTensor tensor = YOLOv2WeightsTensor.vector(YOLOv2WeightsTensor.Kind.BATCH_NORM_GAMMA, 
+				"batch_normalization_1", 1000);
+		float[] values = createValues(tensor, new Random(2));
+		float[] result = roundTrip(PackedYOLOv2WeightsFormat.DATA_TYPE_FLOAT16, tensor, values);
+		for (int i = 0; i < values.length; i++) {
+			// Half precision holds 11 significant bits, so rounding is within 2^-11 relative to the value
+			assertEquals(values[i], result[i], Math.abs(values[i]) * 0x1p-11f);
+		}
+	}
+
+	@Test
+	public void testInt8RoundTripIsWithinHalfAScalePerChannel() {
+		YOLOv2WeightsTensor tensor = YOLOv2WeightsTensor.convolutionalWeights("conv2d_1", 3, 3, 8, 4);
+		float[] values = createValues(tensor, new Random(3));
+		int channelLength = values.length / 4;
+		// Give each channel a different range, and zero the last channel
+		for (int i = 0; i < values.length; i++) {
+			int channel = i / channelLength;
+			values[i] = channel == 3 ? 0 : values[i] * (float) Math.pow(10, channel - 1);
+		}
+		float[] result = roundTrip(PackedYOLOv2WeightsFormat.DATA_TYPE_INT8, tensor, values);
+		for (int channel = 0; channel < 4; channel++) {
+			float max = 0;
+			for (int i = channel * channelLength; i < (channel + 1) * channelLength; i++) {
+				max = Math.max(max, Math.abs(values[i]));
+			}
+			float scale = max / 127;
+			for (int i = channel * channelLength; i < (channel + 1) * channelLength; i++) {
+				assertEquals(values[i], result[i], scale / 2 + Math.ulp(max));
+			}
+		}
+	}
+
+	private static void assertFloat16RoundTrip(float value, float expected) {
+		float result = PackedYOLOv2WeightsFormat.fromFloat16(PackedYOLOv2WeightsFormat.toFloat16(value));
+		assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(result));
+	}
+
+	private static float[] createValues(YOLOv2WeightsTensor tensor, Random random) {
+		float[] values = new float[tensor.getElementCount()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (float) random.nextGaussian();
+		}
+		return values;
+	}
+
+	private static float[] roundTrip(byte dataType, YOLOv2WeightsTensor tensor, float[] values) {
+		int length = (int) PackedYOLOv2WeightsFormat.getDataLength(dataType, tensor);
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		PackedYOLOv2WeightsFormat.writeValues(dataType, tensor, values, buffer);
+		assertEquals(length, buffer.position());
+		buffer.flip();
+		float[] result = new float[values.length];
+		PackedYOLOv2WeightsFormat.readValues(dataType, tensor, buffer, result);
+		return result;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+
+/**
+ * Tests the class indexes and score thresholds of YOLOv2ClassSubset, and the resolution of classes by label.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2ClassSubsetTest {
+
+	@Test
+	public void testClassesAreResolvedByLabel() throws IOException {
+		YOLOv2Labels labels = new DefaultYOLOv2Labels(YOLOv2ClassSubsetTest.class.getClassLoader());
+		YOLOv2ClassSubset classSubset = new YOLOv2ClassSubset().withClass(labels, labels.getLabel(2))
+				.withClass(labels, labels.getLabel(0), 0.2f);
+		assertArrayEquals(new int[] { 2, 0 }, classSubset.getClassIndexes());
+		assertEquals(0.3f, classSubset.getScoreThreshold(2, 0.3f), 0f);
+		assertEquals(0.2f, classSubset.getScoreThreshold(0, 0.3f), 0f);
+	}
+
+	@Test
+	public void testUnknownLabelIsNamedInTheError() throws IOException {
+		assertUnknownLabel(new DefaultYOLOv2Labels(YOLOv2ClassSubsetTest.class.getClassLoader()));
+	}
+
+	@Test
+	public void testNegativeLabelIndexIsReportedAsAnUnknownLabel() {
+		YOLOv2Labels labels = mock(YOLOv2Labels.class);
+		when(labels.getLabelIndex("unicorn")).thenReturn(-1);
+		assertUnknownLabel(labels);
+	}
+
+	private static void assertUnknownLabel(YOLOv2Labels labels) {
+		try {
+			new YOLOv2ClassSubset().withClass(labels, "unicorn");
+			fail("Expected an unknown label to be rejected");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Label of:unicorn is not known", e.getMessage());
+		}
+		try {
+			new YOLOv2ClassSubset().withClass(labels, "unicorn", 0.5f);
+			fail("Expected an unknown label to be rejected");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Label of:unicorn is not known", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests reading detections written by YOLOv2DetectionStreamWriter.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2DetectionStreamReaderTest {
+
+	private static final float TOLERANCE = 1e-3f;
+
+	@Test
+	public void testCornersAreReadInTheCoordinatesOfEachImage() throws Exception {
+		DefaultDetections detections = new DefaultDetections(416, 416, 0);
+		detections.add(0.5f, 0.4f, 0.2f, 0.1f, 3, 0.9f);
+		detections.add(0.1f, 0.2f, 0.05f, 0.3f, 7, 0.5f);
+		YOLOv2DetectionStreamWriter writer = new YOLOv2DetectionStreamWriter(1280, 720, 416, 416);
+		ByteBuffer buffer = ByteBuffer.allocate(YOLOv2DetectionStreamWriter.getHeaderLength() 
+				+ 2 * YOLOv2DetectionStreamWriter.getRecordLength(2));
+		writer.writeHeader(buffer);
+		writer.write(buffer, 1, 100, detections);
+		writer.write(buffer, 2, 200, detections.asBoundingBoxes());
+		buffer.flip();
+
+		float[] inputCorners = new float[8];
+		detections.getScaledCorners(inputCorners);
+		float[] streamCorners = new float[8];
+		detections.getScaledCorners(1280, 720, streamCorners);
+
+		YOLOv2DetectionStreamReader reader = new YOLOv2DetectionStreamReader(buffer);
+		assertEquals(416, reader.getInputWidth());
+		assertEquals(416, reader.getInputHeight());
+		for (int frameId = 1; frameId <= 2; frameId++) {
+			assertTrue(reader.next());
+			assertEquals(frameId, reader.getFrameId());
+			assertEquals(2, reader.size());
+			float[] corners = new float[8];
+			reader.getScaledCorners(corners);
+			assertArrayEquals(inputCorners, corners, TOLERANCE);
+			reader.getScaledCorners(1280, 720, corners);
+			assertArrayEquals(streamCorners, corners, TOLERANCE);
+			for (int detection = 0; detection < 2; detection++) {
+				assertEquals(detections.getPredictedClassIndex(detection), reader.getPredictedClassIndex(detection));
+				assertArrayEquals(detections.get(detection).getScaledCorners(), 
+						reader.get(detection).getScaledCorners(), TOLERANCE);
+				assertEquals(streamCorners[detection * 4 + 3], reader.getCorner(detection, 3), TOLERANCE);
+			}
+		}
+		assertTrue(!reader.next());
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.ml4j.nn.models.yolov2.impl.YOLOv2ImagePreprocessor.PixelFormat;
+
+/**
+ * Tests the letterboxing, stretching and bilinear resizing of YOLOv2ImagePreprocessor, and the mapping of box corners 
+ * back to original image coordinates.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2ImagePreprocessorTest {
+
+	private static final int INPUT_SIZE = 64;
+	private static final int PLANE_SIZE = INPUT_SIZE * INPUT_SIZE;
+	private static final float DELTA = 1e-6f;
+
+	@Test
+	public void testLetterboxCentresTheScaledImageOnGrey() {
+		// A 128 * 64 image is scaled by 0.5 to 64 * 32, padded by 16 rows above and below
+		YOLOv2ImagePreprocessor preprocessor = new YOLOv2ImagePreprocessor(new DefaultYOLOv2Config(INPUT_SIZE), true);
+		try (YOLOv2PreprocessedImage image = preprocessor.preprocess(createUniformImage(128, 64, 255, 0, 51), 128, 64, 
+				PixelFormat.RGB)) {
+			float[] buffer = image.getBuffer();
+			for (int y = 0; y < INPUT_SIZE; y++) {
+				boolean content = y >= 16 && y < 48;
+				for (int x = 0; x < INPUT_SIZE; x++) {
+					int index = y * INPUT_SIZE + x;
+					assertEquals(content ? 1f : 0.5f, buffer[index], DELTA);
+					assertEquals(content ? 0f : 0.5f, buffer[PLANE_SIZE + index], DELTA);
+					assertEquals(content ? 0.2f : 0.5f, buffer[2 * PLANE_SIZE + index], DELTA);
+				}
+			}
+
+			// The content spans rows 16 to 48 of the input - corners outside it are clamped to the original image
+			float[] corners = new float[] { 16, 0, 48, 64, 32, 16, 40, 32, 0, -8, 64, 72 };
+			image.mapToOriginal(corners, 3);
+			assertArrayEquals(new float[] { 0, 0, 64, 128, 32, 32, 48, 64, 0, 0, 64, 128 }, corners, DELTA);
+		}
+	}
+
+	@Test
+	public void testStretchScalesEachAxisIndependently() {
+		YOLOv2ImagePreprocessor preprocessor = new YOLOv2ImagePreprocessor(new DefaultYOLOv2Config(INPUT_SIZE), 
+				false);
+		try (YOLOv2PreprocessedImage image = preprocessor.preprocess(createUniformImage(128, 64, 10, 20, 30), 128, 64, 
+				PixelFormat.BGR)) {
+			float[] buffer = image.getBuffer();
+			for (int index = 0; index < PLANE_SIZE; index++) {
+				// BGR pixels - the first byte of each pixel is blue
+				assertEquals(30 / 255f, buffer[index], DELTA);
+				assertEquals(20 / 255f, buffer[PLANE_SIZE + index], DELTA);
+				assertEquals(10 / 255f, buffer[2 * PLANE_SIZE + index], DELTA);
+			}
+
+			float[] corners = new float[] { 16, 16, 32, 32 };
+			image.mapToOriginal(corners, 1);
+			assertArrayEquals(new float[] { 16, 32, 32, 64 }, corners, DELTA);
+		}
+	}
+
+	@Test
+	public void testUpscalingInterpolatesBilinearly() {
+		// A 32 * 32 image, black on the left half and white on the right, scaled by 2 - output column x samples 
+		// source column (x + 0.5) / 2 - 0.5
+		byte[] pixels = new byte[32 * 32 * 3];
+		for (int y = 0; y < 32; y++) {
+			for (int x = 16; x < 32; x++) {
+				for (int channel = 0; channel < 3; channel++) {
+					pixels[(y * 32 + x) * 3 + channel] = (byte) 255;
+				}
+			}
+		}
+		YOLOv2ImagePreprocessor preprocessor = new YOLOv2ImagePreprocessor(new DefaultYOLOv2Config(INPUT_SIZE), true);
+		try (YOLOv2PreprocessedImage image = preprocessor.preprocess(pixels, 32, 32, PixelFormat.RGB)) {
+			float[] buffer = image.getBuffer();
+			for (int y = 0; y < INPUT_SIZE; y++) {
+				assertEquals(0f, buffer[y * INPUT_SIZE + 30], DELTA);
+				assertEquals(0.25f, buffer[y * INPUT_SIZE + 31], DELTA);
+				assertEquals(0.75f, buffer[y * INPUT_SIZE + 32], DELTA);
+				assertEquals(1f, buffer[y * INPUT_SIZE + 33], DELTA);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelResizeMatchesSerialResize() {
+		byte[] pixels = new byte[200 * 150 * 3];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = (byte) (i * 31);
+		}
+		YOLOv2ImagePreprocessor serial = new YOLOv2ImagePreprocessor(new DefaultYOLOv2Config(INPUT_SIZE), true);
+		YOLOv2ImagePreprocessor parallel = new YOLOv2ImagePreprocessor(new DefaultYOLOv2Config(INPUT_SIZE), true)
+				.withForkJoinPool(ForkJoinPool.commonPool()).withParallelThreshold(1);
+		try (YOLOv2PreprocessedImage serialImage = serial.preprocess(pixels, 200, 150, PixelFormat.RGB);
+				YOLOv2PreprocessedImage parallelImage = parallel.preprocess(pixels, 200, 150, PixelFormat.RGB)) {
+			assertArrayEquals(serialImage.getBuffer(), parallelImage.getBuffer(), 0f);
+		}
+	}
+
+	@Test
+	public void testBuffersAreReusedOnceClosed() {
+		YOLOv2ImagePreprocessor preprocessor = new YOLOv2ImagePreprocessor(new DefaultYOLOv2Config(INPUT_SIZE), true);
+		byte[] pixels = createUniformImage(32, 32, 0, 0, 0);
+		YOLOv2PreprocessedImage first = preprocessor.preprocess(pixels, 32, 32, PixelFormat.RGB);
+		float[] buffer = first.getBuffer();
+		first.close();
+		try (YOLOv2PreprocessedImage second = preprocessor.preprocess(pixels, 32, 32, PixelFormat.RGB)) {
+			assertSame(buffer, second.getBuffer());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testBufferCannotBeReadOnceClosed() {
+		YOLOv2ImagePreprocessor preprocessor = new YOLOv2ImagePreprocessor(new DefaultYOLOv2Config(INPUT_SIZE), true);
+		YOLOv2PreprocessedImage image = preprocessor.preprocess(createUniformImage(32, 32, 0, 0, 0), 32, 32, 
+				PixelFormat.RGB);
+		image.close();
+		image.getBuffer();
+	}
+
+	private static byte[] createUniformImage(int width, int height, int first, int second, int third) {
+		byte[] pixels = new byte[width * height * 3];
+		for (int i = 0; i < pixels.length; i += 3) {
+			pixels[i] = (byte) first;
+			pixels[i + 1] = (byte) second;
+			pixels[i + 2] = (byte) third;
+		}
+		return pixels;
+	}
+}
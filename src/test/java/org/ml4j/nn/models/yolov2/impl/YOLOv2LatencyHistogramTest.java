@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the log-linear buckets of YOLOv2LatencyHistogram at their boundaries, and the percentiles read from them.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2LatencyHistogramTest {
+
+	@Test
+	public void testBucketBoundaries() {
+		assertEquals(7, YOLOv2LatencyHistogram.getBucket(7));
+		assertEquals(7, YOLOv2LatencyHistogram.getBucketUpperBound(7));
+		assertEquals(8, YOLOv2LatencyHistogram.getBucket(8));
+		assertEquals(8, YOLOv2LatencyHistogram.getBucketUpperBound(8));
+		assertEquals(15, YOLOv2LatencyHistogram.getBucket(15));
+		assertEquals(16, YOLOv2LatencyHistogram.getBucket(16));
+		assertEquals(16, YOLOv2LatencyHistogram.getBucket(17));
+		assertEquals(17, YOLOv2LatencyHistogram.getBucketUpperBound(16));
+		assertEquals(17, YOLOv2LatencyHistogram.getBucket(18));
+		int lastBucket = YOLOv2LatencyHistogram.getBucket(Long.MAX_VALUE);
+		assertEquals(487, lastBucket);
+		assertEquals(Long.MAX_VALUE, YOLOv2LatencyHistogram.getBucketUpperBound(lastBucket));
+	}
+
+	@Test
+	public void testEachValueIsWithinOneEighthOfTheUpperBoundOfItsBucket() {
+		for (int exponent = 0; exponent < 63; exponent++) {
+			long powerOfTwo = 1L << exponent;
+			for (long value : new long[] { powerOfTwo - 1, powerOfTwo, powerOfTwo + 1, 
+					powerOfTwo + (powerOfTwo >>> 1) }) {
+				assertBucketContains(value);
+			}
+		}
+		for (long value = 0; value < 4096; value++) {
+			assertBucketContains(value);
+		}
+		assertBucketContains(Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testPercentiles() {
+		YOLOv2LatencyHistogram histogram = new YOLOv2LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));
+		for (long value = 1; value <= 1000; value++) {
+			histogram.record(value);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500.5, histogram.getMean(), 1e-9);
+		assertEquals(1000, histogram.getMax());
+		assertEquals(1, histogram.getPercentile(0));
+		assertPercentile(500, histogram.getPercentile(50));
+		assertPercentile(990, histogram.getPercentile(99));
+		assertEquals(1000, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void testPercentileIsCappedAtTheMaximumAndResetClears() {
+		YOLOv2LatencyHistogram histogram = new YOLOv2LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(16);
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(16, histogram.getPercentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(100));
+	}
+
+	private static void assertBucketContains(long value) {
+		int bucket = YOLOv2LatencyHistogram.getBucket(value);
+		long upperBound = YOLOv2LatencyHistogram.getBucketUpperBound(bucket);
+		assertTrue("Upper bound of bucket of:" + value, upperBound >= value);
+		assertTrue("Width of bucket of:" + value, upperBound - value <= value / 8);
+		if (bucket > 0) {
+			assertTrue("Upper bound of bucket before bucket of:" + value, 
+					YOLOv2LatencyHistogram.getBucketUpperBound(bucket - 1) < value);
+		}
+	}
+
+	private static void assertPercentile(long expected, long actual) {
+		assertTrue("Percentile of:" + actual + " is below:" + expected, actual >= expected);
+		assertTrue("Percentile of:" + actual + " is more than 12.5% above:" + expected, actual <= expected * 1.125);
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+
+/**
+ * Tests YOLOv2OutputDecoder against the per-cell Matrix decode of the original getAllBoundingBoxes - transcribed 
+ * here with float arithmetic - for a fixed 425 * 19 * 19 network output.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2OutputDecoderTest {
+
+	private static final float[][] ANCHORS = { { 0.57273f, 0.677385f }, { 1.87446f, 2.06253f }, 
+			{ 3.33843f, 5.47434f }, { 7.88282f, 3.52778f }, { 9.77052f, 9.16828f } };
+
+	private static final float SCORE_DELTA = 1e-6f;
+	private static final float CORNER_DELTA = 1e-3f;
+
+	private float[] data;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(42);
+		data = new float[425 * 19 * 19];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (float) random.nextGaussian() * 3;
+		}
+	}
+
+	@Test
+	public void testDecodeMatchesBaselineForEveryAnchorBox() {
+		List<BoundingBox> expected = getBaselineBoundingBoxes(data);
+		List<BoundingBox> actual = new YOLOv2OutputDecoder().decode(data).asBoundingBoxes();
+		assertBoundingBoxesEqual(expected, actual);
+	}
+
+	@Test
+	public void testScoreFilteredDecodeMatchesFilteredBaseline() {
+		float scoreThreshold = 0.3f;
+		List<BoundingBox> expected = new ArrayList<>();
+		for (BoundingBox box : getBaselineBoundingBoxes(data)) {
+			if (box.getPredictedClassScore() > scoreThreshold) {
+				expected.add(box);
+			}
+		}
+		YOLOv2DecodeStatistics statistics = new YOLOv2DecodeStatistics();
+		List<BoundingBox> actual = new YOLOv2OutputDecoder().decode(data, 0, 1, scoreThreshold, statistics)
+				.asBoundingBoxes();
+		assertBoundingBoxesEqual(expected, actual);
+		assertEquals(1805, statistics.getCellCount());
+	}
+
+	@Test
+	public void testDecodeOfFeatureMajorBatchMatchesSingleExample() {
+		int batchSize = 3;
+		float[] batch = new float[data.length * batchSize];
+		for (int f = 0; f < data.length; f++) {
+			for (int e = 0; e < batchSize; e++) {
+				batch[f * batchSize + e] = e == 1 ? data[f] : -data[f];
+			}
+		}
+		YOLOv2OutputDecoder decoder = new YOLOv2OutputDecoder();
+		assertBoundingBoxesEqual(decoder.decode(data).asBoundingBoxes(), 
+				decoder.decode(batch, 1, batchSize).asBoundingBoxes());
+	}
+
+	@Test
+	public void testClassSubsetDecodeMatchesBaselineFilteredPerClass() {
+		int[] classIndexes = { 0, 2, 16 };
+		float[] scoreThresholds = { 0.2f, Float.NaN, 0.05f };
+		float scoreThreshold = 0.3f;
+		YOLOv2ClassSubset classSubset = new YOLOv2ClassSubset().withClass(0, 0.2f).withClass(2).withClass(16, 0.05f);
+		List<BoundingBox> expected = new ArrayList<>();
+		int boundRejectedCellCount = getBaselineClassSubsetBoundingBoxes(data, classIndexes, scoreThresholds, 
+				scoreThreshold, expected);
+		YOLOv2DecodeStatistics statistics = new YOLOv2DecodeStatistics();
+		List<BoundingBox> actual = new YOLOv2OutputDecoder().decode(data, 0, 1, classSubset, scoreThreshold, 
+				Integer.MAX_VALUE, statistics).asBoundingBoxes();
+		assertTrue(!expected.isEmpty() && boundRejectedCellCount > 0);
+		assertBoundingBoxesEqual(expected, actual);
+		assertEquals(expected.size(), statistics.getCandidateCount());
+	}
+
+	@Test
+	public void testClassSubsetDecodeRejectsCellWhoseSubsetLogitsAreFarBelowTheMaximum() {
+		float[] cells = new float[425 * 19 * 19];
+		for (int cell = 0; cell < 1805; cell++) {
+			cells[cell * 85 + 4] = -10;
+		}
+		// A confident cell whose predicted class, 1, is outside the subset - the subset class 0 has a 
+		// probability of about exp(-20), so the cell is rejected before its softmax is computed.
+		cells[4] = 10;
+		cells[5 + 1] = 10;
+		cells[5] = -10;
+		YOLOv2ClassSubset classSubset = new YOLOv2ClassSubset().withClass(0, 0.05f);
+		YOLOv2DecodeStatistics statistics = new YOLOv2DecodeStatistics();
+		YOLOv2OutputDecoder decoder = new YOLOv2OutputDecoder();
+		assertEquals(0, decoder.decode(cells, 0, 1, classSubset, 0.3f, Integer.MAX_VALUE, statistics)
+				.asBoundingBoxes().size());
+		assertEquals(1805, statistics.getPrunedCellCount());
+
+		cells[5] = 10;
+		statistics.reset();
+		List<BoundingBox> boxes = decoder.decode(cells, 0, 1, classSubset, 0.3f, Integer.MAX_VALUE, statistics)
+				.asBoundingBoxes();
+		assertEquals(1, boxes.size());
+		assertEquals(0, boxes.get(0).getPredictedClassIndex());
+		assertEquals(0.5f, boxes.get(0).getPredictedClassScore(), 1e-3f);
+		assertEquals(1804, statistics.getPrunedCellCount());
+	}
+
+	private static void assertBoundingBoxesEqual(List<BoundingBox> expected, List<BoundingBox> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			BoundingBox expectedBox = expected.get(i);
+			BoundingBox actualBox = actual.get(i);
+			assertEquals("Class of box:" + i, expectedBox.getPredictedClassIndex(), actualBox.getPredictedClassIndex());
+			assertEquals("Score of box:" + i, expectedBox.getPredictedClassScore(), 
+					actualBox.getPredictedClassScore(), SCORE_DELTA);
+			assertArrayEquals("Corners of box:" + i, expectedBox.getScaledCorners(), actualBox.getScaledCorners(), 
+					CORNER_DELTA);
+		}
+	}
+
+	/**
+	 * The original decode - for each cell of the [r][c][b][85] layout the xy and confidence are passed through a 
+	 * sigmoid, the wh through an exponential, and the class logits through a softmax.
+	 */
+	private static List<BoundingBox> getBaselineBoundingBoxes(float[] data) {
+		List<BoundingBox> results = new ArrayList<>();
+		int index = 0;
+		for (int r = 0; r < 19; r++) {
+			for (int c = 0; c < 19; c++) {
+				for (int b = 0; b < 5; b++) {
+					float confidence = sigmoid(data[index + 4]);
+					float x = (sigmoid(data[index]) + c) / 19;
+					float y = (sigmoid(data[index + 1]) + r) / 19;
+					float width = (float) Math.exp(data[index + 2]) * ANCHORS[b][0] / 19;
+					float height = (float) Math.exp(data[index + 3]) * ANCHORS[b][1] / 19;
+					double max = Double.NEGATIVE_INFINITY;
+					for (int i = 0; i < 80; i++) {
+						max = Math.max(max, data[index + 5 + i]);
+					}
+					double sum = 0;
+					for (int i = 0; i < 80; i++) {
+						sum += Math.exp(data[index + 5 + i] - max);
+					}
+					int predictedClassIndex = 0;
+					float predictedClassScore = Float.NEGATIVE_INFINITY;
+					for (int i = 0; i < 80; i++) {
+						float score = (float) (Math.exp(data[index + 5 + i] - max) / sum) * confidence;
+						if (score > predictedClassScore) {
+							predictedClassScore = score;
+							predictedClassIndex = i;
+						}
+					}
+					results.add(new DefaultBoundingBox(x, y, width, height, predictedClassIndex, predictedClassScore));
+					index = index + 85;
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * The original decode restricted to a subset of classes - the predicted class of each cell is the highest scoring 
+	 * class of the subset whose full softmax score exceeds its threshold, and cells with no such class are dropped.
+	 * 
+	 * @return The number of cells with a confidence above the lowest threshold whose best subset class is bounded 
+	 * below the lowest threshold by confidence * exp(subsetMax - max).
+	 */
+	private static int getBaselineClassSubsetBoundingBoxes(float[] data, int[] classIndexes, float[] scoreThresholds, 
+			float scoreThreshold, List<BoundingBox> results) {
+		float minimumScoreThreshold = Float.POSITIVE_INFINITY;
+		for (float classScoreThreshold : scoreThresholds) {
+			minimumScoreThreshold = Math.min(minimumScoreThreshold, 
+					Float.isNaN(classScoreThreshold) ? scoreThreshold : classScoreThreshold);
+		}
+		int boundRejectedCellCount = 0;
+		int index = 0;
+		for (int r = 0; r < 19; r++) {
+			for (int c = 0; c < 19; c++) {
+				for (int b = 0; b < 5; b++, index += 85) {
+					float confidence = sigmoid(data[index + 4]);
+					double max = Double.NEGATIVE_INFINITY;
+					double subsetMax = Double.NEGATIVE_INFINITY;
+					for (int i = 0; i < 80; i++) {
+						max = Math.max(max, data[index + 5 + i]);
+					}
+					for (int classIndex : classIndexes) {
+						subsetMax = Math.max(subsetMax, data[index + 5 + classIndex]);
+					}
+					if (confidence > minimumScoreThreshold 
+							&& !(confidence * Math.exp(subsetMax - max) > minimumScoreThreshold)) {
+						boundRejectedCellCount++;
+					}
+					double sum = 0;
+					for (int i = 0; i < 80; i++) {
+						sum += Math.exp(data[index + 5 + i] - max);
+					}
+					int predictedClassIndex = -1;
+					float predictedClassScore = 0;
+					for (int j = 0; j < classIndexes.length; j++) {
+						float classScoreThreshold = Float.isNaN(scoreThresholds[j]) ? scoreThreshold 
+								: scoreThresholds[j];
+						float score = (float) (Math.exp(data[index + 5 + classIndexes[j]] - max) / sum) * confidence;
+						if (score > classScoreThreshold && score > predictedClassScore) {
+							predictedClassScore = score;
+							predictedClassIndex = classIndexes[j];
+						}
+					}
+					if (predictedClassIndex >= 0) {
+						float x = (sigmoid(data[index]) + c) / 19;
+						float y = (sigmoid(data[index + 1]) + r) / 19;
+						float width = (float) Math.exp(data[index + 2]) * ANCHORS[b][0] / 19;
+						float height = (float) Math.exp(data[index + 3]) * ANCHORS[b][1] / 19;
+						results.add(new DefaultBoundingBox(x, y, width, height, predictedClassIndex, 
+								predictedClassScore));
+					}
+				}
+			}
+		}
+		return boundRejectedCellCount;
+	}
+
+	private static float sigmoid(float value) {
+		return (float) (1d / (1d + Math.exp(-value)));
+	}
+}
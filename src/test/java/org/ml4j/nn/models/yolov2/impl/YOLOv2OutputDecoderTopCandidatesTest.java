@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the bounded candidate decode of YOLOv2OutputDecoder - the candidates retained are those with the highest 
+ * scores, the earliest cells being retained in the event of a tie, returned in cell order.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2OutputDecoderTopCandidatesTest {
+
+	private static final int VALUES_PER_ANCHOR = 85;
+	private static final int CELL_COUNT = 19 * 19 * 5;
+
+	@Test
+	public void testRetainsHighestScoringCandidatesInCellOrder() {
+		Random random = new Random(11);
+		YOLOv2OutputDecoder decoder = new YOLOv2OutputDecoder();
+		float[] data = new float[CELL_COUNT * VALUES_PER_ANCHOR];
+		for (int trial = 0; trial < 20; trial++) {
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (float) random.nextGaussian() * 3;
+			}
+			DefaultDetections all = decoder.decode(data, 0, 1, 0.1f, null);
+			for (int maxCandidates : new int[] { 1, 5, 50, all.size(), all.size() + 1 }) {
+				DefaultDetections top = decoder.decode(data, 0, 1, 0.1f, maxCandidates, null);
+				assertArrayEquals("Trial:" + trial + " max:" + maxCandidates, 
+						getExpectedScores(all, maxCandidates), getScores(top), 0f);
+			}
+		}
+	}
+
+	@Test
+	public void testRetainsEarliestCellsOnTiedScores() {
+		// Every anchor box of every cell has the same output values, so all scores are tied
+		float[] data = new float[CELL_COUNT * VALUES_PER_ANCHOR];
+		for (int cell = 0; cell < CELL_COUNT; cell++) {
+			data[cell * VALUES_PER_ANCHOR + 4] = 2f;
+			data[cell * VALUES_PER_ANCHOR + 5 + 3] = 4f;
+		}
+		YOLOv2OutputDecoder decoder = new YOLOv2OutputDecoder();
+		DefaultDetections all = decoder.decode(data, 0, 1, 0.1f, null);
+		DefaultDetections top = decoder.decode(data, 0, 1, 0.1f, 10, null);
+		assertEquals(CELL_COUNT, all.size());
+		assertEquals(10, top.size());
+		float[] allCorners = new float[all.size() * 4];
+		float[] topCorners = new float[top.size() * 4];
+		all.getScaledCorners(allCorners);
+		top.getScaledCorners(topCorners);
+		// The boxes of the first two grid cells - 5 anchor boxes each
+		assertArrayEquals(Arrays.copyOf(allCorners, 40), topCorners, 0f);
+		for (int i = 0; i < top.size(); i++) {
+			assertEquals(3, top.getPredictedClassIndex(i));
+		}
+	}
+
+	/**
+	 * The scores of the maxCandidates highest scoring detections, earliest first on ties, in detection order.
+	 */
+	private static float[] getExpectedScores(DefaultDetections all, int maxCandidates) {
+		List<Integer> detections = new ArrayList<>();
+		for (int i = 0; i < all.size(); i++) {
+			detections.add(i);
+		}
+		detections.sort(Comparator.<Integer>comparingDouble(i -> -all.getPredictedClassScore(i))
+				.thenComparingInt(i -> i));
+		List<Integer> retained = new ArrayList<>(detections.subList(0, Math.min(maxCandidates, detections.size())));
+		retained.sort(null);
+		float[] scores = new float[retained.size()];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = all.getPredictedClassScore(retained.get(i));
+		}
+		return scores;
+	}
+
+	private static float[] getScores(DefaultDetections detections) {
+		float[] scores = new float[detections.size()];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = detections.getPredictedClassScore(i);
+		}
+		return scores;
+	}
+}
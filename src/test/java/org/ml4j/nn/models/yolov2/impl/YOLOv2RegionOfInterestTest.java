@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.ml4j.nn.models.yolov2.Detections;
+
+/**
+ * Tests the projection of a YOLOv2RegionOfInterest onto the output grid, and decoding within it.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2RegionOfInterestTest {
+
+	private static final int GRID_SIZE = 19;
+
+	@Test
+	public void testRectangleIncludesOnlyTheCellsItOverlaps() {
+		// Each cell spans 32 pixels of a 608 * 608 image - the rectangle spans columns 3 to 7 and rows 6 to 8
+		YOLOv2RegionOfInterest regionOfInterest = new YOLOv2RegionOfInterest(608, 608)
+				.withRectangle(100, 200, 150, 60);
+		YOLOv2RegionOfInterest.Projection projection = regionOfInterest.getProjection(608, 608, GRID_SIZE, GRID_SIZE);
+		for (int r = 0; r < GRID_SIZE; r++) {
+			for (int c = 0; c < GRID_SIZE; c++) {
+				boolean expected = r >= 6 && r <= 8 && c >= 3 && c <= 7;
+				assertEquals("Cell:" + r + "," + c, expected, projection.isCellIncluded(r * GRID_SIZE + c));
+			}
+		}
+	}
+
+	@Test
+	public void testLetterboxedImageExcludesThePaddingCells() {
+		// A 1280 * 720 image letterboxed into 608 * 608 spans rows 133 to 475 of the input - grid rows 4 to 14
+		YOLOv2RegionOfInterest regionOfInterest = new YOLOv2RegionOfInterest(1280, 720).withLetterbox(true)
+				.withRectangle(0, 0, 1280, 720);
+		YOLOv2RegionOfInterest.Projection projection = regionOfInterest.getProjection(608, 608, GRID_SIZE, GRID_SIZE);
+		for (int r = 0; r < GRID_SIZE; r++) {
+			for (int c = 0; c < GRID_SIZE; c++) {
+				boolean expected = r >= 4 && r <= 14;
+				assertEquals("Cell:" + r + "," + c, expected, projection.isCellIncluded(r * GRID_SIZE + c));
+			}
+		}
+	}
+
+	@Test
+	public void testDecodeMatchesFilteringAllDetectionsByCentre() {
+		YOLOv2RegionOfInterest regionOfInterest = new YOLOv2RegionOfInterest(608, 608)
+				.withRectangle(100, 200, 150, 60)
+				.withPolygon(300, 300, 580, 350, 400, 590);
+		YOLOv2RegionOfInterest.Projection projection = regionOfInterest.getProjection(608, 608, GRID_SIZE, GRID_SIZE);
+		YOLOv2OutputDecoder decoder = new YOLOv2OutputDecoder();
+		Random random = new Random(11);
+		float[] data = new float[425 * GRID_SIZE * GRID_SIZE];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (float) random.nextGaussian() * 3;
+		}
+		float scoreThreshold = 0.1f;
+
+		DefaultDetections all = decoder.decode(data, 0, 1, scoreThreshold, null);
+		float[] allCorners = new float[all.size() * 4];
+		all.getScaledCorners(1, 1, allCorners);
+		List<Integer> expected = new ArrayList<>();
+		for (int detection = 0; detection < all.size(); detection++) {
+			float x = (allCorners[detection * 4 + 1] + allCorners[detection * 4 + 3]) / 2;
+			float y = (allCorners[detection * 4] + allCorners[detection * 4 + 2]) / 2;
+			if (projection.getContainingArea(x, y) >= 0) {
+				expected.add(detection);
+			}
+		}
+		assertTrue(expected.size() > 0 && expected.size() < all.size());
+
+		Detections detections = decoder.decode(data, 0, 1, null, regionOfInterest, scoreThreshold, 
+				Integer.MAX_VALUE, null);
+		assertEquals(expected.size(), detections.size());
+		float[] corners = new float[detections.size() * 4];
+		detections.getScaledCorners(1, 1, corners);
+		for (int i = 0; i < expected.size(); i++) {
+			int detection = expected.get(i);
+			assertEquals(all.getPredictedClassIndex(detection), detections.getPredictedClassIndex(i));
+			assertEquals(all.getPredictedClassScore(detection), detections.getPredictedClassScore(i), 0f);
+			float[] expectedCorners = new float[4];
+			float[] actualCorners = new float[4];
+			System.arraycopy(allCorners, detection * 4, expectedCorners, 0, 4);
+			System.arraycopy(corners, i * 4, actualCorners, 0, 4);
+			assertArrayEquals(expectedCorners, actualCorners, 0f);
+		}
+	}
+}
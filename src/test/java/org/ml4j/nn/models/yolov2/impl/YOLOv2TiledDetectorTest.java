@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests the layout of the tiles of YOLOv2TiledDetector - aligned to the edges of the image, and overlapping their 
+ * neighbours by at least the configured overlap.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2TiledDetectorTest {
+
+	private static final int TILE_SIZE = 608;
+
+	@Test
+	public void testImageNoLargerThanATileIsASingleTile() {
+		YOLOv2TiledDetector detector = createDetector();
+		assertArrayEquals(new int[] { 0, 0, 608, 608 }, detector.getTiles(608, 608));
+		assertArrayEquals(new int[] { 0, 0, 400, 300 }, detector.getTiles(400, 300));
+	}
+
+	@Test
+	public void testTilesOfAnHdImage() {
+		// Columns - 4 tiles at a stride of at most 608 - 64, spread evenly over 1920 - 608 pixels
+		// Rows - 2 tiles, the second aligned to the bottom edge
+		int[] tiles = createDetector().getTiles(1920, 1080);
+		int[] expected = new int[] { 
+			0, 0, 608, 608, 437, 0, 608, 608, 874, 0, 608, 608, 1312, 0, 608, 608,
+			0, 472, 608, 608, 437, 472, 608, 608, 874, 472, 608, 608, 1312, 472, 608, 608 };
+		assertArrayEquals(expected, tiles);
+	}
+
+	@Test
+	public void testTilesAreAlignedToTheEdgesAndOverlapByAtLeastTheOverlap() {
+		for (int overlap : new int[] { 0, 1, 64, 300, 607 }) {
+			YOLOv2TiledDetector detector = createDetector().withOverlap(overlap);
+			for (int length = 609; length < 4000; length += 97) {
+				int[] origins = getColumnOrigins(detector.getTiles(length, 100));
+				String message = "Length:" + length + " overlap:" + overlap + " origins:" + Arrays.toString(origins);
+				assertEquals(message, 0, origins[0]);
+				assertEquals(message, length - TILE_SIZE, origins[origins.length - 1]);
+				for (int i = 1; i < origins.length; i++) {
+					assertTrue(message, origins[i] > origins[i - 1]);
+					assertTrue(message, origins[i - 1] + TILE_SIZE - origins[i] >= overlap);
+				}
+				// No fewer tiles could achieve the overlap
+				int stride = TILE_SIZE - overlap;
+				assertTrue(message, (long) (origins.length - 2) * stride < length - TILE_SIZE);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOverlapMustBeLessThanTheTileSize() {
+		createDetector().withOverlap(TILE_SIZE);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOverlapMustNotBeNegative() {
+		createDetector().withOverlap(-1);
+	}
+
+	private static YOLOv2TiledDetector createDetector() {
+		return new YOLOv2TiledDetector(null, null, null, null, new DefaultYOLOv2Config(TILE_SIZE));
+	}
+
+	private static int[] getColumnOrigins(int[] tiles) {
+		TreeSet<Integer> origins = new TreeSet<>();
+		for (int offset = 0; offset < tiles.length; offset += 4) {
+			origins.add(tiles[offset]);
+			assertEquals(TILE_SIZE, tiles[offset + 2]);
+		}
+		return origins.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
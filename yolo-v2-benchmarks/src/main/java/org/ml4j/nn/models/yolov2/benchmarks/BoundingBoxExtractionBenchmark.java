@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.Detections;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.models.yolov2.impl.DefaultDetections;
+import org.ml4j.nn.models.yolov2.impl.DefaultYOLOv2BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.impl.DefaultYOLOv2Labels;
+import org.ml4j.nn.models.yolov2.impl.YOLOv2OutputDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks decoding a single 425x19x19 network output into bounding boxes, with and without non-max 
+ * suppression, at varying object densities.
+ * 
+ * @author Michael Lavelle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BoundingBoxExtractionBenchmark {
+
+	private static final float SCORE_THRESHOLD = 0.3f;
+	private static final float IOU_THRESHOLD = 0.5f;
+
+	/**
+	 * The fraction of anchor boxes containing an object.
+	 */
+	@Param({ "0.001", "0.01", "0.1" })
+	public double density;
+
+	private float[] output;
+	private YOLOv2Labels labels;
+	private YOLOv2OutputDecoder decoder;
+	private DefaultYOLOv2BoundingBoxExtractor extractor;
+	private DefaultYOLOv2BoundingBoxExtractor classAwareExtractor;
+
+	@Setup
+	public void setUp() throws IOException {
+		YOLOv2BenchmarkEnvironment environment = new YOLOv2BenchmarkEnvironment();
+		output = YOLOv2BenchmarkFixtures.createOutput(density, 42);
+		labels = new DefaultYOLOv2Labels(BoundingBoxExtractionBenchmark.class.getClassLoader());
+		decoder = new YOLOv2OutputDecoder();
+		extractor = new DefaultYOLOv2BoundingBoxExtractor(environment.getMatrixFactory());
+		classAwareExtractor = new DefaultYOLOv2BoundingBoxExtractor(environment.getMatrixFactory())
+				.withClassAwareNonMaxSuppression(true);
+	}
+
+	@Benchmark
+	public DefaultDetections decode() {
+		return decoder.decode(output, 0, 1, SCORE_THRESHOLD, null);
+	}
+
+	@Benchmark
+	public Detections scoreFilteredDetections() {
+		return extractor.getScoreFilteredDetections(output, labels, SCORE_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<BoundingBox> scoreFilteredBoundingBoxesWithNonMaxSuppression() {
+		return extractor.getScoreFilteredBoundingBoxesWithNonMaxSuppression(output, labels, SCORE_THRESHOLD, 
+				IOU_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<BoundingBox> scoreFilteredBoundingBoxesWithClassAwareNonMaxSuppression() {
+		return classAwareExtractor.getScoreFilteredBoundingBoxesWithNonMaxSuppression(output, labels, 
+				SCORE_THRESHOLD, IOU_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<BoundingBox> topTenBoundingBoxesWithNonMaxSuppression() {
+		return extractor.getScoreFilteredBoundingBoxesWithNonMaxSuppression(output, labels, SCORE_THRESHOLD, 
+				IOU_THRESHOLD, 10);
+	}
+
+	@Benchmark
+	public Detections scoreFilteredDetectionsWithNonMaxSuppression() {
+		return extractor.getScoreFilteredDetectionsWithNonMaxSuppression(output, labels, SCORE_THRESHOLD, 
+				IOU_THRESHOLD);
+	}
+}
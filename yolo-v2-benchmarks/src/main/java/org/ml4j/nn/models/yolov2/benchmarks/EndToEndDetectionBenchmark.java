@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.ml4j.Matrix;
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.FeedForwardNeuralNetworkContext;
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.YOLOv2Factory;
+import org.ml4j.nn.models.yolov2.YOLOv2Labels;
+import org.ml4j.nn.models.yolov2.impl.DefaultYOLOv2BoundingBoxExtractor;
+import org.ml4j.nn.models.yolov2.impl.DefaultYOLOv2Factory;
+import org.ml4j.nn.neurons.Neurons3D;
+import org.ml4j.nn.neurons.NeuronsActivation;
+import org.ml4j.nn.neurons.NeuronsActivationImpl;
+import org.ml4j.nn.neurons.format.NeuronsActivationFormat;
+import org.ml4j.nn.supervised.SupervisedFeedForwardNeuralNetwork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks end-to-end detection on the CPU - forward propagation of a 608x608 image through the pretrained 
+ * network, followed by decoding and non-max suppression of its output.
+ * 
+ * @author Michael Lavelle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class EndToEndDetectionBenchmark {
+
+	private static final float SCORE_THRESHOLD = 0.3f;
+	private static final float IOU_THRESHOLD = 0.5f;
+
+	private MatrixFactory matrixFactory;
+	private SupervisedFeedForwardNeuralNetwork network;
+	private FeedForwardNeuralNetworkContext context;
+	private NeuronsActivation input;
+	private YOLOv2Labels labels;
+	private DefaultYOLOv2BoundingBoxExtractor extractor;
+
+	@Setup
+	public void setUp() throws IOException {
+		YOLOv2BenchmarkEnvironment environment = new YOLOv2BenchmarkEnvironment();
+		matrixFactory = environment.getMatrixFactory();
+		YOLOv2Factory factory = new DefaultYOLOv2Factory(environment.getSessionFactory(), 
+				environment.getMatrixFactory(), EndToEndDetectionBenchmark.class.getClassLoader());
+		context = environment.createPredictionContext();
+		network = factory.createYoloV2(context);
+		labels = factory.createYoloV2Labels();
+		extractor = new DefaultYOLOv2BoundingBoxExtractor(environment.getMatrixFactory());
+
+		// A random image, with pixel values scaled to between 0 and 1
+		Neurons3D inputNeurons = new Neurons3D(608, 608, 3, false);
+		Random random = new Random(42);
+		float[] pixels = new float[608 * 608 * 3];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = random.nextFloat();
+		}
+		Matrix inputMatrix = environment.getMatrixFactory().createMatrixFromRowsByRowsArray(pixels.length, 1, pixels);
+		input = new NeuronsActivationImpl(inputNeurons, inputMatrix, NeuronsActivationFormat.ROWS_SPAN_FEATURE_SET);
+	}
+
+	@Benchmark
+	public NeuronsActivation forwardPropagate() {
+		return network.forwardPropagate(input, context).getOutput();
+	}
+
+	@Benchmark
+	public List<BoundingBox> detect() {
+		NeuronsActivation output = network.forwardPropagate(input, context).getOutput();
+		return extractor.getScoreFilteredBoundingBoxesWithNonMaxSuppression(output, matrixFactory, labels, 
+				SCORE_THRESHOLD, IOU_THRESHOLD).get(0);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.impl.DefaultYOLOv2BoundingBoxExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks applyNonMaxSuppression on crowded candidate lists of heavily overlapping boxes.
+ * 
+ * @author Michael Lavelle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NonMaxSuppressionBenchmark {
+
+	private static final float IOU_THRESHOLD = 0.5f;
+
+	@Param({ "100", "1000", "5000" })
+	public int candidateCount;
+
+	private List<BoundingBox> candidates;
+	private DefaultYOLOv2BoundingBoxExtractor extractor;
+	private DefaultYOLOv2BoundingBoxExtractor classAwareExtractor;
+
+	@Setup
+	public void setUp() {
+		YOLOv2BenchmarkEnvironment environment = new YOLOv2BenchmarkEnvironment();
+		candidates = YOLOv2BenchmarkFixtures.createCrowdedCandidates(candidateCount, 42);
+		extractor = new DefaultYOLOv2BoundingBoxExtractor(environment.getMatrixFactory());
+		classAwareExtractor = new DefaultYOLOv2BoundingBoxExtractor(environment.getMatrixFactory())
+				.withClassAwareNonMaxSuppression(true);
+	}
+
+	@Benchmark
+	public List<BoundingBox> applyNonMaxSuppression() {
+		return extractor.applyNonMaxSuppression(candidates, IOU_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<BoundingBox> applyClassAwareNonMaxSuppression() {
+		return classAwareExtractor.applyNonMaxSuppression(candidates, IOU_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<BoundingBox> applyTopTenNonMaxSuppression() {
+		return extractor.applyNonMaxSuppression(candidates, IOU_THRESHOLD, 10);
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.ml4j.MatrixFactory;
+import org.ml4j.nn.architectures.yolo.yolov2.YOLOv2WeightsLoader;
+import org.ml4j.nn.models.yolov2.impl.DefaultUntrainedYOLOv2WeightsLoader;
+import org.ml4j.nn.models.yolov2.impl.MappedYOLOv2WeightsLoader;
+import org.ml4j.nn.models.yolov2.impl.PackedYOLOv2WeightsConverter;
+import org.ml4j.nn.models.yolov2.impl.PretrainedYOLOv2WeightsLoaderImpl;
+import org.ml4j.nn.models.yolov2.impl.YOLOv2WeightsCache;
+import org.ml4j.nn.models.yolov2.impl.YOLOv2WeightsTensor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks loading a single weights tensor and all the weights of the network, with each of the weights loaders.
+ * 
+ * @author Michael Lavelle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WeightsLoadingBenchmark {
+
+	/**
+	 * The weights loader - pretrained deserializes the yolov2javaweights resources, cached reads a populated
+	 * YOLOv2WeightsCache and mapped reads a packed weights archive.
+	 */
+	@Param({ "pretrained", "cached", "mapped" })
+	public String loader;
+
+	/**
+	 * The tensor loaded by the per-tensor benchmark - the first tensor of the network, or the largest.
+	 */
+	@Param({ "first", "largest" })
+	public String tensor;
+
+	private List<YOLOv2WeightsTensor> tensors;
+	private YOLOv2WeightsTensor selectedTensor;
+	private YOLOv2WeightsLoader weightsLoader;
+
+	@Setup
+	public void setUp() throws IOException {
+		YOLOv2BenchmarkEnvironment environment = new YOLOv2BenchmarkEnvironment();
+		MatrixFactory matrixFactory = environment.getMatrixFactory();
+		ClassLoader classLoader = WeightsLoadingBenchmark.class.getClassLoader();
+		PackedYOLOv2WeightsConverter converter = new PackedYOLOv2WeightsConverter(environment.getSessionFactory());
+		tensors = converter.recordTensors(environment.createPredictionContext(), 
+				new DefaultUntrainedYOLOv2WeightsLoader());
+		selectedTensor = "first".equals(tensor) ? tensors.get(0) 
+				: tensors.stream().max(Comparator.comparingInt(YOLOv2WeightsTensor::getElementCount)).get();
+
+		Path directory = Files.createTempDirectory("yolov2-benchmarks");
+		directory.toFile().deleteOnExit();
+		PretrainedYOLOv2WeightsLoaderImpl pretrainedLoader = new PretrainedYOLOv2WeightsLoaderImpl(classLoader, 
+				matrixFactory);
+		switch (loader) {
+		case "pretrained":
+			weightsLoader = pretrainedLoader;
+			break;
+		case "cached":
+			weightsLoader = new PretrainedYOLOv2WeightsLoaderImpl(classLoader, matrixFactory, 
+					new YOLOv2WeightsCache(directory, PretrainedYOLOv2WeightsLoaderImpl.WEIGHTS_VERSION));
+			// Populate the cache
+			for (YOLOv2WeightsTensor t : tensors) {
+				load(weightsLoader, t);
+			}
+			break;
+		case "mapped":
+			Path archive = directory.resolve("yolov2.weights.packed");
+			converter.convert(tensors, pretrainedLoader, archive);
+			weightsLoader = new MappedYOLOv2WeightsLoader(archive, matrixFactory);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown loader:" + loader);
+		}
+	}
+
+	@Benchmark
+	public Object loadTensor() {
+		return load(weightsLoader, selectedTensor);
+	}
+
+	@Benchmark
+	public void loadAllTensors(Blackhole blackhole) {
+		for (YOLOv2WeightsTensor t : tensors) {
+			blackhole.consume(load(weightsLoader, t));
+		}
+	}
+
+	private static Object load(YOLOv2WeightsLoader weightsLoader, YOLOv2WeightsTensor tensor) {
+		int[] shape = tensor.getShape();
+		switch (tensor.getKind()) {
+		case CONVOLUTIONAL_WEIGHTS:
+			return weightsLoader.getConvolutionalLayerWeights(tensor.getName(), shape[3], shape[2], shape[1], shape[0]);
+		case CONVOLUTIONAL_BIASES:
+			return weightsLoader.getConvolutionalLayerBiases(tensor.getName(), shape[0]);
+		case BATCH_NORM_GAMMA:
+			return weightsLoader.getBatchNormLayerGamma(tensor.getName(), shape[0]);
+		case BATCH_NORM_BETA:
+			return weightsLoader.getBatchNormLayerBeta(tensor.getName(), shape[0]);
+		case BATCH_NORM_MOVING_MEAN:
+			return weightsLoader.getBatchNormLayerMovingMean(tensor.getName(), shape[0]);
+		case BATCH_NORM_MOVING_VARIANCE:
+			return weightsLoader.getBatchNormLayerMovingVariance(tensor.getName(), shape[0]);
+		default:
+			throw new IllegalArgumentException("Unknown tensor kind:" + tensor.getKind());
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.benchmarks;
+
+import org.ml4j.MatrixFactory;
+import org.ml4j.jblas.JBlasRowMajorMatrixFactoryOptimised;
+import org.ml4j.nn.FeedForwardNeuralNetworkContext;
+import org.ml4j.nn.FeedForwardNeuralNetworkContextImpl;
+import org.ml4j.nn.activationfunctions.factories.DifferentiableActivationFunctionFactory;
+import org.ml4j.nn.activationfunctions.factories.DefaultDifferentiableActivationFunctionFactory;
+import org.ml4j.nn.axons.factories.AxonsFactory;
+import org.ml4j.nn.axons.factories.DefaultAxonsFactoryImpl;
+import org.ml4j.nn.components.DirectedComponentsContext;
+import org.ml4j.nn.components.DirectedComponentsContextImpl;
+import org.ml4j.nn.components.factories.DefaultDirectedComponentFactoryImpl;
+import org.ml4j.nn.components.factories.DirectedComponentFactory;
+import org.ml4j.nn.layers.DefaultDirectedLayerFactory;
+import org.ml4j.nn.layers.DirectedLayerFactory;
+import org.ml4j.nn.sessions.factories.DefaultSessionFactory;
+import org.ml4j.nn.sessions.factories.DefaultSessionFactoryImpl;
+import org.ml4j.nn.supervised.DefaultSupervisedFeedForwardNeuralNetworkFactory;
+import org.ml4j.nn.supervised.SupervisedFeedForwardNeuralNetworkFactory;
+
+/**
+ * Wires the default ml4j-base-impl implementations used by the benchmarks which build a network - the only 
+ * benchmark code which depends on ml4j-base-impl constructors.
+ * 
+ * @author Michael Lavelle
+ */
+public class YOLOv2BenchmarkEnvironment {
+
+	private MatrixFactory matrixFactory;
+	private DirectedComponentsContext directedComponentsContext;
+	private DefaultSessionFactory sessionFactory;
+
+	public YOLOv2BenchmarkEnvironment() {
+		this.matrixFactory = new JBlasRowMajorMatrixFactoryOptimised();
+		this.directedComponentsContext = new DirectedComponentsContextImpl(matrixFactory, false);
+		DifferentiableActivationFunctionFactory activationFunctionFactory = 
+				new DefaultDifferentiableActivationFunctionFactory();
+		AxonsFactory axonsFactory = new DefaultAxonsFactoryImpl(matrixFactory);
+		DirectedComponentFactory directedComponentFactory = new DefaultDirectedComponentFactoryImpl(matrixFactory,
+				axonsFactory, activationFunctionFactory, directedComponentsContext);
+		DirectedLayerFactory directedLayerFactory = new DefaultDirectedLayerFactory(axonsFactory, 
+				activationFunctionFactory, directedComponentFactory);
+		SupervisedFeedForwardNeuralNetworkFactory networkFactory = 
+				new DefaultSupervisedFeedForwardNeuralNetworkFactory(directedComponentFactory);
+		this.sessionFactory = new DefaultSessionFactoryImpl(matrixFactory, directedComponentFactory, 
+				directedLayerFactory, networkFactory, directedComponentsContext);
+	}
+
+	public MatrixFactory getMatrixFactory() {
+		return matrixFactory;
+	}
+
+	public DefaultSessionFactory getSessionFactory() {
+		return sessionFactory;
+	}
+
+	/**
+	 * @return A new prediction context.
+	 */
+	public FeedForwardNeuralNetworkContext createPredictionContext() {
+		return new FeedForwardNeuralNetworkContextImpl(directedComponentsContext, false);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ml4j.nn.models.yolov2.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.ml4j.nn.models.yolov2.BoundingBox;
+import org.ml4j.nn.models.yolov2.impl.DefaultBoundingBox;
+
+/**
+ * Synthetic, reproducible fixtures for the benchmarks.
+ * 
+ * @author Michael Lavelle
+ */
+public final class YOLOv2BenchmarkFixtures {
+
+	public static final int GRID_SIZE = 19;
+	public static final int ANCHOR_COUNT = 5;
+	public static final int CLASS_COUNT = 80;
+	public static final int VALUES_PER_ANCHOR = 5 + CLASS_COUNT;
+
+	private YOLOv2BenchmarkFixtures() {
+	}
+
+	/**
+	 * Creates a synthetic 425x19x19 network output, in the layout read by the bounding box extractor, in which the 
+	 * specified fraction of anchor boxes contain an object.
+	 * 
+	 * Anchor boxes without an object have a confidence logit of around -8, so a sigmoid confidence well below 
+	 * typical score thresholds. Anchor boxes with an object have a high confidence and a dominant class, and are 
+	 * placed in clusters of neighbouring cells as objects span several cells of the grid in real outputs.
+	 * 
+	 * @param density The fraction of anchor boxes containing an object.
+	 * @param seed The random seed.
+	 * @return The synthetic output.
+	 */
+	public static float[] createOutput(double density, long seed) {
+		Random random = new Random(seed);
+		int cellCount = GRID_SIZE * GRID_SIZE * ANCHOR_COUNT;
+		float[] data = new float[cellCount * VALUES_PER_ANCHOR];
+		for (int cell = 0; cell < cellCount; cell++) {
+			int index = cell * VALUES_PER_ANCHOR;
+			data[index] = (float) random.nextGaussian();
+			data[index + 1] = (float) random.nextGaussian();
+			data[index + 2] = (float) (random.nextGaussian() * 0.5);
+			data[index + 3] = (float) (random.nextGaussian() * 0.5);
+			data[index + 4] = (float) (-8 + random.nextGaussian());
+			for (int c = 0; c < CLASS_COUNT; c++) {
+				data[index + 5 + c] = (float) random.nextGaussian();
+			}
+		}
+		int objectCount = (int) Math.round(cellCount * density);
+		int placed = 0;
+		while (placed < objectCount) {
+			// Each object is detected by a few anchors of neighbouring cells
+			int row = random.nextInt(GRID_SIZE);
+			int column = random.nextInt(GRID_SIZE);
+			int predictedClass = random.nextInt(CLASS_COUNT);
+			for (int i = 0; i < 4 && placed < objectCount; i++) {
+				int r = Math.min(GRID_SIZE - 1, row + random.nextInt(2));
+				int c = Math.min(GRID_SIZE - 1, column + random.nextInt(2));
+				int index = ((r * GRID_SIZE + c) * ANCHOR_COUNT + random.nextInt(ANCHOR_COUNT)) * VALUES_PER_ANCHOR;
+				if (data[index + 4] < 0) {
+					data[index + 4] = (float) (2 + random.nextGaussian());
+					data[index + 5 + predictedClass] = (float) (8 + random.nextGaussian());
+					placed++;
+				}
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Creates a crowded list of NMS candidates - boxes in clusters of heavily overlapping boxes, of a few classes.
+	 * 
+	 * @param count The number of candidates.
+	 * @param seed The random seed.
+	 * @return The candidates.
+	 */
+	public static List<BoundingBox> createCrowdedCandidates(int count, long seed) {
+		Random random = new Random(seed);
+		int clusterCount = Math.max(1, count / 20);
+		float[][] clusters = new float[clusterCount][];
+		for (int i = 0; i < clusterCount; i++) {
+			clusters[i] = new float[] { random.nextFloat(), random.nextFloat(), 0.05f + random.nextFloat() * 0.2f, 
+					0.05f + random.nextFloat() * 0.2f };
+		}
+		List<BoundingBox> candidates = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			float[] cluster = clusters[random.nextInt(clusterCount)];
+			float x = cluster[0] + (float) random.nextGaussian() * cluster[2] * 0.1f;
+			float y = cluster[1] + (float) random.nextGaussian() * cluster[3] * 0.1f;
+			float width = cluster[2] * (0.8f + random.nextFloat() * 0.4f);
+			float height = cluster[3] * (0.8f + random.nextFloat() * 0.4f);
+			candidates.add(new DefaultBoundingBox(x, y, width, height, random.nextInt(4), 0.3f + random.nextFloat() * 0.7f));
+		}
+		return candidates;
+	}
+}